@@ -25,6 +25,7 @@ package com.oracle.graal.asm.amd64;
 import static com.oracle.graal.asm.NumUtil.isByte;
 import static com.oracle.graal.asm.NumUtil.isInt;
 import static com.oracle.graal.asm.NumUtil.isShiftCount;
+import static com.oracle.graal.asm.NumUtil.isUByte;
 import static com.oracle.graal.asm.amd64.AMD64AsmOptions.UseAddressNop;
 import static com.oracle.graal.asm.amd64.AMD64AsmOptions.UseNormalNop;
 import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.ADD;
@@ -1718,6 +1719,24 @@ public class AMD64Assembler extends Assembler {
         }
     }
 
+    public final void pcmpeqw(Register dst, Register src) {
+        assert supports(CPUFeature.SSE2);
+        emitByte(0x66);
+        int encode = prefixAndEncode(dst.encoding, src.encoding);
+        emitByte(0x0F);
+        emitByte(0x75);
+        emitByte(0xC0 | encode);
+    }
+
+    public final void pmovmskb(Register dst, Register src) {
+        assert supports(CPUFeature.SSE2);
+        emitByte(0x66);
+        int encode = prefixAndEncode(dst.encoding, src.encoding);
+        emitByte(0x0F);
+        emitByte(0xD7);
+        emitByte(0xC0 | encode);
+    }
+
     public final void pop(Register dst) {
         int encode = prefixAndEncode(dst.encoding);
         emitByte(0x58 | encode);
@@ -1727,6 +1746,28 @@ public class AMD64Assembler extends Assembler {
         emitByte(0x9D);
     }
 
+    public final void pshufd(Register dst, Register src, int imm8) {
+        assert supports(CPUFeature.SSE2);
+        assert isUByte(imm8) : "invalid value";
+        emitByte(0x66);
+        int encode = prefixAndEncode(dst.encoding, src.encoding);
+        emitByte(0x0F);
+        emitByte(0x70);
+        emitByte(0xC0 | encode);
+        emitByte(imm8);
+    }
+
+    public final void pshuflw(Register dst, Register src, int imm8) {
+        assert supports(CPUFeature.SSE2);
+        assert isUByte(imm8) : "invalid value";
+        emitByte(0xF2);
+        int encode = prefixAndEncode(dst.encoding, src.encoding);
+        emitByte(0x0F);
+        emitByte(0x70);
+        emitByte(0xC0 | encode);
+        emitByte(imm8);
+    }
+
     public final void ptest(Register dst, Register src) {
         assert supports(CPUFeature.SSE4_1);
         emitByte(0x66);
@@ -407,6 +407,16 @@ public abstract class AArch64LIRGenerator extends LIRGenerator {
         throw JVMCIError.unimplemented("Do not generate until we support vector instructions");
     }
 
+    @Override
+    public Variable emitArrayIndexOf(JavaKind kind, Value array, Value fromIndex, Value length, Value value) {
+        throw JVMCIError.unimplemented("Do not generate until we support vector instructions");
+    }
+
+    @Override
+    public Variable emitArrayCompareTo(JavaKind kind, Value array1, Value array2, Value length1, Value length2) {
+        throw JVMCIError.unimplemented("Do not generate until we support vector instructions");
+    }
+
     @Override
     protected JavaConstant zapValueForKind(PlatformKind kind) {
         long dead = 0xDEADDEADDEADDEADL;
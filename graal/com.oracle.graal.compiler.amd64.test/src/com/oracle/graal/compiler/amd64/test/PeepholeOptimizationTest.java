@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.amd64.test;
+
+import static com.oracle.graal.lir.amd64.phases.AMD64PeepholeOptimizationPhase.Options.LIROptAMD64Peephole;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.amd64.AMD64BinaryConsumer;
+import com.oracle.graal.lir.amd64.AMD64ControlFlow.BranchOp;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.jtt.LIRTest;
+import com.oracle.graal.lir.phases.LIRPhase;
+import com.oracle.graal.lir.phases.PostAllocationOptimizationPhase.PostAllocationOptimizationContext;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+import jdk.vm.ci.amd64.AMD64;
+import jdk.vm.ci.code.TargetDescription;
+
+public class PeepholeOptimizationTest extends LIRTest {
+    private static LIR lir;
+
+    @Before
+    public void checkAMD64() {
+        assumeTrue("skipping AMD64 specific test", getTarget().arch instanceof AMD64);
+    }
+
+    public static int andTestSnippet(int a, int b) {
+        int c = a & b;
+        if (c == 0) {
+            return a;
+        }
+        return c + b;
+    }
+
+    /**
+     * Unlike {@code (a & b) == 0}, which becomes a {@code test a, b}, the result of the {@code or}
+     * is tested and also used after the branch.
+     */
+    public static int orTestSnippet(int a, int b) {
+        int c = a | b;
+        if (c == 0) {
+            return b;
+        }
+        return c * a;
+    }
+
+    public static int addTestSnippet(int a, int b) {
+        int c = a + b;
+        if (c != 0) {
+            return c * a;
+        }
+        return b;
+    }
+
+    public static int subLessSnippet(int a, int b) {
+        int c = a - b;
+        if (c < 0) {
+            return a;
+        }
+        return c;
+    }
+
+    public static long zeroExtendSnippet(int a, int b) {
+        return (a ^ b) & 0xFFFFFFFFL;
+    }
+
+    private void runAll() {
+        for (int a : new int[]{0, 1, -1, 12, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            for (int b : new int[]{0, 1, -12, 12, Integer.MAX_VALUE}) {
+                test("andTestSnippet", a, b);
+                test("orTestSnippet", a, b);
+                test("addTestSnippet", a, b);
+                test("subLessSnippet", a, b);
+                test("zeroExtendSnippet", a, b);
+            }
+        }
+    }
+
+    @Test
+    public void optimized() {
+        try (OverrideScope s = OptionValue.override(LIROptAMD64Peephole, true)) {
+            runAll();
+        }
+    }
+
+    @Test
+    public void notOptimized() {
+        try (OverrideScope s = OptionValue.override(LIROptAMD64Peephole, false)) {
+            runAll();
+        }
+    }
+
+    /**
+     * Counts the {@code test r, r} instructions directly in front of a branch.
+     */
+    private int countBranchTests(String snippet, boolean peephole) {
+        try (OverrideScope s = OptionValue.override(LIROptAMD64Peephole, peephole)) {
+            getLIRSuites().getPostAllocationOptimizationStage().appendPhase(new CheckPhase());
+            compile(getResolvedJavaMethod(snippet), null);
+        }
+        int count = 0;
+        for (AbstractBlockBase<?> block : lir.codeEmittingOrder()) {
+            List<LIRInstruction> instructions = lir.getLIRforBlock(block);
+            for (int i = 0; i + 1 < instructions.size(); i++) {
+                LIRInstruction inst = instructions.get(i);
+                if (instructions.get(i + 1) instanceof BranchOp && inst instanceof AMD64BinaryConsumer.Op) {
+                    AMD64BinaryConsumer.Op test = (AMD64BinaryConsumer.Op) inst;
+                    if (test.getOpcode() == AMD64RMOp.TEST && isRegister(test.getX()) && isRegister(test.getY()) && asRegister(test.getX()).equals(asRegister(test.getY()))) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Verifies that the {@code test r, r} after the {@code or} is emitted without the peephole
+     * optimization and removed with it.
+     */
+    @Test
+    public void redundantTestRemoved() {
+        int unoptimized = countBranchTests("orTestSnippet", false);
+        int optimized = countBranchTests("orTestSnippet", true);
+        assertTrue(unoptimized > 0, "no test in front of a branch in unoptimized LIR");
+        assertTrue(optimized < unoptimized, "tests in front of branches: %d optimized, %d unoptimized", optimized, unoptimized);
+    }
+
+    public static class CheckPhase extends LIRPhase<PostAllocationOptimizationContext> {
+        @Override
+        protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                        PostAllocationOptimizationContext context) {
+            lir = lirGenRes.getLIR();
+        }
+    }
+}
@@ -64,7 +64,9 @@ import com.oracle.graal.lir.SwitchStrategy;
 import com.oracle.graal.lir.Variable;
 import com.oracle.graal.lir.amd64.AMD64AddressValue;
 import com.oracle.graal.lir.amd64.AMD64ArithmeticLIRGeneratorTool;
+import com.oracle.graal.lir.amd64.AMD64ArrayCompareToOp;
 import com.oracle.graal.lir.amd64.AMD64ArrayEqualsOp;
+import com.oracle.graal.lir.amd64.AMD64ArrayIndexOfOp;
 import com.oracle.graal.lir.amd64.AMD64BinaryConsumer;
 import com.oracle.graal.lir.amd64.AMD64ByteSwapOp;
 import com.oracle.graal.lir.amd64.AMD64Call;
@@ -415,6 +417,20 @@ public abstract class AMD64LIRGenerator extends LIRGenerator {
         return result;
     }
 
+    @Override
+    public Variable emitArrayIndexOf(JavaKind kind, Value array, Value fromIndex, Value length, Value value) {
+        Variable result = newVariable(LIRKind.value(AMD64Kind.DWORD));
+        append(new AMD64ArrayIndexOfOp(this, kind, result, asAllocatable(array), asAllocatable(fromIndex), asAllocatable(length), asAllocatable(value)));
+        return result;
+    }
+
+    @Override
+    public Variable emitArrayCompareTo(JavaKind kind, Value array1, Value array2, Value length1, Value length2) {
+        Variable result = newVariable(LIRKind.value(AMD64Kind.DWORD));
+        append(new AMD64ArrayCompareToOp(this, kind, result, asAllocatable(array1), asAllocatable(array2), asAllocatable(length1), asAllocatable(length2)));
+        return result;
+    }
+
     @Override
     public void emitReturn(JavaKind kind, Value input) {
         AllocatableValue operand = Value.ILLEGAL;
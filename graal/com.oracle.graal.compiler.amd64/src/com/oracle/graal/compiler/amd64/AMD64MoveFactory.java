@@ -61,6 +61,27 @@ public abstract class AMD64MoveFactory extends AMD64MoveFactoryBase {
         }
     }
 
+    @Override
+    public int getConstantLoadCost(Constant constant) {
+        if (!(constant instanceof JavaConstant)) {
+            return 2;
+        }
+        JavaConstant c = (JavaConstant) constant;
+        switch (c.getJavaKind().getStackKind()) {
+            case Long:
+                // movq with a 64-bit immediate
+                return NumUtil.isUInt(c.asLong()) || NumUtil.isInt(c.asLong()) ? 1 : 2;
+            case Float:
+            case Double:
+                // xorps for zero, otherwise a load from the data section
+                return c.isDefaultForKind() ? 1 : 3;
+            case Object:
+                return c.isNull() ? 1 : 3;
+            default:
+                return 1;
+        }
+    }
+
     @Override
     public AMD64LIRInstruction createMove(AllocatableValue dst, Value src) {
         if (src instanceof AMD64AddressValue) {
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.amd64;
+
+import com.oracle.graal.compiler.common.type.FloatStamp;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.VirtualState;
+import com.oracle.graal.nodes.calc.AddNode;
+import com.oracle.graal.nodes.calc.DivNode;
+import com.oracle.graal.nodes.calc.FloatConvertNode;
+import com.oracle.graal.nodes.calc.IntegerDivNode;
+import com.oracle.graal.nodes.calc.IntegerRemNode;
+import com.oracle.graal.nodes.calc.MulNode;
+import com.oracle.graal.nodes.calc.SqrtNode;
+import com.oracle.graal.nodes.calc.SubNode;
+import com.oracle.graal.nodes.memory.FloatingReadNode;
+import com.oracle.graal.nodes.memory.ReadNode;
+import com.oracle.graal.nodes.memory.address.AddressNode;
+import com.oracle.graal.phases.schedule.NodeLatencyModel;
+
+/**
+ * Approximate result latencies of current AMD64 cores, assuming loads hit the L1 cache.
+ */
+public class AMD64NodeLatencyModel implements NodeLatencyModel {
+
+    /**
+     * The 16 general purpose registers minus the stack pointer, the thread register, the heap base
+     * register and a scratch register.
+     */
+    private static final int REGISTER_PRESSURE_LIMIT = 12;
+
+    @Override
+    public int latency(Node node) {
+        if (node instanceof VirtualState || node instanceof AddressNode) {
+            // Folded into their usages.
+            return 0;
+        } else if (node instanceof ReadNode || node instanceof FloatingReadNode) {
+            return 4;
+        } else if (node instanceof IntegerDivNode || node instanceof IntegerRemNode) {
+            return 26;
+        } else if (node instanceof DivNode) {
+            return 14;
+        } else if (node instanceof SqrtNode) {
+            return 16;
+        } else if (node instanceof MulNode) {
+            return isFloat(node) ? 5 : 3;
+        } else if (node instanceof AddNode || node instanceof SubNode) {
+            return isFloat(node) ? 3 : 1;
+        } else if (node instanceof FloatConvertNode) {
+            return 4;
+        }
+        return 1;
+    }
+
+    private static boolean isFloat(Node node) {
+        return ((ValueNode) node).stamp() instanceof FloatStamp;
+    }
+
+    @Override
+    public int registerPressureLimit() {
+        return REGISTER_PRESSURE_LIMIT;
+    }
+}
@@ -25,10 +25,13 @@ package com.oracle.graal.compiler.amd64;
 import static com.oracle.graal.compiler.common.BackendOptions.ShouldOptimizeStackToStackMoves;
 
 import com.oracle.graal.java.DefaultSuitesProvider;
+import com.oracle.graal.lir.amd64.phases.AMD64PeepholeOptimizationPhase;
 import com.oracle.graal.lir.amd64.phases.StackMoveOptimizationPhase;
 import com.oracle.graal.lir.phases.LIRSuites;
 import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration.Plugins;
+import com.oracle.graal.phases.schedule.LatencySchedulePhase;
 import com.oracle.graal.phases.tiers.CompilerConfiguration;
+import com.oracle.graal.phases.tiers.Suites;
 
 public class AMD64SuitesProvider extends DefaultSuitesProvider {
 
@@ -36,9 +39,22 @@ public class AMD64SuitesProvider extends DefaultSuitesProvider {
         super(compilerConfiguration, plugins);
     }
 
+    @Override
+    public Suites createSuites() {
+        Suites suites = super.createSuites();
+        if (LatencySchedulePhase.Options.LatencyScheduling.getValue()) {
+            /* Note: this phase must be appended <b>after</b> the final SchedulePhase */
+            suites.getLowTier().appendPhase(new LatencySchedulePhase(new AMD64NodeLatencyModel()));
+        }
+        return suites;
+    }
+
     @Override
     public LIRSuites createLIRSuites() {
         LIRSuites lirSuites = super.createLIRSuites();
+        if (AMD64PeepholeOptimizationPhase.Options.LIROptAMD64Peephole.getValue()) {
+            lirSuites.getPostAllocationOptimizationStage().appendPhase(new AMD64PeepholeOptimizationPhase());
+        }
         if (StackMoveOptimizationPhase.Options.LIROptStackMoveOptimizer.getValue() && ShouldOptimizeStackToStackMoves.getValue()) {
             /* Note: this phase must be inserted <b>after</b> RedundantMoveElimination */
             lirSuites.getPostAllocationOptimizationStage().appendPhase(new StackMoveOptimizationPhase());
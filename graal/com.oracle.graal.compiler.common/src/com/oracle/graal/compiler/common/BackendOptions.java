@@ -41,6 +41,8 @@ public final class BackendOptions {
         public static final OptionValue<Boolean> LIROptSSILinearScan = new OptionValue<>(false);
         @Option(help = "Enable experimental Trace Register Allocation.", type = OptionType.Debug)
         public static final OptionValue<Boolean> TraceRA = new OptionValue<>(false);
+        @Option(help = "Use the graph coloring register allocator for hot methods.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> GraphColoringRA = new OptionValue<>(false);
         // @formatter:on
     }
 
@@ -82,15 +82,27 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Expert)
     public static final OptionValue<Integer> MaximumEscapeAnalysisArrayLength = new OptionValue<>(32);
 
+    @Option(help = "Arrays longer than MaximumEscapeAnalysisArrayLength but not longer than this are only virtualized if all accesses to them can be performed on the virtual array.", type = OptionType.Expert)
+    public static final OptionValue<Integer> MaximumEscapeAnalysisLazyArrayLength = new OptionValue<>(1024);
+
+    @Option(help = "Use escape summaries of callees that are not inlined to keep arguments virtual across calls.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> EscapeAnalysisCallSummaries = new OptionValue<>(true);
+
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> PEAInliningHints = new OptionValue<>(false);
 
-    @Option(help = "", type = OptionType.Expert)
+    @Option(help = "Duplicate the code following a merge into predecessors where it can be simplified.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> TailDuplication = new OptionValue<>(true);
+
+    @Option(help = "Minimum probability of a predecessor relative to the merge for duplicating a non-trivial tail into it.", type = OptionType.Expert)
     public static final OptionValue<Double> TailDuplicationProbability = new OptionValue<>(0.5);
 
-    @Option(help = "", type = OptionType.Expert)
+    @Option(help = "Tails up to this number of nodes are duplicated regardless of the predecessor's probability.", type = OptionType.Expert)
     public static final OptionValue<Integer> TailDuplicationTrivialSize = new OptionValue<>(1);
 
+    @Option(help = "Maximum number of nodes added by tail duplication per compilation.", type = OptionType.Expert)
+    public static final OptionValue<Integer> TailDuplicationBudget = new OptionValue<>(200);
+
     @Option(help = "", type = OptionType.Expert)
     public static final OptionValue<Integer> DeoptsToDisableOptimisticOptimization = new OptionValue<>(40);
 
@@ -100,6 +112,12 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> ReassociateInvariants = new OptionValue<>(true);
 
+    @Option(help = "Replace scaled induction variables with incremented ones and rewrite loop exit tests accordingly.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopStrengthReduction = new OptionValue<>(true);
+
+    @Option(help = "Interchange side effect free loop nests that walk two-dimensional arrays in column order.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopInterchange = new OptionValue<>(true);
+
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> FullUnroll = new OptionValue<>(true);
 
@@ -254,12 +272,21 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> OptConvertDeoptsToGuards = new OptionValue<>(true);
 
+    @Option(help = "Propagate stamps along the reachable control flow to find constants and dead branches.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> OptSparseConditionalConstantPropagation = new OptionValue<>(true);
+
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> OptReadElimination = new OptionValue<>(true);
 
+    @Option(help = "Remove fixed reads that are dominated by an equivalent read after low tier lowering.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> OptReadGlobalValueNumbering = new OptionValue<>(true);
+
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> OptCanonicalizer = new OptionValue<>(true);
 
+    @Option(help = "Process the nodes in the canonicalizer in topological order, inputs before usages.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> OptCanonicalizerTopologicalOrder = new OptionValue<>(true);
+
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> OptDeoptimizationGrouping = new OptionValue<>(true);
 
@@ -31,6 +31,11 @@ import java.util.PriorityQueue;
 
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
 
 /**
  * Computes an ordering of the block that can be used by the linear scan register allocator and the
@@ -45,6 +50,11 @@ import com.oracle.graal.compiler.common.cfg.Loop;
  * backward jumps are always marked as aligned. Aligning the target of conditional jumps does not
  * bring a measurable benefit and is therefore avoided to keep the code size small.
  *
+ * If {@link Options#CodeLayoutHotColdSplitting} is enabled, blocks whose probability is below
+ * {@link Options#CodeLayoutColdBlockProbability} are not scheduled as part of the hot paths but
+ * emitted after all other blocks. This keeps the hot code of a method together. Loop headers in
+ * this cold region are not aligned.
+ *
  * The linear scan register allocator order has an additional mechanism that prevents merge nodes
  * from being scheduled if there is at least one highly likely predecessor still unscheduled. This
  * increases the probability that the merge node and the corresponding predecessor are more closely
@@ -54,6 +64,17 @@ import com.oracle.graal.compiler.common.cfg.Loop;
  */
 public final class ComputeBlockOrder {
 
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Emit rarely executed blocks after the hot blocks of a method.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> CodeLayoutHotColdSplitting = new OptionValue<>(true);
+        @Option(help = "Blocks with a lower probability than this (relative to the method entry) are considered cold.", type = OptionType.Expert)
+        public static final OptionValue<Double> CodeLayoutColdBlockProbability = new OptionValue<>(0.001);
+        // @formatter:on
+    }
+
+    private static final DebugMetric coldBlocksMetric = Debug.metric("BlockOrder[coldBlocks]");
+
     /**
      * The initial capacities of the worklists used for iteratively finding the block order.
      */
@@ -89,19 +110,41 @@ public final class ComputeBlockOrder {
         List<T> order = new ArrayList<>();
         BitSet visitedBlocks = new BitSet(blockCount);
         PriorityQueue<T> worklist = initializeWorklist(startBlock, visitedBlocks);
-        computeCodeEmittingOrder(order, worklist, visitedBlocks);
+        double coldProbability = Options.CodeLayoutHotColdSplitting.getValue() ? startBlock.probability() * Options.CodeLayoutColdBlockProbability.getValue() : -1;
+        computeCodeEmittingOrder(order, worklist, visitedBlocks, coldProbability);
         assert checkOrder(order, blockCount);
         return order;
     }
 
     /**
-     * Iteratively adds paths to the code emission block order.
+     * Iteratively adds paths to the code emission block order. Paths starting at a
+     * {@linkplain #isCold cold} block are deferred until all other paths are scheduled.
      */
-    private static <T extends AbstractBlockBase<T>> void computeCodeEmittingOrder(List<T> order, PriorityQueue<T> worklist, BitSet visitedBlocks) {
+    private static <T extends AbstractBlockBase<T>> void computeCodeEmittingOrder(List<T> order, PriorityQueue<T> worklist, BitSet visitedBlocks, double coldProbability) {
+        PriorityQueue<T> coldWorklist = new PriorityQueue<>(INITIAL_WORKLIST_CAPACITY, new BlockOrderComparator<>());
         while (!worklist.isEmpty()) {
             T nextImportantPath = worklist.poll();
-            addPathToCodeEmittingOrder(nextImportantPath, order, worklist, visitedBlocks);
+            if (isCold(nextImportantPath, coldProbability)) {
+                coldWorklist.add(nextImportantPath);
+            } else {
+                addPathToCodeEmittingOrder(nextImportantPath, order, worklist, visitedBlocks, coldProbability);
+            }
         }
+        int hotBlocks = order.size();
+        while (!coldWorklist.isEmpty()) {
+            T nextImportantPath = coldWorklist.poll();
+            addPathToCodeEmittingOrder(nextImportantPath, order, coldWorklist, visitedBlocks, coldProbability);
+        }
+        coldBlocksMetric.add(order.size() - hotBlocks);
+    }
+
+    /**
+     * Determines whether a block is moved to the cold region at the end of the method. Loop
+     * headers and loop ends are never considered cold because a skipped loop header is scheduled
+     * right after its loop end.
+     */
+    private static boolean isCold(AbstractBlockBase<?> block, double coldProbability) {
+        return block.probability() < coldProbability && !block.isLoopHeader() && !block.isLoopEnd();
     }
 
     /**
@@ -156,7 +199,7 @@ public final class ComputeBlockOrder {
     /**
      * Add a linear path to the code emission order greedily following the most likely successor.
      */
-    private static <T extends AbstractBlockBase<T>> void addPathToCodeEmittingOrder(T initialBlock, List<T> order, PriorityQueue<T> worklist, BitSet visitedBlocks) {
+    private static <T extends AbstractBlockBase<T>> void addPathToCodeEmittingOrder(T initialBlock, List<T> order, PriorityQueue<T> worklist, BitSet visitedBlocks, double coldProbability) {
         T block = initialBlock;
         while (block != null) {
             // Skip loop headers if there is only a single loop end block to
@@ -164,7 +207,7 @@ public final class ComputeBlockOrder {
             if (!skipLoopHeader(block)) {
 
                 // Align unskipped loop headers as they are the target of the backward jump.
-                if (block.isLoopHeader()) {
+                if (block.isLoopHeader() && block.probability() >= coldProbability) {
                     block.setAlign(true);
                 }
                 addBlock(block, order);
@@ -181,7 +224,7 @@ public final class ComputeBlockOrder {
                 // as they are the target
                 // of the backward jump.
                 for (T successor : loop.getHeader().getSuccessors()) {
-                    if (successor.getLoopDepth() == block.getLoopDepth()) {
+                    if (successor.getLoopDepth() == block.getLoopDepth() && successor.probability() >= coldProbability) {
                         successor.setAlign(true);
                     }
                 }
@@ -189,6 +232,11 @@ public final class ComputeBlockOrder {
 
             T mostLikelySuccessor = findAndMarkMostLikelySuccessor(block, visitedBlocks);
             enqueueSuccessors(block, worklist, visitedBlocks);
+            if (mostLikelySuccessor != null && !isCold(block, coldProbability) && isCold(mostLikelySuccessor, coldProbability)) {
+                // Do not continue a hot path with a cold block but leave it to the cold region.
+                worklist.add(mostLikelySuccessor);
+                mostLikelySuccessor = null;
+            }
             block = mostLikelySuccessor;
         }
     }
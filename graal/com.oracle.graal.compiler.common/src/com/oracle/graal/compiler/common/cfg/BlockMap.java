@@ -31,6 +31,14 @@ public class BlockMap<T> {
         data = (T[]) new Object[cfg.getBlocks().size()];
     }
 
+    /**
+     * Creates a map that stores its values in {@code data}, which must have an element for each
+     * block and contain only {@code null}.
+     */
+    public BlockMap(T[] data) {
+        this.data = data;
+    }
+
     public T get(AbstractBlockBase<?> block) {
         return data[block.getId()];
     }
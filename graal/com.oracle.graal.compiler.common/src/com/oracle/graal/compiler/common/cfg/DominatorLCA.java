@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.common.cfg;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Answers {@linkplain AbstractControlFlowGraph#commonDominator common dominator} queries in
+ * constant time, independent of the depth of the dominator tree. The dominator tree is flattened
+ * into an Euler tour, on which the common dominator of two blocks is the shallowest block between
+ * the first occurrences of the two blocks. The shallowest block of a range is looked up in a sparse
+ * table of range minima.
+ */
+public final class DominatorLCA<T extends AbstractBlockBase<T>> {
+
+    private final AbstractBlockBase<?>[] tour;
+    private final int[] depths;
+    private final int[] firstOccurrence;
+
+    /**
+     * {@code minima[k][i]} is the index of the shallowest block in the tour range
+     * {@code [i, i + 2^k)}.
+     */
+    private final int[][] minima;
+
+    private int length;
+
+    public DominatorLCA(AbstractControlFlowGraph<T> cfg) {
+        List<T> blocks = cfg.getBlocks();
+        int size = 2 * blocks.size() - 1;
+        tour = new AbstractBlockBase<?>[size];
+        depths = new int[size];
+        firstOccurrence = new int[blocks.size()];
+
+        ArrayDeque<T> blockStack = new ArrayDeque<>();
+        ArrayDeque<Iterator<T>> dominatedStack = new ArrayDeque<>();
+        T start = cfg.getStartBlock();
+        firstOccurrence[start.getId()] = length;
+        append(start);
+        blockStack.push(start);
+        dominatedStack.push(start.getDominated().iterator());
+        while (!blockStack.isEmpty()) {
+            Iterator<T> dominated = dominatedStack.peek();
+            if (dominated.hasNext()) {
+                T block = dominated.next();
+                firstOccurrence[block.getId()] = length;
+                append(block);
+                blockStack.push(block);
+                dominatedStack.push(block.getDominated().iterator());
+            } else {
+                blockStack.pop();
+                dominatedStack.pop();
+                if (!blockStack.isEmpty()) {
+                    append(blockStack.peek());
+                }
+            }
+        }
+        assert length == size : "not all blocks are reachable in the dominator tree";
+
+        int levels = 32 - Integer.numberOfLeadingZeros(size);
+        minima = new int[levels][];
+        int[] previous = new int[size];
+        for (int i = 0; i < size; i++) {
+            previous[i] = i;
+        }
+        minima[0] = previous;
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] current = new int[size - (1 << k) + 1];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = shallower(previous[i], previous[i + half]);
+            }
+            minima[k] = current;
+            previous = current;
+        }
+    }
+
+    private void append(T block) {
+        tour[length] = block;
+        depths[length] = block.getDominatorDepth();
+        length++;
+    }
+
+    private int shallower(int a, int b) {
+        return depths[a] <= depths[b] ? a : b;
+    }
+
+    /**
+     * Calculates the common dominator of two blocks, either of which may be null.
+     */
+    @SuppressWarnings("unchecked")
+    public T commonDominator(T a, T b) {
+        if (a == null) {
+            return b;
+        } else if (b == null || a == b) {
+            return a;
+        }
+        int from = firstOccurrence[a.getId()];
+        int to = firstOccurrence[b.getId()];
+        if (from > to) {
+            int tmp = from;
+            from = to;
+            to = tmp;
+        }
+        int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+        T result = (T) tour[shallower(minima[k][from], minima[k][to - (1 << k) + 1])];
+        assert result == AbstractControlFlowGraph.commonDominatorTyped(a, b);
+        return result;
+    }
+}
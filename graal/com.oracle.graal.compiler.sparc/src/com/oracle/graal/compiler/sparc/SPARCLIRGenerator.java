@@ -411,6 +411,16 @@ public abstract class SPARCLIRGenerator extends LIRGenerator {
         return result;
     }
 
+    @Override
+    public Variable emitArrayIndexOf(JavaKind kind, Value array, Value fromIndex, Value length, Value value) {
+        throw JVMCIError.unimplemented();
+    }
+
+    @Override
+    public Variable emitArrayCompareTo(JavaKind kind, Value array1, Value array2, Value length1, Value length2) {
+        throw JVMCIError.unimplemented();
+    }
+
     @Override
     public void emitMembar(int barriers) {
         int necessaryBarriers = target().arch.requiredBarriers(barriers);
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizerTopologicalOrder;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+/**
+ * Checks that the canonicalizer reaches the same result regardless of the order in which it
+ * processes the nodes, and that the topological order processes fewer nodes.
+ */
+public class CanonicalizerOrderTest extends GraalCompilerTest {
+
+    public static int rnd = (int) (Math.random() * 100);
+
+    public static int chainSnippet(int a) {
+        int x = 1 + (rnd + 2);
+        int y = (x - 3) * 1;
+        int z = (y + 0) ^ 0;
+        return (z - rnd) + a * 4 / 2 + (a << 1) - (a + a) * 2;
+    }
+
+    public static int loopSnippet(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            int k = (i + 1) - 1;
+            sum += (k * 2) - (k + k);
+        }
+        return sum + (rnd - rnd);
+    }
+
+    @Test
+    public void chain() {
+        testOrders("chainSnippet");
+    }
+
+    @Test
+    public void loop() {
+        testOrders("loopSnippet");
+    }
+
+    public static int foldSnippet(int a) {
+        int x = a + 1;
+        int y = x * 3;
+        int z = y - a;
+        int w = (z ^ 5) + x;
+        return (w << 1) - y;
+    }
+
+    /**
+     * Folds a chain of arithmetic after replacing its parameter with a constant. The work list
+     * initially holds the usages before their inputs, so the iterative order processes usages
+     * again once their inputs are folded, while the topological order folds every node once.
+     */
+    @Test
+    public void fold() {
+        int[] topologicalCount = new int[1];
+        StructuredGraph topological = canonicalizeReversed("foldSnippet", true, topologicalCount);
+        int[] iterativeCount = new int[1];
+        StructuredGraph iterative = canonicalizeReversed("foldSnippet", false, iterativeCount);
+        assertEquals(iterative, topological);
+        assertTrue(topologicalCount[0] < iterativeCount[0], "topological order processed %d nodes, iterative order %d", topologicalCount[0], iterativeCount[0]);
+    }
+
+    private StructuredGraph canonicalizeReversed(String snippet, boolean topologicalOrder, int[] processedNodes) {
+        try (OverrideScope s = OptionValue.override(OptCanonicalizerTopologicalOrder, topologicalOrder)) {
+            StructuredGraph graph = parseEager(snippet, AllowAssumptions.NO);
+            List<Node> workingSet = graph.getNodes().snapshot();
+            Collections.reverse(workingSet);
+            graph.getParameter(0).replaceAtUsages(ConstantNode.forInt(7, graph));
+            CanonicalizerPhase canonicalizer = new CanonicalizerPhase(new CanonicalizerPhase.CustomCanonicalizer() {
+                @Override
+                public Node canonicalize(Node node) {
+                    processedNodes[0]++;
+                    return node;
+                }
+            });
+            canonicalizer.applyIncremental(graph, new PhaseContext(getProviders()), workingSet);
+            return graph;
+        }
+    }
+
+    private void testOrders(String snippet) {
+        StructuredGraph topological = canonicalize(snippet, true);
+        StructuredGraph iterative = canonicalize(snippet, false);
+        assertEquals(iterative, topological);
+    }
+
+    private StructuredGraph canonicalize(String snippet, boolean topologicalOrder) {
+        try (OverrideScope s = OptionValue.override(OptCanonicalizerTopologicalOrder, topologicalOrder)) {
+            StructuredGraph graph = parseEager(snippet, AllowAssumptions.NO);
+            new CanonicalizerPhase().apply(graph, new PhaseContext(getProviders()));
+            return graph;
+        }
+    }
+}
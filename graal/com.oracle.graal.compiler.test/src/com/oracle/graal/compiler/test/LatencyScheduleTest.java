@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.ScheduleResult;
+import com.oracle.graal.nodes.calc.MulNode;
+import com.oracle.graal.nodes.memory.FloatingReadNode;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.schedule.LatencySchedulePhase;
+import com.oracle.graal.phases.schedule.NodeLatencyModel;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class LatencyScheduleTest extends GraalCompilerTest {
+
+    private static final NodeLatencyModel LOADS_ARE_SLOW = new NodeLatencyModel() {
+
+        @Override
+        public int latency(Node node) {
+            return node instanceof FloatingReadNode ? 10 : 1;
+        }
+
+        @Override
+        public int registerPressureLimit() {
+            return 100;
+        }
+    };
+
+    public static int field = 42;
+
+    public static int chainSnippet(int x) {
+        int y = x * x;
+        y = y * x;
+        y = y * x;
+        return y + field;
+    }
+
+    @Test
+    public void chain() {
+        test("chainSnippet", 3);
+    }
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        suites.getLowTier().appendPhase(new LatencySchedulePhase(LOADS_ARE_SLOW));
+        suites.getLowTier().appendPhase(new Phase("CheckLatencySchedule") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                ScheduleResult schedule = graph.getLastSchedule();
+                for (FloatingReadNode read : graph.getNodes().filter(FloatingReadNode.class)) {
+                    List<Node> nodes = schedule.nodesFor(schedule.getNodeToBlockMap().get(read));
+                    int readIndex = nodes.indexOf(read);
+                    for (int i = 0; i < readIndex; i++) {
+                        Assert.assertFalse("load should be scheduled before the multiplications", nodes.get(i) instanceof MulNode);
+                    }
+                }
+            }
+        });
+        return suites;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.loop.phases.LoopInterchangePhase;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.java.LoadIndexedNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class LoopInterchangeTest extends GraalCompilerTest {
+
+    public static int columnSumSnippet(int[][] matrix, int rows, int columns) {
+        int sum = 0;
+        for (int j = 0; j < columns; j++) {
+            for (int i = 0; i < rows; i++) {
+                sum += matrix[i][j] * (j + 1);
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void columnSum() {
+        int[][] matrix = new int[][]{{1, 2, 3}, {4, 5, 6}, {7, 8, 9}, {10, 11, 12}};
+        test("columnSumSnippet", matrix, 4, 3);
+        test("columnSumSnippet", matrix, 0, 3);
+        test("columnSumSnippet", matrix, 4, 0);
+    }
+
+    @Test
+    public void columnSumDeopt() {
+        test("columnSumSnippet", new int[][]{{1, 2, 3}, {4}, {7, 8, 9}}, 3, 3);
+        test("columnSumSnippet", new int[][]{{1, 2}, null}, 2, 2);
+        test("columnSumSnippet", new int[][]{{1, 2}}, 2, 2);
+    }
+
+    public static int rowSumSnippet(int[][] matrix, int rows, int columns) {
+        int sum = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                sum ^= matrix[i][j];
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void rowSum() {
+        test("rowSumSnippet", new int[][]{{1, 2, 3}, {4, 5, 6}}, 2, 3);
+    }
+
+    public static int interchangedSnippet(int[][] matrix, int rows, int columns) {
+        int sum = 0;
+        for (int j = 0; j < columns; j++) {
+            for (int i = 0; i < rows; i++) {
+                sum += matrix[i][j];
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void interchanged() {
+        StructuredGraph graph = parseEager("interchangedSnippet", AllowAssumptions.YES);
+        new CanonicalizerPhase().apply(graph, new PhaseContext(getProviders()));
+        new LoopInterchangePhase().apply(graph);
+        LoopsData loops = new LoopsData(graph);
+        int elementReads = 0;
+        for (LoadIndexedNode element : graph.getNodes().filter(LoadIndexedNode.class)) {
+            if (GraphUtil.unproxify(element.array()) instanceof LoadIndexedNode) {
+                ValueNode column = element.index();
+                Assert.assertTrue(column instanceof ValuePhiNode);
+                LoopBeginNode loopBegin = (LoopBeginNode) ((ValuePhiNode) column).merge();
+                Assert.assertEquals("column index should be the counter of the inner loop", 2, loops.loop(loopBegin).loop().getDepth());
+                elementReads++;
+            }
+        }
+        Assert.assertEquals(1, elementReads);
+    }
+}
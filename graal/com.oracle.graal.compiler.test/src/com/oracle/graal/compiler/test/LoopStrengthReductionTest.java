@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.Test;
+
+import com.oracle.graal.api.directives.GraalDirectives;
+import com.oracle.graal.loop.DerivedScaledInductionVariable;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.loop.phases.LoopStrengthReductionPhase;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.spi.LoweringTool;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.LoweringPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class LoopStrengthReductionTest extends GraalCompilerTest {
+
+    private static int countScaledInductionVariables(StructuredGraph graph) {
+        int count = 0;
+        for (LoopEx loop : new LoopsData(graph).loops()) {
+            for (InductionVariable iv : loop.getInductionVariables().values()) {
+                if (iv instanceof DerivedScaledInductionVariable) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lowers the snippet so that array accesses use scaled index arithmetic and checks that the
+     * phase replaces all scaled induction variables.
+     */
+    private void assertReduced(String snippet) {
+        StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+        PhaseContext context = new PhaseContext(getProviders());
+        new LoweringPhase(new CanonicalizerPhase(), LoweringTool.StandardLoweringStage.HIGH_TIER).apply(graph, context);
+        assertTrue(countScaledInductionVariables(graph) > 0, "no scaled induction variable in %s", snippet);
+        new LoopStrengthReductionPhase().apply(graph);
+        assertDeepEquals(0, countScaledInductionVariables(graph));
+    }
+
+    public static int sumSnippet(int[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void sum() {
+        test("sumSnippet", new int[]{1, 2, 3, 4, 5, 6, 7});
+        test("sumSnippet", new int[0]);
+        assertReduced("sumSnippet");
+    }
+
+    public static long sumRangeSnippet(long[] array, int start, int end) {
+        long sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void sumRange() {
+        long[] array = new long[]{10, 20, 30, 40, 50, 60};
+        test("sumRangeSnippet", array, 1, 5);
+        test("sumRangeSnippet", array, 4, 2);
+        test("sumRangeSnippet", array, 3, 3);
+        test("sumRangeSnippet", array, 0, 7);
+        assertReduced("sumRangeSnippet");
+    }
+
+    public static int copySnippet(int[] src, byte[] dst) {
+        int i = 0;
+        for (; i < src.length; i++) {
+            dst[i] = (byte) src[i];
+        }
+        return i;
+    }
+
+    @Test
+    public void copy() {
+        test("copySnippet", new int[]{1, 2, 300, 4}, new byte[4]);
+        test("copySnippet", new int[]{1, 2, 300, 4}, new byte[2]);
+    }
+
+    public static int scaledSnippet(int start, int limit, int scale) {
+        int result = 0;
+        for (int i = start; i < limit; i++) {
+            GraalDirectives.controlFlowAnchor();
+            result += i * scale;
+        }
+        return result;
+    }
+
+    @Test
+    public void scaled() {
+        test("scaledSnippet", 0, 100, 3);
+        test("scaledSnippet", Integer.MAX_VALUE - 10, Integer.MAX_VALUE, 1 << 20);
+        test("scaledSnippet", Integer.MIN_VALUE, Integer.MIN_VALUE + 10, -7);
+        test("scaledSnippet", 10, 0, 3);
+        assertReduced("scaledSnippet");
+    }
+
+    public static long convertedSnippet(int start, int limit, int step) {
+        long result = 0;
+        int inc = ((step - 1) & 0xFFFF) + 1;
+        for (int i = start; i < limit; i += inc) {
+            GraalDirectives.controlFlowAnchor();
+            result += ((long) i) * 12;
+        }
+        return result;
+    }
+
+    @Test
+    public void converted() {
+        test("convertedSnippet", 0, 256, 1);
+        test("convertedSnippet", 0, 256, 3);
+        test("convertedSnippet", Integer.MAX_VALUE - 5, Integer.MAX_VALUE, 2);
+    }
+
+    public static int nestedSnippet(int[][] matrix) {
+        int sum = 0;
+        for (int i = 0; i < matrix.length; i++) {
+            int[] row = matrix[i];
+            for (int j = 0; j < row.length; j++) {
+                sum += row[j] * (j + 1);
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void nested() {
+        test("nestedSnippet", (Object) new int[][]{{1, 2, 3}, {}, {4, 5}});
+    }
+
+    public static int usedAfterLoopSnippet(int[] array, int key) {
+        int i = 0;
+        for (; i < array.length; i++) {
+            if (array[i] == key) {
+                break;
+            }
+        }
+        return i * 4;
+    }
+
+    @Test
+    public void usedAfterLoop() {
+        test("usedAfterLoopSnippet", new int[]{5, 6, 7, 8}, 7);
+        test("usedAfterLoopSnippet", new int[]{5, 6, 7, 8}, 9);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.memory.ReadNode;
+import com.oracle.graal.nodes.spi.LoweringTool;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.LoweringPhase;
+import com.oracle.graal.phases.common.ReadGlobalValueNumberingPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class ReadGlobalValueNumberingTest extends GraalCompilerTest {
+
+    public static class Container {
+
+        public int a;
+        public int b;
+    }
+
+    public static int sequentialSnippet(Container c) {
+        int x = c.a;
+        c.b = 1;
+        return x + c.a;
+    }
+
+    public static int killedSnippet(Container c) {
+        int x = c.a;
+        c.a = 1;
+        return x + c.a;
+    }
+
+    public static int mergeSnippet(Container c, boolean flag) {
+        int x = c.a;
+        if (flag) {
+            c.b = 1;
+        } else {
+            c.b = 2;
+        }
+        return x + c.a;
+    }
+
+    public static int mergeKilledSnippet(Container c, boolean flag) {
+        int x = c.a;
+        if (flag) {
+            c.a = 1;
+        } else {
+            c.b = 2;
+        }
+        return x + c.a;
+    }
+
+    public static int loopSnippet(Container c, int n) {
+        int x = c.a;
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += c.a;
+            c.b = i;
+        }
+        return x + sum;
+    }
+
+    public static int loopKilledSnippet(Container c, int n) {
+        int x = c.a;
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += c.a;
+            c.a = i;
+        }
+        return x + sum;
+    }
+
+    @Test
+    public void sequential() {
+        testReads("sequentialSnippet", 1);
+    }
+
+    @Test
+    public void killed() {
+        testReads("killedSnippet", 2);
+    }
+
+    @Test
+    public void merge() {
+        testReads("mergeSnippet", 1);
+    }
+
+    @Test
+    public void mergeKilled() {
+        testReads("mergeKilledSnippet", 2);
+    }
+
+    @Test
+    public void loop() {
+        testReads("loopSnippet", 1);
+    }
+
+    @Test
+    public void loopKilled() {
+        testReads("loopKilledSnippet", 2);
+    }
+
+    private void testReads(String snippet, int expectedReads) {
+        StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+        PhaseContext context = new PhaseContext(getProviders());
+        new LoweringPhase(new CanonicalizerPhase(), LoweringTool.StandardLoweringStage.HIGH_TIER).apply(graph, context);
+        new ReadGlobalValueNumberingPhase().apply(graph);
+        Assert.assertEquals(expectedReads, graph.getNodes().filter(ReadNode.class).count());
+    }
+}
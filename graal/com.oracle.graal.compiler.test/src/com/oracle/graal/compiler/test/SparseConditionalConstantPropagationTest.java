@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import org.junit.Test;
+
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.ReturnNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.SparseConditionalConstantPropagationPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class SparseConditionalConstantPropagationTest extends GraalCompilerTest {
+
+    public static int loopConstantSnippet(int n) {
+        int x = 1;
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            if (x != 1) {
+                x = i;
+            }
+            sum += x;
+        }
+        return x == 1 ? sum : -1;
+    }
+
+    @Test
+    public void loopConstant() {
+        test("loopConstantSnippet", 0);
+        test("loopConstantSnippet", 10);
+    }
+
+    @Test
+    public void loopConstantFolded() {
+        StructuredGraph graph = propagate("loopConstantSnippet");
+        assertDeepEquals(1, graph.getNodes().filter(IfNode.class).count());
+    }
+
+    public static int switchSnippet(int a) {
+        int k = 0;
+        for (int i = 0; i < a; i++) {
+            if (k > 5) {
+                k = a;
+            } else {
+                k = 1;
+            }
+        }
+        switch (k) {
+            case 0:
+                return 10;
+            case 1:
+                return 20;
+            case 7:
+                return 70;
+            default:
+                return 0;
+        }
+    }
+
+    @Test
+    public void switchValue() {
+        test("switchSnippet", 0);
+        test("switchSnippet", 7);
+    }
+
+    @Test
+    public void switchNarrowed() {
+        StructuredGraph graph = propagate("switchSnippet");
+        for (ReturnNode ret : graph.getNodes(ReturnNode.TYPE)) {
+            if (ret.result() instanceof ConstantNode) {
+                assertFalse(((ConstantNode) ret.result()).asJavaConstant().asInt() == 70);
+            }
+        }
+    }
+
+    public static int unreachableSnippet(int a, int b) {
+        int x = 3;
+        int y = 0;
+        while (y < a) {
+            if (x > 3) {
+                x = b;
+            }
+            y += x;
+        }
+        return y;
+    }
+
+    @Test
+    public void unreachable() {
+        test("unreachableSnippet", 0, 4);
+        test("unreachableSnippet", 100, 4);
+    }
+
+    private StructuredGraph propagate(String snippet) {
+        StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+        PhaseContext context = new PhaseContext(getProviders());
+        new CanonicalizerPhase().apply(graph, context);
+        new SparseConditionalConstantPropagationPhase().apply(graph, context);
+        new CanonicalizerPhase().apply(graph, context);
+        return graph;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static com.oracle.graal.compiler.common.GraalOptions.TailDuplicationProbability;
+
+import org.junit.Test;
+
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.ReturnNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.java.StoreFieldNode;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.TailDuplicationPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+public class TailDuplicationTest extends GraalCompilerTest {
+
+    static int sideEffect;
+
+    public static int returnSnippet(int a, boolean b) {
+        int x;
+        if (b) {
+            x = 3;
+        } else {
+            x = a;
+        }
+        return x * 7 + 1;
+    }
+
+    @Test
+    public void returnValue() {
+        test("returnSnippet", 5, true);
+        test("returnSnippet", 5, false);
+    }
+
+    @Test
+    public void returnDuplicated() {
+        StructuredGraph graph = parseEager("returnSnippet", AllowAssumptions.YES);
+        PhaseContext context = new PhaseContext(getProviders());
+        new TailDuplicationPhase().apply(graph, context);
+        new CanonicalizerPhase().apply(graph, context);
+        assertDeepEquals(2, graph.getNodes(ReturnNode.TYPE).count());
+        int constantResults = 0;
+        for (ReturnNode ret : graph.getNodes(ReturnNode.TYPE)) {
+            if (ret.result() instanceof ConstantNode) {
+                assertDeepEquals(22, ((ConstantNode) ret.result()).asJavaConstant().asInt());
+                constantResults++;
+            }
+        }
+        assertDeepEquals(1, constantResults);
+    }
+
+    public static int flagSnippet(int a) {
+        boolean flag;
+        if (a > 10) {
+            flag = true;
+        } else {
+            flag = a == 3;
+        }
+        sideEffect = a;
+        if (flag) {
+            return 1;
+        }
+        return 2;
+    }
+
+    @Test
+    public void flag() {
+        test("flagSnippet", 11);
+        test("flagSnippet", 3);
+        test("flagSnippet", 4);
+    }
+
+    @Test
+    public void flagDuplicated() {
+        try (OverrideScope s = OptionValue.override(TailDuplicationProbability, 0.0)) {
+            StructuredGraph graph = parseEager("flagSnippet", AllowAssumptions.YES);
+            assertDeepEquals(1, graph.getNodes().filter(StoreFieldNode.class).count());
+            PhaseContext context = new PhaseContext(getProviders());
+            new TailDuplicationPhase().apply(graph, context);
+            new CanonicalizerPhase().apply(graph, context);
+            // the store before the flag test is copied into the predecessor where the flag is known
+            assertTrue(graph.getNodes().filter(StoreFieldNode.class).count() > 1, "tail was not duplicated");
+        }
+    }
+
+    public static int passThroughSnippet(int a, int b) {
+        int x;
+        if (a > b) {
+            x = 0;
+        } else {
+            x = b;
+        }
+        sideEffect = x;
+        int y = x + a;
+        if (y == a) {
+            sideEffect = 1;
+        }
+        return y;
+    }
+
+    @Test
+    public void passThrough() {
+        test("passThroughSnippet", 4, 3);
+        test("passThroughSnippet", 3, 4);
+        test("passThroughSnippet", 3, 0);
+    }
+}
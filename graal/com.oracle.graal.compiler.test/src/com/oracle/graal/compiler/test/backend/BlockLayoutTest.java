@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.alloc.ComputeBlockOrder.Options.CodeLayoutColdBlockProbability;
+import static com.oracle.graal.compiler.common.alloc.ComputeBlockOrder.Options.CodeLayoutHotColdSplitting;
+import static com.oracle.graal.lir.asm.CompilationResultBuilder.LoopHeaderAlignment;
+
+import org.junit.Test;
+
+import com.oracle.graal.api.directives.GraalDirectives;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Runs snippets with rarely executed paths with and without moving cold blocks out of line.
+ */
+public class BlockLayoutTest extends GraalCompilerTest {
+
+    public static int coldBranchSnippet(int[] values, int limit) {
+        int sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            int v = values[i];
+            if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, v > limit)) {
+                sum -= v * 3;
+            } else {
+                sum += v;
+            }
+        }
+        return sum;
+    }
+
+    public static int coldMergeSnippet(int a, int b) {
+        int result;
+        if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, a == 0)) {
+            result = b * 17;
+            if (GraalDirectives.injectBranchProbability(0.5, b < 0)) {
+                result = -result;
+            }
+        } else {
+            result = a + b;
+        }
+        return result * 2;
+    }
+
+    public static long coldLoopSnippet(long[] values, boolean slow) {
+        long sum = 0;
+        if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, slow)) {
+            for (int i = 0; i < values.length; i++) {
+                sum += values[i] * i;
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            sum ^= values[i];
+        }
+        return sum;
+    }
+
+    private void testLayouts(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(CodeLayoutHotColdSplitting, false)) {
+            test(name, args);
+        }
+        try (OverrideScope s = OptionValue.override(CodeLayoutHotColdSplitting, true)) {
+            test(name, args);
+        }
+        try (OverrideScope s = OptionValue.override(CodeLayoutHotColdSplitting, true, CodeLayoutColdBlockProbability, 0.5, LoopHeaderAlignment, 32)) {
+            test(name, args);
+        }
+    }
+
+    @Test
+    public void coldBranch() {
+        testLayouts("coldBranchSnippet", new int[]{1, 2, 30, 4, 50}, 10);
+        testLayouts("coldBranchSnippet", new int[0], 10);
+    }
+
+    @Test
+    public void coldMerge() {
+        testLayouts("coldMergeSnippet", 0, -5);
+        testLayouts("coldMergeSnippet", 0, 5);
+        testLayouts("coldMergeSnippet", 3, 5);
+    }
+
+    @Test
+    public void coldLoop() {
+        testLayouts("coldLoopSnippet", new long[]{1, 2, 3, 4}, true);
+        testLayouts("coldLoopSnippet", new long[]{1, 2, 3, 4}, false);
+    }
+}
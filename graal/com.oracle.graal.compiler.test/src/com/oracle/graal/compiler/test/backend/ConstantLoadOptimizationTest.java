@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.lir.constopt.ConstantLoadOptimization.Options.LIROptConstantLoadDeduplication;
+
+import java.util.List;
+
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+import org.junit.Test;
+
+import com.oracle.graal.api.directives.GraalDirectives;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.LoadConstantOp;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.LIRPhase;
+import com.oracle.graal.lir.phases.PreAllocationOptimizationPhase.PreAllocationOptimizationContext;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Tests sharing of identical constant loads. In {@link #branchesSnippet}, the load of the 64-bit
+ * constant in the block of {@code a > 10} dominates the load in the nested block of
+ * {@code a > 100}, so the nested load can be deleted.
+ */
+public class ConstantLoadOptimizationTest extends GraalCompilerTest {
+
+    private static final long C = 0x123456789ABCDEFL;
+
+    private static LIR lir;
+
+    public static long branchesSnippet(int a, long b) {
+        long result = b;
+        if (a > 10) {
+            result += C;
+            if (a > 100) {
+                result ^= C;
+            }
+        } else if (GraalDirectives.injectBranchProbability(0.1, a < 0)) {
+            result -= C;
+        }
+        return result * C;
+    }
+
+    public static double doublesSnippet(double[] values) {
+        double result = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 2.5) {
+                result += values[i] * 2.5;
+            } else {
+                result -= 2.5;
+            }
+        }
+        return result + 2.5;
+    }
+
+    public static String objectsSnippet(int a) {
+        String result = "";
+        if (a > 0) {
+            result = "constant" + a;
+        }
+        if (a > 5) {
+            result = result + "constant";
+        }
+        return result;
+    }
+
+    private void runAll() {
+        for (int a : new int[]{-5, 0, 7, 50, 500}) {
+            test("branchesSnippet", a, 42L);
+            test("objectsSnippet", a);
+        }
+        test("doublesSnippet", new double[]{1.0, 3.0, 2.5, 7.25});
+    }
+
+    @Test
+    public void deduplicated() {
+        try (OverrideScope s = OptionValue.override(LIROptConstantLoadDeduplication, true)) {
+            runAll();
+        }
+    }
+
+    @Test
+    public void notDeduplicated() {
+        try (OverrideScope s = OptionValue.override(LIROptConstantLoadDeduplication, false)) {
+            runAll();
+        }
+    }
+
+    /**
+     * Counts the loads of {@link #C} in the LIR of {@link #branchesSnippet} after the pre
+     * allocation optimizations.
+     */
+    private int countLoads(boolean deduplicate) {
+        try (OverrideScope s = OptionValue.override(LIROptConstantLoadDeduplication, deduplicate)) {
+            getLIRSuites().getPreAllocationOptimizationStage().appendPhase(new CheckPhase());
+            compile(getResolvedJavaMethod("branchesSnippet"), null);
+        }
+        int count = 0;
+        for (AbstractBlockBase<?> block : lir.codeEmittingOrder()) {
+            for (LIRInstruction instruction : lir.getLIRforBlock(block)) {
+                if (instruction instanceof LoadConstantOp && JavaConstant.forLong(C).equals(((LoadConstantOp) instruction).getConstant())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void loadsDeleted() {
+        int notDeduplicated = countLoads(false);
+        int deduplicated = countLoads(true);
+        assertTrue(deduplicated < notDeduplicated, "loads of the constant: %d deduplicated, %d not deduplicated", deduplicated, notDeduplicated);
+    }
+
+    private int codeSize(boolean deduplicate) {
+        ResolvedJavaMethod method = getResolvedJavaMethod("branchesSnippet");
+        try (OverrideScope s = OptionValue.override(LIROptConstantLoadDeduplication, deduplicate)) {
+            return compile(method, null).getTargetCodeSize();
+        }
+    }
+
+    @Test
+    public void codeSize() {
+        int notDeduplicated = codeSize(false);
+        int deduplicated = codeSize(true);
+        assertTrue(deduplicated < notDeduplicated, "code size: %d deduplicated, %d not deduplicated", deduplicated, notDeduplicated);
+    }
+
+    public static class CheckPhase extends LIRPhase<PreAllocationOptimizationContext> {
+        @Override
+        protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                        PreAllocationOptimizationContext context) {
+            lir = lirGenRes.getLIR();
+        }
+    }
+}
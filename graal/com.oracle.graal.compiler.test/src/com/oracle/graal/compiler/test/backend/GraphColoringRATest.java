@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.BackendOptions.UserOptions.GraphColoringRA;
+import static com.oracle.graal.lir.alloc.coloring.GraphColoringPhase.Options.GraphColoringRAMinFrequency;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Runs snippets with the graph coloring register allocator, including snippets that need to spill
+ * and that keep values alive across calls.
+ */
+public class GraphColoringRATest extends GraalCompilerTest {
+
+    public static int loopSnippet(int[] values) {
+        int sum = 0;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+            max = Math.max(max, values[i]);
+        }
+        return sum * 31 + max;
+    }
+
+    public static long pressureSnippet(long[] v) {
+        long a = v[0];
+        long b = v[1];
+        long c = v[2];
+        long d = v[3];
+        long e = v[4];
+        long f = v[5];
+        long g = v[6];
+        long h = v[7];
+        long result = 0;
+        for (int i = 0; i < v.length; i++) {
+            long x = v[i];
+            a += x * b;
+            b ^= c + x;
+            c -= d * x;
+            d += e ^ x;
+            e = (e << 1) | (f >>> 3);
+            f += g * x;
+            g ^= h - x;
+            h += a ^ x;
+            long y = a + b + c + d;
+            long z = e + f + g + h;
+            result += y * z + (y ^ z) + x;
+        }
+        return result + a + b + c + d + e + f + g + h;
+    }
+
+    public static int callee(int x) {
+        return x * 7;
+    }
+
+    public static int acrossCallSnippet(int n, int a, int b, int c) {
+        int result = 0;
+        for (int i = 0; i < n; i++) {
+            result += callee(i) + a * i + b - c;
+        }
+        return result + a + b + c;
+    }
+
+    public static double mixedSnippet(double[] values, int scale) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                sum += values[i] * scale;
+                count++;
+            } else {
+                sum -= values[i];
+            }
+        }
+        return sum / (count + 1);
+    }
+
+    private static OverrideScope graphColoring() {
+        return OptionValue.override(GraphColoringRA, true, GraphColoringRAMinFrequency, 0.0);
+    }
+
+    @Test
+    public void loop() {
+        try (OverrideScope s = graphColoring()) {
+            test("loopSnippet", new int[]{3, -1, 42, 7});
+            test("loopSnippet", new int[0]);
+        }
+    }
+
+    @Test
+    public void pressure() {
+        try (OverrideScope s = graphColoring()) {
+            test("pressureSnippet", new long[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+        }
+    }
+
+    @Test
+    public void acrossCall() {
+        try (OverrideScope s = graphColoring()) {
+            test("acrossCallSnippet", 10, 3, 5, 7);
+            test("acrossCallSnippet", 0, 3, 5, 7);
+        }
+    }
+
+    @Test
+    public void mixed() {
+        try (OverrideScope s = graphColoring()) {
+            test("mixedSnippet", new double[]{1.5, -2.0, 3.25, 0.0}, 3);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.GraalOptions.DetailedAsserts;
+import static com.oracle.graal.lir.alloc.lsra.LinearScan.Options.LSRASparseLiveness;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Runs snippets with nested loops and values that are live across many blocks with both ways of
+ * computing the global live sets of the linear scan register allocator.
+ */
+public class LinearScanLivenessTest extends GraalCompilerTest {
+
+    public static int nestedLoopsSnippet(int[][] matrix, int a, int b) {
+        int sum = 0;
+        for (int i = 0; i < matrix.length; i++) {
+            int[] row = matrix[i];
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] > a) {
+                    sum += row[j] * b;
+                } else if (row[j] < -a) {
+                    sum -= b;
+                } else {
+                    sum ^= row[j];
+                }
+            }
+            sum += i * a;
+        }
+        return sum + a + b;
+    }
+
+    public static long longLivedSnippet(long x, long y, int n) {
+        long a = x + 1;
+        long b = y - 1;
+        long c = x * y;
+        long result = 0;
+        for (int i = 0; i < n; i++) {
+            switch (i & 3) {
+                case 0:
+                    result += a;
+                    break;
+                case 1:
+                    result -= b;
+                    break;
+                case 2:
+                    result ^= c;
+                    break;
+                default:
+                    result = result * 31 + i;
+            }
+        }
+        return result + a + b + c;
+    }
+
+    private void runAll() {
+        test("nestedLoopsSnippet", new int[][]{{1, 2, 3}, {}, {-4, 50, 6}}, 2, 7);
+        test("longLivedSnippet", 3L, 5L, 17);
+        test("longLivedSnippet", 3L, 5L, 0);
+    }
+
+    @Test
+    public void sparse() {
+        try (OverrideScope s = OptionValue.override(LSRASparseLiveness, true, DetailedAsserts, true)) {
+            runAll();
+        }
+    }
+
+    @Test
+    public void iterative() {
+        try (OverrideScope s = OptionValue.override(LSRASparseLiveness, false, DetailedAsserts, true)) {
+            runAll();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.lir.stackslotalloc.LSStackSlotAllocator.Options.LIROptLSStackSlotAllocatorSplitSlots;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.api.directives.GraalDirectives;
+import com.oracle.graal.compiler.phases.HighTier;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Tests that spilled {@code int} values can reuse parts of the stack slots of {@code long} values
+ * that are no longer live, and that the parts are merged again for {@code long} values afterwards.
+ * The snippets are compiled without inlining and call a method while all values of a phase are
+ * live, so that every value is spilled.
+ */
+public class StackSlotPackingTest extends GraalCompilerTest {
+
+    static int calls;
+
+    /**
+     * Synchronized so that it is not inlined during parsing.
+     */
+    static synchronized void call() {
+        calls++;
+    }
+
+    public static long longsThenIntsSnippet(long[] l, int[] v) {
+        long a0 = l[0];
+        long a1 = a0 * 31 + l[1];
+        long a2 = a1 * 31 + l[2];
+        long a3 = a2 * 31 + l[3];
+        long a4 = a3 * 31 + l[4];
+        long a5 = a4 * 31 + l[5];
+        long a6 = a5 * 31 + l[6];
+        long a7 = a6 * 31 + l[7];
+        long a8 = a7 * 31 + l[8];
+        long a9 = a8 * 31 + l[9];
+        long a10 = a9 * 31 + l[10];
+        long a11 = a10 * 31 + l[11];
+        long a12 = a11 * 31 + l[12];
+        long a13 = a12 * 31 + l[13];
+        long a14 = a13 * 31 + l[14];
+        long a15 = a14 * 31 + l[15];
+        call();
+        long r = a0 ^ (a1 * 3) ^ (a2 * 5) ^ (a3 * 7) ^ (a4 * 11) ^ (a5 * 13) ^ (a6 * 17) ^ (a7 * 19) ^ (a8 * 23) ^ (a9 * 29) ^ (a10 * 37) ^ (a11 * 41) ^ (a12 * 43) ^ (a13 * 47) ^
+                        (a14 * 53) ^ (a15 * 59);
+        GraalDirectives.controlFlowAnchor();
+        int i0 = (int) r + v[0];
+        int i1 = i0 * 31 + v[1];
+        int i2 = i1 * 31 + v[2];
+        int i3 = i2 * 31 + v[3];
+        int i4 = i3 * 31 + v[4];
+        int i5 = i4 * 31 + v[5];
+        int i6 = i5 * 31 + v[6];
+        int i7 = i6 * 31 + v[7];
+        int i8 = i7 * 31 + v[8];
+        int i9 = i8 * 31 + v[9];
+        int i10 = i9 * 31 + v[10];
+        int i11 = i10 * 31 + v[11];
+        int i12 = i11 * 31 + v[12];
+        int i13 = i12 * 31 + v[13];
+        int i14 = i13 * 31 + v[14];
+        int i15 = i14 * 31 + v[15];
+        call();
+        int x = i0 ^ (i1 * 3) ^ (i2 * 5) ^ (i3 * 7) ^ (i4 * 11) ^ (i5 * 13) ^ (i6 * 17) ^ (i7 * 19) ^ (i8 * 23) ^ (i9 * 29) ^ (i10 * 37) ^ (i11 * 41) ^ (i12 * 43) ^ (i13 * 47) ^
+                        (i14 * 53) ^ (i15 * 59);
+        return r + x;
+    }
+
+    public static long longsIntsLongsSnippet(long[] l, int[] v) {
+        long a0 = l[0];
+        long a1 = a0 * 31 + l[1];
+        long a2 = a1 * 31 + l[2];
+        long a3 = a2 * 31 + l[3];
+        long a4 = a3 * 31 + l[4];
+        long a5 = a4 * 31 + l[5];
+        long a6 = a5 * 31 + l[6];
+        long a7 = a6 * 31 + l[7];
+        long a8 = a7 * 31 + l[8];
+        long a9 = a8 * 31 + l[9];
+        long a10 = a9 * 31 + l[10];
+        long a11 = a10 * 31 + l[11];
+        long a12 = a11 * 31 + l[12];
+        long a13 = a12 * 31 + l[13];
+        long a14 = a13 * 31 + l[14];
+        long a15 = a14 * 31 + l[15];
+        call();
+        long r = a0 ^ (a1 * 3) ^ (a2 * 5) ^ (a3 * 7) ^ (a4 * 11) ^ (a5 * 13) ^ (a6 * 17) ^ (a7 * 19) ^ (a8 * 23) ^ (a9 * 29) ^ (a10 * 37) ^ (a11 * 41) ^ (a12 * 43) ^ (a13 * 47) ^
+                        (a14 * 53) ^ (a15 * 59);
+        GraalDirectives.controlFlowAnchor();
+        int i0 = (int) r + v[0];
+        int i1 = i0 * 31 + v[1];
+        int i2 = i1 * 31 + v[2];
+        int i3 = i2 * 31 + v[3];
+        int i4 = i3 * 31 + v[4];
+        int i5 = i4 * 31 + v[5];
+        int i6 = i5 * 31 + v[6];
+        int i7 = i6 * 31 + v[7];
+        int i8 = i7 * 31 + v[8];
+        int i9 = i8 * 31 + v[9];
+        int i10 = i9 * 31 + v[10];
+        int i11 = i10 * 31 + v[11];
+        int i12 = i11 * 31 + v[12];
+        int i13 = i12 * 31 + v[13];
+        int i14 = i13 * 31 + v[14];
+        int i15 = i14 * 31 + v[15];
+        call();
+        int x = i0 ^ (i1 * 3) ^ (i2 * 5) ^ (i3 * 7) ^ (i4 * 11) ^ (i5 * 13) ^ (i6 * 17) ^ (i7 * 19) ^ (i8 * 23) ^ (i9 * 29) ^ (i10 * 37) ^ (i11 * 41) ^ (i12 * 43) ^ (i13 * 47) ^
+                        (i14 * 53) ^ (i15 * 59);
+        GraalDirectives.controlFlowAnchor();
+        long b0 = x + l[0];
+        long b1 = b0 * 31 + l[1];
+        long b2 = b1 * 31 + l[2];
+        long b3 = b2 * 31 + l[3];
+        long b4 = b3 * 31 + l[4];
+        long b5 = b4 * 31 + l[5];
+        long b6 = b5 * 31 + l[6];
+        long b7 = b6 * 31 + l[7];
+        long b8 = b7 * 31 + l[8];
+        long b9 = b8 * 31 + l[9];
+        long b10 = b9 * 31 + l[10];
+        long b11 = b10 * 31 + l[11];
+        long b12 = b11 * 31 + l[12];
+        long b13 = b12 * 31 + l[13];
+        long b14 = b13 * 31 + l[14];
+        long b15 = b14 * 31 + l[15];
+        call();
+        r = b0 ^ (b1 * 3) ^ (b2 * 5) ^ (b3 * 7) ^ (b4 * 11) ^ (b5 * 13) ^ (b6 * 17) ^ (b7 * 19) ^ (b8 * 23) ^ (b9 * 29) ^ (b10 * 37) ^ (b11 * 41) ^ (b12 * 43) ^ (b13 * 47) ^
+                        (b14 * 53) ^ (b15 * 59);
+        return r;
+    }
+
+    private static long[] longValues() {
+        long[] l = new long[16];
+        for (int i = 0; i < l.length; i++) {
+            l[i] = i * 0x1234567L - 42;
+        }
+        return l;
+    }
+
+    private static int[] intValues() {
+        int[] v = new int[16];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = i * 7 + 3;
+        }
+        return v;
+    }
+
+    private void testSplitSlots(String snippet) {
+        try (OverrideScope s = OptionValue.override(LIROptLSStackSlotAllocatorSplitSlots, false)) {
+            test(snippet, longValues(), intValues());
+        }
+        try (OverrideScope s = OptionValue.override(LIROptLSStackSlotAllocatorSplitSlots, true)) {
+            test(snippet, longValues(), intValues());
+        }
+    }
+
+    @Test
+    public void longsThenInts() {
+        testSplitSlots("longsThenIntsSnippet");
+    }
+
+    @Test
+    public void longsIntsLongs() {
+        testSplitSlots("longsIntsLongsSnippet");
+    }
+
+    private int frameSize(String snippet, boolean splitSlots) {
+        ResolvedJavaMethod method = getResolvedJavaMethod(snippet);
+        try (OverrideScope s = OptionValue.override(LIROptLSStackSlotAllocatorSplitSlots, splitSlots, HighTier.Options.Inline, false)) {
+            return compile(method, null).getTotalFrameSize();
+        }
+    }
+
+    /**
+     * Without splitting, the {@code int} values need 64 bytes of new stack slots.
+     */
+    @Test
+    public void frameSizeLongsThenInts() {
+        int unsplit = frameSize("longsThenIntsSnippet", false);
+        int split = frameSize("longsThenIntsSnippet", true);
+        Assert.assertTrue(String.format("frame size with split slots %d, without %d", split, unsplit), split < unsplit);
+    }
+
+    /**
+     * The second {@code long} values only fit into the first ones if the halves used by the
+     * {@code int} values are merged again after they are freed.
+     */
+    @Test
+    public void frameSizeLongsIntsLongs() {
+        int unsplit = frameSize("longsIntsLongsSnippet", false);
+        int split = frameSize("longsIntsLongsSnippet", true);
+        Assert.assertTrue(String.format("frame size with split slots %d, without %d", split, unsplit), split < unsplit);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.BackendOptions.UserOptions.TraceRA;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAparallel;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAparallelMinTraces;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.code.CompilationResult;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Checks that allocating traces in parallel produces the same code as sequential allocation.
+ */
+public class TraceRAParallelTest extends GraalCompilerTest {
+
+    public static long manyTracesSnippet(int[] values, int mode) {
+        long a = 0;
+        long b = 1;
+        long c = 2;
+        for (int i = 0; i < values.length; i++) {
+            int v = values[i];
+            switch ((v ^ mode) & 7) {
+                case 0:
+                    a += v * b;
+                    break;
+                case 1:
+                    b ^= a + v;
+                    break;
+                case 2:
+                    c -= b * v;
+                    break;
+                case 3:
+                    if (v > mode) {
+                        a = b + c;
+                    } else {
+                        c = a - b;
+                    }
+                    break;
+                case 4:
+                    for (int j = 0; j < (v & 3); j++) {
+                        b += c * j;
+                    }
+                    break;
+                case 5:
+                    a = (a << 1) | (c >>> 3);
+                    break;
+                default:
+                    c += a ^ b ^ v;
+                    break;
+            }
+        }
+        return a * 31 + b * 17 + c;
+    }
+
+    static long mix(long x) {
+        return x * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Keeps more values alive across calls and branches than there are registers, so that
+     * intervals are split and spilled in many traces.
+     */
+    public static long highPressureSnippet(int[] values, int mode) {
+        long v0 = mode;
+        long v1 = v0 + 1;
+        long v2 = v1 * 3;
+        long v3 = v2 ^ v0;
+        long v4 = v3 - v1;
+        long v5 = v4 << 2;
+        long v6 = v5 + v2;
+        long v7 = v6 ^ v4;
+        long v8 = v7 * v3;
+        long v9 = v8 - v5;
+        long v10 = v9 + v6;
+        long v11 = v10 ^ v7;
+        long v12 = v11 * 5;
+        long v13 = v12 + v8;
+        long v14 = v13 ^ v9;
+        long v15 = v14 - v10;
+        long v16 = v15 + v11;
+        long v17 = v16 ^ v12;
+        for (int i = 0; i < values.length; i++) {
+            int v = values[i];
+            switch ((v + mode) & 3) {
+                case 0:
+                    v0 += mix(v1 + v);
+                    v2 ^= v3;
+                    v4 -= v5;
+                    break;
+                case 1:
+                    v6 += v7 * v;
+                    v8 ^= mix(v9);
+                    v10 -= v11;
+                    break;
+                case 2:
+                    if (v > mode) {
+                        v12 += mix(v13 ^ v);
+                    } else {
+                        v14 ^= v15;
+                    }
+                    break;
+                default:
+                    v16 -= mix(v17 + v);
+                    v1 += v3 ^ v5;
+                    break;
+            }
+            v17 += v0 ^ v2 ^ v4 ^ v6 ^ v8;
+        }
+        return v0 + v1 + v2 + v3 + v4 + v5 + v6 + v7 + v8 + v9 + v10 + v11 + v12 + v13 + v14 + v15 + v16 + v17;
+    }
+
+    private static final int[] VALUES = {1, -5, 17, 3, 8, 1000, -42, 7, 6, 12, 99, 0, 4};
+
+    /**
+     * Number of parallel compilations compared against the sequential one, to give races a chance
+     * to show up.
+     */
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void sameCode() {
+        assertSameCode("manyTracesSnippet");
+    }
+
+    @Test
+    public void sameCodeHighPressure() {
+        assertSameCode("highPressureSnippet");
+    }
+
+    @Test
+    public void run() {
+        try (OverrideScope s = OptionValue.override(TraceRA, true, TraceRAparallel, true, TraceRAparallelMinTraces, 1)) {
+            for (int mode = 0; mode < 8; mode++) {
+                test("manyTracesSnippet", VALUES, mode);
+                test("highPressureSnippet", VALUES, mode);
+            }
+        }
+    }
+
+    private void assertSameCode(String snippet) {
+        ResolvedJavaMethod method = getResolvedJavaMethod(snippet);
+        byte[] sequential;
+        try (OverrideScope s = OptionValue.override(TraceRA, true, TraceRAparallel, false)) {
+            sequential = compileSnippet(method).getTargetCode();
+        }
+        try (OverrideScope s = OptionValue.override(TraceRA, true, TraceRAparallel, true, TraceRAparallelMinTraces, 1)) {
+            for (int i = 0; i < ROUNDS; i++) {
+                byte[] parallel = compileSnippet(method).getTargetCode();
+                Assert.assertArrayEquals(snippet + " round " + i, sequential, parallel);
+            }
+        }
+    }
+
+    private CompilationResult compileSnippet(ResolvedJavaMethod method) {
+        StructuredGraph graph = parseEager(method, AllowAssumptions.YES);
+        return compile(method, graph);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.BackendOptions.UserOptions.TraceRA;
+import static com.oracle.graal.lir.LIRValueUtil.isStackSlotValue;
+import static com.oracle.graal.lir.alloc.trace.lsra.TraceLinearScan.Options.LIROptTraceRAOptimizeSpillPosition;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.phases.HighTier;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.ValueMoveOp;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Tests that the trace register allocator stores values that are live-in at a loop header and
+ * spilled at the calls within the loop on the incoming edges of the loop trace instead of within
+ * the loop.
+ */
+public class TraceRASpillPositionTest extends BackendTest {
+
+    /**
+     * Synchronized so that it is not inlined during parsing.
+     */
+    public static synchronized int callee(int x) {
+        return x * 7 + 3;
+    }
+
+    public static int invariantSnippet(int a, int b, int c, int n) {
+        int result = 0;
+        for (int i = 0; i < n; i++) {
+            result += callee(i) * a;
+            result ^= callee(result) + b;
+            result -= c;
+        }
+        return result + a + b + c;
+    }
+
+    public static long variantSnippet(long[] values, long a, long b) {
+        long x = a;
+        long y = b;
+        for (int i = 0; i < values.length; i++) {
+            long v = values[i];
+            if (v < 0) {
+                x += callee((int) v);
+            } else {
+                y ^= callee((int) x);
+            }
+            x += y * v;
+        }
+        return x + y + a + b;
+    }
+
+    private void runAll() {
+        test("invariantSnippet", 3, 5, 11, 20);
+        test("invariantSnippet", 3, 5, 11, 0);
+        test("variantSnippet", new long[]{1, -2, 3, -4, 5}, 17L, 19L);
+        test("variantSnippet", new long[0], 17L, 19L);
+    }
+
+    @Test
+    public void optimized() {
+        try (OverrideScope s = OptionValue.override(TraceRA, true, LIROptTraceRAOptimizeSpillPosition, true)) {
+            runAll();
+        }
+    }
+
+    @Test
+    public void notOptimized() {
+        try (OverrideScope s = OptionValue.override(TraceRA, true, LIROptTraceRAOptimizeSpillPosition, false)) {
+            runAll();
+        }
+    }
+
+    /**
+     * Counts the moves to stack slots within loops in the allocated LIR of {@code snippet}, which
+     * is compiled without inlining so that the calls remain.
+     */
+    private int countSpillStoresInLoops(String snippet, boolean optimize) {
+        try (OverrideScope s = OptionValue.override(TraceRA, true, LIROptTraceRAOptimizeSpillPosition, optimize, HighTier.Options.Inline, false)) {
+            StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+            LIR lir = getLIRGenerationResult(graph).getLIR();
+            int count = 0;
+            for (AbstractBlockBase<?> block : lir.codeEmittingOrder()) {
+                if (block.getLoopDepth() > 0) {
+                    for (LIRInstruction instruction : lir.getLIRforBlock(block)) {
+                        if (instruction instanceof ValueMoveOp && isStackSlotValue(((ValueMoveOp) instruction).getResult())) {
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void spillStoresMovedOutOfLoop() {
+        int notOptimized = countSpillStoresInLoops("invariantSnippet", false);
+        int optimized = countSpillStoresInLoops("invariantSnippet", true);
+        assertTrue(optimized < notOptimized, "spill stores in loops: %d optimized, %d not optimized", optimized, notOptimized);
+    }
+}
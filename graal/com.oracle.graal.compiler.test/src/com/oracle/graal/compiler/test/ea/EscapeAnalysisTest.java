@@ -295,6 +295,70 @@ public class EscapeAnalysisTest extends EATestBase {
         testEscapeAnalysis("testNewNodeSnippet", null, false);
     }
 
+    public static int testLargeArraySnippet() {
+        byte[] buffer = new byte[256];
+        buffer[3] = 7;
+        buffer[200] = 5;
+        return buffer[3] + buffer[200] + buffer.length;
+    }
+
+    @Test
+    public void testLargeArray() {
+        testEscapeAnalysis("testLargeArraySnippet", JavaConstant.forInt(268), false);
+    }
+
+    public static int testLargeArrayUniformReadSnippet(int a) {
+        int[] buffer = new int[128];
+        buffer[100] = 3;
+        return buffer[a & 63];
+    }
+
+    @Test
+    public void testLargeArrayUniformRead() {
+        testEscapeAnalysis("testLargeArrayUniformReadSnippet", JavaConstant.forInt(0), false);
+    }
+
+    public static int testLargeArrayVariableStoreSnippet(int a) {
+        int[] buffer = new int[128];
+        buffer[a & 127] = 3;
+        return buffer[5] + buffer[a & 63];
+    }
+
+    @Test
+    public void testLargeArrayVariableStore() {
+        test("testLargeArrayVariableStoreSnippet", 5);
+        test("testLargeArrayVariableStoreSnippet", 70);
+    }
+
+    public static int testLoopFilledArraySnippet(int n) {
+        int[] buffer = new int[256];
+        for (int i = 0; i < n; i++) {
+            buffer[i & 15] = i;
+        }
+        return buffer[3] + buffer[15] + buffer[200] + buffer.length;
+    }
+
+    @Test
+    public void testLoopFilledArray() {
+        testEscapeAnalysis("testLoopFilledArraySnippet", null, false);
+        test("testLoopFilledArraySnippet", 0);
+        test("testLoopFilledArraySnippet", 20);
+        test("testLoopFilledArraySnippet", 40);
+    }
+
+    public static int testLoopClearedArraySnippet(int n) {
+        int[] buffer = new int[256];
+        for (int i = 0; i < n; i++) {
+            buffer[i & 255] = 0;
+        }
+        return buffer[7] + buffer.length;
+    }
+
+    @Test
+    public void testLoopClearedArray() {
+        testEscapeAnalysis("testLoopClearedArraySnippet", JavaConstant.forInt(256), false);
+    }
+
     private static final TestClassObject staticObj = new TestClassObject();
 
     public static Object testFullyUnrolledLoopSnippet() {
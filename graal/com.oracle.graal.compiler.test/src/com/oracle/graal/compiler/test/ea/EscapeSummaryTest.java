@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.ea;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.java.LoadFieldNode;
+import com.oracle.graal.nodes.virtual.CommitAllocationNode;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.virtual.phases.ea.PartialEscapePhase;
+
+/**
+ * Tests that objects passed to calls that are not inlined stay virtual after the call if the
+ * callee neither modifies nor leaks them.
+ */
+public class EscapeSummaryTest extends EATestBase {
+
+    public static class Pair {
+        public int x;
+        public int y;
+    }
+
+    static Pair escaped;
+
+    public static int sum(Pair pair) {
+        int result = 0;
+        for (int i = 0; i < pair.x; i++) {
+            result += pair.y;
+        }
+        return result;
+    }
+
+    public static int sumAndLeak(Pair pair) {
+        int result = 0;
+        for (int i = 0; i < pair.x; i++) {
+            result += pair.y;
+        }
+        escaped = pair;
+        return result;
+    }
+
+    public static int sumAndModify(Pair pair) {
+        int result = 0;
+        for (int i = 0; i < pair.x; i++) {
+            result += pair.y;
+        }
+        pair.x = 0;
+        return result;
+    }
+
+    public static int transientSnippet(int a) {
+        Pair pair = new Pair();
+        pair.x = a;
+        pair.y = 3;
+        return sum(pair) + pair.x;
+    }
+
+    @Test
+    public void testTransient() {
+        prepareGraphWithoutInlining("transientSnippet");
+        Assert.assertEquals(0, graph.getNodes().filter(LoadFieldNode.class).count());
+        test("transientSnippet", 5);
+    }
+
+    public static int leakedSnippet(int a) {
+        Pair pair = new Pair();
+        pair.x = a;
+        pair.y = 3;
+        return sumAndLeak(pair) + pair.x;
+    }
+
+    @Test
+    public void testLeaked() {
+        prepareGraphWithoutInlining("leakedSnippet");
+        Assert.assertEquals(1, graph.getNodes().filter(LoadFieldNode.class).count());
+        test("leakedSnippet", 5);
+    }
+
+    public static int modifiedSnippet(int a) {
+        Pair pair = new Pair();
+        pair.x = a;
+        pair.y = 3;
+        return sumAndModify(pair) + pair.x;
+    }
+
+    @Test
+    public void testModified() {
+        prepareGraphWithoutInlining("modifiedSnippet");
+        Assert.assertEquals(1, graph.getNodes().filter(LoadFieldNode.class).count());
+        test("modifiedSnippet", 5);
+    }
+
+    public static int twiceSnippet(int a) {
+        Pair pair = new Pair();
+        pair.x = a;
+        pair.y = 3;
+        int first = sum(pair);
+        pair.y = first;
+        return sum(pair) + pair.y;
+    }
+
+    @Test
+    public void testTwice() {
+        prepareGraphWithoutInlining("twiceSnippet");
+        Assert.assertEquals(0, graph.getNodes().filter(LoadFieldNode.class).count());
+        test("twiceSnippet", 5);
+    }
+
+    public static int sumAndLeakSecond(Pair pair, Pair other) {
+        int result = 0;
+        for (int i = 0; i < pair.x; i++) {
+            result += pair.y;
+        }
+        escaped = other;
+        return result;
+    }
+
+    public static int aliasedSnippet(int a) {
+        Pair pair = new Pair();
+        pair.x = a;
+        pair.y = 3;
+        return sumAndLeakSecond(pair, pair) + pair.x;
+    }
+
+    @Test
+    public void testAliased() {
+        prepareGraphWithoutInlining("aliasedSnippet");
+        Assert.assertEquals(1, graph.getNodes().filter(LoadFieldNode.class).count());
+        test("aliasedSnippet", 5);
+    }
+
+    public static int loopSnippet(int a, int n) {
+        Pair pair = new Pair();
+        pair.x = a;
+        pair.y = 3;
+        int result = 0;
+        for (int i = 0; i < n; i++) {
+            result += sum(pair);
+        }
+        return result + pair.x;
+    }
+
+    /**
+     * The object lives across the loop, so it is materialized once before the loop instead of
+     * being copied in every iteration.
+     */
+    @Test
+    public void testLoop() {
+        prepareGraphWithoutInlining("loopSnippet");
+        ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, false, false);
+        Assert.assertEquals(1, graph.getNodes().filter(CommitAllocationNode.class).count());
+        for (CommitAllocationNode commit : graph.getNodes().filter(CommitAllocationNode.class)) {
+            Assert.assertNull("allocation in loop", cfg.blockFor(commit).getLoop());
+        }
+        test("loopSnippet", 5, 10);
+    }
+
+    public static int loopLocalSnippet(int a, int n) {
+        int result = 0;
+        for (int i = 0; i < n; i++) {
+            Pair pair = new Pair();
+            pair.x = a;
+            pair.y = i;
+            result += sum(pair) + pair.x;
+        }
+        return result;
+    }
+
+    @Test
+    public void testLoopLocal() {
+        prepareGraphWithoutInlining("loopLocalSnippet");
+        Assert.assertEquals(0, graph.getNodes().filter(LoadFieldNode.class).count());
+        test("loopLocalSnippet", 5, 10);
+    }
+
+    private void prepareGraphWithoutInlining(String snippet) {
+        graph = parseEager(snippet, AllowAssumptions.YES);
+        context = getDefaultHighTierContext();
+        new CanonicalizerPhase().apply(graph, context);
+        new PartialEscapePhase(false, false, new CanonicalizerPhase(), null).apply(graph, context);
+    }
+}
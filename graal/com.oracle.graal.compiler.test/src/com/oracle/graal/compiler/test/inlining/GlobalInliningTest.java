@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.inlining;
+
+import static com.oracle.graal.compiler.common.GraalOptions.MaximumDesiredSize;
+import static com.oracle.graal.phases.common.inlining.InliningPhase.Options.GlobalInlining;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.ParameterNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.inlining.InliningPhase;
+import com.oracle.graal.phases.common.inlining.InliningUtil;
+import com.oracle.graal.phases.tiers.HighTierContext;
+
+public class GlobalInliningTest extends GraalCompilerTest {
+
+    public static int branchy(int x, int[] values) {
+        int result = 0;
+        if (x > 0) {
+            for (int i = 0; i < values.length; i++) {
+                result += values[i] * x;
+            }
+        } else {
+            for (int i = values.length - 1; i >= 0; i--) {
+                result ^= values[i] - x;
+            }
+        }
+        return result;
+    }
+
+    public static int small(int x) {
+        return x + 1;
+    }
+
+    public static int smallSnippet(int x) {
+        return small(x) + small(x + 1);
+    }
+
+    public static int constantArgumentSnippet(int x, int[] values) {
+        return branchy(x, values) + branchy(1, values);
+    }
+
+    public static int hintedSnippet(int x, int[] values) {
+        return branchy(x, values) + branchy(x + 1, values);
+    }
+
+    @Test
+    public void inlineSmall() {
+        StructuredGraph graph = inline("smallSnippet", MaximumDesiredSize.getValue());
+        Assert.assertFalse(graph.getInvokes().iterator().hasNext());
+    }
+
+    /**
+     * With budget for only one copy of the callee, the callsite whose callee simplifies with the
+     * constant argument is inlined.
+     */
+    @Test
+    public void preferSimplification() {
+        StructuredGraph graph = inline("constantArgumentSnippet", maximumSizeForOneCopy("constantArgumentSnippet"));
+        List<Invoke> remaining = new ArrayList<>();
+        for (Invoke invoke : graph.getInvokes()) {
+            remaining.add(invoke);
+        }
+        Assert.assertEquals(1, remaining.size());
+        Assert.assertFalse(remaining.get(0).callTarget().arguments().get(0).isConstant());
+    }
+
+    /**
+     * With budget for only one copy of the callee, the callsite with an inlining hint is inlined.
+     */
+    @Test
+    public void preferHinted() {
+        StructuredGraph graph = inline("hintedSnippet", maximumSizeForOneCopy("hintedSnippet"), true);
+        List<Invoke> remaining = new ArrayList<>();
+        for (Invoke invoke : graph.getInvokes()) {
+            remaining.add(invoke);
+        }
+        Assert.assertEquals(1, remaining.size());
+        Assert.assertTrue(remaining.get(0).callTarget().arguments().get(0) instanceof ParameterNode);
+    }
+
+    private int maximumSizeForOneCopy(String snippet) {
+        HighTierContext context = getDefaultHighTierContext();
+        StructuredGraph callee = parseEager("branchy", AllowAssumptions.YES);
+        new CanonicalizerPhase().apply(callee, context);
+        StructuredGraph root = parseEager(snippet, AllowAssumptions.YES);
+        new CanonicalizerPhase().apply(root, context);
+        return InliningUtil.getNodeCount(root) + InliningUtil.getNodeCount(callee) - 1;
+    }
+
+    private StructuredGraph inline(String snippet, int maximumDesiredSize) {
+        return inline(snippet, maximumDesiredSize, false);
+    }
+
+    /**
+     * @param hintLastInvoke give the invoke with the highest bci an inlining bonus
+     */
+    private StructuredGraph inline(String snippet, int maximumDesiredSize, boolean hintLastInvoke) {
+        try (OverrideScope s = OptionValue.override(GlobalInlining, true, MaximumDesiredSize, maximumDesiredSize)) {
+            StructuredGraph graph = parseEager(snippet, AllowAssumptions.YES);
+            HighTierContext context = new HighTierContext(getProviders(), getDefaultGraphBuilderSuite(), OptimisticOptimizations.ALL);
+            new CanonicalizerPhase().apply(graph, context);
+            Map<Invoke, Double> hints = null;
+            if (hintLastInvoke) {
+                Invoke last = null;
+                for (Invoke invoke : graph.getInvokes()) {
+                    if (last == null || invoke.bci() > last.bci()) {
+                        last = invoke;
+                    }
+                }
+                hints = new HashMap<>();
+                hints.put(last, 10.0);
+            }
+            new InliningPhase(hints, new CanonicalizerPhase()).apply(graph, context);
+            return graph;
+        }
+    }
+}
@@ -363,6 +363,7 @@ public class GraalCompiler {
                 Debug.metric("InfopointsEmitted").add(compilationResult.getInfopoints().size());
                 Debug.metric("DataPatches").add(ldp.size());
                 Debug.metric("ExceptionHandlersEmitted").add(compilationResult.getExceptionHandlers().size());
+                Debug.metric("FrameBytesAllocated").add(compilationResult.getTotalFrameSize());
             }
 
             Debug.dump(1, compilationResult, "After code generation");
@@ -25,18 +25,22 @@ package com.oracle.graal.compiler.phases;
 import static com.oracle.graal.compiler.common.GraalOptions.ConditionalElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.FullUnroll;
 import static com.oracle.graal.compiler.common.GraalOptions.ImmutableCode;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopInterchange;
 import static com.oracle.graal.compiler.common.GraalOptions.LoopPeeling;
 import static com.oracle.graal.compiler.common.GraalOptions.LoopUnswitch;
 import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizer;
 import static com.oracle.graal.compiler.common.GraalOptions.OptConvertDeoptsToGuards;
 import static com.oracle.graal.compiler.common.GraalOptions.OptLoopTransform;
+import static com.oracle.graal.compiler.common.GraalOptions.OptSparseConditionalConstantPropagation;
 import static com.oracle.graal.compiler.common.GraalOptions.PartialEscapeAnalysis;
+import static com.oracle.graal.compiler.common.GraalOptions.TailDuplication;
 import static com.oracle.graal.compiler.common.GraalOptions.UseGraalInstrumentation;
 import static com.oracle.graal.phases.common.DeadCodeEliminationPhase.Optionality.Optional;
 
 import com.oracle.graal.loop.DefaultLoopPolicies;
 import com.oracle.graal.loop.LoopPolicies;
 import com.oracle.graal.loop.phases.LoopFullUnrollPhase;
+import com.oracle.graal.loop.phases.LoopInterchangePhase;
 import com.oracle.graal.loop.phases.LoopPeelingPhase;
 import com.oracle.graal.loop.phases.LoopUnswitchingPhase;
 import com.oracle.graal.nodes.spi.LoweringTool;
@@ -47,9 +51,12 @@ import com.oracle.graal.phases.PhaseSuite;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
 import com.oracle.graal.phases.common.ConvertDeoptimizeToGuardPhase;
 import com.oracle.graal.phases.common.DeadCodeEliminationPhase;
+import com.oracle.graal.phases.common.IncrementalCanonicalizerPhase;
 import com.oracle.graal.phases.common.IterativeConditionalEliminationPhase;
 import com.oracle.graal.phases.common.LoweringPhase;
 import com.oracle.graal.phases.common.RemoveValueProxyPhase;
+import com.oracle.graal.phases.common.SparseConditionalConstantPropagationPhase;
+import com.oracle.graal.phases.common.TailDuplicationPhase;
 import com.oracle.graal.phases.common.inlining.InliningPhase;
 import com.oracle.graal.phases.common.instrumentation.HighTierReconcileInstrumentationPhase;
 import com.oracle.graal.phases.tiers.HighTierContext;
@@ -83,12 +90,20 @@ public class HighTier extends PhaseSuite<HighTierContext> {
                 appendPhase(canonicalizer);
                 appendPhase(new IterativeConditionalEliminationPhase(canonicalizer, false));
             }
+
+            if (OptSparseConditionalConstantPropagation.getValue() && OptCanonicalizer.getValue()) {
+                appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new SparseConditionalConstantPropagationPhase()));
+            }
         }
 
         if (OptConvertDeoptsToGuards.getValue()) {
             appendPhase(new ConvertDeoptimizeToGuardPhase());
         }
 
+        if (TailDuplication.getValue() && OptCanonicalizer.getValue()) {
+            appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new TailDuplicationPhase()));
+        }
+
         LoopPolicies loopPolicies = createLoopPolicies();
         if (FullUnroll.getValue()) {
             appendPhase(new LoopFullUnrollPhase(canonicalizer, loopPolicies));
@@ -101,6 +116,9 @@ public class HighTier extends PhaseSuite<HighTierContext> {
             if (LoopUnswitch.getValue()) {
                 appendPhase(new LoopUnswitchingPhase(loopPolicies));
             }
+            if (LoopInterchange.getValue()) {
+                appendPhase(new LoopInterchangePhase());
+            }
         }
 
         if (OptCanonicalizer.getValue()) {
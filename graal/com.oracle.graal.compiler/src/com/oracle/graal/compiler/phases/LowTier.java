@@ -25,6 +25,7 @@ package com.oracle.graal.compiler.phases;
 import static com.oracle.graal.compiler.common.GraalOptions.ConditionalElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.ImmutableCode;
 import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizer;
+import static com.oracle.graal.compiler.common.GraalOptions.OptReadGlobalValueNumbering;
 import static com.oracle.graal.compiler.common.GraalOptions.UseGraalInstrumentation;
 import static com.oracle.graal.phases.common.DeadCodeEliminationPhase.Optionality.Required;
 
@@ -39,6 +40,7 @@ import com.oracle.graal.phases.common.ExpandLogicPhase;
 import com.oracle.graal.phases.common.IterativeConditionalEliminationPhase;
 import com.oracle.graal.phases.common.LoweringPhase;
 import com.oracle.graal.phases.common.ProfileCompiledMethodsPhase;
+import com.oracle.graal.phases.common.ReadGlobalValueNumberingPhase;
 import com.oracle.graal.phases.common.RemoveValueProxyPhase;
 import com.oracle.graal.phases.common.UseTrappingNullChecksPhase;
 import com.oracle.graal.phases.common.instrumentation.InlineInstrumentationPhase;
@@ -73,6 +75,10 @@ public class LowTier extends PhaseSuite<LowTierContext> {
 
         appendPhase(new RemoveValueProxyPhase());
 
+        if (OptReadGlobalValueNumbering.getValue()) {
+            appendPhase(new ReadGlobalValueNumberingPhase());
+        }
+
         appendPhase(new ExpandLogicPhase());
 
         /* Cleanup IsNull checks resulting from MID_TIER/LOW_TIER lowering and ExpandLogic phase. */
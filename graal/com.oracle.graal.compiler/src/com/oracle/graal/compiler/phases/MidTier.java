@@ -24,10 +24,12 @@ package com.oracle.graal.compiler.phases;
 
 import static com.oracle.graal.compiler.common.GraalOptions.ConditionalElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.ImmutableCode;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStrengthReduction;
 import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizer;
 import static com.oracle.graal.compiler.common.GraalOptions.OptDeoptimizationGrouping;
 import static com.oracle.graal.compiler.common.GraalOptions.OptEliminatePartiallyRedundantGuards;
 import static com.oracle.graal.compiler.common.GraalOptions.OptFloatingReads;
+import static com.oracle.graal.compiler.common.GraalOptions.OptLoopTransform;
 import static com.oracle.graal.compiler.common.GraalOptions.OptPushThroughPi;
 import static com.oracle.graal.compiler.common.GraalOptions.OptReadElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.ReassociateInvariants;
@@ -35,6 +37,7 @@ import static com.oracle.graal.compiler.common.GraalOptions.UseGraalInstrumentat
 import static com.oracle.graal.compiler.common.GraalOptions.VerifyHeapAtReturn;
 
 import com.oracle.graal.loop.phases.LoopSafepointEliminationPhase;
+import com.oracle.graal.loop.phases.LoopStrengthReductionPhase;
 import com.oracle.graal.loop.phases.ReassociateInvariantPhase;
 import com.oracle.graal.nodes.spi.LoweringTool;
 import com.oracle.graal.phases.PhaseSuite;
@@ -125,6 +128,10 @@ public class MidTier extends PhaseSuite<MidTierContext> {
             appendPhase(new ReassociateInvariantPhase());
         }
 
+        if (OptLoopTransform.getValue() && LoopStrengthReduction.getValue()) {
+            appendPhase(new LoopStrengthReductionPhase());
+        }
+
         if (OptDeoptimizationGrouping.getValue()) {
             appendPhase(new DeoptimizationGroupingPhase());
         }
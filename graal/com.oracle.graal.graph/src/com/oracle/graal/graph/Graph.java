@@ -912,6 +912,10 @@ public class Graph {
         return new NodeWorkList.IterativeNodeWorkList(this, fill, iterationLimitPerNode);
     }
 
+    public NodeWorkList createPriorityNodeWorkList(boolean fill, int iterationLimitPerNode) {
+        return new NodeWorkList.PriorityNodeWorkList(this, fill, iterationLimitPerNode);
+    }
+
     void register(Node node) {
         assert !isFrozen();
         assert node.id() == Node.INITIAL_ID;
@@ -23,8 +23,11 @@
 package com.oracle.graal.graph;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Queue;
 
 public abstract class NodeWorkList implements Iterable<Node> {
@@ -43,6 +46,10 @@ public abstract class NodeWorkList implements Iterable<Node> {
         }
     }
 
+    private NodeWorkList(Queue<Node> worklist) {
+        this.worklist = worklist;
+    }
+
     public void addAll(Iterable<? extends Node> nodes) {
         for (Node node : nodes) {
             if (node.isAlive()) {
@@ -186,6 +193,159 @@ public abstract class NodeWorkList implements Iterable<Node> {
         }
     }
 
+    /**
+     * A work list that processes nodes in topological order, i.e., the inputs of a node before the
+     * node itself. Cycles, which only exist through phis and proxies in loops, are broken
+     * arbitrarily. The position of a node is computed when it is first added and does not change
+     * afterwards, even if the inputs of the node change. A node is only contained once in the work
+     * list.
+     */
+    public static final class PriorityNodeWorkList extends NodeWorkList {
+
+        private final Ranks ranks;
+        private final NodeBitMap inQueue;
+        private int iterationLimit = Integer.MAX_VALUE;
+
+        public PriorityNodeWorkList(Graph graph, boolean fill, int iterationLimitPerNode) {
+            this(graph, new Ranks(graph), iterationLimitPerNode);
+            if (fill) {
+                for (Node node : graph.getNodes()) {
+                    add(node);
+                }
+            }
+        }
+
+        private PriorityNodeWorkList(Graph graph, Ranks ranks, int iterationLimitPerNode) {
+            super(new PriorityQueue<>(Math.max(graph.getNodeCount(), 1), ranks));
+            this.ranks = ranks;
+            this.inQueue = graph.createNodeBitMap();
+            if (iterationLimitPerNode > 0) {
+                iterationLimit = iterationLimitPerNode * graph.getNodeCount();
+            }
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return new QueueConsumingIterator() {
+                @Override
+                public boolean hasNext() {
+                    dropDeleted();
+                    return iterationLimit > 0 && !worklist.isEmpty();
+                }
+
+                @Override
+                public Node next() {
+                    if (iterationLimit-- <= 0) {
+                        throw new NoSuchElementException();
+                    }
+                    dropDeleted();
+                    Node node = worklist.remove();
+                    inQueue.clearAndGrow(node);
+                    return node;
+                }
+            };
+        }
+
+        @Override
+        public void add(Node node) {
+            if (node != null && !inQueue.isMarkedAndGrow(node)) {
+                inQueue.markAndGrow(node);
+                ranks.compute(node);
+                worklist.add(node);
+            }
+        }
+
+        @Override
+        public boolean contains(Node node) {
+            return inQueue.isMarkedAndGrow(node);
+        }
+
+        /**
+         * The topological rank of each node: one more than the maximum rank of its inputs.
+         */
+        private static final class Ranks implements Comparator<Node> {
+
+            private static final int ON_STACK = -1;
+
+            private final Graph graph;
+            private int[] ranks;
+
+            Ranks(Graph graph) {
+                this.graph = graph;
+                this.ranks = new int[graph.nodeIdCount()];
+            }
+
+            /**
+             * Deleted nodes can still be in the queue, so their original id has to be used.
+             */
+            private static int index(Node node) {
+                int id = node.id();
+                return id <= Node.DELETED_ID_START ? Node.DELETED_ID_START - id : id;
+            }
+
+            private int get(Node node) {
+                int id = index(node);
+                return id < ranks.length ? ranks[id] : 0;
+            }
+
+            private void set(Node node, int rank) {
+                int id = index(node);
+                if (id >= ranks.length) {
+                    ranks = Arrays.copyOf(ranks, Math.max(graph.nodeIdCount(), id + 1));
+                }
+                ranks[id] = rank;
+            }
+
+            /**
+             * Computes the rank of {@code root} and of all its transitive inputs without a rank,
+             * iteratively to cope with deep graphs.
+             */
+            void compute(Node root) {
+                if (get(root) != 0) {
+                    return;
+                }
+                ArrayDeque<Node> stack = new ArrayDeque<>();
+                ArrayDeque<Iterator<Node>> inputs = new ArrayDeque<>();
+                set(root, ON_STACK);
+                stack.push(root);
+                inputs.push(root.inputs().iterator());
+                while (!stack.isEmpty()) {
+                    Iterator<Node> iterator = inputs.peek();
+                    Node next = null;
+                    while (iterator.hasNext()) {
+                        Node input = iterator.next();
+                        if (input != null && get(input) == 0) {
+                            next = input;
+                            break;
+                        }
+                    }
+                    if (next != null) {
+                        set(next, ON_STACK);
+                        stack.push(next);
+                        inputs.push(next.inputs().iterator());
+                    } else {
+                        Node node = stack.pop();
+                        inputs.pop();
+                        int rank = 1;
+                        for (Node input : node.inputs()) {
+                            int inputRank = get(input);
+                            if (inputRank >= rank) {
+                                rank = inputRank + 1;
+                            }
+                        }
+                        set(node, rank);
+                    }
+                }
+            }
+
+            @Override
+            public int compare(Node a, Node b) {
+                int result = Integer.compare(get(a), get(b));
+                return result != 0 ? result : Integer.compare(index(a), index(b));
+            }
+        }
+    }
+
     public static final class SingletonNodeWorkList extends NodeWorkList {
         protected final NodeBitMap visited;
 
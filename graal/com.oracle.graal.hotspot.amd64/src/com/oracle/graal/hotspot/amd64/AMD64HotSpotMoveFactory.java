@@ -58,6 +58,18 @@ public class AMD64HotSpotMoveFactory extends AMD64MoveFactory {
         return true;
     }
 
+    @Override
+    public int getConstantLoadCost(Constant constant) {
+        if (HotSpotCompressedNullConstant.COMPRESSED_NULL.equals(constant)) {
+            return 1;
+        } else if (constant instanceof HotSpotConstant) {
+            // patched immediate or load from the data section, depending on the configuration
+            return ((HotSpotConstant) constant).isCompressed() ? 2 : 3;
+        } else {
+            return super.getConstantLoadCost(constant);
+        }
+    }
+
     @Override
     public AMD64LIRInstruction createLoad(AllocatableValue dst, Constant src) {
         if (HotSpotCompressedNullConstant.COMPRESSED_NULL.equals(src)) {
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.api.directives.GraalDirectives;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.hotspot.nodes.ReservedNewInstanceNode;
+import com.oracle.graal.hotspot.nodes.TLABReservationNode;
+import com.oracle.graal.hotspot.phases.AllocationMergingPhase;
+import com.oracle.graal.nodes.StructuredGraph;
+
+public class AllocationMergingTest extends GraalCompilerTest {
+
+    public static class Point {
+        int x;
+        int y;
+    }
+
+    public static class Line {
+        Point start;
+        Point end;
+    }
+
+    private int expectedReservations;
+    private int expectedReservedAllocations;
+
+    @Override
+    protected boolean checkMidTierGraph(StructuredGraph graph) {
+        if (AllocationMergingPhase.Options.MergeAllocations.getValue()) {
+            Assert.assertEquals(expectedReservations, graph.getNodes().filter(TLABReservationNode.class).count());
+            Assert.assertEquals(expectedReservedAllocations, graph.getNodes().filter(ReservedNewInstanceNode.class).count());
+        }
+        return true;
+    }
+
+    public static Line lineSnippet(int x0, int y0, int x1, int y1) {
+        Point start = new Point();
+        start.x = x0;
+        start.y = y0;
+        Point end = new Point();
+        end.x = x1;
+        end.y = y1;
+        Line line = new Line();
+        line.start = start;
+        line.end = end;
+        return line;
+    }
+
+    @Test
+    public void testLine() {
+        expectedReservations = 1;
+        expectedReservedAllocations = 3;
+        test("lineSnippet", 1, 2, 3, 4);
+    }
+
+    static Object sink;
+
+    public static Point separatedSnippet(int x) {
+        Point first = new Point();
+        first.x = x;
+        sink = first;
+        if (x > 3) {
+            GraalDirectives.controlFlowAnchor();
+            first.y = x;
+        }
+        Point second = new Point();
+        second.x = x;
+        return second;
+    }
+
+    @Test
+    public void testSeparated() {
+        // the allocations are in different blocks
+        expectedReservations = 0;
+        expectedReservedAllocations = 0;
+        test("separatedSnippet", 5);
+        test("separatedSnippet", 1);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.hotspot.nodes.StackNewInstanceNode;
+import com.oracle.graal.hotspot.phases.StackAllocationPhase;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class StackAllocationTest extends GraalCompilerTest {
+
+    public static class Point {
+        int x;
+        int y;
+    }
+
+    public static class Holder {
+        Object value;
+    }
+
+    static final Point SINK = new Point();
+
+    private int expectedStackAllocations;
+
+    @Override
+    @SuppressWarnings("try")
+    protected Suites createSuites() {
+        try (OverrideScope s = OptionValue.override(StackAllocationPhase.Options.StackAllocation, true)) {
+            return super.createSuites();
+        }
+    }
+
+    @Override
+    protected boolean checkMidTierGraph(StructuredGraph graph) {
+        Assert.assertEquals(expectedStackAllocations, graph.getNodes().filter(StackNewInstanceNode.class).count());
+        return true;
+    }
+
+    public static int phiSnippet(boolean condition, int a) {
+        Point p;
+        if (condition) {
+            p = new Point();
+            p.x = a;
+        } else {
+            p = new Point();
+            p.x = -a;
+        }
+        // kills the field values known to read elimination
+        SINK.x = 42;
+        return p.x;
+    }
+
+    @Test
+    public void testPhi() {
+        expectedStackAllocations = 2;
+        test("phiSnippet", true, 5);
+        test("phiSnippet", false, 5);
+    }
+
+    public static Point escapingSnippet(boolean condition, int a) {
+        Point p;
+        if (condition) {
+            p = new Point();
+            p.x = a;
+        } else {
+            p = new Point();
+            p.y = a;
+        }
+        return p;
+    }
+
+    @Test
+    public void testEscaping() {
+        expectedStackAllocations = 0;
+        test("escapingSnippet", true, 5);
+    }
+
+    public static Object objectFieldSnippet(boolean condition, Object a) {
+        Holder h;
+        if (condition) {
+            h = new Holder();
+            h.value = a;
+        } else {
+            h = new Holder();
+        }
+        SINK.x = 42;
+        return h.value;
+    }
+
+    @Test
+    public void testObjectField() {
+        expectedStackAllocations = 0;
+        test("objectFieldSnippet", true, "a");
+        test("objectFieldSnippet", false, "a");
+    }
+}
@@ -56,6 +56,7 @@ import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.DebugTimer;
 import com.oracle.graal.debug.Management;
 import com.oracle.graal.debug.TTY;
+import com.oracle.graal.lir.util.LIRArena;
 import com.oracle.graal.options.OptionValue;
 import com.oracle.graal.options.OptionValue.OverrideScope;
 
@@ -186,7 +187,11 @@ public class CompilationTask {
                  * Graal.
                  */
                 boolean disableInlining = !config.inline && !Inline.hasBeenSet();
-                try (OverrideScope s1 = disableInlining ? OptionValue.override(Inline, false) : null) {
+                /*
+                 * The LIR data structures of this compilation are returned to the compiler
+                 * thread's arena once the compilation result has been produced.
+                 */
+                try (OverrideScope s1 = disableInlining ? OptionValue.override(Inline, false) : null; LIRArena.Scope arenaScope = LIRArena.openScope()) {
                     result = compiler.compile(method, entryBCI, useProfilingInfo);
                 }
             } catch (Throwable e) {
@@ -200,13 +205,14 @@ public class CompilationTask {
                 if (printAfterCompilation || printCompilation) {
                     final long stop = System.currentTimeMillis();
                     final int targetCodeSize = result != null ? result.getTargetCodeSize() : -1;
+                    final int frameSize = result != null ? result.getTotalFrameSize() : -1;
                     final long allocatedBytesAfter = Lazy.threadMXBean.getThreadAllocatedBytes(threadId);
                     final long allocatedBytes = (allocatedBytesAfter - allocatedBytesBefore) / 1024;
 
                     if (printAfterCompilation) {
-                        TTY.println(getMethodDescription() + String.format(" | %4dms %5dB %5dkB", stop - start, targetCodeSize, allocatedBytes));
+                        TTY.println(getMethodDescription() + String.format(" | %4dms %5dB %5dkB %4dB frame", stop - start, targetCodeSize, allocatedBytes, frameSize));
                     } else if (printCompilation) {
-                        TTY.println(String.format("%-6d JVMCI %-70s %-45s %-50s | %4dms %5dB %5dkB", getId(), "", "", "", stop - start, targetCodeSize, allocatedBytes));
+                        TTY.println(String.format("%-6d JVMCI %-70s %-45s %-50s | %4dms %5dB %5dkB %4dB frame", getId(), "", "", "", stop - start, targetCodeSize, allocatedBytes, frameSize));
                     }
                 }
             }
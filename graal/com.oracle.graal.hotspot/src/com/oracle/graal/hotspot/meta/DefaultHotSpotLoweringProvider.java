@@ -73,8 +73,11 @@ import com.oracle.graal.hotspot.nodes.G1ReferentFieldReadBarrier;
 import com.oracle.graal.hotspot.nodes.GetObjectAddressNode;
 import com.oracle.graal.hotspot.nodes.HotSpotDirectCallTargetNode;
 import com.oracle.graal.hotspot.nodes.HotSpotIndirectCallTargetNode;
+import com.oracle.graal.hotspot.nodes.ReservedNewInstanceNode;
 import com.oracle.graal.hotspot.nodes.SerialArrayRangeWriteBarrier;
 import com.oracle.graal.hotspot.nodes.SerialWriteBarrier;
+import com.oracle.graal.hotspot.nodes.StackNewInstanceNode;
+import com.oracle.graal.hotspot.nodes.TLABReservationNode;
 import com.oracle.graal.hotspot.nodes.type.KlassPointerStamp;
 import com.oracle.graal.hotspot.nodes.type.MethodPointerStamp;
 import com.oracle.graal.hotspot.nodes.type.NarrowOopStamp;
@@ -228,10 +231,22 @@ public class DefaultHotSpotLoweringProvider extends DefaultJavaLoweringProvider
             if (graph.getGuardsStage().areDeoptsFixed()) {
                 instanceofSnippets.lower((ClassIsAssignableFromNode) n, tool);
             }
+        } else if (n instanceof TLABReservationNode) {
+            if (graph.getGuardsStage().areFrameStatesAtDeopts()) {
+                newObjectSnippets.lower((TLABReservationNode) n, registers, tool);
+            }
+        } else if (n instanceof ReservedNewInstanceNode) {
+            if (graph.getGuardsStage().areFrameStatesAtDeopts()) {
+                newObjectSnippets.lower((ReservedNewInstanceNode) n, tool);
+            }
         } else if (n instanceof NewInstanceNode) {
             if (graph.getGuardsStage().areFrameStatesAtDeopts()) {
                 newObjectSnippets.lower((NewInstanceNode) n, registers, tool);
             }
+        } else if (n instanceof StackNewInstanceNode) {
+            if (graph.getGuardsStage().areFrameStatesAtDeopts()) {
+                newObjectSnippets.lower((StackNewInstanceNode) n, tool);
+            }
         } else if (n instanceof DynamicNewInstanceNode) {
             if (graph.getGuardsStage().areFrameStatesAtDeopts()) {
                 newObjectSnippets.lower((DynamicNewInstanceNode) n, registers, tool);
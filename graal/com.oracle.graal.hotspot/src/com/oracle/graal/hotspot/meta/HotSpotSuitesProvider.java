@@ -30,7 +30,9 @@ import com.oracle.graal.hotspot.HotSpotBackend;
 import com.oracle.graal.hotspot.HotSpotGraalRuntimeProvider;
 import com.oracle.graal.hotspot.HotSpotInstructionProfiling;
 import com.oracle.graal.hotspot.phases.AheadOfTimeVerificationPhase;
+import com.oracle.graal.hotspot.phases.AllocationMergingPhase;
 import com.oracle.graal.hotspot.phases.LoadJavaMirrorWithKlassPhase;
+import com.oracle.graal.hotspot.phases.StackAllocationPhase;
 import com.oracle.graal.hotspot.phases.WriteBarrierAdditionPhase;
 import com.oracle.graal.hotspot.phases.WriteBarrierVerificationPhase;
 import com.oracle.graal.java.GraphBuilderPhase;
@@ -83,6 +85,13 @@ public class HotSpotSuitesProvider extends SuitesProviderBase {
             }
         }
 
+        if (StackAllocationPhase.Options.StackAllocation.getValue()) {
+            ret.getMidTier().appendPhase(new StackAllocationPhase(runtime.getTarget().wordJavaKind));
+        }
+        if (AllocationMergingPhase.Options.MergeAllocations.getValue()) {
+            ret.getMidTier().appendPhase(new AllocationMergingPhase(runtime.getTarget().wordJavaKind));
+        }
+
         ret.getMidTier().appendPhase(new WriteBarrierAdditionPhase(config));
         if (VerifyPhases.getValue()) {
             ret.getMidTier().appendPhase(new WriteBarrierVerificationPhase(config));
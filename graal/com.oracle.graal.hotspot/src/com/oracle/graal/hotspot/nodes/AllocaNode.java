@@ -34,6 +34,8 @@ import com.oracle.graal.nodeinfo.NodeInfo;
 import com.oracle.graal.nodes.FixedWithNextNode;
 import com.oracle.graal.nodes.spi.LIRLowerable;
 import com.oracle.graal.nodes.spi.NodeLIRBuilderTool;
+import com.oracle.graal.word.Word;
+import com.oracle.graal.word.WordTypes;
 
 /**
  * Reserves a block of memory in the stack frame of a method. The block is reserved in the frame for
@@ -61,10 +63,20 @@ public final class AllocaNode extends FixedWithNextNode implements LIRLowerable
         this.objects = objects;
     }
 
+    public AllocaNode(@InjectedNodeParameter WordTypes wordTypes, int slots) {
+        this(slots, wordTypes.getWordKind(), new BitSet(0));
+    }
+
     @Override
     public void generate(NodeLIRBuilderTool gen) {
         VirtualStackSlot array = gen.getLIRGeneratorTool().getResult().getFrameMapBuilder().allocateStackSlots(slots, objects, null);
         Value result = gen.getLIRGeneratorTool().emitAddress(array);
         gen.setResult(this, result);
     }
+
+    /**
+     * Reserves a block of {@code slots} words that contains no object pointer slots.
+     */
+    @NodeIntrinsic
+    public static native Word alloca(@ConstantNodeParameter int slots);
 }
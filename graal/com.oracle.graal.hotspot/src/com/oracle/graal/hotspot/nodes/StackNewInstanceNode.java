@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.nodes;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.ResolvedJavaType;
+
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodeinfo.NodeInfo;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.spi.Lowerable;
+import com.oracle.graal.nodes.spi.LoweringTool;
+
+/**
+ * Allocates an instance in the stack frame of the method instead of the heap. The result is the
+ * address of the object as a word: the object must never be seen by the garbage collector, so it
+ * must not be stored into the heap, passed to a call, returned or referenced by a frame state.
+ */
+@NodeInfo(nameTemplate = "StackNew {p#instanceClass/s}")
+public final class StackNewInstanceNode extends FixedWithNextNode implements Lowerable {
+
+    public static final NodeClass<StackNewInstanceNode> TYPE = NodeClass.create(StackNewInstanceNode.class);
+
+    protected final ResolvedJavaType instanceClass;
+    protected final boolean fillContents;
+
+    public StackNewInstanceNode(ResolvedJavaType instanceClass, boolean fillContents, JavaKind wordKind) {
+        super(TYPE, StampFactory.forKind(wordKind));
+        assert !instanceClass.isArray() && !instanceClass.isInterface();
+        this.instanceClass = instanceClass;
+        this.fillContents = fillContents;
+    }
+
+    public ResolvedJavaType instanceClass() {
+        return instanceClass;
+    }
+
+    public boolean fillContents() {
+        return fillContents;
+    }
+
+    @Override
+    public void lower(LoweringTool tool) {
+        tool.getLowerer().lower(this, tool);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.phases;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.vm.ci.hotspot.HotSpotResolvedObjectType;
+import jdk.vm.ci.meta.JavaKind;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.hotspot.nodes.ReservedNewInstanceNode;
+import com.oracle.graal.hotspot.nodes.TLABReservationNode;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.DeoptimizingNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.extended.FixedValueAnchorNode;
+import com.oracle.graal.nodes.extended.MembarNode;
+import com.oracle.graal.nodes.java.NewInstanceNode;
+import com.oracle.graal.nodes.memory.WriteNode;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.common.FrameStateAssignmentPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+/**
+ * Merges instance allocations that follow each other in a block, such as the allocations of one
+ * lowered {@link com.oracle.graal.nodes.virtual.CommitAllocationNode}, so that they bump the TLAB
+ * top only once. The allocations are replaced by {@link ReservedNewInstanceNode}s that use memory
+ * reserved by a {@link TLABReservationNode}.
+ *
+ * The reserved memory must be formatted before the next safepoint, so only initializing writes,
+ * anchors and memory barriers that cannot deoptimize may occur between merged allocations. This
+ * phase must be applied after {@link FrameStateAssignmentPhase}.
+ */
+public class AllocationMergingPhase extends BasePhase<PhaseContext> {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Reserve TLAB memory for adjacent allocations with a single bump of the TLAB top.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> MergeAllocations = new OptionValue<>(true);
+        // @formatter:on
+    }
+
+    /**
+     * The maximum number of bytes reserved at once, so that a failing reservation does not send
+     * too many allocations to the slow path.
+     */
+    private static final int MAXIMUM_RESERVATION_SIZE = 1024;
+
+    private static final DebugMetric metricMergedAllocations = Debug.metric("MergedAllocations");
+    private static final DebugMetric metricTLABReservations = Debug.metric("TLABReservations");
+
+    private final JavaKind wordKind;
+
+    public AllocationMergingPhase(JavaKind wordKind) {
+        this.wordKind = wordKind;
+    }
+
+    @Override
+    protected void run(StructuredGraph graph, PhaseContext context) {
+        assert graph.getGuardsStage().areFrameStatesAtDeopts();
+        List<NewInstanceNode> group = new ArrayList<>();
+        for (AbstractBeginNode begin : graph.getNodes(AbstractBeginNode.TYPE).snapshot()) {
+            int size = 0;
+            FixedNode node = begin.next();
+            while (node instanceof FixedWithNextNode) {
+                FixedNode next = ((FixedWithNextNode) node).next();
+                int instanceSize = allocationSize(node);
+                if (instanceSize > 0) {
+                    if (size + instanceSize > MAXIMUM_RESERVATION_SIZE) {
+                        merge(graph, group, size);
+                        size = 0;
+                    }
+                    group.add((NewInstanceNode) node);
+                    size += instanceSize;
+                } else if (!canPrecedeAllocation(node)) {
+                    merge(graph, group, size);
+                    size = 0;
+                }
+                node = next;
+            }
+            merge(graph, group, size);
+        }
+    }
+
+    /**
+     * Gets the size of the instance allocated by {@code node} if it can be merged with other
+     * allocations, or zero otherwise.
+     */
+    private static int allocationSize(FixedNode node) {
+        if (node.getClass() == NewInstanceNode.class) {
+            HotSpotResolvedObjectType type = (HotSpotResolvedObjectType) ((NewInstanceNode) node).instanceClass();
+            if (type.isInitialized()) {
+                return Math.max(type.instanceSize(), 0);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Determines whether {@code node} can be placed between merged allocations, i.e., whether it
+     * is guaranteed not to reach a safepoint.
+     */
+    private static boolean canPrecedeAllocation(FixedNode node) {
+        if (node instanceof DeoptimizingNode && ((DeoptimizingNode) node).canDeoptimize()) {
+            return false;
+        }
+        return node instanceof WriteNode || node instanceof FixedValueAnchorNode || node instanceof MembarNode;
+    }
+
+    private void merge(StructuredGraph graph, List<NewInstanceNode> group, int size) {
+        if (group.size() > 1) {
+            TLABReservationNode reservation = graph.add(new TLABReservationNode(size, wordKind));
+            graph.addBeforeFixed(group.get(0), reservation);
+            int offset = 0;
+            for (NewInstanceNode allocation : group) {
+                ReservedNewInstanceNode reserved = graph.add(new ReservedNewInstanceNode(allocation.instanceClass(), allocation.fillContents(), allocation.stateBefore(), reservation, offset));
+                offset += allocationSize(allocation);
+                graph.replaceFixedWithFixed(allocation, reserved);
+            }
+            metricTLABReservations.increment();
+            metricMergedAllocations.add(group.size());
+        }
+        group.clear();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.phases;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.vm.ci.hotspot.HotSpotResolvedObjectType;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.ResolvedJavaField;
+
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.hotspot.nodes.StackNewInstanceNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.LogicConstantNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.calc.IsNullNode;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.extended.FixedValueAnchorNode;
+import com.oracle.graal.nodes.java.NewInstanceNode;
+import com.oracle.graal.nodes.memory.FloatingReadNode;
+import com.oracle.graal.nodes.memory.ReadNode;
+import com.oracle.graal.nodes.memory.WriteNode;
+import com.oracle.graal.nodes.memory.address.OffsetAddressNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.common.FrameStateAssignmentPhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+/**
+ * Allocates objects in the stack frame instead of the heap if they do not escape the compiled
+ * method but could not be scalar replaced by escape analysis, e.g., because they flow into a phi
+ * together with other allocations.
+ *
+ * Stack allocated objects are only accessed through word-typed addresses, so that the garbage
+ * collector never sees them. This restricts the phase to objects that only have primitive fields,
+ * that are only used for field accesses and null checks, and that are not referenced by any frame
+ * state. Allocations inside loops are not considered because the stack space of an allocation is
+ * reserved once per activation of the method.
+ *
+ * This phase must be applied after {@link FrameStateAssignmentPhase}, when frame states only
+ * remain at nodes that can deoptimize.
+ */
+public class StackAllocationPhase extends BasePhase<PhaseContext> {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Allocate objects that do not escape the compiled method but cannot be scalar replaced in the stack frame.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> StackAllocation = new OptionValue<>(false);
+        // @formatter:on
+    }
+
+    /**
+     * Objects larger than this number of bytes are not allocated in the stack frame.
+     */
+    private static final int MAXIMUM_SIZE = 256;
+
+    private static final DebugMetric metricStackAllocations = Debug.metric("StackAllocations");
+
+    private final JavaKind wordKind;
+
+    public StackAllocationPhase(JavaKind wordKind) {
+        this.wordKind = wordKind;
+    }
+
+    @Override
+    protected void run(StructuredGraph graph, PhaseContext context) {
+        assert graph.getGuardsStage().areFrameStatesAtDeopts();
+        ControlFlowGraph cfg = null;
+        NodeBitMap visited = graph.createNodeBitMap();
+        for (NewInstanceNode allocation : graph.getNodes().filter(NewInstanceNode.class).snapshot()) {
+            if (!allocation.isAlive() || visited.isMarked(allocation)) {
+                continue;
+            }
+            if (cfg == null) {
+                cfg = ControlFlowGraph.compute(graph, true, true, false, false);
+            }
+            AllocationGroup group = new AllocationGroup(visited);
+            if (group.collect(allocation, cfg)) {
+                group.allocateOnStack(graph);
+            }
+        }
+    }
+
+    /**
+     * The allocations that flow into a common phi and therefore have to be allocated in the stack
+     * frame together, along with the nodes that refer to them.
+     */
+    private final class AllocationGroup {
+
+        private final NodeBitMap visited;
+        private final List<NewInstanceNode> allocations = new ArrayList<>();
+        private final List<FixedValueAnchorNode> anchors = new ArrayList<>();
+        private final List<ValuePhiNode> phis = new ArrayList<>();
+        private final List<IsNullNode> nullChecks = new ArrayList<>();
+
+        AllocationGroup(NodeBitMap visited) {
+            this.visited = visited;
+        }
+
+        boolean collect(NewInstanceNode start, ControlFlowGraph cfg) {
+            ArrayDeque<ValueNode> worklist = new ArrayDeque<>();
+            visited.mark(start);
+            worklist.push(start);
+            while (!worklist.isEmpty()) {
+                ValueNode node = worklist.pop();
+                if (node instanceof NewInstanceNode) {
+                    NewInstanceNode allocation = (NewInstanceNode) node;
+                    if (!canAllocateOnStack(allocation, cfg)) {
+                        return false;
+                    }
+                    allocations.add(allocation);
+                } else if (node instanceof FixedValueAnchorNode) {
+                    anchors.add((FixedValueAnchorNode) node);
+                    addToGroup(((FixedValueAnchorNode) node).object(), worklist);
+                } else if (node instanceof ValuePhiNode) {
+                    phis.add((ValuePhiNode) node);
+                    for (ValueNode value : ((ValuePhiNode) node).values()) {
+                        addToGroup(value, worklist);
+                    }
+                } else {
+                    // a phi input that is not a stack allocation candidate
+                    return false;
+                }
+                for (Node usage : node.usages()) {
+                    if (usage instanceof FixedValueAnchorNode || usage instanceof ValuePhiNode) {
+                        addToGroup((ValueNode) usage, worklist);
+                    } else if (usage instanceof IsNullNode) {
+                        nullChecks.add((IsNullNode) usage);
+                    } else if (!(usage instanceof OffsetAddressNode && isFieldAccess((OffsetAddressNode) usage, node))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void addToGroup(ValueNode node, ArrayDeque<ValueNode> worklist) {
+            if (!visited.isMarked(node)) {
+                visited.mark(node);
+                worklist.push(node);
+            }
+        }
+
+        void allocateOnStack(StructuredGraph graph) {
+            for (NewInstanceNode allocation : allocations) {
+                StackNewInstanceNode stackAllocation = graph.add(new StackNewInstanceNode(allocation.instanceClass(), allocation.fillContents(), wordKind));
+                FrameState stateBefore = allocation.stateBefore();
+                graph.replaceFixedWithFixed(allocation, stackAllocation);
+                if (stateBefore != null) {
+                    GraphUtil.tryKillUnused(stateBefore);
+                }
+                metricStackAllocations.increment();
+            }
+            for (FixedValueAnchorNode anchor : anchors) {
+                anchor.replaceAtUsages(anchor.object());
+                graph.removeFixed(anchor);
+            }
+            Stamp wordStamp = StampFactory.forKind(wordKind);
+            for (ValuePhiNode phi : phis) {
+                phi.setStamp(wordStamp);
+            }
+            for (IsNullNode nullCheck : nullChecks) {
+                nullCheck.replaceAtUsagesAndDelete(LogicConstantNode.contradiction(graph));
+            }
+        }
+    }
+
+    private static boolean canAllocateOnStack(NewInstanceNode allocation, ControlFlowGraph cfg) {
+        HotSpotResolvedObjectType type = (HotSpotResolvedObjectType) allocation.instanceClass();
+        if (!type.isInitialized() || type.hasFinalizer() || type.instanceSize() > MAXIMUM_SIZE) {
+            return false;
+        }
+        for (ResolvedJavaField field : type.getInstanceFields(true)) {
+            if (!field.getJavaKind().isPrimitive()) {
+                return false;
+            }
+        }
+        return cfg.blockFor(allocation).getLoop() == null;
+    }
+
+    /**
+     * Checks that {@code address} is only used to access a field of {@code object}.
+     */
+    private static boolean isFieldAccess(OffsetAddressNode address, ValueNode object) {
+        if (address.getBase() != object || !address.getOffset().isConstant()) {
+            return false;
+        }
+        for (Node usage : address.usages()) {
+            if (!(usage instanceof ReadNode || usage instanceof FloatingReadNode || usage instanceof WriteNode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -22,6 +22,7 @@
  */
 package com.oracle.graal.hotspot.replacements;
 
+import static com.oracle.graal.asm.NumUtil.roundUp;
 import static com.oracle.graal.compiler.common.GraalOptions.SnippetCounters;
 import static com.oracle.graal.compiler.common.calc.UnsignedMath.belowThan;
 import static com.oracle.graal.hotspot.nodes.CStringNode.cstring;
@@ -85,8 +86,12 @@ import com.oracle.graal.graph.Node.NodeIntrinsic;
 import com.oracle.graal.hotspot.HotSpotBackend;
 import com.oracle.graal.hotspot.meta.HotSpotProviders;
 import com.oracle.graal.hotspot.meta.HotSpotRegistersProvider;
+import com.oracle.graal.hotspot.nodes.AllocaNode;
 import com.oracle.graal.hotspot.nodes.DimensionsNode;
 import com.oracle.graal.hotspot.nodes.PrefetchAllocateNode;
+import com.oracle.graal.hotspot.nodes.ReservedNewInstanceNode;
+import com.oracle.graal.hotspot.nodes.StackNewInstanceNode;
+import com.oracle.graal.hotspot.nodes.TLABReservationNode;
 import com.oracle.graal.hotspot.nodes.type.KlassPointerStamp;
 import com.oracle.graal.hotspot.word.KlassPointer;
 import com.oracle.graal.nodes.ConstantNode;
@@ -206,6 +211,51 @@ public class NewObjectSnippets implements Snippets {
     @NodeIntrinsic(value = ForeignCallNode.class, returnStampIsNonNull = true)
     public static native Object newInstance(@ConstantNodeParameter ForeignCallDescriptor descriptor, KlassPointer hub);
 
+    /**
+     * Reserves {@code size} bytes in the TLAB for several allocations.
+     *
+     * @return the start of the reserved memory or zero if the TLAB is too small
+     */
+    @Snippet
+    public static Word reserveTLAB(@ConstantParameter int size, @ConstantParameter Register threadRegister) {
+        Word thread = registerAsWord(threadRegister);
+        Word top = readTlabTop(thread);
+        Word end = readTlabEnd(thread);
+        Word newTop = top.add(size);
+        if (useTLAB() && probability(FAST_PATH_PROBABILITY, newTop.belowOrEqual(end))) {
+            writeTlabTop(thread, newTop);
+            emitPrefetchAllocate(newTop, false);
+            return top;
+        }
+        return Word.zero();
+    }
+
+    @Snippet
+    public static Object allocateReservedInstance(@ConstantParameter int size, Word reservation, @ConstantParameter int offset, KlassPointer hub, Word prototypeMarkWord,
+                    @ConstantParameter boolean fillContents, @ConstantParameter String typeContext) {
+        Object result;
+        if (probability(FAST_PATH_PROBABILITY, reservation.notEqual(0))) {
+            new_reserved.inc();
+            result = formatObject(hub, size, reservation.add(offset), prototypeMarkWord, fillContents, true, true);
+        } else {
+            new_stub.inc();
+            result = newInstance(HotSpotBackend.NEW_INSTANCE, hub);
+        }
+        profileAllocation("instance", size, typeContext);
+        return piCast(verifyOop(result), StampFactory.forNodeIntrinsic());
+    }
+
+    /**
+     * Allocates an instance in the stack frame of the method. The object is only accessed through
+     * the returned address but gets the same header as an object allocated in the heap.
+     */
+    @Snippet
+    public static Word allocateInstanceOnStack(@ConstantParameter int size, @ConstantParameter int slots, KlassPointer hub, Word prototypeMarkWord, @ConstantParameter boolean fillContents) {
+        Word memory = AllocaNode.alloca(slots);
+        formatObject(hub, size, memory, prototypeMarkWord, fillContents, true, false);
+        return memory;
+    }
+
     @Snippet
     public static Object allocateInstanceDynamic(Class<?> type, @ConstantParameter boolean fillContents, @ConstantParameter Register threadRegister) {
         if (probability(SLOW_PATH_PROBABILITY, type == null || DynamicNewInstanceNode.throwsInstantiationException(type))) {
@@ -476,6 +526,9 @@ public class NewObjectSnippets implements Snippets {
     public static class Templates extends AbstractTemplates {
 
         private final SnippetInfo allocateInstance = snippet(NewObjectSnippets.class, "allocateInstance", INIT_LOCATION, MARK_WORD_LOCATION, HUB_WRITE_LOCATION, TLAB_TOP_LOCATION, TLAB_END_LOCATION);
+        private final SnippetInfo reserveTLAB = snippet(NewObjectSnippets.class, "reserveTLAB", TLAB_TOP_LOCATION, TLAB_END_LOCATION);
+        private final SnippetInfo allocateReservedInstance = snippet(NewObjectSnippets.class, "allocateReservedInstance", INIT_LOCATION, MARK_WORD_LOCATION, HUB_WRITE_LOCATION);
+        private final SnippetInfo allocateInstanceOnStack = snippet(NewObjectSnippets.class, "allocateInstanceOnStack", INIT_LOCATION, MARK_WORD_LOCATION, HUB_WRITE_LOCATION);
         private final SnippetInfo allocateArray = snippet(NewObjectSnippets.class, "allocateArray", INIT_LOCATION, MARK_WORD_LOCATION, HUB_WRITE_LOCATION, TLAB_TOP_LOCATION, TLAB_END_LOCATION);
         private final SnippetInfo allocateArrayDynamic = snippet(NewObjectSnippets.class, "allocateArrayDynamic", INIT_LOCATION, MARK_WORD_LOCATION, HUB_WRITE_LOCATION, TLAB_TOP_LOCATION,
                         TLAB_END_LOCATION);
@@ -512,6 +565,64 @@ public class NewObjectSnippets implements Snippets {
             template.instantiate(providers.getMetaAccess(), newInstanceNode, DEFAULT_REPLACER, args);
         }
 
+        /**
+         * Lowers a {@link TLABReservationNode}.
+         */
+        public void lower(TLABReservationNode reservationNode, HotSpotRegistersProvider registers, LoweringTool tool) {
+            StructuredGraph graph = reservationNode.graph();
+            Arguments args = new Arguments(reserveTLAB, graph.getGuardsStage(), tool.getLoweringStage());
+            args.addConst("size", reservationNode.size());
+            args.addConst("threadRegister", registers.getThreadRegister());
+
+            SnippetTemplate template = template(args);
+            Debug.log("Lowering reserveTLAB in %s: node=%s, template=%s, arguments=%s", graph, reservationNode, template, args);
+            template.instantiate(providers.getMetaAccess(), reservationNode, DEFAULT_REPLACER, args);
+        }
+
+        /**
+         * Lowers a {@link ReservedNewInstanceNode}.
+         */
+        public void lower(ReservedNewInstanceNode newInstanceNode, LoweringTool tool) {
+            StructuredGraph graph = newInstanceNode.graph();
+            HotSpotResolvedObjectType type = (HotSpotResolvedObjectType) newInstanceNode.instanceClass();
+            ConstantNode hub = ConstantNode.forConstant(KlassPointerStamp.klassNonNull(), type.klass(), providers.getMetaAccess(), graph);
+            int size = instanceSize(type);
+
+            Arguments args = new Arguments(allocateReservedInstance, graph.getGuardsStage(), tool.getLoweringStage());
+            args.addConst("size", size);
+            args.add("reservation", newInstanceNode.reservation());
+            args.addConst("offset", newInstanceNode.offset());
+            args.add("hub", hub);
+            args.add("prototypeMarkWord", type.prototypeMarkWord());
+            args.addConst("fillContents", newInstanceNode.fillContents());
+            args.addConst("typeContext", HotspotSnippetsOptions.ProfileAllocations.getValue() ? type.toJavaName(false) : "");
+
+            SnippetTemplate template = template(args);
+            Debug.log("Lowering allocateReservedInstance in %s: node=%s, template=%s, arguments=%s", graph, newInstanceNode, template, args);
+            template.instantiate(providers.getMetaAccess(), newInstanceNode, DEFAULT_REPLACER, args);
+        }
+
+        /**
+         * Lowers a {@link StackNewInstanceNode}.
+         */
+        public void lower(StackNewInstanceNode newInstanceNode, LoweringTool tool) {
+            StructuredGraph graph = newInstanceNode.graph();
+            HotSpotResolvedObjectType type = (HotSpotResolvedObjectType) newInstanceNode.instanceClass();
+            ConstantNode hub = ConstantNode.forConstant(KlassPointerStamp.klassNonNull(), type.klass(), providers.getMetaAccess(), graph);
+            int size = instanceSize(type);
+
+            Arguments args = new Arguments(allocateInstanceOnStack, graph.getGuardsStage(), tool.getLoweringStage());
+            args.addConst("size", size);
+            args.addConst("slots", roundUp(size, target.wordSize) / target.wordSize);
+            args.add("hub", hub);
+            args.add("prototypeMarkWord", type.prototypeMarkWord());
+            args.addConst("fillContents", newInstanceNode.fillContents());
+
+            SnippetTemplate template = template(args);
+            Debug.log("Lowering allocateInstanceOnStack in %s: node=%s, template=%s, arguments=%s", graph, newInstanceNode, template, args);
+            template.instantiate(providers.getMetaAccess(), newInstanceNode, DEFAULT_REPLACER, args);
+        }
+
         /**
          * Lowers a {@link NewArrayNode}.
          */
@@ -618,6 +729,7 @@ public class NewObjectSnippets implements Snippets {
     private static final SnippetCounter new_seqInit = new SnippetCounter(countersNew, "tlabSeqInit", "TLAB alloc with unrolled zeroing");
     private static final SnippetCounter new_loopInit = new SnippetCounter(countersNew, "tlabLoopInit", "TLAB alloc with zeroing in a loop");
     private static final SnippetCounter new_stub = new SnippetCounter(countersNew, "stub", "alloc and zeroing via stub");
+    private static final SnippetCounter new_reserved = new SnippetCounter(countersNew, "reserved", "alloc in memory reserved for several objects");
 
     private static final SnippetCounter.Group countersNewArray = SnippetCounters.getValue() ? new SnippetCounter.Group("NewArray") : null;
     private static final SnippetCounter newarray_loopInit = new SnippetCounter(countersNewArray, "tlabLoopInit", "TLAB alloc with zeroing in a loop");
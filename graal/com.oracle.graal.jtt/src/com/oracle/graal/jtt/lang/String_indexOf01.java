@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.jtt.lang;
+
+import org.junit.Test;
+
+import com.oracle.graal.jtt.JTTTest;
+
+/*
+ * Tests String.indexOf(int, int) for strings of up to 4K characters.
+ */
+public class String_indexOf01 extends JTTTest {
+
+    static final int[] LENGTHS = {0, 1, 2, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 127, 128, 129, 255, 256, 1000, 1023, 1024, 1025, 4095, 4096};
+
+    static String createString(int length, int position, char marker) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        if (position >= 0 && position < length) {
+            chars[position] = marker;
+        }
+        return new String(chars);
+    }
+
+    public static int test(int length, int position, int fromIndex) {
+        return createString(length, position, '#').indexOf('#', fromIndex);
+    }
+
+    public static int testSupplementary(int length, int position, int fromIndex) {
+        String s = createString(length, position, Character.highSurrogate(0x1F600));
+        if (position >= 0 && position + 1 < length) {
+            s = s.substring(0, position + 1) + Character.lowSurrogate(0x1F600) + s.substring(position + 2);
+        }
+        return s.indexOf(0x1F600, fromIndex);
+    }
+
+    public static int testValue(int length, int ch) {
+        return createString(length, -1, '#').indexOf(ch, 0);
+    }
+
+    @Test
+    public void run0() throws Throwable {
+        runTest("test", 0, 0, 0);
+        runTest("test", 16, 5, 0);
+        runTest("test", 16, 5, 6);
+        runTest("test", 100, 99, -5);
+    }
+
+    @Test
+    public void run1() throws Throwable {
+        for (int length : LENGTHS) {
+            for (int position : new int[]{-1, 0, length / 2, length - 1}) {
+                runTest(EMPTY, false, false, "test", length, position, 0);
+                runTest(EMPTY, false, false, "test", length, position, length / 3);
+            }
+        }
+    }
+
+    @Test
+    public void run2() throws Throwable {
+        runTest(EMPTY, false, false, "test", 64, 10, 64);
+        runTest(EMPTY, false, false, "test", 64, 10, 100);
+        runTest(EMPTY, false, false, "test", 64, 10, Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void run3() throws Throwable {
+        for (int length : LENGTHS) {
+            runTest(EMPTY, false, false, "testSupplementary", length, length / 2, 0);
+            runTest(EMPTY, false, false, "testSupplementary", length, -1, 0);
+        }
+    }
+
+    @Test
+    public void run4() throws Throwable {
+        runTest(EMPTY, false, false, "testValue", 100, 'c');
+        runTest(EMPTY, false, false, "testValue", 100, 'z');
+        runTest(EMPTY, false, false, "testValue", 100, -1);
+        runTest(EMPTY, false, false, "testValue", 100, 0x10000 + 'c');
+        runTest(EMPTY, false, false, "testValue", 100, Character.MAX_CODE_POINT + 1);
+    }
+}
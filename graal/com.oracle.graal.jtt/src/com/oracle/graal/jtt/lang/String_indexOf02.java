@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.jtt.lang;
+
+import org.junit.Test;
+
+import com.oracle.graal.jtt.JTTTest;
+
+/*
+ * Tests String.indexOf(String, int) for strings of up to 4K characters.
+ */
+public class String_indexOf02 extends JTTTest {
+
+    public static int test(int length, int position, String target, int fromIndex) {
+        String s = String_indexOf01.createString(length, -1, '#');
+        if (position >= 0 && position + target.length() <= length) {
+            s = s.substring(0, position) + target + s.substring(position + target.length());
+        }
+        return s.indexOf(target, fromIndex);
+    }
+
+    public static int testNull(String s, String target) {
+        return s.indexOf(target, 0);
+    }
+
+    @Test
+    public void run0() throws Throwable {
+        runTest("test", 0, 0, "", 0);
+        runTest("test", 0, 0, "#", 0);
+        runTest("test", 16, 3, "#$", 0);
+        runTest("test", 16, 3, "", 20);
+    }
+
+    @Test
+    public void run1() throws Throwable {
+        for (int length : String_indexOf01.LENGTHS) {
+            for (int position : new int[]{-1, 0, length / 2, length - 3}) {
+                runTest(EMPTY, false, false, "test", length, position, "#$%", 0);
+                runTest(EMPTY, false, false, "test", length, position, "#$%", length / 3);
+                // The first character occurs often, the full target never.
+                runTest(EMPTY, false, false, "test", length, position, "ab#", -1);
+                runTest(EMPTY, false, false, "test", length, position, "abc", 0);
+            }
+        }
+    }
+
+    @Test
+    public void run2() throws Throwable {
+        runTest(EMPTY, false, false, "testNull", "abc", null);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64;
+
+import static com.oracle.graal.lir.LIRInstruction.OperandFlag.REG;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+
+import jdk.vm.ci.amd64.AMD64Kind;
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LIRKind;
+import jdk.vm.ci.meta.Value;
+import sun.misc.Unsafe;
+
+import com.oracle.graal.asm.Label;
+import com.oracle.graal.asm.amd64.AMD64Address;
+import com.oracle.graal.asm.amd64.AMD64Address.Scale;
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic;
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
+import com.oracle.graal.asm.amd64.AMD64MacroAssembler;
+import com.oracle.graal.lir.LIRInstructionClass;
+import com.oracle.graal.lir.Opcode;
+import com.oracle.graal.lir.asm.CompilationResultBuilder;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+
+/**
+ * Emits code which lexicographically compares two {@code char} arrays. The common prefix is
+ * compared with 128-bit (16-byte) SSE2 vector compares of 8 characters at a time, the remaining
+ * characters are compared one by one.
+ */
+@Opcode("ARRAY_COMPARE_TO")
+public final class AMD64ArrayCompareToOp extends AMD64LIRInstruction {
+    public static final LIRInstructionClass<AMD64ArrayCompareToOp> TYPE = LIRInstructionClass.create(AMD64ArrayCompareToOp.class);
+
+    private final int arrayBaseOffset;
+    private final Scale arrayIndexScale;
+
+    @Def({REG}) protected Value resultValue;
+    @Alive({REG}) protected Value array1Value;
+    @Alive({REG}) protected Value array2Value;
+    @Alive({REG}) protected Value length1Value;
+    @Alive({REG}) protected Value length2Value;
+    @Temp({REG}) protected Value index;
+    @Temp({REG}) protected Value count;
+    @Temp({REG}) protected Value temp1;
+    @Temp({REG}) protected Value temp2;
+    @Temp({REG}) protected Value vectorTemp1;
+    @Temp({REG}) protected Value vectorTemp2;
+
+    /**
+     * Creates an op with the semantics of {@link String#compareTo(String)}: the result is the
+     * difference of the first pair of differing elements, or the difference of the lengths if one
+     * array is a prefix of the other.
+     */
+    public AMD64ArrayCompareToOp(LIRGeneratorTool tool, JavaKind kind, Value result, Value array1, Value array2, Value length1, Value length2) {
+        super(TYPE);
+        assert kind == JavaKind.Char : "only char arrays are supported: " + kind;
+
+        Class<?> arrayClass = Array.newInstance(kind.toJavaClass(), 0).getClass();
+        this.arrayBaseOffset = UNSAFE.arrayBaseOffset(arrayClass);
+        this.arrayIndexScale = Scale.fromInt(UNSAFE.arrayIndexScale(arrayClass));
+
+        this.resultValue = result;
+        this.array1Value = array1;
+        this.array2Value = array2;
+        this.length1Value = length1;
+        this.length2Value = length2;
+
+        this.index = tool.newVariable(LIRKind.value(tool.target().arch.getWordKind()));
+        this.count = tool.newVariable(LIRKind.value(tool.target().arch.getWordKind()));
+        this.temp1 = tool.newVariable(LIRKind.value(AMD64Kind.DWORD));
+        this.temp2 = tool.newVariable(LIRKind.value(AMD64Kind.DWORD));
+        this.vectorTemp1 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+        this.vectorTemp2 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+    }
+
+    /**
+     * Number of characters compared by one vector compare.
+     */
+    private static final int VECTOR_CHARS = 8;
+
+    /**
+     * Byte mask produced by {@code pmovmskb} if all 16 bytes of a vector compare are equal.
+     */
+    private static final int ALL_EQUAL_MASK = 0xFFFF;
+
+    @Override
+    public void emitCode(CompilationResultBuilder crb, AMD64MacroAssembler masm) {
+        Register result = asRegister(resultValue);
+        Register array1 = asRegister(array1Value);
+        Register array2 = asRegister(array2Value);
+        Register length1 = asRegister(length1Value);
+        Register length2 = asRegister(length2Value);
+        Register idx = asRegister(index);
+        Register cnt = asRegister(count);
+        Register tmp1 = asRegister(temp1);
+        Register tmp2 = asRegister(temp2);
+        Register vector1 = asRegister(vectorTemp1, AMD64Kind.DOUBLE);
+        Register vector2 = asRegister(vectorTemp2, AMD64Kind.DOUBLE);
+
+        Label vectorLoop = new Label();
+        Label vectorMismatch = new Label();
+        Label tail = new Label();
+        Label tailLoop = new Label();
+        Label charMismatch = new Label();
+        Label charDifference = new Label();
+        Label lengthDifference = new Label();
+        Label done = new Label();
+
+        // Compare min(length1, length2) characters.
+        masm.movl(cnt, length1);
+        masm.cmpl(cnt, length2);
+        masm.cmovl(ConditionFlag.Greater, cnt, length2);
+        masm.xorl(idx, idx);
+
+        masm.align(crb.target.wordSize * 2);
+        masm.bind(vectorLoop);
+        masm.cmpq(cnt, VECTOR_CHARS);
+        masm.jcc(ConditionFlag.Less, tail);
+        masm.movdqu(vector1, new AMD64Address(array1, idx, arrayIndexScale, arrayBaseOffset));
+        masm.movdqu(vector2, new AMD64Address(array2, idx, arrayIndexScale, arrayBaseOffset));
+        masm.pcmpeqw(vector1, vector2);
+        masm.pmovmskb(tmp1, vector1);
+        masm.cmpl(tmp1, ALL_EQUAL_MASK);
+        masm.jcc(ConditionFlag.NotEqual, vectorMismatch);
+        masm.addq(idx, VECTOR_CHARS);
+        masm.subq(cnt, VECTOR_CHARS);
+        masm.jmp(vectorLoop);
+
+        // The lowest clear bit of the mask belongs to the first differing character.
+        masm.bind(vectorMismatch);
+        AMD64BinaryArithmetic.XOR.getMIOpcode(OperandSize.DWORD, false).emit(masm, OperandSize.DWORD, tmp1, ALL_EQUAL_MASK);
+        AMD64RMOp.BSF.emit(masm, OperandSize.DWORD, tmp1, tmp1);
+        masm.shrq(tmp1, 1);
+        masm.addq(idx, tmp1);
+        masm.jmp(charMismatch);
+
+        masm.bind(tail);
+        masm.testq(cnt, cnt);
+        masm.jcc(ConditionFlag.Zero, lengthDifference);
+        masm.bind(tailLoop);
+        masm.movzwl(tmp1, new AMD64Address(array1, idx, arrayIndexScale, arrayBaseOffset));
+        masm.movzwl(tmp2, new AMD64Address(array2, idx, arrayIndexScale, arrayBaseOffset));
+        masm.cmpl(tmp1, tmp2);
+        masm.jcc(ConditionFlag.NotEqual, charDifference);
+        masm.incrementq(idx, 1);
+        masm.decrementq(cnt, 1);
+        masm.jcc(ConditionFlag.NotZero, tailLoop);
+
+        // Only the low 32 bits of the differences are used.
+        masm.bind(lengthDifference);
+        masm.movl(result, length1);
+        masm.subq(result, length2);
+        masm.jmpb(done);
+
+        masm.bind(charMismatch);
+        masm.movzwl(tmp1, new AMD64Address(array1, idx, arrayIndexScale, arrayBaseOffset));
+        masm.movzwl(tmp2, new AMD64Address(array2, idx, arrayIndexScale, arrayBaseOffset));
+
+        masm.bind(charDifference);
+        masm.movl(result, tmp1);
+        masm.subq(result, tmp2);
+
+        masm.bind(done);
+    }
+
+    private static final Unsafe UNSAFE = initUnsafe();
+
+    private static Unsafe initUnsafe() {
+        try {
+            return Unsafe.getUnsafe();
+        } catch (SecurityException se) {
+            try {
+                Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return (Unsafe) theUnsafe.get(Unsafe.class);
+            } catch (Exception e) {
+                throw new RuntimeException("exception while trying to get Unsafe", e);
+            }
+        }
+    }
+}
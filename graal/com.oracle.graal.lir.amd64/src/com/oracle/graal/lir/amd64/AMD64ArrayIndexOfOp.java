@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64;
+
+import static com.oracle.graal.lir.LIRInstruction.OperandFlag.REG;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+
+import jdk.vm.ci.amd64.AMD64Kind;
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LIRKind;
+import jdk.vm.ci.meta.Value;
+import sun.misc.Unsafe;
+
+import com.oracle.graal.asm.Label;
+import com.oracle.graal.asm.amd64.AMD64Address;
+import com.oracle.graal.asm.amd64.AMD64Address.Scale;
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
+import com.oracle.graal.asm.amd64.AMD64MacroAssembler;
+import com.oracle.graal.lir.LIRInstructionClass;
+import com.oracle.graal.lir.Opcode;
+import com.oracle.graal.lir.asm.CompilationResultBuilder;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+
+/**
+ * Emits code which searches a {@code char} array for the first occurrence of a value. The array is
+ * scanned with 128-bit (16-byte) SSE2 vector compares of 8 characters at a time, the remaining
+ * characters are compared one by one.
+ */
+@Opcode("ARRAY_INDEX_OF")
+public final class AMD64ArrayIndexOfOp extends AMD64LIRInstruction {
+    public static final LIRInstructionClass<AMD64ArrayIndexOfOp> TYPE = LIRInstructionClass.create(AMD64ArrayIndexOfOp.class);
+
+    private final int arrayBaseOffset;
+    private final Scale arrayIndexScale;
+
+    @Def({REG}) protected Value resultValue;
+    @Alive({REG}) protected Value arrayValue;
+    @Alive({REG}) protected Value fromIndexValue;
+    @Alive({REG}) protected Value lengthValue;
+    @Alive({REG}) protected Value searchValue;
+    @Temp({REG}) protected Value index;
+    @Temp({REG}) protected Value count;
+    @Temp({REG}) protected Value temp;
+    @Temp({REG}) protected Value vectorTemp1;
+    @Temp({REG}) protected Value vectorTemp2;
+
+    /**
+     * Creates an op that returns the index of the first element of {@code array} in the range
+     * [{@code fromIndex}, {@code length}) that is equal to {@code value}, or -1 if there is none.
+     * {@code fromIndex} must not be negative and {@code value} must be in the range of
+     * {@code char}.
+     */
+    public AMD64ArrayIndexOfOp(LIRGeneratorTool tool, JavaKind kind, Value result, Value array, Value fromIndex, Value length, Value value) {
+        super(TYPE);
+        assert kind == JavaKind.Char : "only char arrays are supported: " + kind;
+
+        Class<?> arrayClass = Array.newInstance(kind.toJavaClass(), 0).getClass();
+        this.arrayBaseOffset = UNSAFE.arrayBaseOffset(arrayClass);
+        this.arrayIndexScale = Scale.fromInt(UNSAFE.arrayIndexScale(arrayClass));
+
+        this.resultValue = result;
+        this.arrayValue = array;
+        this.fromIndexValue = fromIndex;
+        this.lengthValue = length;
+        this.searchValue = value;
+
+        this.index = tool.newVariable(LIRKind.value(tool.target().arch.getWordKind()));
+        this.count = tool.newVariable(LIRKind.value(tool.target().arch.getWordKind()));
+        this.temp = tool.newVariable(LIRKind.value(AMD64Kind.DWORD));
+        this.vectorTemp1 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+        this.vectorTemp2 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+    }
+
+    /**
+     * Number of characters compared by one vector compare.
+     */
+    private static final int VECTOR_CHARS = 8;
+
+    @Override
+    public void emitCode(CompilationResultBuilder crb, AMD64MacroAssembler masm) {
+        Register result = asRegister(resultValue);
+        Register array = asRegister(arrayValue);
+        Register value = asRegister(searchValue);
+        Register idx = asRegister(index);
+        Register cnt = asRegister(count);
+        Register tmp = asRegister(temp);
+        Register searchVector = asRegister(vectorTemp1, AMD64Kind.DOUBLE);
+        Register vector = asRegister(vectorTemp2, AMD64Kind.DOUBLE);
+
+        Label vectorLoop = new Label();
+        Label vectorFound = new Label();
+        Label tail = new Label();
+        Label tailLoop = new Label();
+        Label found = new Label();
+        Label notFound = new Label();
+        Label done = new Label();
+
+        // The 32-bit moves zero-extend the non-negative index and count.
+        masm.movl(idx, asRegister(fromIndexValue));
+        masm.movl(cnt, asRegister(lengthValue));
+        masm.subq(cnt, idx);
+        masm.jcc(ConditionFlag.LessEqual, notFound);
+
+        // Broadcast the searched character into all 8 lanes.
+        AMD64RMOp.MOVD.emit(masm, OperandSize.DWORD, searchVector, value);
+        masm.pshuflw(searchVector, searchVector, 0);
+        masm.pshufd(searchVector, searchVector, 0);
+
+        masm.align(crb.target.wordSize * 2);
+        masm.bind(vectorLoop);
+        masm.cmpq(cnt, VECTOR_CHARS);
+        masm.jcc(ConditionFlag.Less, tail);
+        masm.movdqu(vector, new AMD64Address(array, idx, arrayIndexScale, arrayBaseOffset));
+        masm.pcmpeqw(vector, searchVector);
+        masm.pmovmskb(tmp, vector);
+        masm.testl(tmp, tmp);
+        masm.jcc(ConditionFlag.NotZero, vectorFound);
+        masm.addq(idx, VECTOR_CHARS);
+        masm.subq(cnt, VECTOR_CHARS);
+        masm.jmp(vectorLoop);
+
+        // Each matching character sets two bits in the byte mask.
+        masm.bind(vectorFound);
+        AMD64RMOp.BSF.emit(masm, OperandSize.DWORD, tmp, tmp);
+        masm.shrq(tmp, 1);
+        masm.addq(idx, tmp);
+        masm.jmp(found);
+
+        masm.bind(tail);
+        masm.testq(cnt, cnt);
+        masm.jcc(ConditionFlag.Zero, notFound);
+        masm.bind(tailLoop);
+        masm.movzwl(tmp, new AMD64Address(array, idx, arrayIndexScale, arrayBaseOffset));
+        masm.cmpl(tmp, value);
+        masm.jcc(ConditionFlag.Equal, found);
+        masm.incrementq(idx, 1);
+        masm.decrementq(cnt, 1);
+        masm.jcc(ConditionFlag.NotZero, tailLoop);
+
+        masm.bind(notFound);
+        masm.movl(result, -1);
+        masm.jmpb(done);
+
+        masm.bind(found);
+        masm.movl(result, idx);
+
+        masm.bind(done);
+    }
+
+    private static final Unsafe UNSAFE = initUnsafe();
+
+    private static Unsafe initUnsafe() {
+        try {
+            return Unsafe.getUnsafe();
+        } catch (SecurityException se) {
+            try {
+                Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return (Unsafe) theUnsafe.get(Unsafe.class);
+            } catch (Exception e) {
+                throw new RuntimeException("exception while trying to get Unsafe", e);
+            }
+        }
+    }
+}
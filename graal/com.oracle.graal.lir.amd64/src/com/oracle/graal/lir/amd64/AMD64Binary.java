@@ -88,6 +88,18 @@ public class AMD64Binary {
                 opcode.emit(masm, size, asRegister(result), (AMD64Address) crb.asAddress(y));
             }
         }
+
+        public AMD64RMOp getOpcode() {
+            return opcode;
+        }
+
+        public OperandSize getSize() {
+            return size;
+        }
+
+        public AllocatableValue getResult() {
+            return result;
+        }
     }
 
     /**
@@ -130,6 +142,18 @@ public class AMD64Binary {
                 opcode.emit(masm, size, asRegister(result), (AMD64Address) crb.asAddress(input));
             }
         }
+
+        public AMD64RMOp getOpcode() {
+            return opcode;
+        }
+
+        public OperandSize getSize() {
+            return size;
+        }
+
+        public AllocatableValue getResult() {
+            return result;
+        }
     }
 
     /**
@@ -164,6 +188,18 @@ public class AMD64Binary {
             AMD64Move.move(crb, masm, result, x);
             opcode.emit(masm, size, asRegister(result), y);
         }
+
+        public AMD64MIOp getOpcode() {
+            return opcode;
+        }
+
+        public OperandSize getSize() {
+            return size;
+        }
+
+        public AllocatableValue getResult() {
+            return result;
+        }
     }
 
     /**
@@ -84,6 +84,22 @@ public class AMD64BinaryConsumer {
                 opcode.emit(masm, size, asRegister(x), (AMD64Address) crb.asAddress(y));
             }
         }
+
+        public AMD64RMOp getOpcode() {
+            return opcode;
+        }
+
+        public OperandSize getSize() {
+            return size;
+        }
+
+        public AllocatableValue getX() {
+            return x;
+        }
+
+        public AllocatableValue getY() {
+            return y;
+        }
     }
 
     /**
@@ -124,6 +140,22 @@ public class AMD64BinaryConsumer {
                 opcode.emit(masm, size, (AMD64Address) crb.asAddress(x), y);
             }
         }
+
+        public AMD64MIOp getOpcode() {
+            return opcode;
+        }
+
+        public OperandSize getSize() {
+            return size;
+        }
+
+        public AllocatableValue getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
     }
 
     /**
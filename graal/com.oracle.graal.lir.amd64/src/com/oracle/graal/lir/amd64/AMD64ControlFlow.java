@@ -124,6 +124,10 @@ public class AMD64ControlFlow {
         protected void jcc(AMD64MacroAssembler masm, boolean negate, LabelRef target) {
             masm.jcc(negate ? condition.negate() : condition, target.label());
         }
+
+        public ConditionFlag getCondition() {
+            return condition;
+        }
     }
 
     public static final class FloatBranchOp extends BranchOp {
@@ -107,6 +107,22 @@ public class AMD64Unary {
                 opcode.emit(masm, size, asRegister(result), (AMD64Address) crb.asAddress(value));
             }
         }
+
+        public AMD64RMOp getOpcode() {
+            return opcode;
+        }
+
+        public OperandSize getSize() {
+            return size;
+        }
+
+        public AllocatableValue getResult() {
+            return result;
+        }
+
+        public AllocatableValue getInput() {
+            return value;
+        }
     }
 
     /**
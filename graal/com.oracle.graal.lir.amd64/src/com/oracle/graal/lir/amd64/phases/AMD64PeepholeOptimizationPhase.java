@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64.phases;
+
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.ADD;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.AND;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.CMP;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.OR;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.SUB;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic.XOR;
+import static com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize.DWORD;
+import static com.oracle.graal.lir.phases.LIRPhase.Options.LIROptimization;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+
+import java.util.Collections;
+import java.util.List;
+
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.Value;
+
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64BinaryArithmetic;
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.ValueMoveOp;
+import com.oracle.graal.lir.amd64.AMD64Binary;
+import com.oracle.graal.lir.amd64.AMD64BinaryConsumer;
+import com.oracle.graal.lir.amd64.AMD64ControlFlow.BranchOp;
+import com.oracle.graal.lir.amd64.AMD64ControlFlow.FloatBranchOp;
+import com.oracle.graal.lir.amd64.AMD64Unary;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.PostAllocationOptimizationPhase;
+import com.oracle.graal.options.NestedBooleanOptionValue;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+
+/**
+ * Removes instructions that are redundant after register allocation:
+ * <ul>
+ * <li>moves whose source and destination are the same location,</li>
+ * <li>{@code test r, r} and {@code cmp r, 0} in front of a {@link BranchOp} if the previous
+ * instruction is an arithmetic or logic operation on {@code r} that already set the flags the
+ * branch depends on,</li>
+ * <li>zero-extending {@code movl r, r} if the previous instruction is a 32-bit operation on
+ * {@code r}, which implicitly clears the upper half of the register.</li>
+ * </ul>
+ */
+public class AMD64PeepholeOptimizationPhase extends PostAllocationOptimizationPhase {
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Enable peephole optimizations on AMD64 LIR after register allocation.", type = OptionType.Debug)
+        public static final NestedBooleanOptionValue LIROptAMD64Peephole = new NestedBooleanOptionValue(LIROptimization, true);
+        // @formatter:on
+    }
+
+    private static final DebugMetric removedSelfMoves = Debug.metric("AMD64Peephole[removedSelfMoves]");
+    private static final DebugMetric removedTests = Debug.metric("AMD64Peephole[removedTests]");
+    private static final DebugMetric removedZeroExtends = Debug.metric("AMD64Peephole[removedZeroExtends]");
+
+    @Override
+    protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                    PostAllocationOptimizationContext context) {
+        LIR lir = lirGenRes.getLIR();
+        for (AbstractBlockBase<?> block : lir.getControlFlowGraph().getBlocks()) {
+            List<LIRInstruction> instructions = lir.getLIRforBlock(block);
+            if (optimizeBlock(instructions)) {
+                instructions.removeAll(Collections.singleton(null));
+            }
+        }
+    }
+
+    private static boolean optimizeBlock(List<LIRInstruction> instructions) {
+        boolean removed = false;
+        for (int i = 0; i < instructions.size(); i++) {
+            LIRInstruction inst = instructions.get(i);
+            LIRInstruction prev = i > 0 ? instructions.get(i - 1) : null;
+            LIRInstruction next = i + 1 < instructions.size() ? instructions.get(i + 1) : null;
+            if (isSelfMove(inst)) {
+                removedSelfMoves.increment();
+            } else if (prev != null && isRedundantTest(prev, inst, next)) {
+                removedTests.increment();
+            } else if (prev != null && isRedundantZeroExtend(prev, inst)) {
+                removedZeroExtends.increment();
+            } else {
+                continue;
+            }
+            Debug.log("removing %s", inst);
+            instructions.set(i, null);
+            removed = true;
+        }
+        return removed;
+    }
+
+    private static boolean isSelfMove(LIRInstruction inst) {
+        if (inst instanceof ValueMoveOp) {
+            ValueMoveOp move = (ValueMoveOp) inst;
+            return move.getInput().equals(move.getResult());
+        }
+        return false;
+    }
+
+    /**
+     * Checks for {@code op r, y; test r, r; jcc} or {@code op r, y; cmp r, 0; jcc}. The test sets
+     * ZF, SF and PF according to {@code r} and clears CF and OF. Logic operations set the flags in
+     * the same way, while additions and subtractions only agree on ZF, SF and PF.
+     */
+    private static boolean isRedundantTest(LIRInstruction prev, LIRInstruction inst, LIRInstruction next) {
+        if (!(next instanceof BranchOp) || next instanceof FloatBranchOp) {
+            return false;
+        }
+        Value tested;
+        OperandSize size;
+        if (inst instanceof AMD64BinaryConsumer.Op) {
+            AMD64BinaryConsumer.Op test = (AMD64BinaryConsumer.Op) inst;
+            if ((test.getOpcode() != AMD64RMOp.TEST && test.getOpcode() != AMD64RMOp.TESTB) || !sameRegister(test.getX(), test.getY())) {
+                return false;
+            }
+            tested = test.getX();
+            size = test.getSize();
+        } else if (inst instanceof AMD64BinaryConsumer.ConstOp && !(inst instanceof AMD64BinaryConsumer.VMConstOp)) {
+            AMD64BinaryConsumer.ConstOp cmp = (AMD64BinaryConsumer.ConstOp) inst;
+            if (!isMIOpcode(cmp.getOpcode(), cmp.getSize(), CMP) || cmp.getY() != 0 || !isRegister(cmp.getX())) {
+                return false;
+            }
+            tested = cmp.getX();
+            size = cmp.getSize();
+        } else {
+            return false;
+        }
+
+        Object opcode;
+        if (prev instanceof AMD64Binary.Op && sameRegister(((AMD64Binary.Op) prev).getResult(), tested) && ((AMD64Binary.Op) prev).getSize() == size) {
+            opcode = ((AMD64Binary.Op) prev).getOpcode();
+        } else if (prev instanceof AMD64Binary.CommutativeOp && sameRegister(((AMD64Binary.CommutativeOp) prev).getResult(), tested) && ((AMD64Binary.CommutativeOp) prev).getSize() == size) {
+            opcode = ((AMD64Binary.CommutativeOp) prev).getOpcode();
+        } else if (prev instanceof AMD64Binary.ConstOp && sameRegister(((AMD64Binary.ConstOp) prev).getResult(), tested) && ((AMD64Binary.ConstOp) prev).getSize() == size) {
+            opcode = ((AMD64Binary.ConstOp) prev).getOpcode();
+        } else {
+            return false;
+        }
+
+        if (isOpcode(opcode, size, AND) || isOpcode(opcode, size, OR) || isOpcode(opcode, size, XOR)) {
+            return true;
+        }
+        if (isOpcode(opcode, size, ADD) || isOpcode(opcode, size, SUB)) {
+            return usesOnlyResultFlags(((BranchOp) next).getCondition());
+        }
+        return false;
+    }
+
+    private static boolean usesOnlyResultFlags(ConditionFlag condition) {
+        switch (condition) {
+            case Zero:
+            case NotZero:
+            case Equal:
+            case NotEqual:
+            case Negative:
+            case Positive:
+            case Parity:
+            case NoParity:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks for {@code op32 r, y; movl r, r}.
+     */
+    private static boolean isRedundantZeroExtend(LIRInstruction prev, LIRInstruction inst) {
+        if (!(inst instanceof AMD64Unary.RMOp)) {
+            return false;
+        }
+        AMD64Unary.RMOp move = (AMD64Unary.RMOp) inst;
+        if (move.getOpcode() != AMD64RMOp.MOV || move.getSize() != DWORD || !sameRegister(move.getResult(), move.getInput())) {
+            return false;
+        }
+        Value result = move.getResult();
+        if (prev instanceof AMD64Binary.Op) {
+            return ((AMD64Binary.Op) prev).getSize() == DWORD && sameRegister(((AMD64Binary.Op) prev).getResult(), result);
+        } else if (prev instanceof AMD64Binary.CommutativeOp) {
+            return ((AMD64Binary.CommutativeOp) prev).getSize() == DWORD && sameRegister(((AMD64Binary.CommutativeOp) prev).getResult(), result);
+        } else if (prev instanceof AMD64Binary.ConstOp) {
+            return ((AMD64Binary.ConstOp) prev).getSize() == DWORD && sameRegister(((AMD64Binary.ConstOp) prev).getResult(), result);
+        } else if (prev instanceof AMD64Unary.RMOp) {
+            return ((AMD64Unary.RMOp) prev).getSize() == DWORD && sameRegister(((AMD64Unary.RMOp) prev).getResult(), result);
+        }
+        return false;
+    }
+
+    private static boolean isOpcode(Object opcode, OperandSize size, AMD64BinaryArithmetic arithmetic) {
+        return opcode == arithmetic.getRMOpcode(size) || isMIOpcode(opcode, size, arithmetic);
+    }
+
+    private static boolean isMIOpcode(Object opcode, OperandSize size, AMD64BinaryArithmetic arithmetic) {
+        return opcode == arithmetic.getMIOpcode(size, false) || opcode == arithmetic.getMIOpcode(size, true);
+    }
+
+    private static boolean sameRegister(Value a, Value b) {
+        return isRegister(a) && isRegister(b) && asRegister(a).equals(asRegister(b));
+    }
+}
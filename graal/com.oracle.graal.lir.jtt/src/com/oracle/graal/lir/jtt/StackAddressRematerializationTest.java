@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.jtt;
+
+import static com.oracle.graal.compiler.common.BackendOptions.UserOptions.TraceRA;
+import static com.oracle.graal.lir.alloc.lsra.LinearScan.Options.LIROptLSRARematerialize;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.List;
+
+import jdk.vm.ci.amd64.AMD64;
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.Value;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.RematerializableOp;
+import com.oracle.graal.lir.VirtualStackSlot;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+import com.oracle.graal.lir.phases.LIRPhase;
+import com.oracle.graal.lir.phases.PostAllocationOptimizationPhase.PostAllocationOptimizationContext;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Tests the rematerialization of stack slot addresses by the linear scan register allocator. The
+ * specifications compute the address of a stack slot and then keep more values live than there
+ * are registers, so that the address, whose next use is the farthest, is spilled.
+ */
+public class StackAddressRematerializationTest extends LIRTest {
+
+    private static final int PRESSURE = 24;
+
+    private static LIR lir;
+
+    private abstract static class PressureSpec extends LIRTestSpecification {
+
+        @Override
+        public void generate(LIRGeneratorTool gen, Value a) {
+            VirtualStackSlot slot = gen.getResult().getFrameMapBuilder().allocateSpillSlot(a.getLIRKind());
+            gen.emitMove(slot, a);
+            Value address = gen.emitAddress(slot);
+            Value[] values = new Value[PRESSURE];
+            for (int i = 0; i < PRESSURE; i++) {
+                values[i] = gen.getArithmetic().emitAdd(a, gen.emitJavaConstant(JavaConstant.forLong(i)), false);
+            }
+            Value sum = values[0];
+            for (int i = 1; i < PRESSURE; i++) {
+                sum = gen.getArithmetic().emitAdd(sum, values[i], false);
+            }
+            setResult(gen.getArithmetic().emitAdd(sum, useAddress(gen, slot, address), false));
+        }
+
+        protected abstract Value useAddress(LIRGeneratorTool gen, VirtualStackSlot slot, Value address);
+    }
+
+    /**
+     * Loads the value back through the address, which needs the address in a register.
+     */
+    private static final LIRTestSpecification registerUse = new PressureSpec() {
+        @Override
+        protected Value useAddress(LIRGeneratorTool gen, VirtualStackSlot slot, Value address) {
+            return gen.getArithmetic().emitLoad(slot.getLIRKind(), address, null);
+        }
+    };
+
+    /**
+     * Subtracts a recomputed address from the address. The address is the first operand of the
+     * subtraction, which accepts a stack slot.
+     */
+    private static final LIRTestSpecification stackUse = new PressureSpec() {
+        @Override
+        protected Value useAddress(LIRGeneratorTool gen, VirtualStackSlot slot, Value address) {
+            return gen.getArithmetic().emitSub(address, gen.emitAddress(slot), false);
+        }
+    };
+
+    private static long sum(long a) {
+        long sum = 0;
+        for (int i = 0; i < PRESSURE; i++) {
+            sum += a + i;
+        }
+        return sum;
+    }
+
+    @LIRIntrinsic
+    public static long loadThroughAddress(@SuppressWarnings("unused") LIRTestSpecification spec, long a) {
+        return sum(a) + a;
+    }
+
+    @LIRIntrinsic
+    public static long subtractAddress(@SuppressWarnings("unused") LIRTestSpecification spec, long a) {
+        return sum(a);
+    }
+
+    public long testRegisterUse(long a) {
+        return loadThroughAddress(registerUse, a);
+    }
+
+    public long testStackUse(long a) {
+        return subtractAddress(stackUse, a);
+    }
+
+    private static final Object lockA = new Object();
+    private static final Object lockB = new Object();
+
+    public static int callee(int x) {
+        return Integer.toString(x).hashCode();
+    }
+
+    public static int nestedLocksSnippet(int n) {
+        int result = 0;
+        synchronized (lockA) {
+            for (int i = 0; i < n; i++) {
+                synchronized (lockB) {
+                    result += callee(i);
+                    result ^= callee(result & 0xFF);
+                }
+                result += callee(i * 3);
+            }
+        }
+        return result;
+    }
+
+    public static int lockedPressureSnippet(int[] values, Object lock) {
+        int a = 0;
+        int b = 1;
+        int c = 2;
+        int d = 3;
+        synchronized (lock) {
+            for (int i = 0; i < values.length; i++) {
+                int v = values[i];
+                a += callee(v) * b;
+                b ^= c + v;
+                c -= d * v;
+                d += a ^ callee(c);
+            }
+        }
+        return a + b + c + d;
+    }
+
+    private void runAll() throws Throwable {
+        for (long a : new long[]{0L, 1L, -42L, Long.MAX_VALUE}) {
+            runTest("testRegisterUse", a);
+            runTest("testStackUse", a);
+        }
+        runTest("nestedLocksSnippet", 10);
+        runTest("lockedPressureSnippet", new int[]{1, 5, -7, 42, 3}, new Object());
+    }
+
+    @Test
+    public void linearScan() throws Throwable {
+        runAll();
+    }
+
+    @Test
+    public void linearScanNotRematerialized() throws Throwable {
+        try (OverrideScope s = OptionValue.override(LIROptLSRARematerialize, false)) {
+            runAll();
+        }
+    }
+
+    @Test
+    public void traceRA() throws Throwable {
+        try (OverrideScope s = OptionValue.override(TraceRA, true)) {
+            runAll();
+        }
+    }
+
+    /**
+     * Counts the {@link RematerializableOp}s in the allocated LIR of {@code method}.
+     */
+    private int countRematerializableOps(String method, boolean rematerialize) {
+        assumeTrue("only the AMD64 stack address operation is rematerializable", getTarget().arch instanceof AMD64);
+        try (OverrideScope s = OptionValue.override(LIROptLSRARematerialize, rematerialize)) {
+            getLIRSuites().getPostAllocationOptimizationStage().appendPhase(new CheckPhase());
+            compile(getResolvedJavaMethod(method), null);
+        }
+        int count = 0;
+        for (AbstractBlockBase<?> block : lir.codeEmittingOrder()) {
+            for (LIRInstruction instruction : lir.getLIRforBlock(block)) {
+                if (instruction instanceof RematerializableOp) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Verifies that the spilled address is recomputed in front of the load instead of being
+     * reloaded from a spill slot.
+     */
+    @Test
+    public void addressRematerialized() {
+        int notRematerialized = countRematerializableOps("testRegisterUse", false);
+        int rematerialized = countRematerializableOps("testRegisterUse", true);
+        assertTrue(rematerialized > notRematerialized, "address operations: %d rematerialized, %d not rematerialized", rematerialized, notRematerialized);
+    }
+
+    /**
+     * Verifies that an address with a use that accepts a stack slot is spilled as usual.
+     */
+    @Test
+    public void stackUseNotRematerialized() {
+        int notRematerialized = countRematerializableOps("testStackUse", false);
+        int rematerialized = countRematerializableOps("testStackUse", true);
+        Assert.assertEquals("address operations", notRematerialized, rematerialized);
+    }
+
+    public static class CheckPhase extends LIRPhase<PostAllocationOptimizationContext> {
+        @Override
+        protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                        PostAllocationOptimizationContext context) {
+            lir = lirGenRes.getLIR();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import com.oracle.graal.lir.util.LIRArena;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+public class LIRArenaTest {
+
+    @Test
+    public void reuseAfterScope() {
+        String[] first;
+        BitSet firstSet;
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            first = LIRArena.current().newArray(String.class, 10);
+            first[3] = "x";
+            firstSet = LIRArena.current().newBitSet();
+            firstSet.set(42);
+        }
+        assertNull(first[3]);
+        assertTrue(firstSet.isEmpty());
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            assertSame(first, LIRArena.current().newArray(String.class, 8));
+            assertNotSame(first, LIRArena.current().newArray(String.class, 8));
+            assertSame(firstSet, LIRArena.current().newBitSet());
+        }
+    }
+
+    private static final class Item implements LIRArena.Reusable {
+        Object value;
+
+        @Override
+        public void clear() {
+            value = null;
+        }
+    }
+
+    @Test
+    public void reuseObjects() {
+        Item item;
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            assertNull(LIRArena.current().reuse(Item.class));
+            item = LIRArena.current().track(new Item());
+            item.value = "x";
+        }
+        assertNull(item.value);
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            assertSame(item, LIRArena.current().reuse(Item.class));
+            assertNull(LIRArena.current().reuse(Item.class));
+        }
+        assertNull(LIRArena.current().reuse(Item.class));
+    }
+
+    @Test
+    public void nestedScope() {
+        String[] array;
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            try (LIRArena.Scope inner = LIRArena.openScope()) {
+                array = LIRArena.current().newArray(String.class, 4);
+                array[0] = "x";
+            }
+            assertEquals("x", array[0]);
+        }
+        assertNull(array[0]);
+    }
+
+    @Test
+    public void noScope() {
+        String[] array = LIRArena.current().newArray(String.class, 4);
+        assertEquals(4, array.length);
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            assertNotSame(array, LIRArena.current().newArray(String.class, 4));
+        }
+    }
+
+    @Test
+    public void largeArrayNotRetained() {
+        Integer[] array;
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            array = LIRArena.current().newArray(Integer.class, 1 << 20);
+        }
+        try (LIRArena.Scope s = LIRArena.openScope()) {
+            assertNotSame(array, LIRArena.current().newArray(Integer.class, 1 << 20));
+        }
+    }
+
+    @Test
+    public void disabled() {
+        try (OverrideScope o = OptionValue.override(LIRArena.Options.LIRReuseDataStructures, false)) {
+            Long[] array;
+            try (LIRArena.Scope s = LIRArena.openScope()) {
+                array = LIRArena.current().newArray(Long.class, 4);
+            }
+            try (LIRArena.Scope s = LIRArena.openScope()) {
+                assertNotSame(array, LIRArena.current().newArray(Long.class, 4));
+            }
+        }
+    }
+}
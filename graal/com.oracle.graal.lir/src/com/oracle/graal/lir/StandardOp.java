@@ -148,7 +148,7 @@ public class StandardOp {
         @Override
         public void emitCode(CompilationResultBuilder crb) {
             if (align) {
-                crb.asm.align(crb.target.wordSize * 2);
+                crb.alignBlockStart();
             }
             crb.asm.bind(label);
         }
@@ -287,6 +287,19 @@ public class StandardOp {
         Constant getConstant();
     }
 
+    /**
+     * Marker interface for a LIR operation that computes its {@linkplain #getResult() result} only
+     * from operands that are valid everywhere in the method, e.g., the address of a stack slot. The
+     * register allocator re-emits such an operation instead of spilling and reloading its result.
+     */
+    public interface RematerializableOp extends MoveOp {
+
+        /**
+         * Creates a copy of this operation that defines {@code newResult}.
+         */
+        LIRInstruction rematerialize(AllocatableValue newResult);
+    }
+
     /**
      * An operation that saves registers to the stack. The set of saved registers can be
      * {@linkplain #remove(Set) pruned} and a mapping from registers to the frame slots in which
@@ -0,0 +1,1046 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.coloring;
+
+import static com.oracle.graal.lir.LIRValueUtil.asVariable;
+import static com.oracle.graal.lir.LIRValueUtil.isVariable;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig;
+import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig.AllocatableRegisters;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.common.cfg.BlockMap;
+import com.oracle.graal.compiler.common.util.IntList;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.debug.Indent;
+import com.oracle.graal.lir.InstructionValueConsumer;
+import com.oracle.graal.lir.InstructionValueProcedure;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInsertionBuffer;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.LIRInstruction.OperandFlag;
+import com.oracle.graal.lir.StandardOp.BlockEndOp;
+import com.oracle.graal.lir.StandardOp.LabelOp;
+import com.oracle.graal.lir.StandardOp.LoadConstantOp;
+import com.oracle.graal.lir.StandardOp.ValueMoveOp;
+import com.oracle.graal.lir.Variable;
+import com.oracle.graal.lir.VirtualStackSlot;
+import com.oracle.graal.lir.alloc.OutOfRegistersException;
+import com.oracle.graal.lir.framemap.FrameMapBuilder;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
+import com.oracle.graal.lir.ssa.SSAUtil;
+
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.AllocatableValue;
+import jdk.vm.ci.meta.Value;
+
+/**
+ * A graph coloring register allocator based on <a
+ * href="http://dx.doi.org/10.1145/229542.229546">"Iterated Register Coalescing"</a> by Lal George
+ * and Andrew W. Appel.
+ *
+ * The nodes of the interference graph are the allocatable registers (precolored) and the
+ * {@link Variable}s of the {@link LIR}. Phis are replaced by copies before allocation. If a round
+ * fails to color a variable, the variable is spilled everywhere: operands that accept a stack slot
+ * use the spill slot directly and all other operands use a new short-lived variable that is loaded
+ * from or stored to the spill slot. The allocation is then repeated until all variables are
+ * colored.
+ */
+final class GraphColoringAllocator {
+
+    private static final DebugMetric roundsMetric = Debug.metric("GraphColoringRA[rounds]");
+    private static final DebugMetric spilledVariablesMetric = Debug.metric("GraphColoringRA[spilledVariables]");
+    private static final DebugMetric coalescedMovesMetric = Debug.metric("GraphColoringRA[coalescedMoves]");
+    private static final DebugMetric removedMovesMetric = Debug.metric("GraphColoringRA[removedMoves]");
+
+    private enum NodeState {
+        PRECOLORED,
+        INITIAL,
+        SIMPLIFY,
+        FREEZE,
+        SPILL,
+        COALESCED,
+        SELECTED,
+        COLORED,
+        SPILLED
+    }
+
+    private enum MoveState {
+        WORKLIST,
+        ACTIVE,
+        COALESCED,
+        CONSTRAINED,
+        FROZEN
+    }
+
+    private final LIR lir;
+    private final FrameMapBuilder frameMapBuilder;
+    private final MoveFactory moveFactory;
+    private final RegisterAllocationConfig registerAllocationConfig;
+    private final List<? extends AbstractBlockBase<?>> blocks;
+    private final Register[] registers;
+    private final BitSet allocatableRegisters;
+    private final Register[] callerSaveRegisters;
+    private final Map<AllocatableRegisters, BitSet> allowedRegisterSets;
+
+    /**
+     * {@linkplain Variable#index Indices} of the variables introduced for spilling. These are never
+     * spilled again.
+     */
+    private final BitSet spillTemporaries;
+
+    /*
+     * The state of the current round. Node numbers are register numbers for registers and the
+     * number of registers plus the variable index for variables.
+     */
+    private int numNodes;
+    private Variable[] variables;
+    private AllocatableRegisters[] allowed;
+    private BitSet[] adjSet;
+    private IntList[] adjList;
+    private int[] degree;
+    private int[] alias;
+    private Register[] color;
+    private NodeState[] state;
+    private double[] spillCost;
+    private IntList[] moveList;
+
+    private IntList moveDst;
+    private IntList moveSrc;
+    private MoveState[] moveState;
+
+    private BitSet simplifyWorklist;
+    private BitSet freezeWorklist;
+    private BitSet spillWorklist;
+    private BitSet spilledNodes;
+    private BitSet worklistMoves;
+    private BitSet activeMoves;
+    private IntList selectStack;
+
+    private BlockMap<BitSet> liveIn;
+    private BlockMap<BitSet> liveOut;
+
+    /* Operands of the instruction that is currently visited. */
+    private final IntList defs = new IntList(4);
+    private final IntList temps = new IntList(4);
+    private final IntList uses = new IntList(4);
+    private final IntList alives = new IntList(4);
+
+    private final InstructionValueConsumer defConsumer = (op, value, mode, flags) -> addNode(defs, value);
+    private final InstructionValueConsumer tempConsumer = (op, value, mode, flags) -> addNode(temps, value);
+    private final InstructionValueConsumer useConsumer = (op, value, mode, flags) -> addNode(uses, value);
+    private final InstructionValueConsumer aliveConsumer = (op, value, mode, flags) -> addNode(alives, value);
+
+    GraphColoringAllocator(TargetDescription target, LIRGenerationResult res, MoveFactory moveFactory, RegisterAllocationConfig registerAllocationConfig,
+                    List<? extends AbstractBlockBase<?>> blocks) {
+        this.lir = res.getLIR();
+        this.frameMapBuilder = res.getFrameMapBuilder();
+        this.moveFactory = moveFactory;
+        this.registerAllocationConfig = registerAllocationConfig;
+        this.blocks = blocks;
+        this.registers = target.arch.getRegisters();
+        this.allocatableRegisters = new BitSet(registers.length);
+        for (Register reg : registerAllocationConfig.getAllocatableRegisters()) {
+            allocatableRegisters.set(reg.number);
+        }
+        int numCallerSave = 0;
+        Register[] callerSave = registerAllocationConfig.getRegisterConfig().getCallerSaveRegisters();
+        Register[] allocatableCallerSave = new Register[callerSave.length];
+        for (Register reg : callerSave) {
+            if (allocatableRegisters.get(reg.number)) {
+                allocatableCallerSave[numCallerSave++] = reg;
+            }
+        }
+        this.callerSaveRegisters = new Register[numCallerSave];
+        System.arraycopy(allocatableCallerSave, 0, callerSaveRegisters, 0, numCallerSave);
+        this.allowedRegisterSets = new IdentityHashMap<>();
+        this.spillTemporaries = new BitSet();
+    }
+
+    @SuppressWarnings("try")
+    void allocate() {
+        try (Indent indent = Debug.logAndIndent("graph coloring allocation")) {
+            destructSSA();
+            while (true) {
+                roundsMetric.increment();
+                build();
+                makeWorklist();
+                while (true) {
+                    if (!simplifyWorklist.isEmpty()) {
+                        simplify();
+                    } else if (!worklistMoves.isEmpty()) {
+                        coalesce();
+                    } else if (!freezeWorklist.isEmpty()) {
+                        freeze();
+                    } else if (!spillWorklist.isEmpty()) {
+                        selectSpill();
+                    } else {
+                        break;
+                    }
+                }
+                assignColors();
+                if (spilledNodes.isEmpty()) {
+                    break;
+                }
+                rewriteProgram();
+            }
+            assignLocations();
+        }
+    }
+
+    /**
+     * Replaces the phis of each merge block by copies at the end of the predecessors. The copies
+     * go through new variables so that their order does not matter. Most of these moves are
+     * removed by coalescing.
+     */
+    private void destructSSA() {
+        LIRInsertionBuffer buffer = new LIRInsertionBuffer();
+        List<Value> phiIns = new ArrayList<>();
+        List<Value> phiOuts = new ArrayList<>();
+        for (AbstractBlockBase<?> block : blocks) {
+            if (block.getPredecessorCount() < 2 || ((LabelOp) lir.getLIRforBlock(block).get(0)).getIncomingSize() == 0) {
+                continue;
+            }
+            for (AbstractBlockBase<?> pred : block.getPredecessors()) {
+                phiIns.clear();
+                phiOuts.clear();
+                SSAUtil.forEachPhiValuePair(lir, block, pred, (phiIn, phiOut) -> {
+                    phiIns.add(phiIn);
+                    phiOuts.add(phiOut);
+                });
+                int insertBefore = SSAUtil.phiOutIndex(lir, pred);
+                buffer.init(lir.getLIRforBlock(pred));
+                Variable[] copies = new Variable[phiIns.size()];
+                for (int i = 0; i < copies.length; i++) {
+                    copies[i] = new Variable(phiIns.get(i).getLIRKind(), lir.nextVariable());
+                    buffer.append(insertBefore, moveFactory.createMove(copies[i], phiOuts.get(i)));
+                }
+                for (int i = 0; i < copies.length; i++) {
+                    buffer.append(insertBefore, moveFactory.createMove((AllocatableValue) phiIns.get(i), copies[i]));
+                }
+                buffer.finish();
+                SSAUtil.removePhiOut(lir, pred);
+            }
+            SSAUtil.removePhiIn(lir, block);
+        }
+    }
+
+    private int nodeFor(Value value) {
+        if (isVariable(value)) {
+            return registers.length + asVariable(value).index;
+        }
+        if (isRegister(value) && allocatableRegisters.get(asRegister(value).number)) {
+            return asRegister(value).number;
+        }
+        return -1;
+    }
+
+    private void addNode(IntList list, Value value) {
+        int node = nodeFor(value);
+        if (node >= 0) {
+            list.add(node);
+        }
+    }
+
+    private void collectOperands(LIRInstruction op) {
+        defs.clear();
+        temps.clear();
+        uses.clear();
+        alives.clear();
+        op.visitEachOutput(defConsumer);
+        op.visitEachTemp(tempConsumer);
+        op.visitEachAlive(aliveConsumer);
+        op.visitEachInput(useConsumer);
+        /*
+         * The values of a frame state must survive the instruction, e.g., a call that destroys the
+         * caller-save registers, so they are treated like alive values.
+         */
+        op.visitEachState(aliveConsumer);
+        if (op.destroysCallerSavedRegisters()) {
+            for (Register reg : callerSaveRegisters) {
+                temps.add(reg.number);
+            }
+        }
+    }
+
+    private boolean isPrecolored(int node) {
+        return node < registers.length;
+    }
+
+    /**
+     * Returns the number of registers available for a variable.
+     */
+    private int k(int node) {
+        return isPrecolored(node) ? Integer.MAX_VALUE : allowed[node].allocatableRegisters.length;
+    }
+
+    private BitSet allowedSet(int node) {
+        return allowedRegisterSets.get(allowed[node]);
+    }
+
+    /**
+     * Determines whether two nodes compete for the same registers.
+     */
+    private boolean canInterfere(int u, int v) {
+        if (isPrecolored(u)) {
+            return !isPrecolored(v) && allowedSet(v).get(u);
+        } else if (isPrecolored(v)) {
+            return allowedSet(u).get(v);
+        }
+        return allowed[u] == allowed[v] || allowedSet(u).intersects(allowedSet(v));
+    }
+
+    /**
+     * Determines whether the nodes of a move may be coalesced.
+     */
+    private boolean canCoalesce(int u, int v) {
+        if (isPrecolored(u)) {
+            return !isPrecolored(v) && allowedSet(v).get(u);
+        } else if (isPrecolored(v)) {
+            return allowedSet(u).get(v);
+        }
+        return allowed[u] == allowed[v];
+    }
+
+    @SuppressWarnings("try")
+    private void build() {
+        try (Indent indent = Debug.logAndIndent("build interference graph")) {
+            initializeNodes();
+            computeLiveness();
+            for (AbstractBlockBase<?> block : blocks) {
+                BitSet live = (BitSet) liveOut.get(block).clone();
+                double frequency = block.probability();
+                List<LIRInstruction> instructions = lir.getLIRforBlock(block);
+                for (int j = instructions.size() - 1; j >= 0; j--) {
+                    LIRInstruction op = instructions.get(j);
+                    collectOperands(op);
+                    if (op instanceof ValueMoveOp) {
+                        ValueMoveOp move = (ValueMoveOp) op;
+                        int dst = nodeFor(move.getResult());
+                        int src = nodeFor(move.getInput());
+                        if (dst >= 0 && src >= 0 && dst != src && canCoalesce(dst, src)) {
+                            live.clear(src);
+                            addMove(dst, src);
+                        }
+                    }
+                    addDefinitionEdges(defs, live);
+                    addDefinitionEdges(temps, live);
+                    for (int i = 0; i < defs.size(); i++) {
+                        live.clear(defs.get(i));
+                    }
+                    for (int i = 0; i < uses.size(); i++) {
+                        live.set(uses.get(i));
+                    }
+                    for (int i = 0; i < alives.size(); i++) {
+                        live.set(alives.get(i));
+                    }
+                    addSpillCosts(defs, frequency);
+                    addSpillCosts(temps, frequency);
+                    addSpillCosts(uses, frequency);
+                    addSpillCosts(alives, frequency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds edges between the values defined by the current instruction and the values that are
+     * live after it or alive during it.
+     */
+    private void addDefinitionEdges(IntList defined, BitSet liveAfter) {
+        for (int i = 0; i < defined.size(); i++) {
+            int d = defined.get(i);
+            for (int l = liveAfter.nextSetBit(0); l >= 0; l = liveAfter.nextSetBit(l + 1)) {
+                addEdge(l, d);
+            }
+            for (int j = 0; j < defs.size(); j++) {
+                addEdge(defs.get(j), d);
+            }
+            for (int j = 0; j < temps.size(); j++) {
+                addEdge(temps.get(j), d);
+            }
+            for (int j = 0; j < alives.size(); j++) {
+                addEdge(alives.get(j), d);
+            }
+        }
+    }
+
+    private void addSpillCosts(IntList nodes, double frequency) {
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = nodes.get(i);
+            if (!isPrecolored(node)) {
+                spillCost[node] += frequency;
+            }
+        }
+    }
+
+    private void initializeNodes() {
+        int maxVariable = -1;
+        for (AbstractBlockBase<?> block : blocks) {
+            for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                collectOperands(op);
+                maxVariable = Math.max(maxVariable, maxVariable(defs));
+                maxVariable = Math.max(maxVariable, maxVariable(temps));
+                maxVariable = Math.max(maxVariable, maxVariable(uses));
+                maxVariable = Math.max(maxVariable, maxVariable(alives));
+            }
+        }
+        numNodes = registers.length + maxVariable + 1;
+        variables = new Variable[numNodes];
+        allowed = new AllocatableRegisters[numNodes];
+        adjSet = new BitSet[numNodes];
+        adjList = new IntList[numNodes];
+        degree = new int[numNodes];
+        alias = new int[numNodes];
+        color = new Register[numNodes];
+        state = new NodeState[numNodes];
+        spillCost = new double[numNodes];
+        moveList = new IntList[numNodes];
+        moveDst = new IntList(16);
+        moveSrc = new IntList(16);
+        simplifyWorklist = new BitSet(numNodes);
+        freezeWorklist = new BitSet(numNodes);
+        spillWorklist = new BitSet(numNodes);
+        spilledNodes = new BitSet(numNodes);
+        worklistMoves = new BitSet();
+        activeMoves = new BitSet();
+        selectStack = new IntList(numNodes);
+        for (int node = 0; node < registers.length; node++) {
+            state[node] = NodeState.PRECOLORED;
+            color[node] = registers[node];
+            alias[node] = node;
+            adjSet[node] = new BitSet();
+            moveList[node] = new IntList(2);
+        }
+        InstructionValueConsumer variableConsumer = (op, value, mode, flags) -> {
+            if (isVariable(value)) {
+                int node = nodeFor(value);
+                if (variables[node] == null) {
+                    Variable variable = asVariable(value);
+                    variables[node] = variable;
+                    allowed[node] = registerAllocationConfig.getAllocatableRegisters(variable.getPlatformKind());
+                    if (!allowedRegisterSets.containsKey(allowed[node])) {
+                        BitSet set = new BitSet(registers.length);
+                        for (Register reg : allowed[node].allocatableRegisters) {
+                            set.set(reg.number);
+                        }
+                        allowedRegisterSets.put(allowed[node], set);
+                    }
+                    state[node] = NodeState.INITIAL;
+                    alias[node] = node;
+                    adjSet[node] = new BitSet();
+                    adjList[node] = new IntList(8);
+                    moveList[node] = new IntList(2);
+                }
+            }
+        };
+        for (AbstractBlockBase<?> block : blocks) {
+            for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                op.visitEachOutput(variableConsumer);
+                op.visitEachTemp(variableConsumer);
+                op.visitEachAlive(variableConsumer);
+                op.visitEachInput(variableConsumer);
+                op.visitEachState(variableConsumer);
+            }
+        }
+    }
+
+    private int maxVariable(IntList nodes) {
+        int max = -1;
+        for (int i = 0; i < nodes.size(); i++) {
+            max = Math.max(max, nodes.get(i) - registers.length);
+        }
+        return max;
+    }
+
+    private void computeLiveness() {
+        BlockMap<BitSet> gen = new BlockMap<>(lir.getControlFlowGraph());
+        BlockMap<BitSet> kill = new BlockMap<>(lir.getControlFlowGraph());
+        liveIn = new BlockMap<>(lir.getControlFlowGraph());
+        liveOut = new BlockMap<>(lir.getControlFlowGraph());
+        for (AbstractBlockBase<?> block : blocks) {
+            BitSet blockGen = new BitSet(numNodes);
+            BitSet blockKill = new BitSet(numNodes);
+            for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                collectOperands(op);
+                markGen(uses, blockGen, blockKill);
+                markGen(alives, blockGen, blockKill);
+                markKill(defs, blockKill);
+                markKill(temps, blockKill);
+            }
+            gen.put(block, blockGen);
+            kill.put(block, blockKill);
+            liveIn.put(block, new BitSet(numNodes));
+            liveOut.put(block, new BitSet(numNodes));
+        }
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                AbstractBlockBase<?> block = blocks.get(i);
+                BitSet out = liveOut.get(block);
+                for (AbstractBlockBase<?> succ : block.getSuccessors()) {
+                    out.or(liveIn.get(succ));
+                }
+                BitSet in = (BitSet) out.clone();
+                in.andNot(kill.get(block));
+                in.or(gen.get(block));
+                if (!in.equals(liveIn.get(block))) {
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        } while (changed);
+    }
+
+    private static void markGen(IntList nodes, BitSet gen, BitSet kill) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (!kill.get(nodes.get(i))) {
+                gen.set(nodes.get(i));
+            }
+        }
+    }
+
+    private static void markKill(IntList nodes, BitSet kill) {
+        for (int i = 0; i < nodes.size(); i++) {
+            kill.set(nodes.get(i));
+        }
+    }
+
+    private void addMove(int dst, int src) {
+        int move = moveDst.size();
+        moveDst.add(dst);
+        moveSrc.add(src);
+        moveList[dst].add(move);
+        moveList[src].add(move);
+        worklistMoves.set(move);
+    }
+
+    private void addEdge(int u, int v) {
+        if (u == v || adjSet[u].get(v) || !canInterfere(u, v)) {
+            return;
+        }
+        adjSet[u].set(v);
+        adjSet[v].set(u);
+        if (!isPrecolored(u)) {
+            adjList[u].add(v);
+            degree[u]++;
+        }
+        if (!isPrecolored(v)) {
+            adjList[v].add(u);
+            degree[v]++;
+        }
+    }
+
+    private void makeWorklist() {
+        moveState = new MoveState[moveDst.size()];
+        for (int move = 0; move < moveState.length; move++) {
+            moveState[move] = MoveState.WORKLIST;
+        }
+        for (int node = registers.length; node < numNodes; node++) {
+            if (variables[node] == null) {
+                continue;
+            }
+            if (spillTemporaries.get(variables[node].index)) {
+                spillCost[node] = Double.POSITIVE_INFINITY;
+            }
+            if (degree[node] >= k(node)) {
+                setState(node, NodeState.SPILL);
+            } else if (isMoveRelated(node)) {
+                setState(node, NodeState.FREEZE);
+            } else {
+                setState(node, NodeState.SIMPLIFY);
+            }
+        }
+    }
+
+    /**
+     * Moves a node to another work list.
+     */
+    private void setState(int node, NodeState newState) {
+        switch (state[node]) {
+            case SIMPLIFY:
+                simplifyWorklist.clear(node);
+                break;
+            case FREEZE:
+                freezeWorklist.clear(node);
+                break;
+            case SPILL:
+                spillWorklist.clear(node);
+                break;
+            case SPILLED:
+                spilledNodes.clear(node);
+                break;
+            default:
+                break;
+        }
+        state[node] = newState;
+        switch (newState) {
+            case SIMPLIFY:
+                simplifyWorklist.set(node);
+                break;
+            case FREEZE:
+                freezeWorklist.set(node);
+                break;
+            case SPILL:
+                spillWorklist.set(node);
+                break;
+            case SPILLED:
+                spilledNodes.set(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean isMoveRelated(int node) {
+        IntList moves = moveList[node];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (moveState[move] == MoveState.WORKLIST || moveState[move] == MoveState.ACTIVE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a neighbor is still part of the graph, i.e., neither removed by
+     * simplification nor coalesced.
+     */
+    private boolean isAdjacent(int node) {
+        return state[node] != NodeState.SELECTED && state[node] != NodeState.COALESCED;
+    }
+
+    private void simplify() {
+        int node = simplifyWorklist.nextSetBit(0);
+        setState(node, NodeState.SELECTED);
+        selectStack.add(node);
+        IntList adjacent = adjList[node];
+        for (int i = 0; i < adjacent.size(); i++) {
+            int m = adjacent.get(i);
+            if (isAdjacent(m)) {
+                decrementDegree(m);
+            }
+        }
+    }
+
+    private void decrementDegree(int node) {
+        if (isPrecolored(node)) {
+            return;
+        }
+        int d = degree[node]--;
+        if (d == k(node)) {
+            enableMoves(node);
+            IntList adjacent = adjList[node];
+            for (int i = 0; i < adjacent.size(); i++) {
+                int m = adjacent.get(i);
+                if (isAdjacent(m)) {
+                    enableMoves(m);
+                }
+            }
+            if (state[node] == NodeState.SPILL) {
+                setState(node, isMoveRelated(node) ? NodeState.FREEZE : NodeState.SIMPLIFY);
+            }
+        }
+    }
+
+    private void enableMoves(int node) {
+        IntList moves = moveList[node];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (moveState[move] == MoveState.ACTIVE) {
+                moveState[move] = MoveState.WORKLIST;
+                activeMoves.clear(move);
+                worklistMoves.set(move);
+            }
+        }
+    }
+
+    private int getAlias(int node) {
+        int n = node;
+        while (state[n] == NodeState.COALESCED) {
+            n = alias[n];
+        }
+        return n;
+    }
+
+    private void coalesce() {
+        int move = worklistMoves.nextSetBit(0);
+        worklistMoves.clear(move);
+        int x = getAlias(moveDst.get(move));
+        int y = getAlias(moveSrc.get(move));
+        int u;
+        int v;
+        if (isPrecolored(y)) {
+            u = y;
+            v = x;
+        } else {
+            u = x;
+            v = y;
+        }
+        if (u == v) {
+            moveState[move] = MoveState.COALESCED;
+            coalescedMovesMetric.increment();
+            addWorklist(u);
+        } else if (isPrecolored(v) || adjSet[u].get(v) || !canCoalesce(u, v)) {
+            moveState[move] = MoveState.CONSTRAINED;
+            addWorklist(u);
+            addWorklist(v);
+        } else if (isPrecolored(u) ? allAdjacentOk(v, u) : conservative(u, v)) {
+            moveState[move] = MoveState.COALESCED;
+            coalescedMovesMetric.increment();
+            combine(u, v);
+            addWorklist(u);
+        } else {
+            moveState[move] = MoveState.ACTIVE;
+            activeMoves.set(move);
+        }
+    }
+
+    private void addWorklist(int node) {
+        if (!isPrecolored(node) && !isMoveRelated(node) && degree[node] < k(node)) {
+            setState(node, NodeState.SIMPLIFY);
+        }
+    }
+
+    /**
+     * The George criterion for coalescing {@code v} into the precolored node {@code r}.
+     */
+    private boolean allAdjacentOk(int v, int r) {
+        IntList adjacent = adjList[v];
+        for (int i = 0; i < adjacent.size(); i++) {
+            int t = adjacent.get(i);
+            if (isAdjacent(t) && !(degree[t] < k(t) || isPrecolored(t) || adjSet[t].get(r))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The Briggs criterion: the combined node has fewer than {@code K} neighbors of significant
+     * degree.
+     */
+    private boolean conservative(int u, int v) {
+        BitSet seen = new BitSet();
+        int significant = 0;
+        int limit = k(u);
+        for (int node : new int[]{u, v}) {
+            IntList adjacent = adjList[node];
+            for (int i = 0; i < adjacent.size(); i++) {
+                int t = adjacent.get(i);
+                if (isAdjacent(t) && !seen.get(t)) {
+                    seen.set(t);
+                    if (degree[t] >= k(t)) {
+                        significant++;
+                        if (significant >= limit) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void combine(int u, int v) {
+        setState(v, NodeState.COALESCED);
+        alias[v] = u;
+        IntList moves = moveList[v];
+        for (int i = 0; i < moves.size(); i++) {
+            moveList[u].add(moves.get(i));
+        }
+        enableMoves(v);
+        IntList adjacent = adjList[v];
+        for (int i = 0; i < adjacent.size(); i++) {
+            int t = adjacent.get(i);
+            if (isAdjacent(t)) {
+                addEdge(t, u);
+                decrementDegree(t);
+            }
+        }
+        if (!isPrecolored(u) && degree[u] >= k(u) && state[u] == NodeState.FREEZE) {
+            setState(u, NodeState.SPILL);
+        }
+    }
+
+    private void freeze() {
+        int node = freezeWorklist.nextSetBit(0);
+        setState(node, NodeState.SIMPLIFY);
+        freezeMoves(node);
+    }
+
+    private void freezeMoves(int u) {
+        IntList moves = moveList[u];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (moveState[move] != MoveState.WORKLIST && moveState[move] != MoveState.ACTIVE) {
+                continue;
+            }
+            int x = getAlias(moveDst.get(move));
+            int y = getAlias(moveSrc.get(move));
+            int v = y == getAlias(u) ? x : y;
+            activeMoves.clear(move);
+            worklistMoves.clear(move);
+            moveState[move] = MoveState.FROZEN;
+            if (state[v] == NodeState.FREEZE && !isMoveRelated(v) && degree[v] < k(v)) {
+                setState(v, NodeState.SIMPLIFY);
+            }
+        }
+    }
+
+    /**
+     * Selects the node with the lowest spill cost per interference as a potential spill.
+     */
+    private void selectSpill() {
+        int best = -1;
+        double bestPriority = Double.POSITIVE_INFINITY;
+        for (int node = spillWorklist.nextSetBit(0); node >= 0; node = spillWorklist.nextSetBit(node + 1)) {
+            double priority = spillCost[node] / degree[node];
+            if (best == -1 || priority < bestPriority) {
+                best = node;
+                bestPriority = priority;
+            }
+        }
+        setState(best, NodeState.SIMPLIFY);
+        freezeMoves(best);
+    }
+
+    private void assignColors() {
+        BitSet okColors = new BitSet(registers.length);
+        for (int i = selectStack.size() - 1; i >= 0; i--) {
+            int node = selectStack.get(i);
+            okColors.clear();
+            okColors.or(allowedSet(node));
+            IntList adjacent = adjList[node];
+            for (int j = 0; j < adjacent.size(); j++) {
+                int w = getAlias(adjacent.get(j));
+                if (state[w] == NodeState.COLORED || state[w] == NodeState.PRECOLORED) {
+                    okColors.clear(color[w].number);
+                }
+            }
+            if (okColors.isEmpty()) {
+                setState(node, NodeState.SPILLED);
+            } else {
+                setState(node, NodeState.COLORED);
+                color[node] = selectColor(node, okColors);
+            }
+        }
+        selectStack.clear();
+        for (int node = registers.length; node < numNodes; node++) {
+            if (state[node] == NodeState.COALESCED) {
+                color[node] = color[getAlias(node)];
+            }
+        }
+        if (!spilledNodes.isEmpty()) {
+            replaceUnspillableNodes();
+        }
+    }
+
+    /**
+     * Prefers a register of a node this node is moved from or to, and otherwise uses the first
+     * allocatable register.
+     */
+    private Register selectColor(int node, BitSet okColors) {
+        IntList moves = moveList[node];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int other = getAlias(moveDst.get(move)) == node ? getAlias(moveSrc.get(move)) : getAlias(moveDst.get(move));
+            if ((state[other] == NodeState.COLORED || state[other] == NodeState.PRECOLORED) && okColors.get(color[other].number)) {
+                return color[other];
+            }
+        }
+        for (Register reg : allowed[node].allocatableRegisters) {
+            if (okColors.get(reg.number)) {
+                return reg;
+            }
+        }
+        throw new OutOfRegistersException("no allowed register for " + variables[node]);
+    }
+
+    /**
+     * Spilling a variable introduced for spilling would not make progress. Instead, the variables
+     * that interfere with it are spilled.
+     */
+    private void replaceUnspillableNodes() {
+        BitSet replacements = new BitSet(numNodes);
+        for (int node = spilledNodes.nextSetBit(0); node >= 0; node = spilledNodes.nextSetBit(node + 1)) {
+            if (spillCost[node] != Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            boolean replaced = false;
+            IntList adjacent = adjList[node];
+            for (int i = 0; i < adjacent.size(); i++) {
+                int w = getAlias(adjacent.get(i));
+                if (!isPrecolored(w) && spillCost[w] != Double.POSITIVE_INFINITY) {
+                    replacements.set(w);
+                    replaced = true;
+                }
+            }
+            if (!replaced) {
+                throw new OutOfRegistersException("Graph coloring: no register found for " + variables[node], "All interfering values are fixed registers or spill temporaries");
+            }
+            spilledNodes.clear(node);
+        }
+        spilledNodes.or(replacements);
+    }
+
+    @SuppressWarnings("try")
+    private void rewriteProgram() {
+        try (Indent indent = Debug.logAndIndent("spill %d variables", spilledNodes.cardinality())) {
+            spilledVariablesMetric.add(spilledNodes.cardinality());
+            VirtualStackSlot[] spillSlots = new VirtualStackSlot[numNodes];
+            for (int node = spilledNodes.nextSetBit(0); node >= 0; node = spilledNodes.nextSetBit(node + 1)) {
+                spillSlots[node] = frameMapBuilder.allocateSpillSlot(variables[node].getLIRKind());
+                Debug.log("spill %s to %s", variables[node], spillSlots[node]);
+            }
+            LIRInsertionBuffer buffer = new LIRInsertionBuffer();
+            for (AbstractBlockBase<?> block : blocks) {
+                List<LIRInstruction> instructions = lir.getLIRforBlock(block);
+                buffer.init(instructions);
+                for (int j = 0; j < instructions.size(); j++) {
+                    rewriteInstruction(instructions.get(j), j, buffer, spillSlots);
+                }
+                buffer.finish();
+            }
+        }
+    }
+
+    private void rewriteInstruction(LIRInstruction op, int index, LIRInsertionBuffer buffer, VirtualStackSlot[] spillSlots) {
+        Map<Variable, Variable> reloaded = new IdentityHashMap<>();
+        InstructionValueProcedure useProc = (inst, value, mode, flags) -> {
+            VirtualStackSlot slot = spillSlotFor(value, spillSlots);
+            if (slot == null) {
+                return value;
+            }
+            if (flags.contains(OperandFlag.STACK)) {
+                return slot;
+            }
+            Variable variable = asVariable(value);
+            Variable temp = reloaded.get(variable);
+            if (temp == null) {
+                temp = newSpillTemporary(variable);
+                reloaded.put(variable, temp);
+                buffer.append(index, moveFactory.createMove(temp, slot));
+            }
+            return temp;
+        };
+        InstructionValueProcedure tempProc = (inst, value, mode, flags) -> {
+            VirtualStackSlot slot = spillSlotFor(value, spillSlots);
+            if (slot == null) {
+                return value;
+            }
+            return flags.contains(OperandFlag.STACK) ? slot : newSpillTemporary(asVariable(value));
+        };
+        InstructionValueProcedure defProc = (inst, value, mode, flags) -> {
+            VirtualStackSlot slot = spillSlotFor(value, spillSlots);
+            if (slot == null) {
+                return value;
+            }
+            if (flags.contains(OperandFlag.STACK) && canDefineOnStack(inst)) {
+                return slot;
+            }
+            assert !(inst instanceof BlockEndOp) : "cannot store after block end " + inst;
+            Variable temp = newSpillTemporary(asVariable(value));
+            buffer.append(index + 1, moveFactory.createMove(slot, temp));
+            return temp;
+        };
+        op.forEachInput(useProc);
+        op.forEachAlive(useProc);
+        op.forEachState(useProc);
+        op.forEachTemp(tempProc);
+        op.forEachOutput(defProc);
+    }
+
+    private VirtualStackSlot spillSlotFor(Value value, VirtualStackSlot[] spillSlots) {
+        if (isVariable(value)) {
+            int node = nodeFor(value);
+            if (node < spillSlots.length) {
+                return spillSlots[node];
+            }
+        }
+        return null;
+    }
+
+    private boolean canDefineOnStack(LIRInstruction op) {
+        if (op instanceof LoadConstantOp) {
+            return moveFactory.allowConstantToStackMove(((LoadConstantOp) op).getConstant());
+        }
+        return true;
+    }
+
+    private Variable newSpillTemporary(Variable variable) {
+        Variable temp = new Variable(variable.getLIRKind(), lir.nextVariable());
+        spillTemporaries.set(temp.index);
+        return temp;
+    }
+
+    @SuppressWarnings("try")
+    private void assignLocations() {
+        try (Indent indent = Debug.logAndIndent("assign locations")) {
+            InstructionValueProcedure assignProc = (op, value, mode, flags) -> {
+                if (isVariable(value)) {
+                    Register reg = color[nodeFor(value)];
+                    assert reg != null : "no register for " + value;
+                    return reg.asValue(value.getLIRKind());
+                }
+                return value;
+            };
+            for (AbstractBlockBase<?> block : blocks) {
+                List<LIRInstruction> instructions = lir.getLIRforBlock(block);
+                boolean hasDead = false;
+                for (int j = 0; j < instructions.size(); j++) {
+                    LIRInstruction op = instructions.get(j);
+                    op.forEachInput(assignProc);
+                    op.forEachAlive(assignProc);
+                    op.forEachTemp(assignProc);
+                    op.forEachOutput(assignProc);
+                    op.forEachState(assignProc);
+                    if (op instanceof ValueMoveOp) {
+                        ValueMoveOp move = (ValueMoveOp) op;
+                        if (move.getInput().equals(move.getResult())) {
+                            instructions.set(j, null);
+                            hasDead = true;
+                            removedMovesMetric.increment();
+                        }
+                    }
+                }
+                if (hasDead) {
+                    instructions.removeAll(Collections.singleton(null));
+                }
+            }
+        }
+    }
+}
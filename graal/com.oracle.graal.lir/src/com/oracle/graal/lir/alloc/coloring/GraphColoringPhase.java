@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.coloring;
+
+import static com.oracle.graal.compiler.common.BackendOptions.LinearScanVariant;
+
+import java.util.List;
+
+import com.oracle.graal.compiler.common.BackendOptions.LSRAVariant;
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.alloc.lsra.LinearScanPhase;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.AllocationPhase;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+
+import jdk.vm.ci.code.TargetDescription;
+
+/**
+ * Allocates registers for hot methods with the {@link GraphColoringAllocator} and falls back to
+ * the {@link LinearScanPhase linear scan allocator} for all other methods.
+ *
+ * The LIR does not provide invocation counts, so a method is considered hot if the relative
+ * frequency of its most frequently executed block, i.e., the body of its hottest loop, reaches
+ * {@link Options#GraphColoringRAMinFrequency}. The graph coloring allocator produces fewer spills
+ * and moves in such loops, at the cost of a higher compile time that grows with the number of
+ * variables.
+ */
+public final class GraphColoringPhase extends AllocationPhase {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Minimum relative frequency of the hottest block of a method to use the graph coloring register allocator.", type = OptionType.Expert)
+        public static final OptionValue<Double> GraphColoringRAMinFrequency = new OptionValue<>(10.0);
+        @Option(help = "Maximum number of LIR variables of a method to use the graph coloring register allocator.", type = OptionType.Expert)
+        public static final OptionValue<Integer> GraphColoringRAMaxVariables = new OptionValue<>(3000);
+        // @formatter:on
+    }
+
+    private static final LinearScanPhase LINEAR_SCAN_PHASE = new LinearScanPhase();
+
+    private static final DebugMetric graphColoringMetric = Debug.metric("GraphColoringRA[graphColoring]");
+    private static final DebugMetric linearScanMetric = Debug.metric("GraphColoringRA[linearScan]");
+
+    @Override
+    protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder, AllocationContext context) {
+        if (useGraphColoring(lirGenRes.getLIR(), linearScanOrder)) {
+            graphColoringMetric.increment();
+            new GraphColoringAllocator(target, lirGenRes, context.spillMoveFactory, context.registerAllocationConfig, linearScanOrder).allocate();
+        } else {
+            linearScanMetric.increment();
+            LINEAR_SCAN_PHASE.apply(target, lirGenRes, codeEmittingOrder, linearScanOrder, context, false);
+        }
+    }
+
+    private static <B extends AbstractBlockBase<B>> boolean useGraphColoring(LIR lir, List<B> blocks) {
+        if (LinearScanVariant.getValue() == LSRAVariant.SSI_LSRA || lir.numVariables() > Options.GraphColoringRAMaxVariables.getValue()) {
+            return false;
+        }
+        double maxFrequency = 0;
+        for (B block : blocks) {
+            maxFrequency = Math.max(maxFrequency, block.probability());
+        }
+        return maxFrequency >= Options.GraphColoringRAMinFrequency.getValue();
+    }
+}
@@ -49,12 +49,14 @@ import com.oracle.graal.compiler.common.util.IntList;
 import com.oracle.graal.compiler.common.util.Util;
 import com.oracle.graal.debug.TTY;
 import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.RematerializableOp;
 import com.oracle.graal.lir.Variable;
+import com.oracle.graal.lir.util.LIRArena;
 
 /**
  * Represents an interval in the {@linkplain LinearScan linear scan register allocator}.
  */
-public final class Interval {
+public final class Interval implements LIRArena.Reusable {
 
     /**
      * A pair of intervals.
@@ -356,7 +358,7 @@ public final class Interval {
      * position.
      *
      */
-    public static final class UsePosList {
+    public static final class UsePosList implements LIRArena.Reusable {
 
         private IntList list;
 
@@ -369,20 +371,34 @@ public final class Interval {
             list = new IntList(initialCapacity * 2);
         }
 
-        private UsePosList(IntList list) {
-            this.list = list;
+        /**
+         * Creates an empty use list, reusing one of an earlier compilation if {@code arena} has
+         * one.
+         */
+        static UsePosList create(LIRArena arena) {
+            UsePosList usePosList = arena.reuse(UsePosList.class);
+            if (usePosList == null) {
+                return arena.track(new UsePosList(4));
+            }
+            return usePosList;
+        }
+
+        @Override
+        public void clear() {
+            list.clear();
         }
 
         /**
          * Splits this list around a given position. All entries in this list with a use position
-         * greater or equal than {@code splitPos} are removed from this list and added to the
-         * returned list.
+         * greater or equal than {@code splitPos} are removed from this list and added to
+         * {@code child}. The storage of {@code child} is used for the entries that remain in this
+         * list, so that no new storage is allocated if it is large enough.
          *
          * @param splitPos the position for the split
-         * @return a use position list containing all entries removed from this list that have a use
-         *         position greater or equal than {@code splitPos}
+         * @param child an empty use position list that receives all entries removed from this list
          */
-        public UsePosList splitAt(int splitPos) {
+        public void splitAt(int splitPos, UsePosList child) {
+            assert child.size() == 0 : "child list must be empty";
             int i = size() - 1;
             int len = 0;
             while (i >= 0 && usePos(i) < splitPos) {
@@ -391,10 +407,12 @@ public final class Interval {
             }
             int listSplitIndex = (i + 1) * 2;
             IntList childList = list;
-            list = IntList.copy(this.list, listSplitIndex, len);
+            list = child.list;
+            for (int j = 0; j < len; j++) {
+                list.add(childList.get(listSplitIndex + j));
+            }
             childList.setSize(listSplitIndex);
-            UsePosList child = new UsePosList(childList);
-            return child;
+            child.list = childList;
         }
 
         /**
@@ -451,14 +469,20 @@ public final class Interval {
 
     /**
      * The {@linkplain RegisterValue register} or {@linkplain Variable variable} for this interval
-     * prior to register allocation.
+     * prior to register allocation. This is only changed when the interval is
+     * {@linkplain #initialize reused}.
      */
-    public final AllocatableValue operand;
+    public AllocatableValue operand;
 
     /**
      * The operand number for this interval's {@linkplain #operand operand}.
      */
-    public final int operandNumber;
+    public int operandNumber;
+
+    /**
+     * Provides the ranges and use position lists of this interval.
+     */
+    private final LIRArena arena;
 
     /**
      * The {@linkplain RegisterValue register} or {@linkplain StackSlot spill slot} assigned to this
@@ -550,7 +574,21 @@ public final class Interval {
     private Constant materializedValue;
 
     /**
-     * The number of times {@link #addMaterializationValue(Constant)} is called.
+     * The operation with which a spilled child interval can be re-materialized if the interval is
+     * not defined by a constant.
+     */
+    private RematerializableOp materializationOp;
+
+    /**
+     * Determines whether the value of this interval is used by a frame state. Such an interval
+     * cannot be re-materialized by a {@link #materializationOp}, because a frame state needs the
+     * value in a location.
+     */
+    private boolean usedInState;
+
+    /**
+     * The number of times {@link #addMaterializationValue(Constant)} or
+     * {@link #addMaterializationOp(RematerializableOp)} is called.
      */
     private int numMaterializationValuesAdded;
 
@@ -729,48 +767,99 @@ public final class Interval {
     /**
      * Sentinel interval to denote the end of an interval list.
      */
-    static final Interval EndMarker = new Interval(Value.ILLEGAL, -1);
-
-    Interval(AllocatableValue operand, int operandNumber) {
-        assert operand != null;
-        this.operand = operand;
-        this.operandNumber = operandNumber;
-        if (isRegister(operand)) {
-            location = operand;
+    static final Interval EndMarker = new Interval(Value.ILLEGAL, -1, LIRArena.unscoped());
+
+    Interval(AllocatableValue operand, int operandNumber, LIRArena arena) {
+        this.arena = arena;
+        initialize(operand, operandNumber);
+    }
+
+    /**
+     * Initializes a new interval or an interval that is reused after it was {@linkplain #clear()
+     * cleared}.
+     */
+    void initialize(AllocatableValue newOperand, int newOperandNumber) {
+        assert newOperand != null;
+        this.operand = newOperand;
+        this.operandNumber = newOperandNumber;
+        if (isRegister(newOperand)) {
+            location = newOperand;
         } else {
-            assert isIllegal(operand) || isVariable(operand);
+            assert isIllegal(newOperand) || isVariable(newOperand);
+            location = null;
         }
+        this.spillSlot = null;
         this.kind = LIRKind.Illegal;
         this.first = Range.EndMarker;
-        this.usePosList = new UsePosList(4);
+        this.usePosList = UsePosList.create(arena);
         this.current = Range.EndMarker;
         this.next = EndMarker;
+        this.state = null;
         this.cachedTo = -1;
+        this.splitParent = this;
+        this.splitChildren = Collections.emptyList();
+        this.currentSplitChild = this;
+        this.insertMoveWhenActivated = false;
         this.spillState = SpillState.NoDefinitionFound;
         this.spillDefinitionPos = -1;
-        splitParent = this;
-        currentSplitChild = this;
+        this.locationHint = null;
+        this.materializedValue = null;
+        this.materializationOp = null;
+        this.usedInState = false;
+        this.numMaterializationValuesAdded = 0;
+    }
+
+    @Override
+    public void clear() {
+        operand = null;
+        location = null;
+        spillSlot = null;
+        kind = null;
+        first = null;
+        usePosList = null;
+        current = null;
+        next = null;
+        splitParent = null;
+        splitChildren = null;
+        currentSplitChild = null;
+        locationHint = null;
+        materializedValue = null;
+        materializationOp = null;
     }
 
     /**
      * Sets the value which is used for re-materialization.
      */
     public void addMaterializationValue(Constant value) {
+        addMaterialization(value, null);
+    }
+
+    /**
+     * Sets the operation which is re-emitted for re-materialization.
+     */
+    public void addMaterializationOp(RematerializableOp op) {
+        addMaterialization(null, op);
+    }
+
+    private void addMaterialization(Constant value, RematerializableOp op) {
         if (numMaterializationValuesAdded == 0) {
             materializedValue = value;
+            materializationOp = op;
         } else {
             // Interval is defined on multiple places -> no materialization is possible.
             materializedValue = null;
+            materializationOp = null;
         }
         numMaterializationValuesAdded++;
     }
 
     /**
      * Returns true if this interval can be re-materialized when spilled. This means that no
-     * spill-moves are needed. Instead of restore-moves the {@link #materializedValue} is restored.
+     * spill-moves are needed. Instead of restore-moves the {@link #materializedValue} is restored
+     * or the {@link #materializationOp} is re-emitted.
      */
     public boolean canMaterialize() {
-        return getMaterializedValue() != null;
+        return getMaterializedValue() != null || getMaterializationOp() != null;
     }
 
     /**
@@ -780,6 +869,25 @@ public final class Interval {
         return splitParent().materializedValue;
     }
 
+    /**
+     * Returns an operation which is re-emitted instead of a restore-move from stack, or
+     * {@code null} if this interval is not re-materialized by an operation.
+     */
+    public RematerializableOp getMaterializationOp() {
+        return splitParent().materializationOp;
+    }
+
+    /**
+     * Records that the value of this interval is used by a frame state.
+     */
+    public void setUsedInState() {
+        usedInState = true;
+    }
+
+    public boolean isUsedInState() {
+        return usedInState;
+    }
+
     int calcTo() {
         assert first != Range.EndMarker : "interval has no range";
 
@@ -1080,7 +1188,7 @@ public final class Interval {
             first.to = Math.max(to, first().to);
         } else {
             // insert new range
-            first = new Range(from, to, first());
+            first = Range.create(arena, from, to, first());
         }
     }
 
@@ -1136,7 +1244,7 @@ public final class Interval {
         assert cur != Range.EndMarker : "split interval after end of last range";
 
         if (cur.from < splitPos) {
-            result.first = new Range(splitPos, cur.to, cur.next);
+            result.first = Range.create(arena, splitPos, cur.to, cur.next);
             cur.to = splitPos;
             cur.next = Range.EndMarker;
 
@@ -1149,7 +1257,7 @@ public final class Interval {
         cachedTo = -1; // clear cached value
 
         // split list of use positions
-        result.usePosList = usePosList.splitAt(splitPos);
+        usePosList.splitAt(splitPos, result.usePosList);
 
         if (DetailedAsserts.getValue()) {
             for (int i = 0; i < usePosList.size(); i++) {
@@ -1310,7 +1418,7 @@ public final class Interval {
         }
         buf.append("} spill-state{").append(spillState()).append("}");
         if (canMaterialize()) {
-            buf.append(" (remat:").append(getMaterializedValue().toString()).append(")");
+            buf.append(" (remat:").append(getMaterializedValue() != null ? getMaterializedValue() : getMaterializationOp()).append(")");
         }
         return buf.toString();
     }
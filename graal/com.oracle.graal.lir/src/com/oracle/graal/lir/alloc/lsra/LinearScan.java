@@ -64,6 +64,7 @@ import com.oracle.graal.lir.framemap.FrameMapBuilder;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
 import com.oracle.graal.lir.phases.AllocationPhase.AllocationContext;
+import com.oracle.graal.lir.util.LIRArena;
 import com.oracle.graal.options.NestedBooleanOptionValue;
 import com.oracle.graal.options.Option;
 import com.oracle.graal.options.OptionType;
@@ -81,10 +82,14 @@ public class LinearScan {
         // @formatter:off
         @Option(help = "Enable spill position optimization", type = OptionType.Debug)
         public static final OptionValue<Boolean> LIROptLSRAOptimizeSpillPosition = new NestedBooleanOptionValue(LIROptimization, true);
+        @Option(help = "Re-emit the definition of cheap values instead of spilling them.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LIROptLSRARematerialize = new NestedBooleanOptionValue(LIROptimization, true);
+        @Option(help = "Compute global liveness by exploring the paths from uses to definitions and size live sets on demand.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LSRASparseLiveness = new OptionValue<>(true);
         // @formatter:on
     }
 
-    public static class BlockData {
+    public static class BlockData implements LIRArena.Reusable {
 
         /**
          * Bit map specifying which operands are live upon entry to this block. These are values
@@ -114,6 +119,14 @@ public class LinearScan {
          * an operand is its {@linkplain LinearScan#operandNumber(Value) operand number}.
          */
         public BitSet liveKill;
+
+        @Override
+        public void clear() {
+            liveIn = null;
+            liveOut = null;
+            liveGen = null;
+            liveKill = null;
+        }
     }
 
     public static final int DOMINATOR_SPILL_MOVE_ID = -2;
@@ -166,6 +179,17 @@ public class LinearScan {
      */
     private AbstractBlockBase<?>[] opIdToBlockMap;
 
+    /**
+     * The number of valid entries in {@link #opIdToInstructionMap} and {@link #opIdToBlockMap}.
+     */
+    private int numInstructions;
+
+    /**
+     * Provides the arrays, live sets, block data and intervals of this allocator, possibly reusing
+     * those of an earlier compilation on the same thread.
+     */
+    private final LIRArena arena;
+
     /**
      * The {@linkplain #operandNumber(Value) number} of the first variable operand allocated.
      */
@@ -183,8 +207,9 @@ public class LinearScan {
 
         this.registers = target.arch.getRegisters();
         this.firstVariableNumber = getRegisters().length;
-        this.blockData = new BlockMap<>(ir.getControlFlowGraph());
         this.neverSpillConstants = neverSpillConstants;
+        this.arena = LIRArena.current();
+        this.blockData = new BlockMap<>(arena.newArray(BlockData.class, ir.getControlFlowGraph().getBlocks().size()));
     }
 
     public int getFirstLirInstructionId(AbstractBlockBase<?> block) {
@@ -243,12 +268,20 @@ public class LinearScan {
         return firstVariableNumber - 1;
     }
 
+    /**
+     * Gets an empty bit set, possibly reusing one of an earlier compilation.
+     */
+    BitSet newBitSet() {
+        return arena.newBitSet();
+    }
+
     public BlockData getBlockData(AbstractBlockBase<?> block) {
         return blockData.get(block);
     }
 
     void initBlockData(AbstractBlockBase<?> block) {
-        blockData.put(block, new BlockData());
+        BlockData data = arena.reuse(BlockData.class);
+        blockData.put(block, data != null ? data : arena.track(new BlockData()));
     }
 
     static final IntervalPredicate IS_PRECOLORED_INTERVAL = new IntervalPredicate() {
@@ -308,7 +341,7 @@ public class LinearScan {
 
     void initIntervals() {
         intervalsSize = operandSize();
-        intervals = new Interval[intervalsSize + (intervalsSize >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT)];
+        intervals = arena.newArray(Interval.class, intervalsSize + (intervalsSize >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
     }
 
     /**
@@ -320,7 +353,12 @@ public class LinearScan {
     Interval createInterval(AllocatableValue operand) {
         assert isLegal(operand);
         int operandNumber = operandNumber(operand);
-        Interval interval = new Interval(operand, operandNumber);
+        Interval interval = arena.reuse(Interval.class);
+        if (interval == null) {
+            interval = arena.track(new Interval(operand, operandNumber, arena));
+        } else {
+            interval.initialize(operand, operandNumber);
+        }
         assert operandNumber < intervalsSize;
         assert intervals[operandNumber] == null;
         intervals[operandNumber] = interval;
@@ -338,7 +376,9 @@ public class LinearScan {
             firstDerivedIntervalIndex = intervalsSize;
         }
         if (intervalsSize == intervals.length) {
-            intervals = Arrays.copyOf(intervals, intervals.length + (intervals.length >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
+            Interval[] newIntervals = arena.newArray(Interval.class, intervals.length + (intervals.length >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
+            System.arraycopy(intervals, 0, newIntervals, 0, intervalsSize);
+            intervals = newIntervals;
         }
         intervalsSize++;
         Variable variable = new Variable(source.kind(), ir.nextVariable());
@@ -389,9 +429,10 @@ public class LinearScan {
         }
     }
 
-    void initOpIdMaps(int numInstructions) {
-        opIdToInstructionMap = new LIRInstruction[numInstructions];
-        opIdToBlockMap = new AbstractBlockBase<?>[numInstructions];
+    void initOpIdMaps(int instructionCount) {
+        numInstructions = instructionCount;
+        opIdToInstructionMap = arena.newArray(LIRInstruction.class, instructionCount);
+        opIdToBlockMap = arena.newArray(AbstractBlockBase.class, instructionCount);
     }
 
     void putOpIdMaps(int index, LIRInstruction op, AbstractBlockBase<?> block) {
@@ -403,8 +444,8 @@ public class LinearScan {
      * Gets the highest instruction id allocated by this object.
      */
     int maxOpId() {
-        assert opIdToInstructionMap.length > 0 : "no operations";
-        return (opIdToInstructionMap.length - 1) << 1;
+        assert numInstructions > 0 : "no operations";
+        return (numInstructions - 1) << 1;
     }
 
     /**
@@ -436,7 +477,7 @@ public class LinearScan {
      * @return the block containing the instruction denoted by {@code opId}
      */
     public AbstractBlockBase<?> blockForId(int opId) {
-        assert opIdToBlockMap.length > 0 && opId >= 0 && opId <= maxOpId() + 1 : "opId out of range";
+        assert numInstructions > 0 && opId >= 0 && opId <= maxOpId() + 1 : "opId out of range";
         return opIdToBlockMap[opIdToIndex(opId)];
     }
 
@@ -848,7 +889,7 @@ public class LinearScan {
             fixedIntervals = createUnhandledLists(IS_PRECOLORED_INTERVAL, null).first;
             // to ensure a walking until the last instruction id, add a dummy interval
             // with a high operation id
-            otherIntervals = new Interval(Value.ILLEGAL, -1);
+            otherIntervals = new Interval(Value.ILLEGAL, -1, arena);
             otherIntervals.addRange(Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1);
             IntervalWalker iw = new IntervalWalker(this, fixedIntervals, otherIntervals);
 
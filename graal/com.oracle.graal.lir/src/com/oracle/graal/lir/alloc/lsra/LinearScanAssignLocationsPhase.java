@@ -111,6 +111,7 @@ public class LinearScanAssignLocationsPhase extends AllocationPhase {
 
         if (isIllegal(interval.location()) && interval.canMaterialize()) {
             assert mode != OperandMode.DEF;
+            assert interval.getMaterializedValue() != null : "rematerialized operation must be re-emitted before its use: " + interval;
             return new ConstantValue(interval.kind(), interval.getMaterializedValue());
         }
         return interval.location();
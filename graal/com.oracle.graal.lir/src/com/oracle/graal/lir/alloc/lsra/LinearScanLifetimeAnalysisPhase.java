@@ -60,6 +60,7 @@ import com.oracle.graal.lir.LIRInstruction;
 import com.oracle.graal.lir.LIRInstruction.OperandFlag;
 import com.oracle.graal.lir.LIRInstruction.OperandMode;
 import com.oracle.graal.lir.StandardOp.LoadConstantOp;
+import com.oracle.graal.lir.StandardOp.RematerializableOp;
 import com.oracle.graal.lir.StandardOp.ValueMoveOp;
 import com.oracle.graal.lir.ValueConsumer;
 import com.oracle.graal.lir.alloc.lsra.Interval.RegisterPriority;
@@ -152,16 +153,14 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
      */
     @SuppressWarnings("try")
     void computeLocalLiveSets() {
-        int liveSize = allocator.liveSetSize();
-
         intervalInLoop = new BitMap2D(allocator.operandSize(), allocator.numLoops());
 
         // iterate all blocks
         for (final AbstractBlockBase<?> block : allocator.sortedBlocks()) {
             try (Indent indent = Debug.logAndIndent("compute local live sets for block %s", block)) {
 
-                final BitSet liveGen = new BitSet(liveSize);
-                final BitSet liveKill = new BitSet(liveSize);
+                final BitSet liveGen = newLiveSet();
+                final BitSet liveKill = newLiveSet();
 
                 List<LIRInstruction> instructions = allocator.getLIR().getLIRforBlock(block);
                 int numInst = instructions.size();
@@ -237,8 +236,8 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
                 BlockData blockSets = allocator.getBlockData(block);
                 blockSets.liveGen = liveGen;
                 blockSets.liveKill = liveKill;
-                blockSets.liveIn = new BitSet(liveSize);
-                blockSets.liveOut = new BitSet(liveSize);
+                blockSets.liveIn = newLiveSet();
+                blockSets.liveOut = newLiveSet();
 
                 if (Debug.isLogEnabled()) {
                     Debug.log("liveGen  B%d %s", block.getId(), blockSets.liveGen);
@@ -249,6 +248,19 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
         } // end of block iteration
     }
 
+    /**
+     * Creates a live set. With {@link LinearScan.Options#LSRASparseLiveness} the set is not
+     * presized to {@link LinearScan#liveSetSize()} but grows with the highest operand it contains,
+     * which keeps the block-local sets of methods with many variables small. Sparse sets are taken
+     * from the allocator's arena so that their storage can be reused by later compilations.
+     */
+    private BitSet newLiveSet() {
+        if (LinearScan.Options.LSRASparseLiveness.getValue()) {
+            return allocator.newBitSet();
+        }
+        return new BitSet(allocator.liveSetSize());
+    }
+
     private void verifyTemp(BitSet liveKill, Value operand) {
         /*
          * Fixed intervals are never live at block boundaries, so they need not be processed in live
@@ -282,93 +294,148 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
     protected void computeGlobalLiveSets() {
         try (Indent indent = Debug.logAndIndent("compute global live sets")) {
             int numBlocks = allocator.blockCount();
-            boolean changeOccurred;
-            boolean changeOccurredInBlock;
-            int iterationCount = 0;
-            BitSet liveOut = new BitSet(allocator.liveSetSize()); // scratch set for calculations
+            if (LinearScan.Options.LSRASparseLiveness.getValue()) {
+                computeGlobalLiveSetsByPathExploration(numBlocks);
+            } else {
+                computeGlobalLiveSetsByIteration(numBlocks);
+            }
 
-            /*
-             * Perform a backward dataflow analysis to compute liveOut and liveIn for each block.
-             * The loop is executed until a fixpoint is reached (no changes in an iteration).
-             */
-            do {
-                changeOccurred = false;
+            if (DetailedAsserts.getValue()) {
+                verifyLiveness();
+            }
 
-                try (Indent indent2 = Debug.logAndIndent("new iteration %d", iterationCount)) {
+            // check that the liveIn set of the first block is empty
+            AbstractBlockBase<?> startBlock = allocator.getLIR().getControlFlowGraph().getStartBlock();
+            if (allocator.getBlockData(startBlock).liveIn.cardinality() != 0) {
+                if (DetailedAsserts.getValue()) {
+                    reportFailure(numBlocks);
+                }
+                // bailout if this occurs in product mode.
+                throw new JVMCIError("liveIn set of first block must be empty: " + allocator.getBlockData(startBlock).liveIn);
+            }
+        }
+    }
 
-                    // iterate all blocks in reverse order
-                    for (int i = numBlocks - 1; i >= 0; i--) {
-                        AbstractBlockBase<?> block = allocator.blockAt(i);
-                        BlockData blockSets = allocator.getBlockData(block);
+    /**
+     * Computes the global live sets by propagating each upward exposed use (i.e. each operand in
+     * {@link BlockData#liveGen}) backwards along the predecessors until a block is reached that
+     * defines the operand (i.e. contains it in {@link BlockData#liveKill}) or in which the operand
+     * is already known to be live-in. Every block is visited at most once per operand, so the
+     * work is proportional to the size of the live ranges instead of the number of fixpoint
+     * iterations times the number of blocks times the size of the live sets.
+     */
+    @SuppressWarnings("try")
+    private void computeGlobalLiveSetsByPathExploration(int numBlocks) {
+        AbstractBlockBase<?>[] worklist = new AbstractBlockBase<?>[numBlocks];
+        for (int i = numBlocks - 1; i >= 0; i--) {
+            AbstractBlockBase<?> block = allocator.blockAt(i);
+            BitSet liveGen = allocator.getBlockData(block).liveGen;
+            for (int operandNum = liveGen.nextSetBit(0); operandNum >= 0; operandNum = liveGen.nextSetBit(operandNum + 1)) {
+                int worklistSize = 0;
+                worklist[worklistSize++] = block;
+                while (worklistSize > 0) {
+                    AbstractBlockBase<?> cur = worklist[--worklistSize];
+                    BitSet liveIn = allocator.getBlockData(cur).liveIn;
+                    if (liveIn.get(operandNum)) {
+                        continue;
+                    }
+                    liveIn.set(operandNum);
+                    for (AbstractBlockBase<?> pred : cur.getPredecessors()) {
+                        BlockData predSets = allocator.getBlockData(pred);
+                        if (!predSets.liveOut.get(operandNum)) {
+                            predSets.liveOut.set(operandNum);
+                            if (!predSets.liveKill.get(operandNum)) {
+                                assert worklistSize < numBlocks : "block pushed twice for the same operand";
+                                worklist[worklistSize++] = pred;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (Debug.isLogEnabled()) {
+            for (int i = 0; i < numBlocks; i++) {
+                AbstractBlockBase<?> block = allocator.blockAt(i);
+                BlockData blockSets = allocator.getBlockData(block);
+                Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), blockSets.liveIn, blockSets.liveOut);
+            }
+        }
+    }
 
-                        changeOccurredInBlock = false;
+    @SuppressWarnings("try")
+    private void computeGlobalLiveSetsByIteration(int numBlocks) {
+        boolean changeOccurred;
+        boolean changeOccurredInBlock;
+        int iterationCount = 0;
+        BitSet liveOut = new BitSet(allocator.liveSetSize()); // scratch set for calculations
 
-                        /* liveOut(block) is the union of liveIn(sux), for successors sux of block. */
-                        int n = block.getSuccessorCount();
-                        if (n > 0) {
-                            liveOut.clear();
-                            // block has successors
-                            if (n > 0) {
-                                for (AbstractBlockBase<?> successor : block.getSuccessors()) {
-                                    liveOut.or(allocator.getBlockData(successor).liveIn);
-                                }
-                            }
+        /*
+         * Perform a backward dataflow analysis to compute liveOut and liveIn for each block.
+         * The loop is executed until a fixpoint is reached (no changes in an iteration).
+         */
+        do {
+            changeOccurred = false;
 
-                            if (!blockSets.liveOut.equals(liveOut)) {
-                                /*
-                                 * A change occurred. Swap the old and new live out sets to avoid
-                                 * copying.
-                                 */
-                                BitSet temp = blockSets.liveOut;
-                                blockSets.liveOut = liveOut;
-                                liveOut = temp;
-
-                                changeOccurred = true;
-                                changeOccurredInBlock = true;
+            try (Indent indent2 = Debug.logAndIndent("new iteration %d", iterationCount)) {
+
+                // iterate all blocks in reverse order
+                for (int i = numBlocks - 1; i >= 0; i--) {
+                    AbstractBlockBase<?> block = allocator.blockAt(i);
+                    BlockData blockSets = allocator.getBlockData(block);
+
+                    changeOccurredInBlock = false;
+
+                    /* liveOut(block) is the union of liveIn(sux), for successors sux of block. */
+                    int n = block.getSuccessorCount();
+                    if (n > 0) {
+                        liveOut.clear();
+                        // block has successors
+                        if (n > 0) {
+                            for (AbstractBlockBase<?> successor : block.getSuccessors()) {
+                                liveOut.or(allocator.getBlockData(successor).liveIn);
                             }
                         }
 
-                        if (iterationCount == 0 || changeOccurredInBlock) {
+                        if (!blockSets.liveOut.equals(liveOut)) {
                             /*
-                             * liveIn(block) is the union of liveGen(block) with (liveOut(block) &
-                             * !liveKill(block)).
-                             * 
-                             * Note: liveIn has to be computed only in first iteration or if liveOut
-                             * has changed!
+                             * A change occurred. Swap the old and new live out sets to avoid
+                             * copying.
                              */
-                            BitSet liveIn = blockSets.liveIn;
-                            liveIn.clear();
-                            liveIn.or(blockSets.liveOut);
-                            liveIn.andNot(blockSets.liveKill);
-                            liveIn.or(blockSets.liveGen);
+                            BitSet temp = blockSets.liveOut;
+                            blockSets.liveOut = liveOut;
+                            liveOut = temp;
 
-                            if (Debug.isLogEnabled()) {
-                                Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), liveIn, blockSets.liveOut);
-                            }
+                            changeOccurred = true;
+                            changeOccurredInBlock = true;
                         }
                     }
-                    iterationCount++;
 
-                    if (changeOccurred && iterationCount > 50) {
-                        throw new BailoutException("too many iterations in computeGlobalLiveSets");
+                    if (iterationCount == 0 || changeOccurredInBlock) {
+                        /*
+                         * liveIn(block) is the union of liveGen(block) with (liveOut(block) &
+                         * !liveKill(block)).
+                         * 
+                         * Note: liveIn has to be computed only in first iteration or if liveOut
+                         * has changed!
+                         */
+                        BitSet liveIn = blockSets.liveIn;
+                        liveIn.clear();
+                        liveIn.or(blockSets.liveOut);
+                        liveIn.andNot(blockSets.liveKill);
+                        liveIn.or(blockSets.liveGen);
+
+                        if (Debug.isLogEnabled()) {
+                            Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), liveIn, blockSets.liveOut);
+                        }
                     }
                 }
-            } while (changeOccurred);
+                iterationCount++;
 
-            if (DetailedAsserts.getValue()) {
-                verifyLiveness();
-            }
-
-            // check that the liveIn set of the first block is empty
-            AbstractBlockBase<?> startBlock = allocator.getLIR().getControlFlowGraph().getStartBlock();
-            if (allocator.getBlockData(startBlock).liveIn.cardinality() != 0) {
-                if (DetailedAsserts.getValue()) {
-                    reportFailure(numBlocks);
+                if (changeOccurred && iterationCount > 50) {
+                    throw new BailoutException("too many iterations in computeGlobalLiveSets");
                 }
-                // bailout if this occurs in product mode.
-                throw new JVMCIError("liveIn set of first block must be empty: " + allocator.getBlockData(startBlock).liveIn);
             }
-        }
+        } while (changeOccurred);
     }
 
     @SuppressWarnings("try")
@@ -545,7 +612,12 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
             // detection of method-parameters and roundfp-results
             interval.setSpillState(SpillState.StartInMemory);
         }
-        interval.addMaterializationValue(getMaterializedValue(op, operand, interval));
+        RematerializableOp materializationOp = getMaterializationOp(op, interval);
+        if (materializationOp != null) {
+            interval.addMaterializationOp(materializationOp);
+        } else {
+            interval.addMaterializationValue(getMaterializedValue(op, operand, interval));
+        }
 
         if (Debug.isLogEnabled()) {
             Debug.log("add def: %s defPos %d (%s)", interval, defPos, registerPriority.name());
@@ -717,6 +789,9 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
                     int opId = op.id();
                     int blockFrom = allocator.getFirstLirInstructionId((allocator.blockForId(opId)));
                     addUse((AllocatableValue) operand, blockFrom, opId + 1, RegisterPriority.None, operand.getLIRKind());
+                    if (allocator.isProcessed(operand) && isVariable(operand)) {
+                        allocator.intervalFor(operand).setUsedInState();
+                    }
                 }
             };
 
@@ -828,24 +903,46 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
         if (op instanceof LoadConstantOp) {
             LoadConstantOp move = (LoadConstantOp) op;
 
-            if (!allocator.neverSpillConstants()) {
-                /*
-                 * Check if the interval has any uses which would accept an stack location (priority
-                 * == ShouldHaveRegister). Rematerialization of such intervals can result in a
-                 * degradation, because rematerialization always inserts a constant load, even if
-                 * the value is not needed in a register.
-                 */
-                Interval.UsePosList usePosList = interval.usePosList();
-                int numUsePos = usePosList.size();
-                for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
-                    Interval.RegisterPriority priority = usePosList.registerPriority(useIdx);
-                    if (priority == Interval.RegisterPriority.ShouldHaveRegister) {
-                        return null;
-                    }
-                }
+            if (!allocator.neverSpillConstants() && hasStackLocationUse(interval)) {
+                return null;
             }
             return move.getConstant();
         }
         return null;
     }
+
+    /**
+     * Checks if the interval has any uses which would accept an stack location (priority ==
+     * ShouldHaveRegister). Rematerialization of such intervals can result in a degradation, because
+     * rematerialization always inserts the defining operation, even if the value is not needed in
+     * a register.
+     */
+    private static boolean hasStackLocationUse(Interval interval) {
+        Interval.UsePosList usePosList = interval.usePosList();
+        int numUsePos = usePosList.size();
+        for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
+            Interval.RegisterPriority priority = usePosList.registerPriority(useIdx);
+            if (priority == Interval.RegisterPriority.ShouldHaveRegister) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the operation which can be re-emitted for re-materialization of an interval instead
+     * of spilling it.
+     *
+     * @param op An instruction which defines a value
+     * @param interval The interval for this defined value.
+     * @return Returns {@code op} if it is a {@link RematerializableOp} whose result is neither used
+     *         by a frame state nor at a position which accepts a stack location, {@code null}
+     *         otherwise.
+     */
+    protected static RematerializableOp getMaterializationOp(LIRInstruction op, Interval interval) {
+        if (op instanceof RematerializableOp && LinearScan.Options.LIROptLSRARematerialize.getValue() && !interval.isUsedInState() && !hasStackLocationUse(interval)) {
+            return (RematerializableOp) op;
+        }
+        return null;
+    }
 }
@@ -22,10 +22,12 @@
  */
 package com.oracle.graal.lir.alloc.lsra;
 
+import com.oracle.graal.lir.util.LIRArena;
+
 /**
  * Represents a range of integers from a start (inclusive) to an end (exclusive.
  */
-public final class Range {
+public final class Range implements LIRArena.Reusable {
 
     public static final Range EndMarker = new Range(Integer.MAX_VALUE, Integer.MAX_VALUE, null);
 
@@ -61,6 +63,25 @@ public final class Range {
         this.next = next;
     }
 
+    /**
+     * Creates a new range, reusing one of an earlier compilation if {@code arena} has one.
+     */
+    static Range create(LIRArena arena, int from, int to, Range next) {
+        Range range = arena.reuse(Range.class);
+        if (range == null) {
+            return arena.track(new Range(from, to, next));
+        }
+        range.from = from;
+        range.to = to;
+        range.next = next;
+        return range;
+    }
+
+    @Override
+    public void clear() {
+        next = null;
+    }
+
     int intersectsAt(Range other) {
         Range r1 = this;
         Range r2 = other;
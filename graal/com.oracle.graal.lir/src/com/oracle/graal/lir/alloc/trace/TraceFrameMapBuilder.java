@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.trace;
+
+import static com.oracle.graal.lir.LIRValueUtil.asVirtualStackSlot;
+import static com.oracle.graal.lir.LIRValueUtil.isVirtualStackSlot;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.ValueProcedure;
+import com.oracle.graal.lir.VirtualStackSlot;
+import com.oracle.graal.lir.framemap.FrameMap;
+import com.oracle.graal.lir.framemap.FrameMapBuilderTool;
+import com.oracle.graal.lir.framemap.SimpleVirtualStackSlot;
+import com.oracle.graal.lir.framemap.VirtualStackSlotRange;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.stackslotalloc.StackSlotAllocator;
+
+import jdk.vm.ci.code.CallingConvention;
+import jdk.vm.ci.code.CodeCacheProvider;
+import jdk.vm.ci.code.RegisterConfig;
+import jdk.vm.ci.common.JVMCIError;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LIRKind;
+
+/**
+ * A {@link FrameMapBuilderTool} used for allocating a single trace concurrently with other traces.
+ *
+ * Stack slots get temporary ids from a counter shared by all traces of a {@link Group}, so they
+ * are unique but depend on thread timing. {@link Group#commit} allocates the real slots in trace
+ * order and replaces the temporary slots in the LIR, which yields the same slots as allocating the
+ * traces sequentially.
+ */
+final class TraceFrameMapBuilder implements FrameMapBuilderTool {
+
+    static final class Group {
+        private final FrameMapBuilderTool delegate;
+        private final int firstId;
+        private final AtomicInteger nextId;
+        private final TraceFrameMapBuilder[] builders;
+
+        Group(FrameMapBuilderTool delegate, int numberOfTraces) {
+            this.delegate = delegate;
+            this.firstId = delegate.getNumberOfStackSlots();
+            this.nextId = new AtomicInteger(firstId);
+            this.builders = new TraceFrameMapBuilder[numberOfTraces];
+        }
+
+        /**
+         * Creates the builder for a trace. Must be called before allocation starts.
+         */
+        TraceFrameMapBuilder forTrace(int traceId) {
+            assert builders[traceId] == null;
+            builders[traceId] = new TraceFrameMapBuilder(this);
+            return builders[traceId];
+        }
+
+        /**
+         * Allocates the stack slots of all traces in the frame map builder of the compilation and
+         * replaces the temporary slots in the LIR. Must be called after all traces are allocated.
+         */
+        void commit(LIR lir) {
+            VirtualStackSlot[] slots = new VirtualStackSlot[nextId.get() - firstId];
+            for (TraceFrameMapBuilder builder : builders) {
+                if (builder == null) {
+                    continue;
+                }
+                for (VirtualStackSlot slot : builder.stackSlots) {
+                    VirtualStackSlot newSlot;
+                    if (slot instanceof VirtualStackSlotRange) {
+                        VirtualStackSlotRange range = (VirtualStackSlotRange) slot;
+                        newSlot = delegate.allocateStackSlots(range.getSlots(), range.getObjects(), null);
+                    } else {
+                        newSlot = delegate.allocateSpillSlot(slot.getLIRKind());
+                    }
+                    slots[slot.getId() - firstId] = newSlot;
+                }
+            }
+            if (slots.length == 0) {
+                return;
+            }
+            ValueProcedure replaceSlots = (value, mode, flags) -> {
+                if (isVirtualStackSlot(value) && asVirtualStackSlot(value).getId() >= firstId) {
+                    VirtualStackSlot newSlot = slots[asVirtualStackSlot(value).getId() - firstId];
+                    assert newSlot != null : "unknown stack slot " + value;
+                    return newSlot;
+                }
+                return value;
+            };
+            for (AbstractBlockBase<?> block : lir.getControlFlowGraph().getBlocks()) {
+                for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                    op.forEachInput(replaceSlots);
+                    op.forEachAlive(replaceSlots);
+                    op.forEachTemp(replaceSlots);
+                    op.forEachOutput(replaceSlots);
+                    op.forEachState(replaceSlots);
+                }
+            }
+        }
+    }
+
+    private final Group group;
+    private final List<VirtualStackSlot> stackSlots;
+
+    private TraceFrameMapBuilder(Group group) {
+        this.group = group;
+        this.stackSlots = new ArrayList<>();
+    }
+
+    public VirtualStackSlot allocateSpillSlot(LIRKind kind) {
+        SimpleVirtualStackSlot slot = new SimpleVirtualStackSlot(group.nextId.getAndIncrement(), kind);
+        stackSlots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Allocates a stack slot range. Object stack slots ({@code outObjectStackSlots != null}) are
+     * not supported by the frame map builder of the compilation either, and ranges are only
+     * requested during LIR generation, i.e., never during register allocation.
+     */
+    public VirtualStackSlot allocateStackSlots(int slots, BitSet objects, List<VirtualStackSlot> outObjectStackSlots) {
+        if (slots == 0) {
+            return null;
+        }
+        if (outObjectStackSlots != null) {
+            throw JVMCIError.shouldNotReachHere("object stack slots are not supported during trace register allocation");
+        }
+        VirtualStackSlotRange slot = new VirtualStackSlotRange(group.nextId.getAndIncrement(), slots, objects, getFrameMap().getTarget().getLIRKind(JavaKind.Object));
+        stackSlots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Returns an upper bound for the ids of the stack slots that are visible to this trace.
+     */
+    public int getNumberOfStackSlots() {
+        return group.nextId.get();
+    }
+
+    /**
+     * Returns the stack slots allocated for this trace. They are temporary until
+     * {@link Group#commit}.
+     */
+    public List<VirtualStackSlot> getStackSlots() {
+        return stackSlots;
+    }
+
+    public RegisterConfig getRegisterConfig() {
+        return group.delegate.getRegisterConfig();
+    }
+
+    public CodeCacheProvider getCodeCache() {
+        return group.delegate.getCodeCache();
+    }
+
+    public FrameMap getFrameMap() {
+        return group.delegate.getFrameMap();
+    }
+
+    public void callsMethod(CallingConvention cc) {
+        synchronized (group.delegate) {
+            group.delegate.callsMethod(cc);
+        }
+    }
+
+    /**
+     * The frame map is built by the {@link LIRGenerationResult} from the frame map builder of the
+     * compilation after {@link Group#commit}. A trace builder is only handed to the allocator of
+     * its trace and never installed in the result, so this is unreachable.
+     */
+    public FrameMap buildFrameMap(LIRGenerationResult result, StackSlotAllocator allocator) {
+        throw JVMCIError.shouldNotReachHere("the frame map is built from the frame map builder of the compilation");
+    }
+}
@@ -22,18 +22,25 @@
  */
 package com.oracle.graal.lir.alloc.trace;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig;
 import com.oracle.graal.compiler.common.alloc.Trace;
 import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
 import com.oracle.graal.compiler.common.alloc.TraceStatisticsPrinter;
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.debug.DebugConfig;
+import com.oracle.graal.debug.DebugConfigScope;
 import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.Indent;
+import com.oracle.graal.debug.internal.DebugScope;
 import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInstruction;
 import com.oracle.graal.lir.StandardOp.JumpOp;
@@ -41,8 +48,9 @@ import com.oracle.graal.lir.StandardOp.LabelOp;
 import com.oracle.graal.lir.alloc.trace.TraceAllocationPhase.TraceAllocationContext;
 import com.oracle.graal.lir.alloc.trace.TraceBuilderPhase.TraceBuilderContext;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceLinearScan;
+import com.oracle.graal.lir.framemap.FrameMapBuilder;
+import com.oracle.graal.lir.framemap.FrameMapBuilderTool;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
-import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
 import com.oracle.graal.lir.phases.AllocationPhase;
 import com.oracle.graal.lir.ssi.SSIUtil;
 import com.oracle.graal.lir.ssi.SSIVerifier;
@@ -51,6 +59,7 @@ import com.oracle.graal.options.OptionType;
 import com.oracle.graal.options.OptionValue;
 
 import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.common.JVMCIError;
 
 /**
  * An implementation of a Trace Register Allocator as described in <a
@@ -68,6 +77,10 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         public static final OptionValue<Boolean> TraceRAshareSpillInformation = new OptionValue<>(true);
         @Option(help = "Reuse spill slots for global move resolution cycle breaking.", type = OptionType.Debug)
         public static final OptionValue<Boolean> TraceRAreuseStackSlotsForMoveResolutionCycleBreaking = new OptionValue<>(true);
+        @Option(help = "Allocate independent traces in parallel.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> TraceRAparallel = new OptionValue<>(false);
+        @Option(help = "Minimum number of traces for allocating traces in parallel.", type = OptionType.Expert)
+        public static final OptionValue<Integer> TraceRAparallelMinTraces = new OptionValue<>(64);
         // @formatter:on
     }
 
@@ -80,39 +93,28 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
 
     private static final DebugMetric trivialTracesMetric = Debug.metric("TraceRA[trivialTraces]");
     private static final DebugMetric tracesMetric = Debug.metric("TraceRA[traces]");
+    private static final DebugMetric parallelWavesMetric = Debug.metric("TraceRA[parallelWaves]");
 
     @Override
     @SuppressWarnings("try")
     protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder, AllocationContext context) {
-        MoveFactory spillMoveFactory = context.spillMoveFactory;
-        RegisterAllocationConfig registerAllocationConfig = context.registerAllocationConfig;
         LIR lir = lirGenRes.getLIR();
         assert SSIVerifier.verify(lir) : "LIR not in SSI form.";
         TraceBuilderResult<B> resultTraces = builtTraces(target, lirGenRes, codeEmittingOrder, linearScanOrder);
 
-        TraceAllocationContext traceContext = new TraceAllocationContext(spillMoveFactory, registerAllocationConfig, resultTraces);
+        TraceAllocationContext traceContext = new TraceAllocationContext(context.spillMoveFactory, context.registerAllocationConfig, resultTraces);
 
         Debug.dump(lir, "Before TraceRegisterAllocation");
-        try (Scope s0 = Debug.scope("AllocateTraces", resultTraces)) {
-            for (Trace<B> trace : resultTraces.getTraces()) {
-                try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s", trace.getId(), trace); Scope s = Debug.scope("AllocateTrace", trace)) {
-                    tracesMetric.increment();
-                    if (trivialTracesMetric.isEnabled() && isTrivialTrace(lir, trace)) {
-                        trivialTracesMetric.increment();
-                    }
-                    Debug.dump(TRACE_DUMP_LEVEL, trace, "Trace" + trace.getId() + ": " + trace);
-                    if (Options.TraceRAtrivialBlockAllocator.getValue() && isTrivialTrace(lir, trace)) {
-                        TRACE_TRIVIAL_ALLOCATOR.apply(target, lirGenRes, codeEmittingOrder, trace, traceContext, false);
-                    } else {
-                        TraceLinearScan allocator = new TraceLinearScan(target, lirGenRes, spillMoveFactory, registerAllocationConfig, trace, resultTraces, false);
-                        allocator.allocate(target, lirGenRes, codeEmittingOrder, linearScanOrder, spillMoveFactory, registerAllocationConfig);
-                    }
-                    Debug.dump(TRACE_DUMP_LEVEL, trace, "After Trace" + trace.getId() + ": " + trace);
+        if (Options.TraceRAparallel.getValue() && resultTraces.getTraces().size() >= Options.TraceRAparallelMinTraces.getValue()) {
+            allocateTracesInParallel(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext);
+        } else {
+            try (Scope s0 = Debug.scope("AllocateTraces", resultTraces)) {
+                for (Trace<B> trace : resultTraces.getTraces()) {
+                    allocateTrace(target, lirGenRes, codeEmittingOrder, linearScanOrder, trace, traceContext, lirGenRes.getFrameMapBuilder(), true);
                 }
-                unnumberInstructions(trace.getBlocks(), lir);
+            } catch (Throwable e) {
+                throw Debug.handle(e);
             }
-        } catch (Throwable e) {
-            throw Debug.handle(e);
         }
         Debug.dump(lir, "After trace allocation");
 
@@ -120,6 +122,109 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         deconstructSSIForm(lir);
     }
 
+    @SuppressWarnings("try")
+    private static <B extends AbstractBlockBase<B>> void allocateTrace(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder, Trace<B> trace,
+                    TraceAllocationContext traceContext, FrameMapBuilder frameMapBuilder, boolean dumpTrace) {
+        LIR lir = lirGenRes.getLIR();
+        try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s", trace.getId(), trace); Scope s = Debug.scope("AllocateTrace", trace)) {
+            tracesMetric.increment();
+            if (trivialTracesMetric.isEnabled() && isTrivialTrace(lir, trace)) {
+                trivialTracesMetric.increment();
+            }
+            if (dumpTrace) {
+                Debug.dump(TRACE_DUMP_LEVEL, trace, "Trace" + trace.getId() + ": " + trace);
+            }
+            if (Options.TraceRAtrivialBlockAllocator.getValue() && isTrivialTrace(lir, trace)) {
+                TRACE_TRIVIAL_ALLOCATOR.apply(target, lirGenRes, codeEmittingOrder, trace, traceContext, false);
+            } else {
+                TraceLinearScan allocator = new TraceLinearScan(target, lirGenRes, frameMapBuilder, traceContext.spillMoveFactory, traceContext.registerAllocationConfig, trace,
+                                traceContext.resultTraces, false);
+                allocator.allocate(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext.spillMoveFactory, traceContext.registerAllocationConfig);
+            }
+            if (dumpTrace) {
+                Debug.dump(TRACE_DUMP_LEVEL, trace, "After Trace" + trace.getId() + ": " + trace);
+            }
+        } catch (Throwable e) {
+            throw Debug.handle(e);
+        }
+        unnumberInstructions(trace.getBlocks(), lir);
+    }
+
+    /**
+     * Allocates the traces on the common {@link ForkJoinPool}. A trace reads the allocation results
+     * of the predecessor traces with a lower id, i.e., the traces that are allocated before it in
+     * sequential mode, if it uses {@linkplain Options#TraceRAuseInterTraceHints inter-trace hints}
+     * or if it is allocated by the {@link TraceTrivialAllocator}. The traces are therefore
+     * allocated in waves, where each trace is in a later wave than the traces it reads from. Stack
+     * slots are allocated via a {@link TraceFrameMapBuilder} so that the result is identical to
+     * sequential allocation.
+     *
+     * Dumping of individual traces is disabled because the dump handlers would observe the LIR of
+     * traces that are concurrently being allocated.
+     */
+    @SuppressWarnings("try")
+    private static <B extends AbstractBlockBase<B>> void allocateTracesInParallel(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                    TraceAllocationContext traceContext) {
+        @SuppressWarnings("unchecked")
+        TraceBuilderResult<B> resultTraces = (TraceBuilderResult<B>) traceContext.resultTraces;
+        LIR lir = lirGenRes.getLIR();
+        List<Trace<B>> traces = resultTraces.getTraces();
+        TraceFrameMapBuilder.Group frameMapBuilders = new TraceFrameMapBuilder.Group((FrameMapBuilderTool) lirGenRes.getFrameMapBuilder(), traces.size());
+        DebugConfig debugConfig = DebugScope.getConfig();
+
+        List<List<Callable<Void>>> waves = new ArrayList<>();
+        int[] waveForTrace = new int[traces.size()];
+        for (int traceId = 0; traceId < traces.size(); traceId++) {
+            Trace<B> trace = traces.get(traceId);
+            int wave = 0;
+            if (Options.TraceRAuseInterTraceHints.getValue() || (Options.TraceRAtrivialBlockAllocator.getValue() && isTrivialTrace(lir, trace))) {
+                for (B block : trace.getBlocks()) {
+                    for (B pred : block.getPredecessors()) {
+                        int predTraceId = resultTraces.getTraceForBlock(pred);
+                        if (predTraceId < traceId) {
+                            wave = Math.max(wave, waveForTrace[predTraceId] + 1);
+                        }
+                    }
+                }
+            }
+            waveForTrace[traceId] = wave;
+            if (wave == waves.size()) {
+                waves.add(new ArrayList<>());
+            }
+            FrameMapBuilder frameMapBuilder = frameMapBuilders.forTrace(traceId);
+            waves.get(wave).add(() -> {
+                try (DebugConfigScope c = Debug.setConfig(debugConfig); Scope s = Debug.scope("AllocateTraces", resultTraces)) {
+                    allocateTrace(target, lirGenRes, codeEmittingOrder, linearScanOrder, trace, traceContext, frameMapBuilder, false);
+                } catch (Throwable e) {
+                    throw Debug.handle(e);
+                }
+                return null;
+            });
+        }
+
+        parallelWavesMetric.add(waves.size());
+        for (List<Callable<Void>> wave : waves) {
+            for (Future<Void> result : ForkJoinPool.commonPool().invokeAll(wave)) {
+                try {
+                    result.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JVMCIError(e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new JVMCIError(cause);
+                }
+            }
+        }
+        frameMapBuilders.commit(lir);
+    }
+
     @SuppressWarnings("try")
     private static <B extends AbstractBlockBase<B>> TraceBuilderResult<B> builtTraces(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder) {
         try (Scope s = Debug.scope("TraceBuilding")) {
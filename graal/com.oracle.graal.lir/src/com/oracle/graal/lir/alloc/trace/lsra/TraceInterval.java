@@ -48,6 +48,7 @@ import jdk.vm.ci.meta.Value;
 import com.oracle.graal.compiler.common.util.Util;
 import com.oracle.graal.debug.TTY;
 import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.RematerializableOp;
 import com.oracle.graal.lir.Variable;
 
 /**
@@ -382,7 +383,21 @@ final class TraceInterval extends IntervalHint {
     private JavaConstant materializedValue;
 
     /**
-     * The number of times {@link #addMaterializationValue(JavaConstant)} is called.
+     * The operation with which a spilled child interval can be re-materialized if the interval is
+     * not defined by a constant.
+     */
+    private RematerializableOp materializationOp;
+
+    /**
+     * Determines whether the value of this interval is used by a frame state. Such an interval
+     * cannot be re-materialized by a {@link #materializationOp}, because a frame state needs the
+     * value in a location.
+     */
+    private boolean usedInState;
+
+    /**
+     * The number of times {@link #addMaterializationValue(JavaConstant)} or
+     * {@link #addMaterializationOp(RematerializableOp)} is called.
      */
     private int numMaterializationValuesAdded;
 
@@ -585,21 +600,35 @@ final class TraceInterval extends IntervalHint {
      * Sets the value which is used for re-materialization.
      */
     public void addMaterializationValue(JavaConstant value) {
+        addMaterialization(value, null);
+    }
+
+    /**
+     * Sets the operation which is re-emitted for re-materialization.
+     */
+    public void addMaterializationOp(RematerializableOp op) {
+        addMaterialization(null, op);
+    }
+
+    private void addMaterialization(JavaConstant value, RematerializableOp op) {
         if (numMaterializationValuesAdded == 0) {
             materializedValue = value;
+            materializationOp = op;
         } else {
             // Interval is defined on multiple places -> no materialization is possible.
             materializedValue = null;
+            materializationOp = null;
         }
         numMaterializationValuesAdded++;
     }
 
     /**
      * Returns true if this interval can be re-materialized when spilled. This means that no
-     * spill-moves are needed. Instead of restore-moves the {@link #materializedValue} is restored.
+     * spill-moves are needed. Instead of restore-moves the {@link #materializedValue} is restored
+     * or the {@link #materializationOp} is re-emitted.
      */
     public boolean canMaterialize() {
-        return getMaterializedValue() != null;
+        return getMaterializedValue() != null || getMaterializationOp() != null;
     }
 
     /**
@@ -609,6 +638,25 @@ final class TraceInterval extends IntervalHint {
         return splitParent().materializedValue;
     }
 
+    /**
+     * Returns an operation which is re-emitted instead of a restore-move from stack, or
+     * {@code null} if this interval is not re-materialized by an operation.
+     */
+    public RematerializableOp getMaterializationOp() {
+        return splitParent().materializationOp;
+    }
+
+    /**
+     * Records that the value of this interval is used by a frame state.
+     */
+    public void setUsedInState() {
+        usedInState = true;
+    }
+
+    public boolean isUsedInState() {
+        return usedInState;
+    }
+
     // consistency check of split-children
     boolean checkSplitChildren() {
         if (!splitChildren.isEmpty()) {
@@ -1027,7 +1075,7 @@ final class TraceInterval extends IntervalHint {
         }
         buf.append("} spill-state{").append(spillState()).append("}");
         if (canMaterialize()) {
-            buf.append(" (remat:").append(getMaterializedValue().toString()).append(")");
+            buf.append(" (remat:").append(getMaterializedValue() != null ? getMaterializedValue() : getMaterializationOp()).append(")");
         }
         return buf.toString();
     }
@@ -85,6 +85,10 @@ public final class TraceLinearScan {
         // @formatter:off
         @Option(help = "Enable spill position optimization", type = OptionType.Debug)
         public static final OptionValue<Boolean> LIROptTraceRAEliminateSpillMoves = new NestedBooleanOptionValue(LIRPhase.Options.LIROptimization, true);
+        @Option(help = "Re-emit the definition of cheap values instead of spilling them.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LIROptTraceRARematerialize = new NestedBooleanOptionValue(LIRPhase.Options.LIROptimization, true);
+        @Option(help = "Store values defined at a trace entry on the incoming edges if they are less frequent than the spill position.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LIROptTraceRAOptimizeSpillPosition = new NestedBooleanOptionValue(LIRPhase.Options.LIROptimization, true);
         // @formatter:on
     }
 
@@ -154,6 +158,14 @@ public final class TraceLinearScan {
      */
     private int intervalsSize;
 
+    /**
+     * The number of variables including those of {@linkplain #createDerivedInterval derived
+     * intervals}. The variables of derived intervals never leave the trace, so they are numbered
+     * locally instead of by the {@link LIR}. This keeps the numbering deterministic and free of
+     * races if traces are allocated in parallel.
+     */
+    private int numVariables;
+
     /**
      * The index of the first entry in {@link #intervals} for a
      * {@linkplain #createDerivedInterval(TraceInterval) derived interval}.
@@ -187,11 +199,12 @@ public final class TraceLinearScan {
     protected final TraceBuilderResult<?> traceBuilderResult;
     private final boolean neverSpillConstants;
 
-    public TraceLinearScan(TargetDescription target, LIRGenerationResult res, MoveFactory spillMoveFactory, RegisterAllocationConfig regAllocConfig, Trace<? extends AbstractBlockBase<?>> trace,
-                    TraceBuilderResult<?> traceBuilderResult, boolean neverSpillConstants) {
+    public TraceLinearScan(TargetDescription target, LIRGenerationResult res, FrameMapBuilder frameMapBuilder, MoveFactory spillMoveFactory, RegisterAllocationConfig regAllocConfig,
+                    Trace<? extends AbstractBlockBase<?>> trace, TraceBuilderResult<?> traceBuilderResult, boolean neverSpillConstants) {
         this.ir = res.getLIR();
+        this.numVariables = ir.numVariables();
         this.moveFactory = spillMoveFactory;
-        this.frameMapBuilder = res.getFrameMapBuilder();
+        this.frameMapBuilder = frameMapBuilder;
         this.sortedBlocks = trace.getBlocks();
         this.registerAttributes = regAllocConfig.getRegisterConfig().getAttributesMap();
         this.regAllocConfig = regAllocConfig;
@@ -246,7 +259,7 @@ public final class TraceLinearScan {
      * Gets the number of operands. This value will increase by 1 for new variable.
      */
     int operandSize() {
-        return ir.numVariables();
+        return numVariables;
     }
 
     /**
@@ -375,7 +388,7 @@ public final class TraceLinearScan {
             intervals = Arrays.copyOf(intervals, intervals.length + (intervals.length >> SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT));
         }
         intervalsSize++;
-        Variable variable = new Variable(source.kind(), ir.nextVariable());
+        Variable variable = new Variable(source.kind(), numVariables++);
 
         TraceInterval interval = createInterval(variable);
         assert intervals[intervalsSize - 1] == interval;
@@ -1019,6 +1032,10 @@ public final class TraceLinearScan {
         return ir;
     }
 
+    public TraceBuilderResult<?> getTraceBuilderResult() {
+        return traceBuilderResult;
+    }
+
     public FrameMapBuilder getFrameMapBuilder() {
         return frameMapBuilder;
     }
@@ -126,6 +126,7 @@ final class TraceLinearScanAssignLocationsPhase extends TraceLinearScanAllocatio
 
             if (isIllegal(interval.location()) && interval.canMaterialize()) {
                 assert mode != OperandMode.DEF;
+                assert interval.getMaterializedValue() != null : "rematerialized operation must be re-emitted before its use: " + interval;
                 return new ConstantValue(interval.kind(), interval.getMaterializedValue());
             }
             return interval.location();
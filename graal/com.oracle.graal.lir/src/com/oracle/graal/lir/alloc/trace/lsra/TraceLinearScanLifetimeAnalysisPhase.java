@@ -63,6 +63,7 @@ import com.oracle.graal.lir.LIRValueUtil;
 import com.oracle.graal.lir.StandardOp.BlockEndOp;
 import com.oracle.graal.lir.StandardOp.LabelOp;
 import com.oracle.graal.lir.StandardOp.LoadConstantOp;
+import com.oracle.graal.lir.StandardOp.RematerializableOp;
 import com.oracle.graal.lir.StandardOp.ValueMoveOp;
 import com.oracle.graal.lir.ValueConsumer;
 import com.oracle.graal.lir.Variable;
@@ -319,7 +320,12 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
                 // detection of method-parameters and roundfp-results
                 interval.setSpillState(SpillState.StartInMemory);
             }
-            interval.addMaterializationValue(getMaterializedValue(op, operand, interval));
+            RematerializableOp materializationOp = getMaterializationOp(op, interval);
+            if (materializationOp != null) {
+                interval.addMaterializationOp(materializationOp);
+            } else {
+                interval.addMaterializationValue(getMaterializedValue(op, operand, interval));
+            }
 
             if (Debug.isLogEnabled()) {
                 Debug.log("add def: %s defPos %d (%s)", interval, defPos, registerPriority.name());
@@ -505,6 +511,9 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
                         int opId = op.id();
                         int blockFrom = allocator.getFirstLirInstructionId((allocator.blockForId(opId)));
                         addUse((AllocatableValue) operand, blockFrom, opId + 1, RegisterPriority.None, operand.getLIRKind());
+                        if (allocator.isProcessed(operand) && isVariable(operand)) {
+                            allocator.getOrCreateInterval(asVariable(operand)).setUsedInState();
+                        }
                     }
                 };
 
@@ -654,19 +663,8 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
                         if (!allocator.getSpillMoveFactory().allowConstantToStackMove(move.getConstant())) {
                             return null;
                         }
-                        /*
-                         * Check if the interval has any uses which would accept an stack location
-                         * (priority == ShouldHaveRegister). Rematerialization of such intervals can
-                         * result in a degradation, because rematerialization always inserts a
-                         * constant load, even if the value is not needed in a register.
-                         */
-                        UsePosList usePosList = interval.usePosList();
-                        int numUsePos = usePosList.size();
-                        for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
-                            TraceInterval.RegisterPriority priority = usePosList.registerPriority(useIdx);
-                            if (priority == TraceInterval.RegisterPriority.ShouldHaveRegister) {
-                                return null;
-                            }
+                        if (hasStackLocationUse(interval)) {
+                            return null;
                         }
                     }
                     return (JavaConstant) move.getConstant();
@@ -674,5 +672,40 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
             }
             return null;
         }
+
+        /**
+         * Checks if the interval has any uses which would accept an stack location (priority ==
+         * ShouldHaveRegister). Rematerialization of such intervals can result in a degradation,
+         * because rematerialization always inserts the defining operation, even if the value is
+         * not needed in a register.
+         */
+        private static boolean hasStackLocationUse(TraceInterval interval) {
+            UsePosList usePosList = interval.usePosList();
+            int numUsePos = usePosList.size();
+            for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
+                TraceInterval.RegisterPriority priority = usePosList.registerPriority(useIdx);
+                if (priority == TraceInterval.RegisterPriority.ShouldHaveRegister) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the operation which can be re-emitted for re-materialization of an interval
+         * instead of spilling it.
+         *
+         * @param op An instruction which defines a value
+         * @param interval The interval for this defined value.
+         * @return Returns {@code op} if it is a {@link RematerializableOp} whose result is neither
+         *         used by a frame state nor at a position which accepts a stack location,
+         *         {@code null} otherwise.
+         */
+        private static RematerializableOp getMaterializationOp(LIRInstruction op, TraceInterval interval) {
+            if (op instanceof RematerializableOp && TraceLinearScan.Options.LIROptTraceRARematerialize.getValue() && !interval.isUsedInState() && !hasStackLocationUse(interval)) {
+                return (RematerializableOp) op;
+            }
+            return null;
+        }
     }
 }
@@ -39,23 +39,30 @@ import jdk.vm.ci.common.JVMCIError;
 import jdk.vm.ci.meta.Value;
 
 import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig.AllocatableRegisters;
+import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.util.Util;
 import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.Indent;
+import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInstruction;
 import com.oracle.graal.lir.StandardOp.BlockEndOp;
 import com.oracle.graal.lir.StandardOp.LabelOp;
 import com.oracle.graal.lir.StandardOp.ValueMoveOp;
 import com.oracle.graal.lir.alloc.OutOfRegistersException;
+import com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceInterval.RegisterPriority;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceInterval.SpillState;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceInterval.State;
+import com.oracle.graal.lir.ssi.SSIUtil;
 
 /**
  */
 final class TraceLinearScanWalker extends TraceIntervalWalker {
 
+    private static final DebugMetric spillOnIncomingEdgesMetric = Debug.metric("TraceRA[spillOnIncomingEdges]");
+
     private Register[] availableRegs;
 
     private final int[] usePos;
@@ -581,6 +588,15 @@ final class TraceLinearScanWalker extends TraceIntervalWalker {
 
                     final int optimalSpillPos = findOptimalSpillPos(minSpillPos, maxSpillPost);
 
+                    if (TraceLinearScan.Options.LIROptTraceRAOptimizeSpillPosition.getValue() && canSpillOnIncomingEdges(interval, optimalSpillPos)) {
+                        if (Debug.isLogEnabled()) {
+                            Debug.log("spilling %s on the incoming edges instead of at position %d", interval, optimalSpillPos);
+                        }
+                        spillOnIncomingEdgesMetric.increment();
+                        interval.setSpillState(SpillState.StartInMemory);
+                        break;
+                    }
+
                     // assert !allocator.isBlockBegin(optimalSpillPos);
                     assert !allocator.isBlockEnd(optimalSpillPos);
                     assert (optimalSpillPos & 1) == 0 : "Spill pos must be even";
@@ -603,6 +619,58 @@ final class TraceLinearScanWalker extends TraceIntervalWalker {
         }
     }
 
+    /**
+     * Checks whether an interval that is defined by the {@link LabelOp} of a block with
+     * predecessors in other traces should rather be stored on these incoming edges than at
+     * {@code optimalSpillPos}. This is the case if the incoming edges are executed less frequently
+     * than the block containing {@code optimalSpillPos}, e.g. if the interval is live-in at a loop
+     * header and is spilled within the loop body.
+     *
+     * If the interval {@linkplain SpillState#StartInMemory starts in memory}, the
+     * {@link TraceLinearScanAssignLocationsPhase} shadows the register location of the label with
+     * the spill slot and the global move resolution stores the value on the incoming edges. This
+     * is only valid if all predecessors within the current trace pass the interval itself, i.e.
+     * the spill slot is not overwritten along these edges.
+     *
+     * The {@link TraceBuilderResult} only tells which incoming edges come from other traces. The
+     * frequency of such an edge is estimated from the {@link AbstractBlockBase#probability()
+     * probabilities} of its source and target block, since the edge cannot be executed more often
+     * than either of them.
+     */
+    private boolean canSpillOnIncomingEdges(TraceInterval interval, int optimalSpillPos) {
+        if (!TraceRegisterAllocationPhase.Options.TraceRAshareSpillInformation.getValue() || interval.canMaterialize() || interval.spillSlot() == null) {
+            return false;
+        }
+        int defPos = interval.spillDefinitionPos();
+        AbstractBlockBase<?> defBlock = allocator.blockForId(defPos);
+        if (defPos != allocator.getFirstLirInstructionId(defBlock) || defBlock.getPredecessorCount() == 0) {
+            return false;
+        }
+        TraceBuilderResult<?> traceBuilderResult = allocator.getTraceBuilderResult();
+        int traceNr = traceBuilderResult.getTraceForBlock(defBlock);
+        Value operand = interval.splitParent().operand;
+        LIR lir = allocator.getLIR();
+        double incomingProbability = 0;
+        for (AbstractBlockBase<?> pred : defBlock.getPredecessors()) {
+            if (traceBuilderResult.getTraceForBlock(pred) != traceNr) {
+                incomingProbability += Math.min(pred.probability(), defBlock.probability());
+            } else if (!passesValue(lir, defBlock, pred, operand)) {
+                return false;
+            }
+        }
+        return incomingProbability < allocator.blockForId(optimalSpillPos).probability();
+    }
+
+    private static boolean passesValue(LIR lir, AbstractBlockBase<?> block, AbstractBlockBase<?> pred, Value operand) {
+        boolean[] result = {false};
+        SSIUtil.forEachValuePair(lir, block, pred, (incoming, outgoing) -> {
+            if (incoming.equals(operand)) {
+                result[0] = outgoing.equals(operand);
+            }
+        });
+        return result[0];
+    }
+
     /**
      * @param minSpillPos minimal spill position
      * @param maxSpillPos maximal spill position
@@ -327,6 +327,15 @@ final class TraceLocalMoveResolver {
         assert LIRKind.verifyMoveKinds(toInterval.kind(), fromInterval.kind()) : "move between different types";
         assert insertIdx != -1 : "must setup insert position first";
 
+        if (isIllegal(fromInterval.location())) {
+            // Instead of a reload, re-emit the definition
+            assert fromInterval.getMaterializationOp() != null : "interval neither in a location nor rematerializable: " + fromInterval;
+            insertionBuffer.append(insertIdx, fromInterval.getMaterializationOp().rematerialize(toInterval.operand));
+            if (Debug.isLogEnabled()) {
+                Debug.log("insert rematerialization of %s to %s at %d", fromInterval, toInterval, insertIdx);
+            }
+            return;
+        }
         insertionBuffer.append(insertIdx, createMove(fromInterval.operand, toInterval.operand, fromInterval.location(), toInterval.location()));
 
         if (Debug.isLogEnabled()) {
@@ -520,7 +529,7 @@ final class TraceLocalMoveResolver {
             }
             return;
         }
-        if (isIllegal(fromInterval.location()) && fromInterval.canMaterialize()) {
+        if (isIllegal(fromInterval.location()) && fromInterval.getMaterializedValue() != null) {
             // Instead of a reload, re-materialize the value
             JavaConstant rematValue = fromInterval.getMaterializedValue();
             addMapping(rematValue, toInterval);
@@ -78,6 +78,8 @@ public class CompilationResultBuilder {
     // @formatter:off
     @Option(help = "Include the LIR as comments with the final assembly.", type = OptionType.Debug)
     public static final OptionValue<Boolean> PrintLIRWithAssembly = new OptionValue<>(false);
+    @Option(help = "Alignment in bytes of aligned block starts such as loop headers (0 uses twice the word size).", type = OptionType.Expert)
+    public static final OptionValue<Integer> LoopHeaderAlignment = new OptionValue<>(0);
     // @formatter:on
 
     private static class ExceptionInfo {
@@ -153,6 +155,17 @@ public class CompilationResultBuilder {
         return compilationResult.recordMark(asm.position(), id);
     }
 
+    /**
+     * Aligns the current code position for the start of a block that is the target of a
+     * frequently taken jump, such as a loop header.
+     *
+     * @see AbstractBlockBase#isAligned()
+     */
+    public void alignBlockStart() {
+        int alignment = LoopHeaderAlignment.getValue();
+        asm.align(alignment > 0 ? alignment : target.wordSize * 2);
+    }
+
     public void blockComment(String s) {
         compilationResult.addAnnotation(new CompilationResult.CodeComment(asm.position(), s));
     }
@@ -31,7 +31,9 @@ import java.util.BitSet;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jdk.vm.ci.code.TargetDescription;
 import jdk.vm.ci.meta.Constant;
@@ -39,6 +41,7 @@ import jdk.vm.ci.meta.LIRKind;
 import jdk.vm.ci.meta.Value;
 
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
 import com.oracle.graal.compiler.common.cfg.BlockMap;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
@@ -73,6 +76,8 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
         // @formatter:off
         @Option(help = "Enable constant load optimization.", type = OptionType.Debug)
         public static final NestedBooleanOptionValue LIROptConstantLoadOptimization = new NestedBooleanOptionValue(LIROptimization, true);
+        @Option(help = "Share loads of identical constants if one dominates the other.", type = OptionType.Debug)
+        public static final NestedBooleanOptionValue LIROptConstantLoadDeduplication = new NestedBooleanOptionValue(LIROptimization, true);
         // @formatter:on
     }
 
@@ -89,6 +94,11 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
     private static final DebugMetric usageAtDefinitionSkipped = Debug.metric("ConstantLoadOptimization[UsageAtDefinitionSkipped]");
     private static final DebugMetric materializeAtDefinitionSkipped = Debug.metric("ConstantLoadOptimization[MaterializeAtDefinitionSkipped]");
     private static final DebugMetric constantsOptimized = Debug.metric("ConstantLoadOptimization[optimized]");
+    private static final DebugMetric constantsDeduplicated = Debug.metric("ConstantLoadOptimization[deduplicated]");
+    private static final DebugMetric loadsDeleted = Debug.metric("ConstantLoadOptimization[loadsDeleted]");
+    private static final DebugMetric loadsInserted = Debug.metric("ConstantLoadOptimization[loadsInserted]");
+    private static final DebugMetric loadCostDeleted = Debug.metric("ConstantLoadOptimization[loadCostDeleted]");
+    private static final DebugMetric loadCostInserted = Debug.metric("ConstantLoadOptimization[loadCostInserted]");
 
     private static final class Optimization {
         private final LIR lir;
@@ -115,6 +125,9 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
                 try (Scope s = Debug.scope("BuildDefUseTree")) {
                     // build DefUseTree
                     lir.getControlFlowGraph().getBlocks().forEach(this::analyzeBlock);
+                    if (Options.LIROptConstantLoadDeduplication.getValue()) {
+                        deduplicate();
+                    }
                     // remove all with only one use
                     map.filter(t -> {
                         if (t.usageCount() > 1) {
@@ -244,6 +257,59 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
             }
         }
 
+        /**
+         * Merges the def-use trees of identical constants if the definition of one tree dominates
+         * the definition of the other. The usages of the dominated tree are redirected to the
+         * variable of the dominating tree and the dominated load is deleted. The merged tree is then
+         * subject to the normal placement, i.e., the {@link ConstantTree} decides whether the
+         * constant is materialized once for all usages or closer to them.
+         */
+        private void deduplicate() {
+            Map<Constant, List<DefUseTree>> byConstant = new HashMap<>();
+            map.forEach(tree -> byConstant.computeIfAbsent(tree.getConstant(), c -> new ArrayList<>()).add(tree));
+            for (List<DefUseTree> trees : byConstant.values()) {
+                if (trees.size() < 2) {
+                    continue;
+                }
+                // dominators first, definitions in the same block in instruction order
+                trees.sort((a, b) -> {
+                    int depth = Integer.compare(a.getBlock().getDominatorDepth(), b.getBlock().getDominatorDepth());
+                    return depth != 0 ? depth : Integer.compare(a.getInstruction().id(), b.getInstruction().id());
+                });
+                List<DefUseTree> dominators = new ArrayList<>();
+                for (DefUseTree tree : trees) {
+                    DefUseTree dominator = findDominatingTree(dominators, tree);
+                    if (dominator == null) {
+                        dominators.add(tree);
+                    } else {
+                        merge(dominator, tree);
+                    }
+                }
+            }
+        }
+
+        private static DefUseTree findDominatingTree(List<DefUseTree> candidates, DefUseTree tree) {
+            for (DefUseTree candidate : candidates) {
+                if (candidate.getVariable().getLIRKind().equals(tree.getVariable().getLIRKind()) && AbstractControlFlowGraph.dominates(candidate.getBlock(), tree.getBlock())) {
+                    assert candidate.getBlock() != tree.getBlock() || candidate.getInstruction().id() < tree.getInstruction().id() : "wrong order: " + candidate + " " + tree;
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        private void merge(DefUseTree dominator, DefUseTree tree) {
+            Debug.log("merging %s into %s", tree.getVariable(), dominator.getVariable());
+            Variable variable = dominator.getVariable();
+            tree.forEach(u -> {
+                u.setValue(variable);
+                dominator.addUsage(u.getBlock(), u.getInstruction(), variable);
+            });
+            map.remove(tree.getVariable());
+            deleteInstruction(tree);
+            constantsDeduplicated.increment();
+        }
+
         /**
          * Creates the dominator tree and searches for an solution.
          */
@@ -261,7 +327,7 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
 
             constTree.markBlocks();
 
-            NodeCost cost = ConstantTreeAnalyzer.analyze(constTree, tree.getBlock());
+            NodeCost cost = ConstantTreeAnalyzer.analyze(constTree, tree.getBlock(), lirGen.getSpillMoveFactory().getConstantLoadCost(tree.getConstant()));
             int usageCount = cost.getUsages().size();
             assert usageCount == tree.usageCount() : "Usage count differs: " + usageCount + " vs. " + tree.usageCount();
 
@@ -316,6 +382,8 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
             Variable variable = lirGen.newVariable(kind);
             // create move
             LIRInstruction move = lirGen.getSpillMoveFactory().createLoad(variable, constant);
+            loadsInserted.increment();
+            loadCostInserted.add(lirGen.getSpillMoveFactory().getConstantLoadCost(constant));
             // insert instruction
             getInsertionBuffer(block).append(1, move);
             Debug.log("new move (%s) and inserted in block %s", move, block);
@@ -358,6 +426,8 @@ public final class ConstantLoadOptimization extends PreAllocationOptimizationPha
             AbstractBlockBase<?> block = tree.getBlock();
             LIRInstruction instruction = tree.getInstruction();
             Debug.log("deleting instruction %s from block %s", instruction, block);
+            loadsDeleted.increment();
+            loadCostDeleted.add(lirGen.getSpillMoveFactory().getConstantLoadCost(tree.getConstant()));
             lir.getLIRforBlock(block).set(instruction.id(), null);
         }
 
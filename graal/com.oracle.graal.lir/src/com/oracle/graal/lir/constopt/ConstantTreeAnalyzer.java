@@ -42,11 +42,17 @@ import com.oracle.graal.lir.constopt.ConstantTree.NodeCost;
 public final class ConstantTreeAnalyzer {
     private final ConstantTree tree;
     private final BitSet visited;
+    private final int loadCost;
 
+    /**
+     * @param loadCost the {@linkplain com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory#getConstantLoadCost
+     *            cost} of a single
+     *            materialization of the constant
+     */
     @SuppressWarnings("try")
-    public static NodeCost analyze(ConstantTree tree, AbstractBlockBase<?> startBlock) {
+    public static NodeCost analyze(ConstantTree tree, AbstractBlockBase<?> startBlock, int loadCost) {
         try (Scope s = Debug.scope("ConstantTreeAnalyzer")) {
-            ConstantTreeAnalyzer analyzer = new ConstantTreeAnalyzer(tree);
+            ConstantTreeAnalyzer analyzer = new ConstantTreeAnalyzer(tree, loadCost);
             analyzer.analyzeBlocks(startBlock);
             return tree.getCost(startBlock);
         } catch (Throwable e) {
@@ -54,9 +60,10 @@ public final class ConstantTreeAnalyzer {
         }
     }
 
-    private ConstantTreeAnalyzer(ConstantTree tree) {
+    private ConstantTreeAnalyzer(ConstantTree tree, int loadCost) {
         this.tree = tree;
         this.visited = new BitSet(tree.size());
+        this.loadCost = loadCost;
     }
 
     /**
@@ -128,7 +135,7 @@ public final class ConstantTreeAnalyzer {
         List<UseEntry> usagesBlock = tree.getUsages(block);
         double probabilityBlock = block.probability();
 
-        if (!usagesBlock.isEmpty() || shouldMaterializerInCurrentBlock(probabilityBlock, bestCost, numMat)) {
+        if (!usagesBlock.isEmpty() || shouldMaterializerInCurrentBlock(probabilityBlock, bestCost, numMat, loadCost)) {
             // mark current block as potential materialization position
             usages.addAll(usagesBlock);
             bestCost = probabilityBlock;
@@ -154,9 +161,11 @@ public final class ConstantTreeAnalyzer {
      * @param probabilityChildren Accumulated probability of the children.
      * @param numMat Number of materializations along the subtrees. We use {@code numMat - 1} to
      *            insert materializations as late as possible if the probabilities are the same.
+     * @param loadCost Cost of a single materialization. Duplicating expensive (i.e. large)
+     *            materializations is penalized more than duplicating cheap ones.
      */
-    private static boolean shouldMaterializerInCurrentBlock(double probabilityBlock, double probabilityChildren, int numMat) {
-        return probabilityBlock * Math.pow(0.9, numMat - 1) < probabilityChildren;
+    private static boolean shouldMaterializerInCurrentBlock(double probabilityBlock, double probabilityChildren, int numMat, int loadCost) {
+        return probabilityBlock * Math.pow(0.9, (numMat - 1) * loadCost) < probabilityChildren;
     }
 
     private void filteredPush(Deque<AbstractBlockBase<?>> worklist, AbstractBlockBase<?> block) {
@@ -72,6 +72,18 @@ public interface LIRGeneratorTool extends BenchmarkCounterFactory {
          */
         boolean allowConstantToStackMove(Constant constant);
 
+        /**
+         * Estimates the cost of loading a constant into a register, relative to loading a small
+         * immediate. The cost reflects both code size and execution time, e.g., a load from the
+         * data section is more expensive than an immediate operand.
+         *
+         * @param constant The constant to load.
+         * @return A cost of at least {@code 1}.
+         */
+        default int getConstantLoadCost(Constant constant) {
+            return 1;
+        }
+
         LIRInstruction createMove(AllocatableValue result, Value input);
 
         LIRInstruction createStackMove(AllocatableValue result, AllocatableValue input);
@@ -251,6 +263,18 @@ public interface LIRGeneratorTool extends BenchmarkCounterFactory {
 
     Variable emitArrayEquals(JavaKind kind, Value array1, Value array2, Value length);
 
+    /**
+     * Emits the index of the first element of {@code array} in the range [{@code fromIndex},
+     * {@code length}) that is equal to {@code value}, or -1 if there is none.
+     */
+    Variable emitArrayIndexOf(JavaKind kind, Value array, Value fromIndex, Value length, Value value);
+
+    /**
+     * Emits a lexicographic comparison of two arrays with the semantics of
+     * {@link String#compareTo(String)}.
+     */
+    Variable emitArrayCompareTo(JavaKind kind, Value array1, Value array2, Value length1, Value length2);
+
     void emitBlackhole(Value operand);
 
     LIRKind getLIRKind(Stamp stamp);
@@ -58,6 +58,10 @@ public final class VerifyingMoveFactory implements MoveFactory {
         return inner.allowConstantToStackMove(constant);
     }
 
+    public int getConstantLoadCost(Constant constant) {
+        return inner.getConstantLoadCost(constant);
+    }
+
     public LIRInstruction createMove(AllocatableValue result, Value input) {
         LIRInstruction inst = inner.createMove(result, input);
         assert checkResult(inst, result, input);
@@ -22,10 +22,12 @@
  */
 package com.oracle.graal.lir.phases;
 
+import static com.oracle.graal.compiler.common.BackendOptions.UserOptions.GraphColoringRA;
 import static com.oracle.graal.compiler.common.BackendOptions.UserOptions.TraceRA;
 
 import com.oracle.graal.compiler.common.GraalOptions;
 import com.oracle.graal.lir.alloc.AllocationStageVerifier;
+import com.oracle.graal.lir.alloc.coloring.GraphColoringPhase;
 import com.oracle.graal.lir.alloc.lsra.LinearScanPhase;
 import com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase;
 import com.oracle.graal.lir.dfa.LocationMarkerPhase;
@@ -39,6 +41,8 @@ public class AllocationStage extends LIRPhaseSuite<AllocationContext> {
         appendPhase(new MarkBasePointersPhase());
         if (TraceRA.getValue()) {
             appendPhase(new TraceRegisterAllocationPhase());
+        } else if (GraphColoringRA.getValue()) {
+            appendPhase(new GraphColoringPhase());
         } else {
             appendPhase(new LinearScanPhase());
         }
@@ -30,6 +30,7 @@ import jdk.vm.ci.meta.Value;
 
 import com.oracle.graal.lir.StandardOp.LoadConstantOp;
 import com.oracle.graal.lir.StandardOp.MoveOp;
+import com.oracle.graal.lir.StandardOp.RematerializableOp;
 import com.oracle.graal.lir.StandardOp.ValueMoveOp;
 
 enum MoveType {
@@ -38,6 +39,7 @@ enum MoveType {
     CONST2REG("Reg", "Const"),
     REG2STACK("Stack", "Reg"),
     CONST2STACK("Stack", "Const"),
+    REMAT2REG("Reg", "Remat"),
     STACK2STACK("Stack", "Stack");
 
     private final String name;
@@ -60,6 +62,10 @@ enum MoveType {
             } else if (isStackSlot(dst)) {
                 return CONST2STACK;
             }
+        } else if (move instanceof RematerializableOp) {
+            if (isRegister(dst)) {
+                return REMAT2REG;
+            }
         } else if (move instanceof ValueMoveOp) {
             src = ((ValueMoveOp) move).getInput();
             if (isRegister(dst)) {
@@ -29,22 +29,23 @@ import static com.oracle.graal.lir.phases.LIRPhase.Options.LIROptimization;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 
 import jdk.vm.ci.code.StackSlot;
 import jdk.vm.ci.code.TargetDescription;
-import jdk.vm.ci.meta.LIRKind;
 import jdk.vm.ci.meta.Value;
 
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
 import com.oracle.graal.debug.DebugCloseable;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.DebugTimer;
 import com.oracle.graal.debug.Indent;
 import com.oracle.graal.lir.LIR;
@@ -78,6 +79,8 @@ public final class LSStackSlotAllocator extends AllocationPhase implements Stack
         // @formatter:off
         @Option(help = "Use linear scan stack slot allocation.", type = OptionType.Debug)
         public static final NestedBooleanOptionValue LIROptLSStackSlotAllocator = new NestedBooleanOptionValue(LIROptimization, true);
+        @Option(help = "Reuse parts of larger free stack slots for smaller values.", type = OptionType.Debug)
+        public static final NestedBooleanOptionValue LIROptLSStackSlotAllocatorSplitSlots = new NestedBooleanOptionValue(LIROptimization, true);
         // @formatter:on
     }
 
@@ -87,6 +90,8 @@ public final class LSStackSlotAllocator extends AllocationPhase implements Stack
     private static final DebugTimer VerifyIntervalsTimer = Debug.timer("LSStackSlotAllocator[VerifyIntervals]");
     private static final DebugTimer AllocateSlotsTimer = Debug.timer("LSStackSlotAllocator[AllocateSlots]");
     private static final DebugTimer AssignSlotsTimer = Debug.timer("LSStackSlotAllocator[AssignSlots]");
+    private static final DebugMetric SplitSlots = Debug.metric("LSStackSlotAllocator[splitSlots]");
+    private static final DebugMetric MergedSlots = Debug.metric("LSStackSlotAllocator[mergedSlots]");
 
     @Override
     protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder, AllocationContext context) {
@@ -106,6 +111,11 @@ public final class LSStackSlotAllocator extends AllocationPhase implements Stack
         private final LIR lir;
         private final FrameMapBuilderTool frameMapBuilder;
         private final StackInterval[] stackSlotMap;
+        /**
+         * The free slot backing the location of an interval, indexed by virtual stack slot id. The
+         * backing slot can be larger than the location if it could not be split further.
+         */
+        private final FreeSlot[] backingSlots;
         private final PriorityQueue<StackInterval> unhandled;
         private final PriorityQueue<StackInterval> active;
         private final List<? extends AbstractBlockBase<?>> sortedBlocks;
@@ -116,6 +126,7 @@ public final class LSStackSlotAllocator extends AllocationPhase implements Stack
             this.lir = lir;
             this.frameMapBuilder = frameMapBuilder;
             this.stackSlotMap = new StackInterval[frameMapBuilder.getNumberOfStackSlots()];
+            this.backingSlots = new FreeSlot[frameMapBuilder.getNumberOfStackSlots()];
             this.sortedBlocks = lir.getControlFlowGraph().getBlocks();
 
             // insert by from
@@ -239,110 +250,111 @@ public final class LSStackSlotAllocator extends AllocationPhase implements Stack
                 location = frameMapBuilder.getFrameMap().allocateStackSlots(slotRange.getSlots(), slotRange.getObjects());
                 StackSlotAllocator.virtualFramesize.add(frameMapBuilder.getFrameMap().spillSlotRangeSize(slotRange.getSlots()));
                 StackSlotAllocator.allocatedSlots.increment();
+                // Only the first slot of the range is reused once the range is no longer live.
+                backingSlots[virtualSlot.getId()] = new FreeSlot(location.getRawOffset(), location.getRawAddFrameSize(), frameMapBuilder.getFrameMap().spillSlotSize(location.getLIRKind()));
             } else {
                 assert virtualSlot instanceof SimpleVirtualStackSlot : "Unexpected VirtualStackSlot type: " + virtualSlot;
-                StackSlot slot = findFreeSlot((SimpleVirtualStackSlot) virtualSlot);
+                int size = frameMapBuilder.getFrameMap().spillSlotSize(virtualSlot.getLIRKind());
+                maxSlotSize = Math.max(maxSlotSize, size);
+                FreeSlot slot = findFreeSlot(size);
                 if (slot != null) {
                     /*
                      * Free stack slot available. Note that we create a new one because the kind
                      * might not match.
                      */
-                    location = StackSlot.get(current.kind(), slot.getRawOffset(), slot.getRawAddFrameSize());
+                    location = StackSlot.get(current.kind(), slot.rawOffset, slot.addFrameSize);
                     StackSlotAllocator.reusedSlots.increment();
                     Debug.log(1, "Reuse stack slot %s (reallocated from %s) for virtual stack slot %s", location, slot, virtualSlot);
                 } else {
                     // Allocate new stack slot.
                     location = frameMapBuilder.getFrameMap().allocateSpillSlot(virtualSlot.getLIRKind());
-                    StackSlotAllocator.virtualFramesize.add(frameMapBuilder.getFrameMap().spillSlotSize(virtualSlot.getLIRKind()));
+                    slot = new FreeSlot(location.getRawOffset(), location.getRawAddFrameSize(), size);
+                    StackSlotAllocator.virtualFramesize.add(size);
                     StackSlotAllocator.allocatedSlots.increment();
                     Debug.log(1, "New stack slot %s for virtual stack slot %s", location, virtualSlot);
                 }
+                backingSlots[virtualSlot.getId()] = slot;
             }
             Debug.log("Allocate location %s for interval %s", location, current);
             current.setLocation(location);
         }
 
-        private enum SlotSize {
-            Size1,
-            Size2,
-            Size4,
-            Size8,
-            Illegal;
-        }
+        /**
+         * A free area of the frame that can hold a stack slot of up to {@link #size} bytes.
+         */
+        private static final class FreeSlot {
+            final int rawOffset;
+            final boolean addFrameSize;
+            final int size;
+
+            FreeSlot(int rawOffset, boolean addFrameSize, int size) {
+                this.rawOffset = rawOffset;
+                this.addFrameSize = addFrameSize;
+                this.size = size;
+            }
 
-        private SlotSize forKind(LIRKind kind) {
-            switch (frameMapBuilder.getFrameMap().spillSlotSize(kind)) {
-                case 1:
-                    return SlotSize.Size1;
-                case 2:
-                    return SlotSize.Size2;
-                case 4:
-                    return SlotSize.Size4;
-                case 8:
-                    return SlotSize.Size8;
-                default:
-                    return SlotSize.Illegal;
+            @Override
+            public String toString() {
+                return String.format("free[%d%s, %dB]", rawOffset, addFrameSize ? "+fs" : "", size);
             }
         }
 
-        private EnumMap<SlotSize, Deque<StackSlot>> freeSlots;
-
         /**
-         * @return The list of free stack slots for {@code size} or {@code null} if there is none.
+         * Free slots keyed by their size in bytes.
          */
-        private Deque<StackSlot> getOrNullFreeSlots(SlotSize size) {
-            if (freeSlots == null) {
-                return null;
-            }
-            return freeSlots.get(size);
-        }
+        private TreeMap<Integer, Deque<FreeSlot>> freeSlots;
 
         /**
-         * @return the list of free stack slots for {@code size}. If there is none a list is
-         *         created.
+         * The size of the largest simple stack slot allocated so far.
          */
-        private Deque<StackSlot> getOrInitFreeSlots(SlotSize size) {
-            assert size != SlotSize.Illegal;
-            Deque<StackSlot> freeList;
-            if (freeSlots != null) {
-                freeList = freeSlots.get(size);
-            } else {
-                freeSlots = new EnumMap<>(SlotSize.class);
-                freeList = null;
-            }
-            if (freeList == null) {
-                freeList = new ArrayDeque<>();
-                freeSlots.put(size, freeList);
-            }
-            assert freeList != null;
-            return freeList;
-        }
+        private int maxSlotSize;
 
         /**
-         * Gets a free stack slot for {@code slot} or {@code null} if there is none.
+         * Gets a free slot for a stack slot of {@code size} bytes or {@code null} if there is none.
+         * A free slot of exactly that size is preferred. Otherwise the smallest larger free slot is
+         * halved until it fits and the unused upper halves are added to the free slots. Since
+         * spill slots are naturally aligned, the halves keep the alignment of their size. Halves
+         * are merged again by {@link #mergeWithBuddies} when they become free.
          */
-        private StackSlot findFreeSlot(SimpleVirtualStackSlot slot) {
-            assert slot != null;
-            SlotSize size = forKind(slot.getLIRKind());
-            if (size == SlotSize.Illegal) {
+        private FreeSlot findFreeSlot(int size) {
+            if (freeSlots == null) {
                 return null;
             }
-            Deque<StackSlot> freeList = getOrNullFreeSlots(size);
-            if (freeList == null) {
+            Deque<FreeSlot> freeList = freeSlots.get(size);
+            if (freeList != null && !freeList.isEmpty()) {
+                return freeList.pollLast();
+            }
+            if (!Options.LIROptLSStackSlotAllocatorSplitSlots.getValue()) {
                 return null;
             }
-            return freeList.pollLast();
+            for (Deque<FreeSlot> largerList : freeSlots.tailMap(size, false).values()) {
+                if (!largerList.isEmpty()) {
+                    FreeSlot slot = largerList.pollLast();
+                    while (slot.size % 2 == 0 && slot.size / 2 >= size) {
+                        int half = slot.size / 2;
+                        freeSlot(new FreeSlot(slot.rawOffset + half, slot.addFrameSize, half));
+                        slot = new FreeSlot(slot.rawOffset, slot.addFrameSize, half);
+                        SplitSlots.increment();
+                    }
+                    return slot;
+                }
+            }
+            return null;
         }
 
         /**
-         * Adds a stack slot to the list of free slots.
+         * Adds a slot to the list of free slots.
          */
-        private void freeSlot(StackSlot slot) {
-            SlotSize size = forKind(slot.getLIRKind());
-            if (size == SlotSize.Illegal) {
-                return;
+        private void freeSlot(FreeSlot slot) {
+            if (freeSlots == null) {
+                freeSlots = new TreeMap<>();
+            }
+            Deque<FreeSlot> freeList = freeSlots.get(slot.size);
+            if (freeList == null) {
+                freeList = new ArrayDeque<>();
+                freeSlots.put(slot.size, freeList);
             }
-            getOrInitFreeSlots(size).addLast(slot);
+            freeList.addLast(slot);
         }
 
         /**
@@ -378,9 +390,51 @@ public final class LSStackSlotAllocator extends AllocationPhase implements Stack
          * Finishes {@code interval} by adding its location to the list of free stack slots.
          */
         private void finished(StackInterval interval) {
-            StackSlot location = interval.location();
-            Debug.log("finished %s (freeing %s)", interval, location);
-            freeSlot(location);
+            FreeSlot slot = backingSlots[interval.getOperand().getId()];
+            Debug.log("finished %s (freeing %s)", interval, slot);
+            if (Options.LIROptLSStackSlotAllocatorSplitSlots.getValue()) {
+                slot = mergeWithBuddies(slot);
+            }
+            freeSlot(slot);
+        }
+
+        /**
+         * Merges a slot that becomes free with its free buddies, as in a buddy allocator. The buddy
+         * of a slot is the other half of the naturally aligned slot of twice its size. This undoes
+         * the splitting in {@link #findFreeSlot}, so that a larger value can reuse the space once
+         * all smaller values in it are dead. Slots are only merged up to the size of the largest
+         * slot allocated so far.
+         */
+        private FreeSlot mergeWithBuddies(FreeSlot slot) {
+            FreeSlot merged = slot;
+            while (Integer.bitCount(merged.size) == 1 && merged.size * 2 <= maxSlotSize) {
+                FreeSlot buddy = removeFreeSlot(merged.rawOffset ^ merged.size, merged.addFrameSize, merged.size);
+                if (buddy == null) {
+                    break;
+                }
+                merged = new FreeSlot(Math.min(merged.rawOffset, buddy.rawOffset), merged.addFrameSize, merged.size * 2);
+                MergedSlots.increment();
+            }
+            return merged;
+        }
+
+        /**
+         * Removes the free slot of {@code size} bytes at {@code rawOffset} from the free slots.
+         *
+         * @return the removed slot or {@code null} if there is no such free slot
+         */
+        private FreeSlot removeFreeSlot(int rawOffset, boolean addFrameSize, int size) {
+            Deque<FreeSlot> freeList = freeSlots == null ? null : freeSlots.get(size);
+            if (freeList != null) {
+                for (Iterator<FreeSlot> iterator = freeList.iterator(); iterator.hasNext();) {
+                    FreeSlot slot = iterator.next();
+                    if (slot.rawOffset == rawOffset && slot.addFrameSize == addFrameSize) {
+                        iterator.remove();
+                        return slot;
+                    }
+                }
+            }
+            return null;
         }
 
         // ====================
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.util;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+
+/**
+ * Per-thread storage for the arrays, bit sets and {@linkplain Reusable objects} of the LIR back end
+ * whose number or size scales with the size of the compiled method. Structures handed out while a
+ * {@linkplain #openScope() scope} is open are cleared and returned to the thread's arena when the
+ * outermost scope is closed, so that the next compilation on the same thread can reuse them instead
+ * of allocating new ones.
+ *
+ * Outside of a scope, {@link #current()} returns a fresh arena that never retains anything, which
+ * is equivalent to allocating every structure directly.
+ */
+public final class LIRArena {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Reuse register allocation data structures across compilations on the same thread.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> LIRReuseDataStructures = new OptionValue<>(true);
+        // @formatter:on
+    }
+
+    /**
+     * Arrays longer than this are not retained to avoid pinning the memory of a single huge
+     * compilation.
+     */
+    private static final int MAX_RETAINED_ARRAY_LENGTH = 1 << 16;
+    private static final int MAX_RETAINED_ARRAYS = 16;
+
+    /**
+     * Bit sets larger than this (in bits) are not retained.
+     */
+    private static final int MAX_RETAINED_BITSET_SIZE = 1 << 14;
+    private static final int MAX_RETAINED_BITSETS = 1024;
+
+    /**
+     * The maximum number of retained objects of each {@link Reusable} class.
+     */
+    private static final int MAX_RETAINED_OBJECTS = 1 << 14;
+
+    private static final DebugMetric reusedArrays = Debug.metric("LIRArena[reusedArrays]");
+    private static final DebugMetric reusedBitSets = Debug.metric("LIRArena[reusedBitSets]");
+    private static final DebugMetric reusedObjects = Debug.metric("LIRArena[reusedObjects]");
+
+    /**
+     * An arena without an open scope, which never retains any structures.
+     */
+    private static final LIRArena UNSCOPED = new LIRArena();
+
+    private static final ThreadLocal<LIRArena> threadArena = new ThreadLocal<LIRArena>() {
+
+        @Override
+        protected LIRArena initialValue() {
+            return new LIRArena();
+        }
+    };
+
+    /**
+     * An object that can be {@linkplain LIRArena#reuse(Class) reused} by a later compilation once
+     * it has been {@linkplain LIRArena#track(Reusable) tracked} by an arena.
+     */
+    public interface Reusable {
+
+        /**
+         * Drops all references to the compilation that used this object. The object is
+         * reinitialized by the code that reuses it.
+         */
+        void clear();
+    }
+
+    /**
+     * Closes a {@linkplain LIRArena#openScope() scope} of the current thread's arena.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final LIRArena arena;
+
+        private Scope(LIRArena arena) {
+            this.arena = arena;
+        }
+
+        @Override
+        public void close() {
+            assert arena.depth > 0;
+            if (--arena.depth == 0) {
+                arena.reset();
+            }
+        }
+    }
+
+    private final ArrayList<Object[]> freeArrays = new ArrayList<>();
+    private final ArrayList<Object[]> usedArrays = new ArrayList<>();
+    private final ArrayList<BitSet> freeBitSets = new ArrayList<>();
+    private final ArrayList<BitSet> usedBitSets = new ArrayList<>();
+    private final HashMap<Class<?>, ArrayList<Reusable>> freeObjects = new HashMap<>();
+    private final ArrayList<Reusable> usedObjects = new ArrayList<>();
+
+    /**
+     * The number of open {@linkplain #openScope() scopes}.
+     */
+    private int depth;
+
+    private LIRArena() {
+    }
+
+    /**
+     * Opens a scope in which structures are taken from the current thread's arena. Scopes can be
+     * nested. All structures handed out in the scope must be dead once the outermost scope is
+     * closed.
+     */
+    public static Scope openScope() {
+        LIRArena arena = threadArena.get();
+        arena.depth++;
+        return new Scope(arena);
+    }
+
+    /**
+     * Gets the arena of the current thread if a {@linkplain #openScope() scope} is open and
+     * reuse is enabled, or an {@linkplain #unscoped() arena that never retains any structures}
+     * otherwise.
+     */
+    public static LIRArena current() {
+        if (Options.LIRReuseDataStructures.getValue()) {
+            LIRArena arena = threadArena.get();
+            if (arena.depth > 0) {
+                return arena;
+            }
+        }
+        return UNSCOPED;
+    }
+
+    /**
+     * Gets an arena that never retains any structures, for structures that outlive a compilation.
+     */
+    public static LIRArena unscoped() {
+        return UNSCOPED;
+    }
+
+    /**
+     * Gets an array whose elements are all {@code null}. The array may be longer than
+     * {@code minLength}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] newArray(Class<T> componentType, int minLength) {
+        if (depth == 0) {
+            return (T[]) Array.newInstance(componentType, minLength);
+        }
+        int best = -1;
+        for (int i = 0; i < freeArrays.size(); i++) {
+            Object[] array = freeArrays.get(i);
+            if (array.getClass().getComponentType() == componentType && array.length >= minLength && (best == -1 || array.length < freeArrays.get(best).length)) {
+                best = i;
+            }
+        }
+        T[] result;
+        if (best == -1) {
+            result = (T[]) Array.newInstance(componentType, minLength);
+        } else {
+            result = (T[]) freeArrays.remove(best);
+            reusedArrays.increment();
+        }
+        usedArrays.add(result);
+        return result;
+    }
+
+    /**
+     * Gets an empty bit set.
+     */
+    public BitSet newBitSet() {
+        if (depth == 0) {
+            return new BitSet();
+        }
+        BitSet result;
+        if (freeBitSets.isEmpty()) {
+            result = new BitSet();
+        } else {
+            result = freeBitSets.remove(freeBitSets.size() - 1);
+            reusedBitSets.increment();
+        }
+        usedBitSets.add(result);
+        return result;
+    }
+
+    /**
+     * Gets a cleared object of class {@code type} that was used by an earlier compilation, or
+     * {@code null} if there is none. The caller must reinitialize the object.
+     */
+    public <T extends Reusable> T reuse(Class<T> type) {
+        if (depth == 0) {
+            return null;
+        }
+        ArrayList<Reusable> free = freeObjects.get(type);
+        if (free == null || free.isEmpty()) {
+            return null;
+        }
+        T result = type.cast(free.remove(free.size() - 1));
+        usedObjects.add(result);
+        reusedObjects.increment();
+        return result;
+    }
+
+    /**
+     * Registers a newly allocated object so that later compilations can {@linkplain #reuse(Class)
+     * reuse} it.
+     *
+     * @return {@code object}
+     */
+    public <T extends Reusable> T track(T object) {
+        if (depth > 0) {
+            usedObjects.add(object);
+        }
+        return object;
+    }
+
+    /**
+     * Clears all structures handed out since the last reset and keeps those that are small enough
+     * for later reuse.
+     */
+    private void reset() {
+        for (Object[] array : usedArrays) {
+            if (array.length <= MAX_RETAINED_ARRAY_LENGTH && freeArrays.size() < MAX_RETAINED_ARRAYS) {
+                Arrays.fill(array, null);
+                freeArrays.add(array);
+            }
+        }
+        usedArrays.clear();
+        for (BitSet set : usedBitSets) {
+            if (set.size() <= MAX_RETAINED_BITSET_SIZE && freeBitSets.size() < MAX_RETAINED_BITSETS) {
+                set.clear();
+                freeBitSets.add(set);
+            }
+        }
+        usedBitSets.clear();
+        for (Reusable object : usedObjects) {
+            ArrayList<Reusable> free = freeObjects.computeIfAbsent(object.getClass(), c -> new ArrayList<>());
+            if (free.size() < MAX_RETAINED_OBJECTS) {
+                object.clear();
+                free.add(object);
+            }
+        }
+        if (usedObjects.size() > MAX_RETAINED_OBJECTS) {
+            usedObjects.clear();
+            usedObjects.trimToSize();
+        } else {
+            usedObjects.clear();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.loop.BasicInductionVariable;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopNest;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractEndNode;
+import com.oracle.graal.nodes.FixedGuardNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNegationNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.PhiNode;
+import com.oracle.graal.nodes.ProxyNode;
+import com.oracle.graal.nodes.StateSplit;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.ValueProxyNode;
+import com.oracle.graal.nodes.calc.AddNode;
+import com.oracle.graal.nodes.calc.AndNode;
+import com.oracle.graal.nodes.calc.BinaryArithmeticNode;
+import com.oracle.graal.nodes.calc.MulNode;
+import com.oracle.graal.nodes.calc.OrNode;
+import com.oracle.graal.nodes.calc.XorNode;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.extended.ValueAnchorNode;
+import com.oracle.graal.nodes.java.ArrayLengthNode;
+import com.oracle.graal.nodes.java.LoadFieldNode;
+import com.oracle.graal.nodes.java.LoadIndexedNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.Phase;
+
+/**
+ * Interchanges the loops of a perfect loop nest that walks a two-dimensional array in column
+ * order, so that the inner loop walks along the rows instead.
+ *
+ * Interchanging changes the order in which array elements are accessed and therefore the order in
+ * which out of bounds or null accesses are detected. The transformation is thus restricted to
+ * nests that have no side effects: the only fixed nodes allowed in the nest are reads, guards and
+ * the control flow of the two loops, and the only values carried across iterations besides the
+ * counters are integer reductions whose result does not depend on the iteration order. All frame
+ * states inside the nest are replaced by the state at the entry of the outer loop, so that a
+ * deoptimization anywhere in the nest re-executes the whole nest in the original order in the
+ * interpreter.
+ *
+ * The loops are interchanged by moving the counter phis between the two loop headers and by
+ * swapping the exit tests, the bodies themselves are not modified.
+ */
+public class LoopInterchangePhase extends Phase {
+
+    private static final DebugMetric INTERCHANGED_LOOPS = Debug.metric("InterchangedLoops");
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        if (graph.hasLoops()) {
+            NodeBitMap processed = graph.createNodeBitMap();
+            boolean changed;
+            do {
+                changed = false;
+                LoopsData data = new LoopsData(graph);
+                data.detectedCountedLoops();
+                for (LoopNest nest : data.loopNests()) {
+                    LoopBeginNode outerBegin = nest.outer().loopBegin();
+                    if (processed.isMarked(outerBegin)) {
+                        continue;
+                    }
+                    processed.mark(outerBegin);
+                    if (interchange(nest)) {
+                        INTERCHANGED_LOOPS.increment();
+                        Debug.dump(graph, "Interchanged %s", nest);
+                        changed = true;
+                        break;
+                    }
+                }
+            } while (changed);
+        }
+    }
+
+    private static boolean interchange(LoopNest nest) {
+        LoopEx outer = nest.outer();
+        LoopEx inner = nest.inner();
+        if (!nest.isPerfect() || !nest.hasInvariantBounds() || !nest.getKillLocations().isEmpty()) {
+            return false;
+        }
+        LoopBeginNode outerBegin = outer.loopBegin();
+        LoopBeginNode innerBegin = inner.loopBegin();
+        if (!hasSingleEndAndExit(outerBegin) || !hasSingleEndAndExit(innerBegin)) {
+            return false;
+        }
+        if (!(outer.counted().getCounter() instanceof BasicInductionVariable) || !(inner.counted().getCounter() instanceof BasicInductionVariable)) {
+            return false;
+        }
+        BasicInductionVariable outerCounter = (BasicInductionVariable) outer.counted().getCounter();
+        BasicInductionVariable innerCounter = (BasicInductionVariable) inner.counted().getCounter();
+        if (!isColumnMajor(outer, inner)) {
+            return false;
+        }
+
+        IfNode outerTest = (IfNode) outer.counted().getBody().predecessor();
+        IfNode innerTest = (IfNode) inner.counted().getBody().predecessor();
+        List<StateSplit> stateSplits = new ArrayList<>();
+        NodeBitMap allowed = outerBegin.graph().createNodeBitMap();
+        if (!isSideEffectFree(outer, outerTest, innerTest, stateSplits, allowed)) {
+            return false;
+        }
+        FrameState loopState = outerBegin.stateAfter();
+        if (loopState == null || loopState.virtualObjectMappingCount() > 0) {
+            return false;
+        }
+
+        if (!isLocalCounter(outerCounter, outerTest, allowed) || !isLocalCounter(innerCounter, innerTest, allowed)) {
+            return false;
+        }
+        for (PhiNode phi : outerBegin.phis()) {
+            if (phi != outerCounter.valueNode() && !isReduction(phi, innerBegin, allowed)) {
+                return false;
+            }
+        }
+        for (PhiNode phi : innerBegin.phis()) {
+            if (phi != innerCounter.valueNode() && !allowed.isMarked(phi)) {
+                return false;
+            }
+        }
+
+        replaceStates(outerBegin, loopState, stateSplits);
+        movePhi(outerCounter, innerBegin);
+        movePhi(innerCounter, outerBegin);
+        swapTests(outerTest, outer.counted().getBody(), innerTest, inner.counted().getBody());
+        return true;
+    }
+
+    private static boolean hasSingleEndAndExit(LoopBeginNode loopBegin) {
+        return loopBegin.loopEnds().count() == 1 && loopBegin.loopExits().count() == 1;
+    }
+
+    /**
+     * Determines whether the inner loop reads elements {@code a[i][j]} of a two-dimensional array
+     * where {@code i} is derived from the inner and {@code j} from the outer counter, and whether no
+     * element is read in row order.
+     */
+    private static boolean isColumnMajor(LoopEx outer, LoopEx inner) {
+        int columnAccesses = 0;
+        for (Block block : inner.loop().getBlocks()) {
+            for (FixedNode node : block.getNodes()) {
+                if (node instanceof LoadIndexedNode) {
+                    LoadIndexedNode element = (LoadIndexedNode) node;
+                    ValueNode index = element.index();
+                    if (inner.getInductionVariables().containsKey(index)) {
+                        return false;
+                    }
+                    ValueNode row = GraphUtil.unproxify(element.array());
+                    if (row instanceof LoadIndexedNode && inner.getInductionVariables().containsKey(((LoadIndexedNode) row).index()) && outer.getInductionVariables().containsKey(index)) {
+                        columnAccesses++;
+                    }
+                }
+            }
+        }
+        return columnAccesses > 0;
+    }
+
+    /**
+     * Determines whether the nest only contains reads, guards and its own control flow and collects
+     * the frame states of the nest.
+     */
+    private static boolean isSideEffectFree(LoopEx outer, IfNode outerTest, IfNode innerTest, List<StateSplit> stateSplits, NodeBitMap states) {
+        for (Block block : outer.loop().getBlocks()) {
+            for (FixedNode node : block.getNodes()) {
+                if (node instanceof AbstractBeginNode) {
+                    if (!hasOnlyStructuralUsages((AbstractBeginNode) node)) {
+                        return false;
+                    }
+                } else if (!(node instanceof AbstractEndNode || node == outerTest || node == innerTest || node instanceof FixedGuardNode || node instanceof ValueAnchorNode ||
+                                node instanceof LoadIndexedNode || node instanceof ArrayLengthNode || (node instanceof LoadFieldNode && !((LoadFieldNode) node).isVolatile()))) {
+                    return false;
+                }
+                if (node instanceof StateSplit) {
+                    FrameState state = ((StateSplit) node).stateAfter();
+                    if (state != null) {
+                        if (state.virtualObjectMappingCount() > 0) {
+                            return false;
+                        }
+                        stateSplits.add((StateSplit) node);
+                        states.mark(state);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Nodes anchored at a begin node of the nest may depend on facts established by the exit tests
+     * that no longer hold once the tests are swapped.
+     */
+    private static boolean hasOnlyStructuralUsages(AbstractBeginNode begin) {
+        for (Node usage : begin.usages()) {
+            if (begin instanceof LoopBeginNode && (usage instanceof PhiNode || usage instanceof LoopEndNode || usage instanceof LoopExitNode)) {
+                continue;
+            }
+            if (begin instanceof LoopExitNode && usage instanceof ProxyNode) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a counter is only used by its increment, by the exit test of its loop, by
+     * values computed in the nest and by the frame states that are replaced.
+     */
+    private static boolean isLocalCounter(BasicInductionVariable counter, IfNode test, NodeBitMap allowed) {
+        ValuePhiNode phi = counter.valueNode();
+        BinaryArithmeticNode<?> op = counter.getOp();
+        for (Node usage : phi.usages()) {
+            if (usage instanceof ProxyNode || (usage instanceof FrameState && !allowed.isMarked(usage))) {
+                return false;
+            }
+        }
+        for (Node usage : op.usages()) {
+            if (usage instanceof ProxyNode || (usage instanceof PhiNode && usage != phi) || (usage instanceof FrameState && !allowed.isMarked(usage))) {
+                return false;
+            }
+        }
+        return test.condition().inputs().contains(phi);
+    }
+
+    /**
+     * Determines whether an outer loop phi is an integer reduction that is updated by the inner
+     * loop with an associative and commutative operation and whose intermediate values are not
+     * observed. The corresponding inner loop phi is marked as accepted.
+     */
+    private static boolean isReduction(PhiNode outerPhi, LoopBeginNode innerBegin, NodeBitMap allowed) {
+        if (!(outerPhi instanceof ValuePhiNode) || !(outerPhi.stamp() instanceof IntegerStamp)) {
+            return false;
+        }
+        LoopBeginNode outerBegin = (LoopBeginNode) outerPhi.merge();
+        ValueNode outerBack = outerPhi.singleBackValue();
+        if (!(outerBack instanceof ValueProxyNode) || ((ValueProxyNode) outerBack).proxyPoint() != innerBegin.loopExits().first()) {
+            return false;
+        }
+        ValueNode innerValue = ((ValueProxyNode) outerBack).value();
+        if (!(innerValue instanceof ValuePhiNode) || ((PhiNode) innerValue).merge() != innerBegin || ((PhiNode) innerValue).valueAt(innerBegin.forwardEnd()) != outerPhi) {
+            return false;
+        }
+        PhiNode innerPhi = (PhiNode) innerValue;
+        ValueNode innerBack = innerPhi.singleBackValue();
+        if (!(innerBack instanceof AddNode || innerBack instanceof MulNode || innerBack instanceof AndNode || innerBack instanceof OrNode || innerBack instanceof XorNode)) {
+            return false;
+        }
+        BinaryArithmeticNode<?> op = (BinaryArithmeticNode<?>) innerBack;
+        if ((op.getX() == innerPhi) == (op.getY() == innerPhi)) {
+            return false;
+        }
+        allowed.mark(outerPhi);
+        allowed.mark(innerPhi);
+        allowed.mark(op);
+        allowed.mark(outerBack);
+        if (!hasOnlyAllowedUsages(innerPhi, allowed) || !hasOnlyAllowedUsages(op, allowed) || !hasOnlyAllowedUsages(outerBack, allowed)) {
+            return false;
+        }
+        for (Node usage : outerPhi.usages()) {
+            if (!allowed.isMarked(usage) && !(usage instanceof ProxyNode && ((ProxyNode) usage).proxyPoint().loopBegin() == outerBegin)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasOnlyAllowedUsages(Node node, NodeBitMap allowed) {
+        for (Node usage : node.usages()) {
+            if (!allowed.isMarked(usage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces all frame states of the nest by the state at the entry of the outer loop, which
+     * describes the loop header state with each loop phi replaced by its initial value.
+     */
+    private static void replaceStates(LoopBeginNode outerBegin, FrameState loopState, List<StateSplit> stateSplits) {
+        FrameState entryState = loopState.duplicate();
+        for (int i = 0; i < entryState.values().size(); i++) {
+            ValueNode value = entryState.values().get(i);
+            if (value instanceof PhiNode && ((PhiNode) value).merge() == outerBegin) {
+                entryState.values().set(i, ((PhiNode) value).valueAt(outerBegin.forwardEnd()));
+            }
+        }
+        for (StateSplit stateSplit : stateSplits) {
+            FrameState oldState = stateSplit.stateAfter();
+            stateSplit.setStateAfter(entryState);
+            if (oldState.isAlive() && oldState.hasNoUsages()) {
+                GraphUtil.killWithUnusedFloatingInputs(oldState);
+            }
+        }
+    }
+
+    private static void movePhi(InductionVariable counter, LoopBeginNode target) {
+        ValuePhiNode phi = (ValuePhiNode) counter.valueNode();
+        ValueNode init = counter.initNode();
+        ValueNode back = phi.singleBackValue();
+        phi.clearValues();
+        phi.setMerge(target);
+        phi.addInput(init);
+        phi.addInput(back);
+    }
+
+    private static void swapTests(IfNode outerTest, AbstractBeginNode outerBody, IfNode innerTest, AbstractBeginNode innerBody) {
+        boolean outerBodyIsTrue = outerTest.trueSuccessor() == outerBody;
+        boolean innerBodyIsTrue = innerTest.trueSuccessor() == innerBody;
+        LogicNode outerCondition = outerTest.condition();
+        LogicNode innerCondition = innerTest.condition();
+        double outerBodyProbability = outerTest.probability(outerBody);
+        double innerBodyProbability = innerTest.probability(innerBody);
+        if (outerBodyIsTrue != innerBodyIsTrue) {
+            StructuredGraph graph = outerTest.graph();
+            outerCondition = graph.unique(new LogicNegationNode(outerCondition));
+            innerCondition = graph.unique(new LogicNegationNode(innerCondition));
+        }
+        outerTest.setCondition(innerCondition);
+        outerTest.setTrueSuccessorProbability(outerBodyIsTrue ? innerBodyProbability : 1 - innerBodyProbability);
+        innerTest.setCondition(outerCondition);
+        innerTest.setTrueSuccessorProbability(innerBodyIsTrue ? outerBodyProbability : 1 - outerBodyProbability);
+    }
+}
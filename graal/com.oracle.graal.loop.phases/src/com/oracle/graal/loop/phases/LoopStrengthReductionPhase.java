@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import static com.oracle.graal.loop.MathUtil.add;
+import static com.oracle.graal.loop.MathUtil.mul;
+import static com.oracle.graal.loop.MathUtil.sub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.loop.BasicInductionVariable;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.DerivedConvertedInductionVariable;
+import com.oracle.graal.loop.DerivedInductionVariable;
+import com.oracle.graal.loop.DerivedOffsetInductionVariable;
+import com.oracle.graal.loop.DerivedScaledInductionVariable;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNegationNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.PiNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.calc.AddNode;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.IntegerConvertNode;
+import com.oracle.graal.nodes.calc.IntegerEqualsNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.calc.LeftShiftNode;
+import com.oracle.graal.nodes.calc.MulNode;
+import com.oracle.graal.nodes.calc.SignExtendNode;
+import com.oracle.graal.nodes.calc.SubNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.Phase;
+
+/**
+ * Strength reduction of induction variables. A derived induction variable that scales another
+ * induction variable by a loop invariant factor (e.g. the scaled index of a lowered array access)
+ * is replaced by a new loop phi that is incremented by the scaled stride on every iteration.
+ *
+ * If the counter of a counted loop is afterwards only used by its own increment and by the loop
+ * exit test, the test is rewritten to compare one of the new induction variables against its exit
+ * value (linear function test replacement), which makes the original counter dead.
+ */
+public class LoopStrengthReductionPhase extends Phase {
+
+    private static final DebugMetric REDUCED_INDUCTION_VARIABLES = Debug.metric("StrengthReducedInductionVariables");
+    private static final DebugMetric REPLACED_EXIT_TESTS = Debug.metric("LinearFunctionTestReplacements");
+
+    private static final long MAX_SCALE = 1L << 31;
+    private static final long MAX_BOUND = 1L << 62;
+
+    /**
+     * A derived induction variable selected for strength reduction. The initial value, the stride
+     * and the exit value are computed before the graph is modified because the descriptions of the
+     * induction variables refer to the nodes that are replaced.
+     */
+    private static final class Candidate {
+        final InductionVariable iv;
+        final ValueNode value;
+        final ValueNode init;
+        final ValueNode stride;
+        final ValueNode exitValue;
+        ValuePhiNode phi;
+        ValueNode next;
+
+        Candidate(InductionVariable iv, ValueNode init, ValueNode stride, ValueNode exitValue) {
+            this.iv = iv;
+            this.value = iv.valueNode();
+            this.init = init;
+            this.stride = stride;
+            this.exitValue = exitValue;
+        }
+    }
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        if (graph.hasLoops()) {
+            NodeBitMap processed = graph.createNodeBitMap();
+            boolean changed;
+            do {
+                changed = false;
+                final LoopsData data = new LoopsData(graph);
+                data.detectedCountedLoops();
+                for (LoopEx loop : data.innerFirst()) {
+                    if (processed.isMarked(loop.loopBegin())) {
+                        continue;
+                    }
+                    processed.mark(loop.loopBegin());
+                    if (reduce(loop)) {
+                        Debug.dump(graph, "StrengthReduction %s", loop);
+                        /*
+                         * The loop fragments and induction variables of the enclosing loops do
+                         * not know about the new nodes, so the loop data has to be recomputed.
+                         */
+                        changed = true;
+                        break;
+                    }
+                }
+                data.deleteUnusedNodes();
+            } while (changed);
+        }
+    }
+
+    private static boolean reduce(LoopEx loop) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        InductionVariable counter = loop.isCounted() ? loop.counted().getCounter() : null;
+        boolean canReplaceTest = canReplaceExitTest(loop);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (InductionVariable iv : loop.getInductionVariables().values()) {
+            if (isCandidate(loop, iv)) {
+                ValueNode exitValue = null;
+                if (canReplaceTest && isInjective(iv, counter)) {
+                    exitValue = exitValue(iv, counterExitValue(loop));
+                }
+                candidates.add(new Candidate(iv, iv.initNode(), iv.strideNode(), exitValue));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return false;
+        }
+
+        for (Candidate candidate : candidates) {
+            ValuePhiNode phi = graph.addWithoutUnique(new ValuePhiNode(candidate.value.stamp().unrestricted(), loopBegin));
+            phi.addInput(candidate.init);
+            ValueNode next = add(graph, phi, candidate.stride);
+            for (int i = 0; i < loopBegin.getLoopEndCount(); i++) {
+                phi.addInput(next);
+            }
+            Debug.log("Strength reduced %s to %s", candidate.iv, phi);
+            candidate.value.replaceAtUsages(phi);
+            candidate.phi = phi;
+            candidate.next = next;
+            REDUCED_INDUCTION_VARIABLES.increment();
+        }
+        for (Candidate candidate : candidates) {
+            GraphUtil.tryKillUnused(candidate.value);
+        }
+        for (Candidate candidate : candidates) {
+            if (isDeadInductionVariable(candidate.phi, candidate.next)) {
+                killInductionVariable(candidate.phi, candidate.next);
+            }
+        }
+
+        if (canReplaceTest) {
+            replaceExitTest(loop, candidates);
+        }
+        for (Candidate candidate : candidates) {
+            if (candidate.exitValue != null) {
+                GraphUtil.tryKillUnused(candidate.exitValue);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCandidate(LoopEx loop, InductionVariable iv) {
+        if (!(iv instanceof DerivedScaledInductionVariable)) {
+            return false;
+        }
+        ValueNode value = iv.valueNode();
+        if (!(value.stamp() instanceof IntegerStamp)) {
+            return false;
+        }
+        if (value instanceof LeftShiftNode) {
+            ValueNode shift = ((LeftShiftNode) value).getY();
+            if (!shift.isConstant() || shift.asJavaConstant().asInt() < 0 || shift.asJavaConstant().asInt() >= 31) {
+                return false;
+            }
+        } else if (!(value instanceof MulNode)) {
+            return false;
+        }
+        /*
+         * Adding the scaled stride in every iteration gives the same value as scaling the base
+         * induction variable in two's complement arithmetic, unless an integer conversion in the
+         * derivation sees its input wrap around.
+         */
+        InductionVariable current = iv;
+        while (current instanceof DerivedInductionVariable) {
+            InductionVariable base = ((DerivedInductionVariable) current).getBase();
+            if (current instanceof DerivedConvertedInductionVariable && !(current.valueNode() instanceof PiNode) && !cannotOverflow(loop, base)) {
+                return false;
+            }
+            current = base;
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the values of {@code iv} stay within the range of its type for all
+     * iterations, which is the case for the counter of a counted loop that is protected by an
+     * overflow guard or that moves towards an excluded limit in steps of one.
+     */
+    private static boolean cannotOverflow(LoopEx loop, InductionVariable iv) {
+        if (!loop.isCounted()) {
+            return false;
+        }
+        InductionVariable current = iv;
+        while (current instanceof DerivedConvertedInductionVariable && current.valueNode() instanceof PiNode) {
+            current = ((DerivedConvertedInductionVariable) current).getBase();
+        }
+        CountedLoopInfo counted = loop.counted();
+        if (current != counted.getCounter()) {
+            return false;
+        }
+        if (counted.getOverFlowGuard() != null) {
+            return true;
+        }
+        return current.isConstantStride() && Math.abs(current.constantStride()) == 1 && !counted.isLimitIncluded();
+    }
+
+    /**
+     * The exit test is only replaced for loops that count up by one towards an excluded limit and
+     * have a single exit, so that the exit value of the counter is the maximum of its initial value
+     * and the limit.
+     */
+    private static boolean canReplaceExitTest(LoopEx loop) {
+        if (!loop.isCounted()) {
+            return false;
+        }
+        CountedLoopInfo counted = loop.counted();
+        InductionVariable counter = counted.getCounter();
+        if (!(counter instanceof BasicInductionVariable) || !(counted.getBody().predecessor() instanceof IfNode)) {
+            return false;
+        }
+        if (counter.direction() != Direction.Up || !counter.isConstantStride() || counter.constantStride() != 1 || counted.isLimitIncluded() || !counted.isExactTripCount()) {
+            return false;
+        }
+        return ((IntegerStamp) counter.valueNode().stamp()).getBits() == 32;
+    }
+
+    /**
+     * Determines whether {@code iv} is an injective function of the 32 bit {@code counter}, i.e.,
+     * a sign extension to 64 bits followed by constant scales and offsets that cannot overflow.
+     * Only then can the exit test be expressed as an equality on {@code iv}.
+     */
+    private static boolean isInjective(InductionVariable iv, InductionVariable counter) {
+        List<InductionVariable> chain = new ArrayList<>();
+        InductionVariable current = iv;
+        while (current != counter) {
+            if (!(current instanceof DerivedInductionVariable)) {
+                return false;
+            }
+            chain.add(current);
+            current = ((DerivedInductionVariable) current).getBase();
+        }
+        long bound = MAX_SCALE;
+        boolean widened = false;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            InductionVariable step = chain.get(i);
+            ValueNode value = step.valueNode();
+            if (step instanceof DerivedConvertedInductionVariable) {
+                if (value instanceof PiNode) {
+                    continue;
+                }
+                if (widened || !(value instanceof SignExtendNode) || ((IntegerStamp) value.stamp()).getBits() != 64) {
+                    return false;
+                }
+                widened = true;
+            } else if (!widened) {
+                return false;
+            } else if (step instanceof DerivedScaledInductionVariable) {
+                ValueNode scale = ((DerivedScaledInductionVariable) step).getScale();
+                if (!scale.isConstant()) {
+                    return false;
+                }
+                long factor = Math.abs(scale.asJavaConstant().asLong());
+                if (factor == 0 || factor > MAX_SCALE) {
+                    return false;
+                }
+                bound *= factor;
+            } else if (step instanceof DerivedOffsetInductionVariable) {
+                ValueNode offset = ((DerivedOffsetInductionVariable) step).getOffset();
+                if (!offset.isConstant()) {
+                    return false;
+                }
+                long summand = offset.asJavaConstant().asLong();
+                if (summand <= -MAX_SCALE || summand >= MAX_SCALE) {
+                    return false;
+                }
+                bound += Math.abs(summand);
+            } else {
+                return false;
+            }
+            if (bound >= MAX_BOUND) {
+                return false;
+            }
+        }
+        return widened;
+    }
+
+    private static ValueNode counterExitValue(LoopEx loop) {
+        StructuredGraph graph = loop.loopBegin().graph();
+        ValueNode init = loop.counted().getStart();
+        ValueNode limit = loop.counted().getLimit();
+        return graph.unique(new ConditionalNode(graph.unique(new IntegerLessThanNode(init, limit)), limit, init));
+    }
+
+    /**
+     * Applies the derivation of {@code iv} from the loop counter to the exit value of the counter.
+     */
+    private static ValueNode exitValue(InductionVariable iv, ValueNode counterExitValue) {
+        if (!(iv instanceof DerivedInductionVariable)) {
+            return counterExitValue;
+        }
+        InductionVariable base = ((DerivedInductionVariable) iv).getBase();
+        ValueNode baseValue = exitValue(base, counterExitValue);
+        StructuredGraph graph = iv.graph();
+        ValueNode value = iv.valueNode();
+        if (iv instanceof DerivedConvertedInductionVariable) {
+            if (value instanceof PiNode) {
+                return baseValue;
+            }
+            return IntegerConvertNode.convert(baseValue, value.stamp(), graph);
+        } else if (iv instanceof DerivedScaledInductionVariable) {
+            return mul(graph, baseValue, ((DerivedScaledInductionVariable) iv).getScale());
+        } else {
+            DerivedOffsetInductionVariable offsetIv = (DerivedOffsetInductionVariable) iv;
+            if (value instanceof AddNode) {
+                return add(graph, baseValue, offsetIv.getOffset());
+            } else if (((SubNode) value).getX() == base.valueNode()) {
+                return sub(graph, baseValue, offsetIv.getOffset());
+            } else {
+                return sub(graph, offsetIv.getOffset(), baseValue);
+            }
+        }
+    }
+
+    private static void replaceExitTest(LoopEx loop, List<Candidate> candidates) {
+        CountedLoopInfo counted = loop.counted();
+        BasicInductionVariable counter = (BasicInductionVariable) counted.getCounter();
+        IfNode ifNode = (IfNode) counted.getBody().predecessor();
+        LogicNode test = ifNode.condition();
+        ValuePhiNode counterPhi = counter.valueNode();
+        ValueNode increment = counter.getOp();
+        if (!test.isAlive() || !increment.isAlive() || test.usages().count() != 1) {
+            return;
+        }
+        for (Node usage : counterPhi.usages()) {
+            if (usage != increment && usage != test) {
+                return;
+            }
+        }
+        for (Node usage : increment.usages()) {
+            if (usage != counterPhi) {
+                return;
+            }
+        }
+        for (Candidate candidate : candidates) {
+            if (candidate.exitValue != null && candidate.phi.isAlive()) {
+                StructuredGraph graph = ifNode.graph();
+                LogicNode exitTest = graph.unique(new IntegerEqualsNode(candidate.phi, candidate.exitValue));
+                if (counted.getBody() == ifNode.trueSuccessor()) {
+                    exitTest = graph.unique(new LogicNegationNode(exitTest));
+                }
+                Debug.log("Replaced exit test %s of %s with %s", test, loop, exitTest);
+                ifNode.setCondition(exitTest);
+                GraphUtil.killWithUnusedFloatingInputs(test);
+                if (isDeadInductionVariable(counterPhi, increment)) {
+                    killInductionVariable(counterPhi, increment);
+                }
+                REPLACED_EXIT_TESTS.increment();
+                return;
+            }
+        }
+    }
+
+    private static boolean isDeadInductionVariable(ValuePhiNode phi, ValueNode next) {
+        if (!phi.isAlive()) {
+            return false;
+        }
+        for (Node usage : phi.usages()) {
+            if (usage != next) {
+                return false;
+            }
+        }
+        for (Node usage : next.usages()) {
+            if (usage != phi) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void killInductionVariable(ValuePhiNode phi, ValueNode next) {
+        phi.clearValues();
+        GraphUtil.killWithUnusedFloatingInputs(next);
+        GraphUtil.tryKillUnused(phi);
+    }
+}
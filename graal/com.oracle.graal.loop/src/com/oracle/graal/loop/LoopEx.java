@@ -24,9 +24,11 @@ package com.oracle.graal.loop;
 
 import static com.oracle.graal.graph.Node.newIdentityMap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -153,6 +155,17 @@ public class LoopEx {
         return data.loop(loop.getParent());
     }
 
+    /**
+     * Gets the loops directly nested in this loop.
+     */
+    public List<LoopEx> children() {
+        List<LoopEx> children = new ArrayList<>(loop.getChildren().size());
+        for (Loop<Block> child : loop.getChildren()) {
+            children.add(data.loop(child));
+        }
+        return children;
+    }
+
     public int size() {
         return whole().nodes().count();
     }
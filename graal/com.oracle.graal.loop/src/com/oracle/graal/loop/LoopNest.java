@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop;
+
+import java.util.List;
+
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractEndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.HIRLoop;
+import com.oracle.graal.nodes.cfg.LocationSet;
+
+/**
+ * A loop nest of depth two, i.e., an outer loop together with the only loop directly nested in it.
+ */
+public final class LoopNest {
+
+    private final LoopEx outer;
+    private final LoopEx inner;
+
+    private LoopNest(LoopEx outer, LoopEx inner) {
+        this.outer = outer;
+        this.inner = inner;
+    }
+
+    /**
+     * Creates the loop nest formed by {@code outer} and its child loop, or returns {@code null} if
+     * {@code outer} does not have exactly one child loop.
+     */
+    public static LoopNest create(LoopEx outer) {
+        List<LoopEx> children = outer.children();
+        if (children.size() != 1) {
+            return null;
+        }
+        return new LoopNest(outer, children.get(0));
+    }
+
+    public LoopEx outer() {
+        return outer;
+    }
+
+    public LoopEx inner() {
+        return inner;
+    }
+
+    /**
+     * Determines whether the nest is perfect, i.e., the outer loop does not execute any code
+     * besides the inner loop and the tests that exit the outer loop.
+     */
+    public boolean isPerfect() {
+        LoopBeginNode outerBegin = outer.loopBegin();
+        for (Block block : outer.loop().getBlocks()) {
+            if (block.getLoop() != outer.loop()) {
+                continue;
+            }
+            for (FixedNode node : block.getNodes()) {
+                if (node instanceof AbstractBeginNode || node instanceof AbstractEndNode) {
+                    continue;
+                }
+                if (node instanceof IfNode) {
+                    IfNode ifNode = (IfNode) node;
+                    if (outerBegin.isLoopExit(ifNode.trueSuccessor()) || outerBegin.isLoopExit(ifNode.falseSuccessor())) {
+                        continue;
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether both loops are counted loops with a constant stride and whether the start
+     * and the limit of the inner loop are invariant in the outer loop, i.e., whether the nest
+     * iterates over a rectangular iteration space.
+     */
+    public boolean hasInvariantBounds() {
+        if (!outer.isCounted() || !inner.isCounted()) {
+            return false;
+        }
+        CountedLoopInfo innerCounted = inner.counted();
+        if (!outer.counted().getCounter().isConstantStride() || !innerCounted.getCounter().isConstantStride()) {
+            return false;
+        }
+        return outer.isOutsideLoop(innerCounted.getStart()) && outer.isOutsideLoop(innerCounted.getLimit());
+    }
+
+    /**
+     * Gets the memory locations that may be killed by the nest.
+     */
+    public LocationSet getKillLocations() {
+        return ((HIRLoop) outer.loop()).getKillLocations();
+    }
+
+    @Override
+    public String toString() {
+        return "LoopNest " + outer + " / " + inner;
+    }
+}
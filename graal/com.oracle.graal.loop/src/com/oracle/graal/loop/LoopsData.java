@@ -98,6 +98,21 @@ public class LoopsData {
         return loops;
     }
 
+    /**
+     * Gets all loop nests of depth two in this graph, outermost nests first. A nest is formed by a
+     * loop that has exactly one child loop.
+     */
+    public List<LoopNest> loopNests() {
+        List<LoopNest> nests = new ArrayList<>();
+        for (LoopEx loop : outerFirst()) {
+            LoopNest nest = LoopNest.create(loop);
+            if (nest != null) {
+                nests.add(nest);
+            }
+        }
+        return nests;
+    }
+
     public Collection<LoopEx> countedLoops() {
         List<LoopEx> counted = new LinkedList<>();
         for (LoopEx loop : loops()) {
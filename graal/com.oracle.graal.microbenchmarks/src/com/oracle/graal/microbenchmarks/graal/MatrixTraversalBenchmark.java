@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks.graal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Walks two-dimensional arrays in row and in column order. The column order variants benefit from
+ * loop interchange.
+ */
+@State(Scope.Thread)
+public class MatrixTraversalBenchmark extends GraalBenchmark {
+
+    /** Number of rows and columns of the test matrices. */
+    private static final int SIZE = 1024;
+
+    private int[][] intMatrix;
+
+    private double[][] doubleMatrix;
+
+    @Setup
+    public void setup() {
+        intMatrix = new int[SIZE][SIZE];
+        doubleMatrix = new double[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                intMatrix[i][j] = i ^ j;
+                doubleMatrix[i][j] = i * 0.5 + j;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public int intRowOrder() {
+        int[][] matrix = intMatrix;
+        int sum = 0;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                sum += matrix[i][j];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public int intColumnOrder() {
+        int[][] matrix = intMatrix;
+        int sum = 0;
+        for (int j = 0; j < SIZE; j++) {
+            for (int i = 0; i < SIZE; i++) {
+                sum += matrix[i][j];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public double doubleRowOrder() {
+        double[][] matrix = doubleMatrix;
+        double sum = 0;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                sum += matrix[i][j];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public double doubleColumnOrder() {
+        double[][] matrix = doubleMatrix;
+        double sum = 0;
+        for (int j = 0; j < SIZE; j++) {
+            for (int i = 0; i < SIZE; i++) {
+                sum += matrix[i][j];
+            }
+        }
+        return sum;
+    }
+}
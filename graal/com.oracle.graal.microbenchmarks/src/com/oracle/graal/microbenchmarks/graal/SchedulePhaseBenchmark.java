@@ -22,13 +22,22 @@
  */
 package com.oracle.graal.microbenchmarks.graal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Warmup;
 
+import com.oracle.graal.microbenchmarks.graal.util.GraalState;
+import com.oracle.graal.microbenchmarks.graal.util.GraalUtil;
 import com.oracle.graal.microbenchmarks.graal.util.MethodSpec;
 import com.oracle.graal.microbenchmarks.graal.util.ScheduleState;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.phases.common.inlining.InliningUtil;
 import com.oracle.graal.phases.schedule.SchedulePhase.SchedulingStrategy;
 
 @Warmup(iterations = 15)
@@ -96,5 +105,83 @@ public class SchedulePhaseBenchmark extends GraalBenchmark {
     public void intersection_EARLIEST_OPTIMAL(IntersectionState_EARLIEST_OPTIMAL s) {
         s.schedule.apply(s.graph);
     }
+
+    public static int peSizedSnippet(int[] values, int depth) {
+        if (depth <= 0) {
+            int sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] > depth) {
+                    sum += values[i];
+                } else {
+                    sum ^= i;
+                }
+            }
+            return sum;
+        }
+        int result = peSizedSnippet(values, depth - 1);
+        if (result > 0) {
+            result += peSizedSnippet(values, depth - 2);
+        } else {
+            result -= peSizedSnippet(values, depth - 1);
+        }
+        return result + peSizedSnippet(values, depth - 3);
+    }
+
+    /**
+     * Produces graphs of the size that partial evaluation of Truffle ASTs creates by inlining all
+     * calls of {@link #peSizedSnippet} for a number of rounds. Each round multiplies the number of
+     * inlined copies by four.
+     */
+    public abstract static class PESizedState extends ScheduleState {
+
+        private static final int INLINING_ROUNDS = 6;
+
+        public PESizedState(SchedulingStrategy strategy) {
+            super(strategy);
+        }
+
+        @Override
+        protected StructuredGraph preprocessOriginal(StructuredGraph graph) {
+            GraalState graal = new GraalState();
+            ResolvedJavaMethod method = graph.method();
+            StructuredGraph calleeGraph = GraalUtil.getGraph(graal, method);
+            for (int round = 0; round < INLINING_ROUNDS; round++) {
+                List<Invoke> invokes = new ArrayList<>();
+                for (Invoke invoke : graph.getInvokes()) {
+                    if (method.equals(invoke.callTarget().targetMethod())) {
+                        invokes.add(invoke);
+                    }
+                }
+                for (Invoke invoke : invokes) {
+                    InliningUtil.inline(invoke, calleeGraph, false, null);
+                }
+            }
+            return graph;
+        }
+    }
+
+    @MethodSpec(declaringClass = SchedulePhaseBenchmark.class, name = "peSizedSnippet")
+    public static class PESizedState_LATEST_OUT_OF_LOOPS extends PESizedState {
+        public PESizedState_LATEST_OUT_OF_LOOPS() {
+            super(SchedulingStrategy.LATEST_OUT_OF_LOOPS);
+        }
+    }
+
+    @Benchmark
+    public void peSized_LATEST_OUT_OF_LOOPS(PESizedState_LATEST_OUT_OF_LOOPS s) {
+        s.schedule.apply(s.graph);
+    }
+
+    @MethodSpec(declaringClass = SchedulePhaseBenchmark.class, name = "peSizedSnippet")
+    public static class PESizedState_FINAL_SCHEDULE extends PESizedState {
+        public PESizedState_FINAL_SCHEDULE() {
+            super(SchedulingStrategy.FINAL_SCHEDULE);
+        }
+    }
+
+    @Benchmark
+    public void peSized_FINAL_SCHEDULE(PESizedState_FINAL_SCHEDULE s) {
+        s.schedule.apply(s.graph);
+    }
     // Checkstyle: resume method name check
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks.graal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link String#indexOf} and {@link String#compareTo} on strings of 0 to 4K characters
+ * where the searched character or the first difference is at the end of the string.
+ */
+@State(Scope.Thread)
+public class StringBenchmark extends GraalBenchmark {
+
+    @Param({"0", "8", "16", "64", "256", "1024", "4096"}) int length;
+
+    private String string;
+    private String similarString;
+    private String target;
+
+    @Setup
+    public void setup() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        string = new String(chars);
+        if (length > 0) {
+            chars[length - 1] = '#';
+        }
+        similarString = new String(chars);
+        target = similarString.substring(Math.max(0, length - 3));
+    }
+
+    @Benchmark
+    public int indexOfChar() {
+        return similarString.indexOf('#');
+    }
+
+    @Benchmark
+    public int indexOfString() {
+        return similarString.indexOf(target);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return string.compareTo(similarString);
+    }
+}
@@ -28,6 +28,7 @@ import jdk.vm.ci.meta.JavaKind;
 import jdk.vm.ci.meta.MetaAccessProvider;
 import jdk.vm.ci.meta.ResolvedJavaType;
 
+import com.oracle.graal.compiler.common.type.IntegerStamp;
 import com.oracle.graal.compiler.common.type.Stamp;
 import com.oracle.graal.compiler.common.type.StampFactory;
 import com.oracle.graal.graph.Node;
@@ -97,6 +98,18 @@ public class LoadIndexedNode extends AccessIndexedNode implements Virtualizable,
             int idx = indexValue.isConstant() ? indexValue.asJavaConstant().asInt() : -1;
             if (idx >= 0 && idx < virtual.entryCount()) {
                 tool.replaceWith(tool.getEntry(virtual, idx));
+            } else if (!indexValue.isConstant() && indexValue.stamp() instanceof IntegerStamp) {
+                IntegerStamp indexStamp = (IntegerStamp) indexValue.stamp();
+                if (indexStamp.lowerBound() >= 0 && indexStamp.upperBound() < virtual.entryCount()) {
+                    // all entries that can be accessed are the same, e.g., untouched default values
+                    ValueNode entry = tool.getEntry(virtual, (int) indexStamp.lowerBound());
+                    for (int i = (int) indexStamp.lowerBound() + 1; i <= indexStamp.upperBound(); i++) {
+                        if (tool.getEntry(virtual, i) != entry) {
+                            return;
+                        }
+                    }
+                    tool.replaceWith(entry);
+                }
             }
         }
     }
@@ -26,7 +26,9 @@ import java.util.Collections;
 
 import jdk.vm.ci.meta.ResolvedJavaType;
 
+import com.oracle.graal.compiler.common.type.IntegerStamp;
 import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeClass;
 import com.oracle.graal.nodeinfo.NodeInfo;
 import com.oracle.graal.nodes.ConstantNode;
@@ -81,7 +83,7 @@ public class NewArrayNode extends AbstractNewArrayNode implements VirtualizableA
         ValueNode lengthAlias = tool.getAlias(length());
         if (lengthAlias.asConstant() != null) {
             int constantLength = lengthAlias.asJavaConstant().asInt();
-            if (constantLength >= 0 && constantLength < tool.getMaximumEntryCount()) {
+            if (constantLength >= 0 && (constantLength < tool.getMaximumEntryCount() || (constantLength <= tool.getMaximumLazyEntryCount() && hasOnlyVirtualAccesses(constantLength, tool)))) {
                 ValueNode[] state = new ValueNode[constantLength];
                 ConstantNode defaultForKind = constantLength == 0 ? null : defaultElementValue();
                 for (int i = 0; i < constantLength; i++) {
@@ -94,6 +96,47 @@ public class NewArrayNode extends AbstractNewArrayNode implements VirtualizableA
         }
     }
 
+    /**
+     * Determines whether all usages of this array can be performed on the virtual array, i.e.,
+     * whether virtualizing it will not just lead to a materialization of a large virtual object.
+     * All accesses need an index that is known to be in bounds. {@link LoadIndexedNode#virtualize}
+     * can handle loads from a range of identical entries. {@link StoreIndexedNode#virtualize} can
+     * handle stores to a small range of a primitive array, or stores of a constant that the
+     * entries in the range may already have.
+     */
+    private boolean hasOnlyVirtualAccesses(int constantLength, VirtualizerTool tool) {
+        for (Node usage : usages()) {
+            if (usage instanceof LoadIndexedNode) {
+                if (!isInBounds(((LoadIndexedNode) usage).index(), constantLength)) {
+                    return false;
+                }
+            } else if (usage instanceof StoreIndexedNode) {
+                StoreIndexedNode store = (StoreIndexedNode) usage;
+                if (store.value() == this || !isInBounds(store.index(), constantLength)) {
+                    return false;
+                }
+                if (!store.index().isConstant()) {
+                    IntegerStamp indexStamp = (IntegerStamp) store.index().stamp();
+                    boolean smallRange = indexStamp.upperBound() - indexStamp.lowerBound() < tool.getMaximumEntryCount();
+                    if (!elementType().isPrimitive() || !(smallRange || store.value().isConstant())) {
+                        return false;
+                    }
+                }
+            } else if (!(usage instanceof ArrayLengthNode || usage instanceof FrameState)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInBounds(ValueNode index, int constantLength) {
+        if (index.stamp() instanceof IntegerStamp) {
+            IntegerStamp stamp = (IntegerStamp) index.stamp();
+            return stamp.lowerBound() >= 0 && stamp.upperBound() < constantLength;
+        }
+        return false;
+    }
+
     protected VirtualArrayNode createVirtualArrayNode(int constantLength) {
         return new VirtualArrayNode(elementType(), constantLength);
     }
@@ -25,13 +25,18 @@ package com.oracle.graal.nodes.java;
 import jdk.vm.ci.meta.JavaKind;
 import jdk.vm.ci.meta.ResolvedJavaType;
 
+import com.oracle.graal.compiler.common.type.IntegerStamp;
 import com.oracle.graal.compiler.common.type.StampFactory;
 import com.oracle.graal.graph.NodeClass;
 import com.oracle.graal.nodeinfo.InputType;
 import com.oracle.graal.nodeinfo.NodeInfo;
+import com.oracle.graal.nodes.ConstantNode;
 import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.LogicNode;
 import com.oracle.graal.nodes.StateSplit;
 import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.IntegerEqualsNode;
 import com.oracle.graal.nodes.spi.Lowerable;
 import com.oracle.graal.nodes.spi.Virtualizable;
 import com.oracle.graal.nodes.spi.VirtualizerTool;
@@ -86,8 +91,44 @@ public final class StoreIndexedNode extends AccessIndexedNode implements StateSp
                     tool.setVirtualEntry(virtual, idx, value(), false);
                     tool.delete();
                 }
+            } else if (!indexValue.isConstant() && virtual.componentType().isPrimitive() && indexValue.stamp() instanceof IntegerStamp) {
+                IntegerStamp indexStamp = (IntegerStamp) indexValue.stamp();
+                if (indexStamp.lowerBound() >= 0 && indexStamp.upperBound() < virtual.entryCount()) {
+                    virtualizeInBounds(virtual, indexValue, (int) indexStamp.lowerBound(), (int) indexStamp.upperBound(), tool);
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs a store at a non-constant index that is known to be within {@code [lower, upper]}
+     * on the virtual array. Every entry in this range that may change becomes a selection between
+     * the stored value and the previous entry. This is only done if at most
+     * {@link VirtualizerTool#getMaximumEntryCount()} entries may change, which includes storing a
+     * value that all entries in the range already have.
+     */
+    private void virtualizeInBounds(VirtualArrayNode virtual, ValueNode indexValue, int lower, int upper, VirtualizerTool tool) {
+        ValueNode newValue = tool.getAlias(value());
+        int changedEntries = 0;
+        for (int i = lower; i <= upper; i++) {
+            if (tool.getEntry(virtual, i) != newValue) {
+                changedEntries++;
+            }
+        }
+        if (changedEntries > tool.getMaximumEntryCount()) {
+            return;
+        }
+        for (int i = lower; i <= upper; i++) {
+            ValueNode entry = tool.getEntry(virtual, i);
+            if (entry != newValue) {
+                LogicNode condition = new IntegerEqualsNode(indexValue, ConstantNode.forInt(i, graph()));
+                tool.addNode(condition);
+                ConditionalNode select = new ConditionalNode(condition, newValue, entry);
+                tool.addNode(select);
+                tool.setVirtualEntry(virtual, i, select, false);
             }
         }
+        tool.delete();
     }
 
     public FrameState getState() {
@@ -61,6 +61,15 @@ public interface VirtualizerTool {
      */
     int getMaximumEntryCount();
 
+    /**
+     * Arrays that have more entries than {@link #getMaximumEntryCount()} but not more than the
+     * value returned by this method may still be virtualized if none of their accesses would
+     * materialize them.
+     *
+     * @return the maximum number of entries for lazily virtualized arrays.
+     */
+    int getMaximumLazyEntryCount();
+
     // methods working on virtualized/materialized objects
 
     /**
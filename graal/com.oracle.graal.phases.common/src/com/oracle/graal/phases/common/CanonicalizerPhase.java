@@ -22,6 +22,8 @@
  */
 package com.oracle.graal.phases.common;
 
+import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizerTopologicalOrder;
+
 import jdk.vm.ci.meta.Constant;
 import jdk.vm.ci.meta.ConstantReflectionProvider;
 import jdk.vm.ci.meta.MetaAccessProvider;
@@ -34,6 +36,7 @@ import com.oracle.graal.graph.Graph.NodeEventListener;
 import com.oracle.graal.graph.Graph.NodeEventScope;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.Node.IndirectCanonicalization;
+import com.oracle.graal.graph.NodeBitMap;
 import com.oracle.graal.graph.NodeClass;
 import com.oracle.graal.graph.NodeWorkList;
 import com.oracle.graal.graph.spi.Canonicalizable;
@@ -64,6 +67,8 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
     private static final DebugMetric METRIC_STAMP_CHANGED = Debug.metric("StampChanged");
     private static final DebugMetric METRIC_SIMPLIFICATION_CONSIDERED_NODES = Debug.metric("SimplificationConsideredNodes");
     private static final DebugMetric METRIC_GLOBAL_VALUE_NUMBERING_HITS = Debug.metric("GlobalValueNumberingHits");
+    private static final DebugMetric METRIC_REVISITED_NODES = Debug.metric("CanonicalizerRevisitedNodes");
+    private static final DebugMetric METRIC_SKIPPED_REVISITS = Debug.metric("CanonicalizerSkippedRevisits");
 
     private boolean canonicalizeReads = true;
     private boolean simplify = true;
@@ -142,6 +147,17 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
         private NodeWorkList workList;
         private Tool tool;
 
+        /**
+         * The nodes that were processed at least once.
+         */
+        private NodeBitMap visited;
+
+        /**
+         * The nodes that were processed and did not {@linkplain #markChanged change} since.
+         * Processing such a node again is redundant.
+         */
+        private NodeBitMap upToDate;
+
         private Instance(PhaseContext context) {
             this(context, null, null);
         }
@@ -164,12 +180,17 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
         @Override
         protected void run(StructuredGraph graph) {
             boolean wholeGraph = newNodesMark == null || newNodesMark.isStart();
-            if (initWorkingSet == null) {
-                workList = graph.createIterativeNodeWorkList(wholeGraph, MAX_ITERATION_PER_NODE);
+            boolean fill = wholeGraph && initWorkingSet == null;
+            if (OptCanonicalizerTopologicalOrder.getValue()) {
+                workList = graph.createPriorityNodeWorkList(fill, MAX_ITERATION_PER_NODE);
             } else {
-                workList = graph.createIterativeNodeWorkList(false, MAX_ITERATION_PER_NODE);
+                workList = graph.createIterativeNodeWorkList(fill, MAX_ITERATION_PER_NODE);
+            }
+            if (initWorkingSet != null) {
                 workList.addAll(initWorkingSet);
             }
+            visited = graph.createNodeBitMap();
+            upToDate = graph.createNodeBitMap();
             if (!wholeGraph) {
                 workList.addAll(graph.getNewNodes(newNodesMark));
             }
@@ -186,16 +207,16 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                 }
 
                 public void inputChanged(Node node) {
-                    workList.add(node);
+                    markChanged(node);
                     if (node instanceof IndirectCanonicalization) {
                         for (Node usage : node.usages()) {
-                            workList.add(usage);
+                            markChanged(usage);
                         }
                     }
                 }
 
                 public void usagesDroppedToZero(Node node) {
-                    workList.add(node);
+                    markChanged(node);
                 }
 
             };
@@ -208,6 +229,10 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
 
         private void processNode(Node node) {
             if (node.isAlive()) {
+                if (!markVisited(node)) {
+                    METRIC_SKIPPED_REVISITS.increment();
+                    return;
+                }
                 METRIC_PROCESSED_NODES.increment();
 
                 NodeClass<?> nodeClass = node.getNodeClass();
@@ -227,7 +252,7 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                             } else if (improvedStamp) {
                                 // the improved stamp may enable additional canonicalization
                                 if (!tryCanonicalize(valueNode, nodeClass)) {
-                                    valueNode.usages().forEach(workList::add);
+                                    valueNode.usages().forEach(this::markChanged);
                                 }
                             }
                         }
@@ -236,6 +261,34 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
             }
         }
 
+        /**
+         * Records that {@code node} is processed.
+         *
+         * @return false if {@code node} was already processed and did not change since
+         */
+        private boolean markVisited(Node node) {
+            if (upToDate.isMarkedAndGrow(node)) {
+                return false;
+            }
+            if (visited.isMarkedAndGrow(node)) {
+                METRIC_REVISITED_NODES.increment();
+            }
+            visited.markAndGrow(node);
+            upToDate.markAndGrow(node);
+            return true;
+        }
+
+        /**
+         * Records that {@code node} may canonicalize differently because it or one of its inputs or
+         * usages changed, and adds it to the work list.
+         */
+        private void markChanged(Node node) {
+            if (node.isAlive()) {
+                upToDate.clearAndGrow(node);
+            }
+            workList.add(node);
+        }
+
         public boolean tryGlobalValueNumbering(Node node, NodeClass<?> nodeClass) {
             if (nodeClass.valueNumberable()) {
                 Node newNode = node.graph().findDuplicate(node);
@@ -326,6 +379,9 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                 Node canonical = newCanonical;
                 Debug.log("Canonicalizer: replacing %1s with %1s", node, canonical);
                 METRIC_CANONICALIZED_NODES.increment();
+                if (Debug.isMeterEnabled()) {
+                    Debug.metric("CanonicalizedNodes[%s]", node.getNodeClass().shortName()).increment();
+                }
                 StructuredGraph graph = (StructuredGraph) node.graph();
                 if (canonical != null && !canonical.isAlive()) {
                     assert !canonical.isDeleted();
@@ -388,7 +444,7 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
                 if (node.inferStamp()) {
                     METRIC_STAMP_CHANGED.increment();
                     for (Node usage : node.usages()) {
-                        workList.add(usage);
+                        markChanged(usage);
                     }
                     return true;
                 }
@@ -416,11 +472,13 @@ public class CanonicalizerPhase extends BasePhase<PhaseContext> {
 
             @Override
             public void addToWorkList(Node node) {
-                workList.add(node);
+                markChanged(node);
             }
 
             public void addToWorkList(Iterable<? extends Node> nodes) {
-                workList.addAll(nodes);
+                for (Node node : nodes) {
+                    markChanged(node);
+                }
             }
 
             @Override
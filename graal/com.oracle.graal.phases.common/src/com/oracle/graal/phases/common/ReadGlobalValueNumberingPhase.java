@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import jdk.vm.ci.meta.LocationIdentity;
+
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.memory.HeapAccess.BarrierType;
+import com.oracle.graal.nodes.memory.MemoryCheckpoint;
+import com.oracle.graal.nodes.memory.ReadNode;
+import com.oracle.graal.nodes.memory.address.AddressNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.Phase;
+
+/**
+ * Removes fixed {@link ReadNode}s that are dominated by an equivalent read, i.e., a read of the
+ * same address and location, if no {@link MemoryCheckpoint} can kill the location on any path
+ * between the two reads. This catches reads that are introduced by lowering after the
+ * {@link FloatingReadPhase} and are therefore not value numbered by the graph.
+ */
+public class ReadGlobalValueNumberingPhase extends Phase {
+
+    private static final DebugMetric METRIC_ELIMINATED_READS = Debug.metric("ReadGVNEliminatedReads");
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, true, false);
+        LoweringPhase.processBlock(new ReadFrame(cfg.getStartBlock(), null, new HashMap<>()));
+    }
+
+    private static final class ReadKey {
+
+        private final NodeClass<?> nodeClass;
+        private final AddressNode address;
+        private final LocationIdentity location;
+        private final Stamp stamp;
+        private final BarrierType barrierType;
+
+        ReadKey(ReadNode read) {
+            this.nodeClass = read.getNodeClass();
+            this.address = read.getAddress();
+            this.location = read.getLocationIdentity();
+            this.stamp = read.stamp();
+            this.barrierType = read.getBarrierType();
+        }
+
+        @Override
+        public int hashCode() {
+            return address.hashCode() * 31 + location.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof ReadKey) {
+                ReadKey other = (ReadKey) obj;
+                return nodeClass == other.nodeClass && address == other.address && location.equals(other.location) && stamp.equals(other.stamp) && barrierType == other.barrierType;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The reads available at the end of a block. The map is shared by all frames, each frame
+     * undoes its own modifications when the dominator tree walk leaves its block.
+     */
+    private static final class ReadFrame extends LoweringPhase.Frame<ReadFrame> {
+
+        private final Map<ReadKey, ReadNode> reads;
+        private final List<ReadKey> undoKeys = new ArrayList<>();
+        private final List<ReadNode> undoReads = new ArrayList<>();
+
+        ReadFrame(Block block, ReadFrame parent, Map<ReadKey, ReadNode> reads) {
+            super(block, parent);
+            this.reads = reads;
+        }
+
+        @Override
+        public ReadFrame enter(Block b) {
+            return new ReadFrame(b, this, reads);
+        }
+
+        @Override
+        public void preprocess() {
+            if (block.getDominator() != null) {
+                killBetweenDominator();
+            }
+            List<ReadNode> redundant = new ArrayList<>();
+            for (FixedNode node : block.getNodes()) {
+                if (node instanceof ReadNode && ((ReadNode) node).getLocationIdentity().isSingle()) {
+                    ReadNode read = (ReadNode) node;
+                    ReadKey key = new ReadKey(read);
+                    ReadNode dominating = reads.get(key);
+                    if (dominating != null && !read.getNullCheck()) {
+                        read.replaceAtUsages(dominating);
+                        redundant.add(read);
+                    } else {
+                        put(key, read);
+                    }
+                } else if (node instanceof MemoryCheckpoint.Single) {
+                    kill(((MemoryCheckpoint.Single) node).getLocationIdentity());
+                } else if (node instanceof MemoryCheckpoint.Multi) {
+                    for (LocationIdentity location : ((MemoryCheckpoint.Multi) node).getLocationIdentities()) {
+                        kill(location);
+                    }
+                }
+            }
+            for (ReadNode read : redundant) {
+                METRIC_ELIMINATED_READS.increment();
+                GraphUtil.removeFixedWithUnusedInputs(read);
+            }
+        }
+
+        @Override
+        public void postprocess() {
+            for (int i = undoKeys.size() - 1; i >= 0; i--) {
+                ReadNode read = undoReads.get(i);
+                if (read == null) {
+                    reads.remove(undoKeys.get(i));
+                } else {
+                    reads.put(undoKeys.get(i), read);
+                }
+            }
+        }
+
+        private void put(ReadKey key, ReadNode read) {
+            undoKeys.add(key);
+            undoReads.add(reads.put(key, read));
+        }
+
+        private void killBetweenDominator() {
+            Iterator<Map.Entry<ReadKey, ReadNode>> iterator = reads.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ReadKey, ReadNode> entry = iterator.next();
+                if (block.canKillBetweenThisAndDominator(entry.getKey().location)) {
+                    undoKeys.add(entry.getKey());
+                    undoReads.add(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void kill(LocationIdentity killed) {
+            Iterator<Map.Entry<ReadKey, ReadNode>> iterator = reads.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<ReadKey, ReadNode> entry = iterator.next();
+                LocationIdentity location = entry.getKey().location;
+                if (!location.isImmutable() && (killed.isAny() || killed.equals(location))) {
+                    undoKeys.add(entry.getKey());
+                    undoReads.add(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import jdk.vm.ci.meta.Constant;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.MetaAccessProvider;
+import jdk.vm.ci.meta.TriState;
+
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.graph.NodeMap;
+import com.oracle.graal.nodes.AbstractEndNode;
+import com.oracle.graal.nodes.AbstractMergeNode;
+import com.oracle.graal.nodes.BinaryOpLogicNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.ControlSplitNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicConstantNode;
+import com.oracle.graal.nodes.LogicNegationNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.PhiNode;
+import com.oracle.graal.nodes.PiNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.UnaryOpLogicNode;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.ValueProxyNode;
+import com.oracle.graal.nodes.calc.BinaryNode;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.UnaryNode;
+import com.oracle.graal.nodes.extended.IntegerSwitchNode;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+/**
+ * Sparse conditional constant propagation over {@linkplain Stamp stamps}.
+ *
+ * The analysis optimistically assumes that all control flow is unreachable and that all values
+ * are undefined until proven otherwise. Control flow is only followed along the successors of
+ * {@link IfNode}s and {@link IntegerSwitchNode}s that are possible given the current stamps of
+ * their inputs, and {@link ValuePhiNode}s only take the values flowing in through reachable ends
+ * into account. This finds constants and dead branches that the {@link CanonicalizerPhase} cannot
+ * find on its own, e.g., a loop phi that stays constant across the back edge because the only
+ * update of the phi happens on a branch that is never taken.
+ *
+ * The result is applied to the graph by folding the conditions of {@link IfNode}s with only one
+ * reachable successor, narrowing the value of {@link IntegerSwitchNode}s and replacing values with
+ * a constant stamp by {@link ConstantNode}s. Removing the dead branches is left to the
+ * canonicalizer, this phase should be wrapped in an {@link IncrementalCanonicalizerPhase}.
+ */
+public class SparseConditionalConstantPropagationPhase extends BasePhase<PhaseContext> {
+
+    private static final DebugMetric metricFoldedBranches = Debug.metric("SCCPFoldedBranches");
+    private static final DebugMetric metricNarrowedSwitches = Debug.metric("SCCPNarrowedSwitches");
+    private static final DebugMetric metricConstantValues = Debug.metric("SCCPConstantValues");
+
+    /**
+     * Number of times the stamp of a loop phi may be widened before it falls back to the stamp of
+     * the phi. This guarantees termination for lattices of unbounded height, e.g., integer ranges.
+     */
+    private static final int LOOP_PHI_WIDENING_LIMIT = 4;
+
+    @Override
+    protected void run(StructuredGraph graph, PhaseContext context) {
+        Propagation propagation = new Propagation(graph);
+        propagation.propagate();
+        propagation.apply(context.getMetaAccess());
+    }
+
+    private static boolean isTracked(Node node) {
+        return node instanceof ValuePhiNode || node instanceof ValueProxyNode || node instanceof PiNode || node instanceof BinaryNode || node instanceof UnaryNode ||
+                        node instanceof ConditionalNode || node instanceof LogicNegationNode || node instanceof BinaryOpLogicNode || node instanceof UnaryOpLogicNode;
+    }
+
+    private static final class Propagation {
+
+        private final StructuredGraph graph;
+        /**
+         * The current stamps of the tracked values, a missing entry means that no value has been
+         * seen yet.
+         */
+        private final NodeMap<Stamp> stamps;
+        private final NodeMap<TriState> conditions;
+        private final NodeMap<Integer> widenings;
+        private final NodeBitMap reached;
+        private final NodeBitMap queued;
+        private final Deque<FixedNode> blockWorklist = new ArrayDeque<>();
+        private final Deque<Node> valueWorklist = new ArrayDeque<>();
+
+        Propagation(StructuredGraph graph) {
+            this.graph = graph;
+            this.stamps = graph.createNodeMap();
+            this.conditions = graph.createNodeMap();
+            this.widenings = graph.createNodeMap();
+            this.reached = graph.createNodeBitMap();
+            this.queued = graph.createNodeBitMap();
+        }
+
+        void propagate() {
+            for (Node node : graph.getNodes()) {
+                if (isTracked(node)) {
+                    enqueue(node);
+                }
+            }
+            reach(graph.start());
+            while (!blockWorklist.isEmpty() || !valueWorklist.isEmpty()) {
+                if (!blockWorklist.isEmpty()) {
+                    visitBlock(blockWorklist.pop());
+                } else {
+                    Node node = valueWorklist.pop();
+                    queued.clear(node);
+                    evaluate(node);
+                }
+            }
+        }
+
+        private void enqueue(Node node) {
+            if (!queued.isMarked(node)) {
+                queued.mark(node);
+                valueWorklist.push(node);
+            }
+        }
+
+        private void reach(FixedNode begin) {
+            if (!reached.isMarked(begin)) {
+                reached.mark(begin);
+                blockWorklist.push(begin);
+            }
+        }
+
+        private void visitBlock(FixedNode begin) {
+            FixedNode current = begin;
+            while (true) {
+                reached.mark(current);
+                if (current instanceof FixedWithNextNode) {
+                    current = ((FixedWithNextNode) current).next();
+                } else if (current instanceof AbstractEndNode) {
+                    AbstractMergeNode merge = ((AbstractEndNode) current).merge();
+                    for (PhiNode phi : merge.phis()) {
+                        if (isTracked(phi)) {
+                            enqueue(phi);
+                        }
+                    }
+                    reach(merge);
+                    return;
+                } else {
+                    if (current instanceof ControlSplitNode) {
+                        visitSplit((ControlSplitNode) current);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void visitSplit(ControlSplitNode split) {
+            if (split instanceof IfNode) {
+                IfNode ifNode = (IfNode) split;
+                TriState condition = conditionOf(ifNode.condition());
+                if (condition != null) {
+                    if (!condition.isFalse()) {
+                        reach(ifNode.trueSuccessor());
+                    }
+                    if (!condition.isTrue()) {
+                        reach(ifNode.falseSuccessor());
+                    }
+                }
+            } else if (split instanceof IntegerSwitchNode) {
+                IntegerSwitchNode switchNode = (IntegerSwitchNode) split;
+                Stamp stamp = stampOf(switchNode.value());
+                if (stamp != null) {
+                    boolean defaultReachable = true;
+                    for (int i = 0; i < switchNode.keyCount(); i++) {
+                        if (mayBeKey(stamp, switchNode.keyAt(i))) {
+                            reach(switchNode.keySuccessor(i));
+                            if (switchNode.keyAt(i).equals(stamp.asConstant())) {
+                                defaultReachable = false;
+                            }
+                        }
+                    }
+                    if (defaultReachable) {
+                        reach(switchNode.defaultSuccessor());
+                    }
+                }
+            } else {
+                for (Node successor : split.successors()) {
+                    reach((FixedNode) successor);
+                }
+            }
+        }
+
+        private static boolean mayBeKey(Stamp stamp, JavaConstant key) {
+            return !(stamp instanceof IntegerStamp) || ((IntegerStamp) stamp).contains(key.asLong());
+        }
+
+        private Stamp stampOf(ValueNode value) {
+            if (isTracked(value)) {
+                return stamps.get(value);
+            }
+            return value.stamp();
+        }
+
+        private TriState conditionOf(LogicNode condition) {
+            if (condition instanceof LogicConstantNode) {
+                return TriState.get(((LogicConstantNode) condition).getValue());
+            } else if (isTracked(condition)) {
+                return conditions.get(condition);
+            }
+            return TriState.UNKNOWN;
+        }
+
+        private void evaluate(Node node) {
+            if (node instanceof LogicNode) {
+                TriState result = evaluateCondition((LogicNode) node);
+                if (result == null) {
+                    return;
+                }
+                TriState old = conditions.get(node);
+                if (old != null && old != result) {
+                    result = TriState.UNKNOWN;
+                }
+                if (result != old) {
+                    conditions.set(node, result);
+                    valueChanged(node);
+                }
+            } else {
+                ValueNode value = (ValueNode) node;
+                Stamp result = evaluateStamp(value);
+                if (result == null) {
+                    return;
+                }
+                Stamp old = stamps.get(value);
+                if (old != null) {
+                    result = old.meet(result);
+                    if (!result.equals(old) && value instanceof ValuePhiNode && ((ValuePhiNode) value).merge() instanceof LoopBeginNode) {
+                        Integer count = widenings.get(value);
+                        int newCount = count == null ? 1 : count + 1;
+                        widenings.set(value, newCount);
+                        if (newCount > LOOP_PHI_WIDENING_LIMIT) {
+                            result = value.stamp();
+                        }
+                    }
+                }
+                Stamp improved = result.join(value.stamp());
+                result = improved.isEmpty() ? value.stamp() : improved;
+                if (!result.equals(old)) {
+                    stamps.set(value, result);
+                    valueChanged(value);
+                }
+            }
+        }
+
+        private void valueChanged(Node node) {
+            for (Node usage : node.usages()) {
+                if (isTracked(usage)) {
+                    enqueue(usage);
+                } else if (usage instanceof ControlSplitNode && reached.isMarked(usage)) {
+                    visitSplit((ControlSplitNode) usage);
+                }
+            }
+        }
+
+        private TriState evaluateCondition(LogicNode node) {
+            if (node instanceof LogicNegationNode) {
+                TriState value = conditionOf(((LogicNegationNode) node).getValue());
+                if (value == null || value.isUnknown()) {
+                    return value;
+                }
+                return TriState.get(!value.toBoolean());
+            } else if (node instanceof BinaryOpLogicNode) {
+                BinaryOpLogicNode binary = (BinaryOpLogicNode) node;
+                Stamp x = stampOf(binary.getX());
+                Stamp y = stampOf(binary.getY());
+                if (x == null || y == null) {
+                    return null;
+                }
+                return binary.tryFold(x, y);
+            } else {
+                UnaryOpLogicNode unary = (UnaryOpLogicNode) node;
+                Stamp value = stampOf(unary.getValue());
+                if (value == null) {
+                    return null;
+                }
+                return unary.tryFold(value);
+            }
+        }
+
+        private Stamp evaluateStamp(ValueNode node) {
+            if (node instanceof ValuePhiNode) {
+                ValuePhiNode phi = (ValuePhiNode) node;
+                AbstractMergeNode merge = phi.merge();
+                Stamp result = null;
+                for (int i = 0; i < phi.valueCount(); i++) {
+                    if (reached.isMarked(merge.phiPredecessorAt(i))) {
+                        result = meet(result, stampOf(phi.valueAt(i)));
+                    }
+                }
+                return result;
+            } else if (node instanceof ValueProxyNode) {
+                return stampOf(((ValueProxyNode) node).value());
+            } else if (node instanceof PiNode) {
+                return stampOf(((PiNode) node).object());
+            } else if (node instanceof ConditionalNode) {
+                ConditionalNode conditional = (ConditionalNode) node;
+                TriState condition = conditionOf(conditional.condition());
+                if (condition == null) {
+                    return null;
+                } else if (condition.isTrue()) {
+                    return stampOf(conditional.trueValue());
+                } else if (condition.isFalse()) {
+                    return stampOf(conditional.falseValue());
+                }
+                return meet(stampOf(conditional.trueValue()), stampOf(conditional.falseValue()));
+            } else if (node instanceof BinaryNode) {
+                BinaryNode binary = (BinaryNode) node;
+                Stamp x = stampOf(binary.getX());
+                Stamp y = stampOf(binary.getY());
+                if (x == null || y == null) {
+                    return null;
+                }
+                return binary.foldStamp(x, y);
+            } else {
+                UnaryNode unary = (UnaryNode) node;
+                Stamp value = stampOf(unary.getValue());
+                if (value == null) {
+                    return null;
+                }
+                return unary.foldStamp(value);
+            }
+        }
+
+        private static Stamp meet(Stamp a, Stamp b) {
+            if (a == null) {
+                return b;
+            } else if (b == null) {
+                return a;
+            }
+            return a.meet(b);
+        }
+
+        void apply(MetaAccessProvider metaAccess) {
+            for (Node node : graph.getNodes().snapshot()) {
+                if (node instanceof IfNode && reached.isMarked(node)) {
+                    IfNode ifNode = (IfNode) node;
+                    boolean trueReached = reached.isMarked(ifNode.trueSuccessor());
+                    if (trueReached != reached.isMarked(ifNode.falseSuccessor()) && !(ifNode.condition() instanceof LogicConstantNode)) {
+                        ifNode.setCondition(LogicConstantNode.forBoolean(trueReached, graph));
+                        metricFoldedBranches.increment();
+                    }
+                } else if (node instanceof IntegerSwitchNode && reached.isMarked(node)) {
+                    narrowSwitch((IntegerSwitchNode) node);
+                } else if (isTracked(node) && !(node instanceof LogicNode) && !(node instanceof PiNode) && node.hasUsages()) {
+                    Stamp stamp = stamps.get(node);
+                    Constant constant = stamp == null ? null : stamp.asConstant();
+                    if (constant != null) {
+                        node.replaceAtUsages(ConstantNode.forConstant(stamp, constant, metaAccess, graph));
+                        metricConstantValues.increment();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Makes the stamp computed for the value of a switch visible to
+         * {@link IntegerSwitchNode#simplify} if it excludes some of the keys.
+         */
+        private void narrowSwitch(IntegerSwitchNode switchNode) {
+            ValueNode value = switchNode.value();
+            Stamp stamp = stampOf(value);
+            if (stamp == null || stamp.asConstant() != null || stamp.equals(value.stamp())) {
+                return;
+            }
+            for (int i = 0; i < switchNode.keyCount(); i++) {
+                if (!mayBeKey(stamp, switchNode.keyAt(i))) {
+                    switchNode.replaceFirstInput(value, graph.unique(new PiNode(value, stamp)));
+                    metricNarrowedSwitches.increment();
+                    return;
+                }
+            }
+        }
+    }
+}
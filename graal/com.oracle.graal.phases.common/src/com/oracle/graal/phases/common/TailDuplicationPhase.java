@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.common;
+
+import static com.oracle.graal.compiler.common.GraalOptions.TailDuplicationBudget;
+import static com.oracle.graal.compiler.common.GraalOptions.TailDuplicationProbability;
+import static com.oracle.graal.compiler.common.GraalOptions.TailDuplicationTrivialSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jdk.vm.ci.meta.ConstantReflectionProvider;
+import jdk.vm.ci.meta.MetaAccessProvider;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.graph.spi.Canonicalizable;
+import com.oracle.graal.graph.spi.CanonicalizerTool;
+import com.oracle.graal.nodeinfo.InputType;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractMergeNode;
+import com.oracle.graal.nodes.BeginNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.ControlSinkNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.LogicConstantNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.MergeNode;
+import com.oracle.graal.nodes.PhiNode;
+import com.oracle.graal.nodes.ProxyNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.VirtualState;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.java.AccessMonitorNode;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.PhaseContext;
+
+/**
+ * Duplicates the code following a merge into the predecessors of the merge if this exposes
+ * constants or more precise stamps flowing into the merge's phis to the duplicated code.
+ *
+ * The duplicated tail is the block starting at the merge, i.e., the fixed nodes up to the next
+ * merge, control flow sink or {@link IfNode}, together with all floating nodes that depend on the
+ * merge, its phis or these fixed nodes. For every predecessor, the canonicalization of the tail is
+ * simulated with the phis replaced by the values flowing in from that predecessor. A predecessor
+ * only gets its own copy of the tail if the simulation finds nodes that fold and if the tail is
+ * either trivially small or the predecessor is executed with at least
+ * {@link com.oracle.graal.compiler.common.GraalOptions#TailDuplicationProbability} relative to the
+ * merge. The total number of duplicated nodes per compilation is bounded by
+ * {@link com.oracle.graal.compiler.common.GraalOptions#TailDuplicationBudget}.
+ *
+ * The copies are not canonicalized by this phase, it should be wrapped in an
+ * {@link IncrementalCanonicalizerPhase}.
+ */
+public class TailDuplicationPhase extends BasePhase<PhaseContext> {
+
+    private static final DebugMetric metricDuplicatedTails = Debug.metric("DuplicatedTails");
+    private static final DebugMetric metricDuplicatedNodes = Debug.metric("TailDuplicatedNodes");
+
+    /**
+     * The tail of a merge, i.e., the nodes that are duplicated into a predecessor.
+     */
+    private static final class Tail {
+
+        final AbstractMergeNode merge;
+        final FixedNode last;
+        final NodeBitMap nodes;
+        final List<Node> schedule;
+        final int size;
+
+        Tail(AbstractMergeNode merge, FixedNode last, NodeBitMap nodes, List<Node> schedule, int size) {
+            this.merge = merge;
+            this.last = last;
+            this.nodes = nodes;
+            this.schedule = schedule;
+            this.size = size;
+        }
+    }
+
+    private static final class SimulationTool implements CanonicalizerTool {
+
+        private final PhaseContext context;
+
+        SimulationTool(PhaseContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public MetaAccessProvider getMetaAccess() {
+            return context.getMetaAccess();
+        }
+
+        @Override
+        public ConstantReflectionProvider getConstantReflection() {
+            return context.getConstantReflection();
+        }
+
+        @Override
+        public boolean canonicalizeReads() {
+            return true;
+        }
+
+        @Override
+        public boolean allUsagesAvailable() {
+            return false;
+        }
+    }
+
+    @Override
+    protected void run(StructuredGraph graph, PhaseContext context) {
+        List<MergeNode> merges = graph.getNodes().filter(MergeNode.class).snapshot();
+        if (merges.isEmpty()) {
+            return;
+        }
+        ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, false, false, false);
+        SimulationTool tool = new SimulationTool(context);
+        int budget = TailDuplicationBudget.getValue();
+        for (MergeNode merge : merges) {
+            if (budget <= 0) {
+                break;
+            }
+            if (merge.isAlive() && merge.forwardEndCount() > 1) {
+                budget -= duplicate(merge, cfg, tool, budget);
+            }
+        }
+    }
+
+    /**
+     * Duplicates the tail of {@code merge} into the predecessors that profit from it.
+     *
+     * @return the number of nodes added to the graph
+     */
+    private static int duplicate(AbstractMergeNode merge, ControlFlowGraph cfg, CanonicalizerTool tool, int budget) {
+        Tail tail = computeTail(merge, budget);
+        if (tail == null) {
+            return 0;
+        }
+        double mergeFrequency = frequency(cfg, merge);
+        List<EndNode> ends = new ArrayList<>();
+        for (EndNode end : merge.forwardEnds()) {
+            if (ends.size() + 1 == merge.forwardEndCount() || (ends.size() + 1) * tail.size > budget) {
+                break;
+            }
+            boolean trivial = tail.size <= TailDuplicationTrivialSize.getValue();
+            if (trivial || (mergeFrequency > 0 && frequency(cfg, end) / mergeFrequency >= TailDuplicationProbability.getValue())) {
+                if (simulate(tail, end, tool) > 0) {
+                    ends.add(end);
+                }
+            }
+        }
+        if (ends.isEmpty()) {
+            return 0;
+        }
+
+        List<AbstractMergeNode> successorMerges = new ArrayList<>();
+        if (tail.last instanceof IfNode) {
+            for (Node successor : tail.last.successors()) {
+                AbstractMergeNode successorMerge = insertMerge((AbstractBeginNode) successor);
+                /* The end of the successor was created after the tail was computed. */
+                tail.nodes.mark(successor);
+                tail.nodes.markAndGrow(((AbstractBeginNode) successor).next());
+                successorMerges.add(successorMerge);
+            }
+        }
+        StructuredGraph graph = merge.graph();
+        for (EndNode end : ends) {
+            Map<Node, Node> replacements = Node.newIdentityMap();
+            for (PhiNode phi : merge.phis()) {
+                replacements.put(phi, phi.valueAt(end));
+            }
+            BeginNode begin = graph.add(new BeginNode());
+            replacements.put(merge, begin);
+            Map<Node, Node> duplicates = graph.addDuplicates(tail.nodes, graph, tail.nodes.count(), replacements);
+
+            if (tail.last instanceof EndNode) {
+                EndNode last = (EndNode) tail.last;
+                AbstractMergeNode successorMerge = last.merge();
+                successorMerge.addForwardEnd((EndNode) duplicates.get(last));
+                for (PhiNode phi : successorMerge.phis()) {
+                    ValueNode value = phi.valueAt(last);
+                    Node duplicate = duplicates.containsKey(value) ? duplicates.get(value) : replacements.get(value);
+                    phi.addInput(duplicate != null ? (ValueNode) duplicate : value);
+                }
+            } else if (tail.last instanceof IfNode) {
+                for (AbstractMergeNode successorMerge : successorMerges) {
+                    EndNode successorEnd = (EndNode) successorMerge.forwardEndAt(0);
+                    successorMerge.addForwardEnd((EndNode) duplicates.get(successorEnd));
+                }
+            }
+
+            FixedWithNextNode predecessor = (FixedWithNextNode) end.predecessor();
+            merge.removeEnd(end);
+            predecessor.setNext(begin);
+            begin.setNext((FixedNode) duplicates.get(merge.next()));
+            end.safeDelete();
+        }
+        if (merge.forwardEndCount() == 1) {
+            graph.reduceTrivialMerge(merge);
+        }
+        metricDuplicatedTails.add(ends.size());
+        metricDuplicatedNodes.add(ends.size() * tail.size);
+        Debug.dump(graph, "After duplicating tail of %s into %d predecessors", merge, ends.size());
+        return ends.size() * tail.size;
+    }
+
+    private static double frequency(ControlFlowGraph cfg, FixedNode node) {
+        if (cfg.getNodeToBlock().isNew(node)) {
+            return 0;
+        }
+        Block block = cfg.blockFor(node);
+        return block == null ? 0 : block.probability();
+    }
+
+    /**
+     * Collects the tail of {@code merge} or returns {@code null} if it cannot be duplicated or is
+     * larger than {@code maxSize}.
+     */
+    private static Tail computeTail(AbstractMergeNode merge, int maxSize) {
+        if (merge instanceof LoopBeginNode || merge.phis().isEmpty()) {
+            return null;
+        }
+        StructuredGraph graph = merge.graph();
+        NodeBitMap nodes = graph.createNodeBitMap();
+        List<Node> worklist = new ArrayList<>();
+        int size = 0;
+        FixedNode current = merge.next();
+        while (current instanceof FixedWithNextNode) {
+            if (!canDuplicate(current)) {
+                return null;
+            }
+            nodes.mark(current);
+            worklist.add(current);
+            size++;
+            current = ((FixedWithNextNode) current).next();
+        }
+        FixedNode last = current;
+        if (last instanceof EndNode) {
+            if (((EndNode) last).merge() instanceof LoopBeginNode) {
+                return null;
+            }
+        } else if (last instanceof IfNode) {
+            for (Node successor : last.successors()) {
+                if (successor instanceof LoopExitNode) {
+                    return null;
+                }
+            }
+        } else if (!(last instanceof ControlSinkNode)) {
+            return null;
+        }
+        nodes.mark(last);
+        worklist.add(last);
+        size++;
+
+        /* Frame states of the fixed nodes are always duplicated. */
+        for (int i = 0; i < worklist.size(); i++) {
+            for (Node input : worklist.get(i).inputs()) {
+                if (input instanceof FrameState && !nodes.isMarked(input)) {
+                    if (((FrameState) input).virtualObjectMappingCount() > 0) {
+                        return null;
+                    }
+                    nodes.mark(input);
+                }
+            }
+        }
+        worklist.add(merge);
+        worklist.addAll(merge.phis().snapshot());
+        for (int i = 0; i < worklist.size(); i++) {
+            for (Node usage : worklist.get(i).usages()) {
+                if (usage instanceof FixedNode || usage instanceof PhiNode || usage == merge.stateAfter() || nodes.isMarked(usage)) {
+                    continue;
+                }
+                if (usage instanceof ProxyNode) {
+                    return null;
+                }
+                nodes.mark(usage);
+                worklist.add(usage);
+                if (!(usage instanceof VirtualState)) {
+                    size++;
+                }
+            }
+            if (size > maxSize) {
+                return null;
+            }
+        }
+
+        /* No value computed in the tail may be used outside of it. */
+        for (Node node : worklist) {
+            for (Node usage : node.usages()) {
+                if (nodes.isMarked(usage) || usage == merge || (usage instanceof PhiNode && ((PhiNode) usage).merge() == merge) || usage == merge.stateAfter()) {
+                    continue;
+                }
+                if (last instanceof EndNode && usage instanceof PhiNode && ((PhiNode) usage).merge() == ((EndNode) last).merge()) {
+                    continue;
+                }
+                return null;
+            }
+        }
+
+        List<Node> schedule = new ArrayList<>();
+        NodeBitMap visited = graph.createNodeBitMap();
+        for (Node node : nodes) {
+            schedule(node, nodes, visited, schedule);
+        }
+        return new Tail(merge, last, nodes, schedule, size);
+    }
+
+    private static boolean canDuplicate(FixedNode node) {
+        return !(node instanceof AbstractBeginNode || node instanceof Invoke || node instanceof AccessMonitorNode);
+    }
+
+    private static void schedule(Node node, NodeBitMap nodes, NodeBitMap visited, List<Node> schedule) {
+        if (!nodes.isMarked(node) || visited.isMarked(node)) {
+            return;
+        }
+        visited.mark(node);
+        for (Node input : node.inputs()) {
+            schedule(input, nodes, visited, schedule);
+        }
+        schedule.add(node);
+    }
+
+    /**
+     * Simulates the canonicalization of the tail with the phis of the merge replaced by the values
+     * flowing in from {@code end}.
+     *
+     * @return the number of nodes in the tail that would fold
+     */
+    @SuppressWarnings("unchecked")
+    private static int simulate(Tail tail, EndNode end, CanonicalizerTool tool) {
+        Map<Node, Node> values = Node.newIdentityMap();
+        for (PhiNode phi : tail.merge.phis()) {
+            values.put(phi, phi.valueAt(end));
+        }
+        int folded = 0;
+        for (Node node : tail.schedule) {
+            Node result = node;
+            if (node instanceof Canonicalizable.Binary<?>) {
+                Canonicalizable.Binary<Node> binary = (Canonicalizable.Binary<Node>) node;
+                Node x = lookup(values, binary.getX());
+                Node y = lookup(values, binary.getY());
+                if (x != binary.getX() || y != binary.getY()) {
+                    result = binary.canonical(tool, x, y);
+                }
+            } else if (node instanceof Canonicalizable.Unary<?>) {
+                Canonicalizable.Unary<Node> unary = (Canonicalizable.Unary<Node>) node;
+                Node value = lookup(values, unary.getValue());
+                if (value != unary.getValue()) {
+                    result = unary.canonical(tool, value);
+                }
+            }
+            if (result == null) {
+                folded++;
+            } else if (result != node) {
+                values.put(node, result);
+                if (result instanceof ConstantNode || result instanceof LogicConstantNode || result.isAlive()) {
+                    folded++;
+                }
+            }
+        }
+        if (tail.last instanceof IfNode && lookup(values, ((IfNode) tail.last).condition()) instanceof LogicConstantNode) {
+            folded++;
+        }
+        return folded;
+    }
+
+    private static Node lookup(Map<Node, Node> values, Node node) {
+        Node value = values.get(node);
+        return value == null ? node : value;
+    }
+
+    /**
+     * Inserts a merge after {@code begin} so that the copies of an {@link IfNode} at the end of a
+     * tail can be connected to the successors of the original.
+     */
+    private static AbstractMergeNode insertMerge(AbstractBeginNode begin) {
+        StructuredGraph graph = begin.graph();
+        MergeNode merge = graph.add(new MergeNode());
+        begin.replaceAtUsages(InputType.Guard, merge);
+        begin.replaceAtUsages(InputType.Anchor, merge);
+        FixedNode next = begin.next();
+        next.replaceAtPredecessor(merge);
+        EndNode end = graph.add(new EndNode());
+        begin.setNext(end);
+        merge.addForwardEnd(end);
+        merge.setNext(next);
+        return merge;
+    }
+}
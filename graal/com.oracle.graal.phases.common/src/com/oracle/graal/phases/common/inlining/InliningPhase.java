@@ -31,6 +31,7 @@ import com.oracle.graal.options.OptionType;
 import com.oracle.graal.options.OptionValue;
 import com.oracle.graal.phases.common.AbstractInliningPhase;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.inlining.policy.GlobalInliningPolicy;
 import com.oracle.graal.phases.common.inlining.policy.GreedyInliningPolicy;
 import com.oracle.graal.phases.common.inlining.policy.InliningPolicy;
 import com.oracle.graal.phases.common.inlining.walker.InliningData;
@@ -50,24 +51,39 @@ public class InliningPhase extends AbstractInliningPhase {
          */
         @Option(help = "Per-compilation method inlining exploration limit before giving up (use 0 to disable)", type = OptionType.Debug)//
         public static final OptionValue<Integer> MethodInlineBailoutLimit = new OptionValue<>(5000);
+
+        @Option(help = "Explore the call tree on a copy of the graph and inline the callsites with the best benefit per node instead of inlining greedily", type = OptionType.Expert)//
+        public static final OptionValue<Boolean> GlobalInlining = new OptionValue<>(false);
     }
 
     private final InliningPolicy inliningPolicy;
     private final CanonicalizerPhase canonicalizer;
 
+    /**
+     * The hints of the default policy, or null if an explicit policy was given.
+     */
+    private final Map<Invoke, Double> defaultPolicyHints;
+    private final boolean defaultPolicy;
+
     private int maxMethodPerInlining = Integer.MAX_VALUE;
 
     public InliningPhase(CanonicalizerPhase canonicalizer) {
-        this(new GreedyInliningPolicy(null), canonicalizer);
+        this(new GreedyInliningPolicy(null), canonicalizer, null, true);
     }
 
     public InliningPhase(Map<Invoke, Double> hints, CanonicalizerPhase canonicalizer) {
-        this(new GreedyInliningPolicy(hints), canonicalizer);
+        this(new GreedyInliningPolicy(hints), canonicalizer, hints, true);
     }
 
     public InliningPhase(InliningPolicy policy, CanonicalizerPhase canonicalizer) {
+        this(policy, canonicalizer, null, false);
+    }
+
+    private InliningPhase(InliningPolicy policy, CanonicalizerPhase canonicalizer, Map<Invoke, Double> defaultPolicyHints, boolean defaultPolicy) {
         this.inliningPolicy = policy;
         this.canonicalizer = canonicalizer;
+        this.defaultPolicyHints = defaultPolicyHints;
+        this.defaultPolicy = defaultPolicy;
     }
 
     public void setMaxMethodsPerInlining(int max) {
@@ -84,7 +100,20 @@ public class InliningPhase extends AbstractInliningPhase {
      */
     @Override
     protected void run(final StructuredGraph graph, final HighTierContext context) {
-        final InliningData data = new InliningData(graph, context, maxMethodPerInlining, canonicalizer, inliningPolicy);
+        if (defaultPolicy && Options.GlobalInlining.getValue()) {
+            // The policy records per-compilation state, so it cannot be shared.
+            GlobalInliningPolicy globalPolicy = new GlobalInliningPolicy(defaultPolicyHints);
+            StructuredGraph explorationGraph = (StructuredGraph) graph.copy();
+            run(explorationGraph, context, globalPolicy);
+            globalPolicy.selectCallsites(InliningUtil.getNodeCount(graph));
+            run(graph, context, globalPolicy);
+        } else {
+            run(graph, context, inliningPolicy);
+        }
+    }
+
+    private void run(final StructuredGraph graph, final HighTierContext context, InliningPolicy policy) {
+        final InliningData data = new InliningData(graph, context, maxMethodPerInlining, canonicalizer, policy);
 
         int count = 0;
         assert data.repOK();
@@ -69,10 +69,16 @@ public class InlineableGraph implements Inlineable {
 
     private FixedNodeProbabilityCache probabilites = new FixedNodeProbabilityCache();
 
+    /**
+     * The node count before the graph was specialized to the arguments of the invoke.
+     */
+    private final int unspecializedNodeCount;
+
     public InlineableGraph(final ResolvedJavaMethod method, final Invoke invoke, final HighTierContext context, CanonicalizerPhase canonicalizer) {
         StructuredGraph original = getOriginalGraph(method, context, canonicalizer, invoke.asNode().graph(), invoke.bci());
         // TODO copying the graph is only necessary if it is modified or if it contains any invokes
         this.graph = (StructuredGraph) original.copy();
+        this.unspecializedNodeCount = InliningUtil.getNodeCount(graph);
         specializeGraphToArguments(invoke, context, canonicalizer);
     }
 
@@ -224,6 +230,17 @@ public class InlineableGraph implements Inlineable {
         return InliningUtil.getNodeCount(graph);
     }
 
+    /**
+     * Gets the fraction of nodes that canonicalization removed after the graph was specialized to
+     * the arguments of the invoke.
+     */
+    public double getSimplification() {
+        if (unspecializedNodeCount == 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - (double) getNodeCount() / unspecializedNodeCount);
+    }
+
     @Override
     public Iterable<Invoke> getInvokes() {
         return graph.getInvokes();
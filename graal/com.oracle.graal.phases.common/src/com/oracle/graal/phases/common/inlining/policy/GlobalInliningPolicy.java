@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.common.inlining.policy;
+
+import static com.oracle.graal.compiler.common.GraalOptions.InlineEverything;
+import static com.oracle.graal.compiler.common.GraalOptions.MaximumDesiredSize;
+import static com.oracle.graal.compiler.common.GraalOptions.MaximumInliningSize;
+import static com.oracle.graal.compiler.common.GraalOptions.SmallCompiledLowLevelGraphSize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.spi.Replacements;
+import com.oracle.graal.phases.common.inlining.InliningUtil;
+import com.oracle.graal.phases.common.inlining.info.InlineInfo;
+import com.oracle.graal.phases.common.inlining.info.elem.Inlineable;
+import com.oracle.graal.phases.common.inlining.info.elem.InlineableGraph;
+import com.oracle.graal.phases.common.inlining.walker.InliningData;
+import com.oracle.graal.phases.common.inlining.walker.MethodInvocation;
+
+/**
+ * An inlining policy that looks at the whole call tree before it decides which callsites to
+ * inline, so that the size budget goes to the most profitable callsites instead of the ones that
+ * are explored first. It is used for two runs of {@link InliningData}:
+ * <ol>
+ * <li>The exploration run inlines into a copy of the graph and records the cost and benefit of
+ * each callsite until the call tree reaches twice {@code MaximumDesiredSize}.</li>
+ * <li>{@link #selectCallsites} solves the resulting knapsack problem greedily by benefit per node,
+ * where a callsite can only be selected if its caller was selected.</li>
+ * <li>The second run inlines exactly the selected callsites into the real graph.</li>
+ * </ol>
+ * The benefit of a callsite is its probability relative to the root method times one plus the
+ * fraction of the callee that canonicalization removed after specializing it to the arguments of
+ * the callsite.
+ */
+public class GlobalInliningPolicy extends AbstractInliningPolicy {
+
+    private static final DebugMetric METRIC_EXPLORED_CALLSITES = Debug.metric("GlobalInliningExploredCallsites");
+    private static final DebugMetric METRIC_SELECTED_CALLSITES = Debug.metric("GlobalInliningSelectedCallsites");
+
+    private static final class Callsite {
+
+        final List<Object> callPath;
+        final int cost;
+        final double benefit;
+        final List<Callsite> callees = new ArrayList<>();
+
+        Callsite(List<Object> callPath, int cost, double benefit) {
+            this.callPath = callPath;
+            this.cost = cost;
+            this.benefit = benefit;
+        }
+
+        double benefitPerNode() {
+            return benefit / Math.max(cost, 1);
+        }
+    }
+
+    private final Map<List<Object>, Callsite> callsites = new HashMap<>();
+    private int exploredSize;
+
+    /**
+     * The inlining bonus of the callsites in the root graph, keyed by call path. The exploration
+     * run works on a copy of the graph, so the hints cannot be looked up by {@link Invoke}.
+     */
+    private final Map<List<Object>, Double> callPathHints = new HashMap<>();
+
+    /**
+     * The call paths of the callsites to inline, or null during the exploration run.
+     */
+    private Set<List<Object>> selected;
+
+    public GlobalInliningPolicy(Map<Invoke, Double> hints) {
+        super(null);
+        if (hints != null) {
+            for (Map.Entry<Invoke, Double> entry : hints.entrySet()) {
+                Invoke invoke = entry.getKey();
+                if (invoke.asNode().isAlive()) {
+                    List<Object> callPath = MethodInvocation.extendCallPath(Collections.emptyList(), invoke.asNode().graph().method(), invoke.bci());
+                    callPathHints.put(callPath, entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static int explorationBudget() {
+        return 2 * MaximumDesiredSize.getValue();
+    }
+
+    @Override
+    public boolean continueInlining(StructuredGraph currentGraph) {
+        if (selected == null) {
+            if (exploredSize >= explorationBudget() || InliningUtil.getNodeCount(currentGraph) >= explorationBudget()) {
+                InliningUtil.logInliningDecision("call tree exploration is cut off at %d nodes", exploredSize);
+                return false;
+            }
+            return true;
+        }
+        if (InliningUtil.getNodeCount(currentGraph) >= MaximumDesiredSize.getValue()) {
+            InliningUtil.logInliningDecision("inlining is cut off by MaximumDesiredSize");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isWorthInlining(Replacements replacements, MethodInvocation invocation, int inliningDepth, boolean fullyProcessed) {
+        InlineInfo info = invocation.callee();
+        if (InlineEverything.getValue()) {
+            InliningUtil.logInlinedMethod(info, inliningDepth, fullyProcessed, "inline everything");
+            return true;
+        }
+        if (isIntrinsic(replacements, info)) {
+            InliningUtil.logInlinedMethod(info, inliningDepth, fullyProcessed, "intrinsic");
+            return true;
+        }
+        if (info.shouldInline()) {
+            InliningUtil.logInlinedMethod(info, inliningDepth, fullyProcessed, "forced inlining");
+            return true;
+        }
+
+        if (selected != null) {
+            if (selected.contains(invocation.callPath())) {
+                InliningUtil.logInlinedMethod(info, inliningDepth, fullyProcessed, "selected by global inlining");
+                return true;
+            }
+            InliningUtil.logNotInlinedMethod(info, inliningDepth, "not selected by global inlining");
+            return false;
+        }
+
+        if (fullyProcessed) {
+            return callsites.containsKey(invocation.callPath());
+        }
+        return explore(invocation, inliningDepth);
+    }
+
+    private boolean explore(MethodInvocation invocation, int inliningDepth) {
+        InlineInfo info = invocation.callee();
+        double inliningBonus = getInliningBonus(invocation);
+        int nodes = info.determineNodeCount();
+        int lowLevelGraphSize = previousLowLevelGraphSize(info);
+
+        if (SmallCompiledLowLevelGraphSize.getValue() > 0 && lowLevelGraphSize > SmallCompiledLowLevelGraphSize.getValue() * inliningBonus) {
+            InliningUtil.logNotInlinedMethod(info, inliningDepth, "too large previous low-level graph (low-level-nodes: %d)", lowLevelGraphSize);
+            return false;
+        }
+        if (nodes > MaximumInliningSize.getValue() * inliningBonus) {
+            InliningUtil.logNotInlinedMethod(info, inliningDepth, "too large to explore (nodes=%d)", nodes);
+            return false;
+        }
+        if (exploredSize + nodes > explorationBudget()) {
+            InliningUtil.logNotInlinedMethod(info, inliningDepth, "exploration budget exhausted (nodes=%d)", nodes);
+            return false;
+        }
+
+        exploredSize += nodes;
+        double benefit = invocation.probability() * (1 + simplification(info)) * inliningBonus;
+        callsites.put(invocation.callPath(), new Callsite(invocation.callPath(), nodes, benefit));
+        METRIC_EXPLORED_CALLSITES.increment();
+        return true;
+    }
+
+    private double getInliningBonus(MethodInvocation invocation) {
+        Double hint = callPathHints.get(invocation.callPath());
+        return hint != null ? hint : 1;
+    }
+
+    /**
+     * Gets the fraction of the callee that is removed by specializing it to the arguments of the
+     * callsite, weighted by the probabilities of the targets of a polymorphic callsite.
+     */
+    private static double simplification(InlineInfo info) {
+        double weighted = 0;
+        double probabilities = 0;
+        for (int i = 0; i < info.numberOfMethods(); i++) {
+            Inlineable element = info.inlineableElementAt(i);
+            if (element instanceof InlineableGraph) {
+                weighted += info.probabilityAt(i) * ((InlineableGraph) element).getSimplification();
+                probabilities += info.probabilityAt(i);
+            }
+        }
+        return probabilities > 0 ? weighted / probabilities : 0;
+    }
+
+    /**
+     * Selects the callsites to inline in the second run such that the graph, which currently has
+     * {@code graphSize} nodes, stays within {@code MaximumDesiredSize}.
+     */
+    public void selectCallsites(int graphSize) {
+        assert selected == null : "callsites were already selected";
+        PriorityQueue<Callsite> candidates = new PriorityQueue<>((a, b) -> Double.compare(b.benefitPerNode(), a.benefitPerNode()));
+        for (Callsite callsite : callsites.values()) {
+            Callsite caller = findCaller(callsite);
+            if (caller == null) {
+                candidates.add(callsite);
+            } else {
+                caller.callees.add(callsite);
+            }
+        }
+
+        selected = new HashSet<>();
+        int budget = MaximumDesiredSize.getValue() - graphSize;
+        while (!candidates.isEmpty()) {
+            Callsite callsite = candidates.poll();
+            if (callsite.cost <= budget) {
+                budget -= callsite.cost;
+                selected.add(callsite.callPath);
+                candidates.addAll(callsite.callees);
+                METRIC_SELECTED_CALLSITES.increment();
+            }
+        }
+    }
+
+    /**
+     * Finds the closest recorded callsite on the call path of {@code callsite}. Callsites that
+     * were not recorded on the way are inlined unconditionally, e.g., intrinsics.
+     */
+    private Callsite findCaller(Callsite callsite) {
+        List<Object> callPath = callsite.callPath;
+        for (int length = callPath.size() - 2; length > 0; length -= 2) {
+            Callsite caller = callsites.get(callPath.subList(0, length));
+            if (caller != null) {
+                return caller;
+            }
+        }
+        return null;
+    }
+}
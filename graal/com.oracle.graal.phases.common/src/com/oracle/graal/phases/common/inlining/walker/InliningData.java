@@ -482,7 +482,8 @@ public class InliningData {
             info.populateInlinableElements(context, currentGraph().graph(), canonicalizer);
             double invokeProbability = callsiteHolder.invokeProbability(invoke);
             double invokeRelevance = callsiteHolder.invokeRelevance(invoke);
-            MethodInvocation methodInvocation = new MethodInvocation(info, invokeProbability, invokeRelevance, freshlyInstantiatedArguments(invoke, callsiteHolder.getFixedParams()));
+            List<Object> callPath = MethodInvocation.extendCallPath(currentInvocation().callPath(), callsiteHolder.method(), invoke.bci());
+            MethodInvocation methodInvocation = new MethodInvocation(info, invokeProbability, invokeRelevance, freshlyInstantiatedArguments(invoke, callsiteHolder.getFixedParams()), callPath);
             pushInvocationAndGraphs(methodInvocation);
         }
     }
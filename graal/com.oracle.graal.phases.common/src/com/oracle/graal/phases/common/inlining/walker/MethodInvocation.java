@@ -22,7 +22,10 @@
  */
 package com.oracle.graal.phases.common.inlining.walker;
 
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 
 import jdk.vm.ci.meta.ResolvedJavaMethod;
 
@@ -77,12 +80,23 @@ public class MethodInvocation {
 
     private final int sizeFreshArgs;
 
+    /**
+     * The caller method and bytecode index of each callsite on the path from the root graph to
+     * this callsite. It identifies the callsite across inlining runs on copies of the same graph.
+     */
+    private final List<Object> callPath;
+
     public MethodInvocation(InlineInfo info, double probability, double relevance, BitSet freshlyInstantiatedArguments) {
+        this(info, probability, relevance, freshlyInstantiatedArguments, Collections.emptyList());
+    }
+
+    public MethodInvocation(InlineInfo info, double probability, double relevance, BitSet freshlyInstantiatedArguments, List<Object> callPath) {
         this.callee = info;
         this.probability = probability;
         this.relevance = relevance;
         this.freshlyInstantiatedArguments = freshlyInstantiatedArguments;
         this.sizeFreshArgs = freshlyInstantiatedArguments == null ? 0 : freshlyInstantiatedArguments.cardinality();
+        this.callPath = callPath;
     }
 
     public void incrementProcessedGraphs() {
@@ -115,6 +129,22 @@ public class MethodInvocation {
         return callee == null;
     }
 
+    public List<Object> callPath() {
+        return callPath;
+    }
+
+    /**
+     * Creates the call path of the callsite at {@code bci} in {@code caller}, which is reached by
+     * {@code callerPath}.
+     */
+    public static List<Object> extendCallPath(List<Object> callerPath, ResolvedJavaMethod caller, int bci) {
+        List<Object> callPath = new ArrayList<>(callerPath.size() + 2);
+        callPath.addAll(callerPath);
+        callPath.add(caller);
+        callPath.add(bci);
+        return callPath;
+    }
+
     public BitSet getFreshlyInstantiatedArguments() {
         return freshlyInstantiatedArguments;
     }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oracle.graal.compiler.common.cfg.BlockMap;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeMap;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.ScheduleResult;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.extended.ForeignCallNode;
+import com.oracle.graal.nodes.memory.FloatingReadNode;
+import com.oracle.graal.nodes.memory.MemoryCheckpoint;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.phases.Phase;
+
+import jdk.vm.ci.meta.JavaKind;
+
+/**
+ * Reorders the nodes within each block of the {@linkplain StructuredGraph#getLastSchedule() last
+ * schedule} with a list scheduler that uses the latencies of a {@link NodeLatencyModel}. Nodes on
+ * long latency chains, e.g., loads, are emitted as early as their inputs allow and independent
+ * chains are interleaved.
+ *
+ * Fixed nodes keep their relative order and floating reads stay before the memory checkpoints
+ * that follow them. Block begins, block ends and calls are never crossed, so no value is moved
+ * into or out of a call's live range. When the number of live values reaches
+ * {@link NodeLatencyModel#registerPressureLimit()}, the scheduler falls back to the original
+ * order.
+ */
+public class LatencySchedulePhase extends Phase {
+
+    public static class Options {
+
+        // @formatter:off
+        @Option(help = "Reorder the nodes within blocks of the final schedule based on instruction latencies.", type = OptionType.Expert)
+        public static final OptionValue<Boolean> LatencyScheduling = new OptionValue<>(false);
+        // @formatter:on
+    }
+
+    private static final DebugMetric METRIC_SCHEDULED_SEGMENTS = Debug.metric("LatencyScheduledSegments");
+    private static final DebugMetric METRIC_MOVED_NODES = Debug.metric("LatencyScheduleMovedNodes");
+    private static final DebugMetric METRIC_PRESSURE_LIMITED = Debug.metric("LatencySchedulePressureLimited");
+
+    private final NodeLatencyModel model;
+
+    public LatencySchedulePhase(NodeLatencyModel model) {
+        this.model = model;
+    }
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        ScheduleResult schedule = graph.getLastSchedule();
+        BlockMap<List<Node>> blockToNodes = schedule.getBlockToNodesMap();
+        NodeMap<Integer> positions = graph.createNodeMap();
+        for (Block block : schedule.getCFG().getBlocks()) {
+            List<Node> nodes = blockToNodes.get(block);
+            List<Node> result = new ArrayList<>(nodes.size());
+            int segmentStart = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                if (isBoundary(block, node)) {
+                    scheduleSegment(nodes.subList(segmentStart, i), positions, result);
+                    result.add(node);
+                    segmentStart = i + 1;
+                }
+            }
+            scheduleSegment(nodes.subList(segmentStart, nodes.size()), positions, result);
+            assert result.size() == nodes.size();
+            blockToNodes.put(block, result);
+        }
+    }
+
+    private static boolean isBoundary(Block block, Node node) {
+        return node instanceof AbstractBeginNode || node == block.getEndNode() || node instanceof Invoke || node instanceof ForeignCallNode;
+    }
+
+    private static boolean isRegisterValue(Node node) {
+        return node instanceof ValueNode && !(node instanceof ConstantNode) && ((ValueNode) node).getStackKind() != JavaKind.Void;
+    }
+
+    /**
+     * Schedules a sequence of nodes that are in topological order and appends them to
+     * {@code result}.
+     */
+    private void scheduleSegment(List<Node> segment, NodeMap<Integer> positions, List<Node> result) {
+        int size = segment.size();
+        if (size <= 2) {
+            result.addAll(segment);
+            return;
+        }
+        METRIC_SCHEDULED_SEGMENTS.increment();
+        for (int i = 0; i < size; i++) {
+            positions.set(segment.get(i), i);
+        }
+
+        /* The dependencies between the nodes of the segment. */
+        List<List<Integer>> successors = new ArrayList<>(size);
+        List<List<Integer>> inputs = new ArrayList<>(size);
+        int[] predecessorCount = new int[size];
+        int[] remainingUsages = new int[size];
+        int lastFixed = -1;
+        List<Integer> pendingReads = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            successors.add(new ArrayList<>());
+            inputs.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            Node node = segment.get(i);
+            for (Node input : node.inputs()) {
+                Integer position = positions.get(input);
+                if (position != null && position < i && !inputs.get(i).contains(position)) {
+                    inputs.get(i).add(position);
+                    addDependency(successors, predecessorCount, position, i);
+                    remainingUsages[position]++;
+                }
+            }
+            if (node instanceof FixedNode) {
+                if (lastFixed >= 0) {
+                    addDependency(successors, predecessorCount, lastFixed, i);
+                }
+                lastFixed = i;
+                if (node instanceof MemoryCheckpoint) {
+                    for (int read : pendingReads) {
+                        addDependency(successors, predecessorCount, read, i);
+                    }
+                    pendingReads.clear();
+                }
+            } else if (node instanceof FloatingReadNode) {
+                pendingReads.add(i);
+            }
+        }
+
+        /* The latency of the longest path from each node to the end of the segment. */
+        int[] height = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            int max = 0;
+            for (int successor : successors.get(i)) {
+                max = Math.max(max, height[successor]);
+            }
+            height[i] = max + model.latency(segment.get(i));
+        }
+
+        int[] earliestStart = new int[size];
+        List<Integer> ready = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (predecessorCount[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int cycle = 0;
+        int live = 0;
+        int limit = model.registerPressureLimit();
+        int moved = 0;
+        int scheduled = 0;
+        while (!ready.isEmpty()) {
+            int selected = -1;
+            if (live >= limit) {
+                METRIC_PRESSURE_LIMITED.increment();
+                for (int candidate : ready) {
+                    if (selected == -1 || candidate < selected) {
+                        selected = candidate;
+                    }
+                }
+            } else {
+                for (int candidate : ready) {
+                    if (selected == -1 || isBetter(candidate, selected, cycle, earliestStart, height)) {
+                        selected = candidate;
+                    }
+                }
+            }
+            ready.remove((Integer) selected);
+
+            Node node = segment.get(selected);
+            if (selected != scheduled++) {
+                moved++;
+            }
+            result.add(node);
+            int start = Math.max(cycle, earliestStart[selected]);
+            cycle = start + 1;
+            int available = start + model.latency(node);
+
+            if (isRegisterValue(node) && remainingUsages[selected] > 0) {
+                live++;
+            }
+            for (int input : inputs.get(selected)) {
+                if (--remainingUsages[input] == 0 && isRegisterValue(segment.get(input))) {
+                    live--;
+                }
+            }
+            for (int successor : successors.get(selected)) {
+                earliestStart[successor] = Math.max(earliestStart[successor], available);
+                if (--predecessorCount[successor] == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+        METRIC_MOVED_NODES.add(moved);
+        for (Node node : segment) {
+            positions.set(node, null);
+        }
+    }
+
+    private static void addDependency(List<List<Integer>> successors, int[] predecessorCount, int from, int to) {
+        if (!successors.get(from).contains(to)) {
+            successors.get(from).add(to);
+            predecessorCount[to]++;
+        }
+    }
+
+    /**
+     * Prefers nodes that can start in the current cycle, then nodes on longer latency chains, then
+     * the original order.
+     */
+    private static boolean isBetter(int a, int b, int cycle, int[] earliestStart, int[] height) {
+        boolean aReady = earliestStart[a] <= cycle;
+        boolean bReady = earliestStart[b] <= cycle;
+        if (aReady != bReady) {
+            return aReady;
+        }
+        if (!aReady && earliestStart[a] != earliestStart[b]) {
+            return earliestStart[a] < earliestStart[b];
+        }
+        if (height[a] != height[b]) {
+            return height[a] > height[b];
+        }
+        return a < b;
+    }
+}
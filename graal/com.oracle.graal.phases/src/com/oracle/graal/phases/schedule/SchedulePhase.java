@@ -25,9 +25,11 @@ package com.oracle.graal.phases.schedule;
 import static com.oracle.graal.compiler.common.GraalOptions.OptScheduleOutOfLoops;
 import static com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph.strictlyDominates;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Formatter;
+import java.util.Iterator;
 import java.util.List;
 
 import jdk.vm.ci.meta.LocationIdentity;
@@ -35,6 +37,7 @@ import jdk.vm.ci.meta.LocationIdentity;
 import com.oracle.graal.compiler.common.SuppressFBWarnings;
 import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
 import com.oracle.graal.compiler.common.cfg.BlockMap;
+import com.oracle.graal.compiler.common.cfg.DominatorLCA;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.graph.Graph.NodeEvent;
 import com.oracle.graal.graph.Graph.NodeEventListener;
@@ -135,6 +138,11 @@ public final class SchedulePhase extends Phase {
         protected BlockMap<List<Node>> blockToNodesMap;
         protected NodeMap<Block> nodeToBlockMap;
 
+        /**
+         * Answers the common dominator queries of the latest block computation.
+         */
+        private DominatorLCA<Block> dominatorLCA;
+
         @SuppressWarnings("try")
         public void run(StructuredGraph graph, SchedulingStrategy selectedStrategy, boolean immutableGraph) {
             // assert GraphOrder.assertNonCyclicGraph(graph);
@@ -150,6 +158,7 @@ public final class SchedulePhase extends Phase {
 
             if (selectedStrategy != SchedulingStrategy.EARLIEST) {
                 // For non-earliest schedules, we need to do a second pass.
+                dominatorLCA = new DominatorLCA<>(cfg);
                 BlockMap<List<Node>> latestBlockToNodesMap = new BlockMap<>(cfg);
                 for (Block b : cfg.getBlocks()) {
                     latestBlockToNodesMap.put(b, new ArrayList<Node>());
@@ -439,28 +448,60 @@ public final class SchedulePhase extends Phase {
             }
         }
 
-        private static void sortIntoList(Node n, Block b, ArrayList<Node> result, NodeMap<Block> nodeMap, NodeBitMap unprocessed, Node excludeNode) {
-            assert unprocessed.isMarked(n) : n;
-            unprocessed.clear(n);
+        /**
+         * Appends {@code root} to {@code result} after all its unprocessed inputs in block
+         * {@code b}, which are sorted in the same way. This is a depth-first traversal that uses
+         * an explicit stack, as blocks of large graphs can contain very long input chains.
+         */
+        private static void sortIntoList(Node root, Block b, ArrayList<Node> result, NodeMap<Block> nodeMap, NodeBitMap unprocessed, Node excludeNode) {
+            assert unprocessed.isMarked(root) : root;
+            unprocessed.clear(root);
 
-            assert nodeMap.get(n) == b;
+            assert nodeMap.get(root) == b;
 
-            if (n instanceof PhiNode) {
+            if (root instanceof PhiNode) {
                 return;
             }
 
-            for (Node input : n.inputs()) {
-                if (nodeMap.get(input) == b && unprocessed.isMarked(input) && input != excludeNode) {
-                    sortIntoList(input, b, result, nodeMap, unprocessed, excludeNode);
+            ArrayDeque<Node> nodeStack = null;
+            ArrayDeque<Iterator<Node>> inputStack = null;
+            Node current = root;
+            Iterator<Node> inputs = root.inputs().iterator();
+            while (current != null) {
+                Node next = null;
+                while (inputs.hasNext()) {
+                    Node input = inputs.next();
+                    if (nodeMap.get(input) == b && unprocessed.isMarked(input) && input != excludeNode) {
+                        unprocessed.clear(input);
+                        if (!(input instanceof PhiNode)) {
+                            next = input;
+                            break;
+                        }
+                    }
+                }
+                if (next != null) {
+                    if (nodeStack == null) {
+                        nodeStack = new ArrayDeque<>();
+                        inputStack = new ArrayDeque<>();
+                    }
+                    nodeStack.push(current);
+                    inputStack.push(inputs);
+                    current = next;
+                    inputs = next.inputs().iterator();
+                } else {
+                    if (current instanceof ProxyNode) {
+                        // Skip proxy nodes.
+                    } else {
+                        result.add(current);
+                    }
+                    if (nodeStack == null || nodeStack.isEmpty()) {
+                        current = null;
+                    } else {
+                        current = nodeStack.pop();
+                        inputs = inputStack.pop();
+                    }
                 }
             }
-
-            if (n instanceof ProxyNode) {
-                // Skip proxy nodes.
-            } else {
-                result.add(n);
-            }
-
         }
 
         protected void calcLatestBlock(Block earliestBlock, SchedulingStrategy strategy, Node currentNode, NodeMap<Block> currentNodeMap, LocationIdentity constrainingLocation,
@@ -476,7 +517,7 @@ public final class SchedulePhase extends Phase {
                      */
                     continue;
                 }
-                latestBlock = calcBlockForUsage(currentNode, usage, latestBlock, currentNodeMap);
+                latestBlock = calcBlockForUsage(currentNode, usage, latestBlock, currentNodeMap, dominatorLCA);
             }
 
             if (strategy == SchedulingStrategy.FINAL_SCHEDULE || strategy == SchedulingStrategy.LATEST_OUT_OF_LOOPS) {
@@ -492,7 +533,7 @@ public final class SchedulePhase extends Phase {
             selectLatestBlock(currentNode, earliestBlock, latestBlock, currentNodeMap, watchListMap, constrainingLocation, latestBlockToNodesMap);
         }
 
-        private static Block calcBlockForUsage(Node node, Node usage, Block startBlock, NodeMap<Block> currentNodeMap) {
+        private static Block calcBlockForUsage(Node node, Node usage, Block startBlock, NodeMap<Block> currentNodeMap, DominatorLCA<Block> dominatorLCA) {
             assert !(node instanceof PhiNode);
             Block currentBlock = startBlock;
             if (usage instanceof PhiNode) {
@@ -504,21 +545,21 @@ public final class SchedulePhase extends Phase {
                 for (int i = 0; i < phi.valueCount(); ++i) {
                     if (phi.valueAt(i) == node) {
                         Block otherBlock = mergeBlock.getPredecessors().get(i);
-                        currentBlock = AbstractControlFlowGraph.commonDominatorTyped(currentBlock, otherBlock);
+                        currentBlock = dominatorLCA.commonDominator(currentBlock, otherBlock);
                     }
                 }
             } else if (usage instanceof AbstractBeginNode) {
                 AbstractBeginNode abstractBeginNode = (AbstractBeginNode) usage;
                 if (abstractBeginNode instanceof StartNode) {
-                    currentBlock = AbstractControlFlowGraph.commonDominatorTyped(currentBlock, currentNodeMap.get(abstractBeginNode));
+                    currentBlock = dominatorLCA.commonDominator(currentBlock, currentNodeMap.get(abstractBeginNode));
                 } else {
                     Block otherBlock = currentNodeMap.get(abstractBeginNode).getDominator();
-                    currentBlock = AbstractControlFlowGraph.commonDominatorTyped(currentBlock, otherBlock);
+                    currentBlock = dominatorLCA.commonDominator(currentBlock, otherBlock);
                 }
             } else {
                 // All other types of usages: Put the input into the same block as the usage.
                 Block otherBlock = currentNodeMap.get(usage);
-                currentBlock = AbstractControlFlowGraph.commonDominatorTyped(currentBlock, otherBlock);
+                currentBlock = dominatorLCA.commonDominator(currentBlock, otherBlock);
             }
             return currentBlock;
         }
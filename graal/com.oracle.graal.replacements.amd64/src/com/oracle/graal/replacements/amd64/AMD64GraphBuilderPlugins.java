@@ -60,6 +60,9 @@ public class AMD64GraphBuilderPlugins {
                 registerIntegerLongPlugins(invocationPlugins, LongSubstitutions.class, JavaKind.Long, arch);
                 registerUnsafePlugins(invocationPlugins);
                 registerMathPlugins(invocationPlugins, foreignCalls);
+                if (System.getProperty("java.specification.version").compareTo("1.9") < 0) {
+                    registerStringPlugins(invocationPlugins);
+                }
             }
         });
     }
@@ -130,6 +133,13 @@ public class AMD64GraphBuilderPlugins {
         r.register1("exp", Double.TYPE, new ForeignCallPlugin(foreignCalls, ARITHMETIC_EXP));
     }
 
+    private static void registerStringPlugins(InvocationPlugins plugins) {
+        Registration r = new Registration(plugins, String.class);
+        r.registerMethodSubstitution(AMD64StringSubstitutions.class, "indexOf", Receiver.class, int.class, int.class);
+        r.registerMethodSubstitution(AMD64StringSubstitutions.class, "indexOf", Receiver.class, String.class, int.class);
+        r.registerMethodSubstitution(AMD64StringSubstitutions.class, "compareTo", Receiver.class, String.class);
+    }
+
     private static void registerUnsafePlugins(InvocationPlugins plugins) {
         Registration r = new Registration(plugins, Unsafe.class);
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements.amd64;
+
+import com.oracle.graal.api.replacements.ClassSubstitution;
+import com.oracle.graal.api.replacements.MethodSubstitution;
+import com.oracle.graal.replacements.StringSubstitutions;
+import com.oracle.graal.replacements.nodes.ArrayCompareToNode;
+import com.oracle.graal.replacements.nodes.ArrayIndexOfNode;
+
+// JaCoCo Exclude
+
+/**
+ * Substitutions for {@link java.lang.String} methods that leverage AMD64 vector instructions to
+ * search and compare the character arrays.
+ */
+@ClassSubstitution(String.class)
+public class AMD64StringSubstitutions {
+
+    @MethodSubstitution(isStatic = false)
+    public static int indexOf(String source, int ch, int fromIndex) {
+        final int max = source.length();
+        int from = fromIndex;
+        if (from < 0) {
+            from = 0;
+        } else if (from >= max) {
+            return -1;
+        }
+        final char[] value = StringSubstitutions.getValue(source);
+        if (ch >= 0 && ch < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            return ArrayIndexOfNode.indexOf(value, from, max, (char) ch);
+        }
+        if (Character.isValidCodePoint(ch)) {
+            final char hi = Character.highSurrogate(ch);
+            final char lo = Character.lowSurrogate(ch);
+            for (int i = from; i < max - 1; i++) {
+                if (value[i] == hi && value[i + 1] == lo) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @MethodSubstitution(isStatic = false)
+    public static int indexOf(String source, String target, int fromIndex) {
+        final int sourceCount = source.length();
+        final int targetCount = target.length();
+        if (fromIndex >= sourceCount) {
+            return targetCount == 0 ? sourceCount : -1;
+        }
+        int from = fromIndex < 0 ? 0 : fromIndex;
+        if (targetCount == 0) {
+            return from;
+        }
+        final char[] sourceValue = StringSubstitutions.getValue(source);
+        final char[] targetValue = StringSubstitutions.getValue(target);
+        final char first = targetValue[0];
+        final int max = sourceCount - targetCount;
+        for (int i = from; i <= max; i++) {
+            // Look for the first character with the vector search, then check the rest.
+            i = ArrayIndexOfNode.indexOf(sourceValue, i, max + 1, first);
+            if (i < 0) {
+                return -1;
+            }
+            int j = i + 1;
+            int k = 1;
+            while (k < targetCount && sourceValue[j] == targetValue[k]) {
+                j++;
+                k++;
+            }
+            if (k == targetCount) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @MethodSubstitution(isStatic = false)
+    public static int compareTo(String thisString, String anotherString) {
+        final int length1 = thisString.length();
+        final int length2 = anotherString.length();
+        final char[] array1 = StringSubstitutions.getValue(thisString);
+        final char[] array2 = StringSubstitutions.getValue(anotherString);
+        return ArrayCompareToNode.compareTo(array1, array2, length1, length2);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements.nodes;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LocationIdentity;
+import jdk.vm.ci.meta.Value;
+
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.spi.Canonicalizable;
+import com.oracle.graal.graph.spi.CanonicalizerTool;
+import com.oracle.graal.nodeinfo.InputType;
+import com.oracle.graal.nodeinfo.NodeInfo;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.NamedLocationIdentity;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValueNodeUtil;
+import com.oracle.graal.nodes.memory.MemoryAccess;
+import com.oracle.graal.nodes.memory.MemoryNode;
+import com.oracle.graal.nodes.spi.LIRLowerable;
+import com.oracle.graal.nodes.spi.NodeLIRBuilderTool;
+import com.oracle.graal.nodes.util.GraphUtil;
+
+// JaCoCo Exclude
+
+/**
+ * Lexicographically compares two arrays with the semantics of {@link String#compareTo(String)}.
+ */
+@NodeInfo
+public final class ArrayCompareToNode extends FixedWithNextNode implements LIRLowerable, Canonicalizable, MemoryAccess {
+
+    public static final NodeClass<ArrayCompareToNode> TYPE = NodeClass.create(ArrayCompareToNode.class);
+    /** {@link JavaKind} of the arrays to compare. */
+    protected final JavaKind kind;
+
+    /** One array to be compared. */
+    @Input ValueNode array1;
+
+    /** The other array to be compared. */
+    @Input ValueNode array2;
+
+    /** Number of valid elements in the first array. */
+    @Input ValueNode length1;
+
+    /** Number of valid elements in the second array. */
+    @Input ValueNode length2;
+
+    @OptionalInput(InputType.Memory) MemoryNode lastLocationAccess;
+
+    public ArrayCompareToNode(ValueNode array1, ValueNode array2, ValueNode length1, ValueNode length2, @ConstantNodeParameter JavaKind kind) {
+        super(TYPE, StampFactory.forKind(JavaKind.Int));
+        this.kind = kind;
+        this.array1 = array1;
+        this.array2 = array2;
+        this.length1 = length1;
+        this.length2 = length2;
+    }
+
+    public ValueNode getArray1() {
+        return array1;
+    }
+
+    public ValueNode getArray2() {
+        return array2;
+    }
+
+    public ValueNode getLength1() {
+        return length1;
+    }
+
+    public ValueNode getLength2() {
+        return length2;
+    }
+
+    @Override
+    public Node canonical(CanonicalizerTool tool) {
+        if (tool.allUsagesAvailable() && hasNoUsages()) {
+            return null;
+        }
+        if (GraphUtil.unproxify(array1) == GraphUtil.unproxify(array2) && GraphUtil.unproxify(length1) == GraphUtil.unproxify(length2)) {
+            return ConstantNode.forInt(0);
+        }
+        return this;
+    }
+
+    @NodeIntrinsic
+    public static native int compareTo(Object array1, Object array2, int length1, int length2, @ConstantNodeParameter JavaKind kind);
+
+    public static int compareTo(char[] array1, char[] array2, int length1, int length2) {
+        return compareTo(array1, array2, length1, length2, JavaKind.Char);
+    }
+
+    @Override
+    public void generate(NodeLIRBuilderTool gen) {
+        Value result = gen.getLIRGeneratorTool().emitArrayCompareTo(kind, gen.operand(array1), gen.operand(array2), gen.operand(length1), gen.operand(length2));
+        gen.setResult(this, result);
+    }
+
+    public LocationIdentity getLocationIdentity() {
+        return NamedLocationIdentity.getArrayLocation(kind);
+    }
+
+    public MemoryNode getLastLocationAccess() {
+        return lastLocationAccess;
+    }
+
+    public void setLastLocationAccess(MemoryNode lla) {
+        updateUsages(ValueNodeUtil.asNode(lastLocationAccess), ValueNodeUtil.asNode(lla));
+        lastLocationAccess = lla;
+    }
+}
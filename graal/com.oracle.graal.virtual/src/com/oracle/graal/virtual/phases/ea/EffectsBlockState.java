@@ -32,6 +32,14 @@ public abstract class EffectsBlockState<T extends EffectsBlockState<T>> {
      */
     private boolean dead;
 
+    /**
+     * Reference count of a data structure that is shared between block states and copied on the
+     * first modification.
+     */
+    protected static class RefCount {
+        protected int refCount = 1;
+    }
+
     public EffectsBlockState() {
         // emtpy
     }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.virtual.phases.ea;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.nodes.AbstractDeoptimizeNode;
+import com.oracle.graal.nodes.AbstractFixedGuardNode;
+import com.oracle.graal.nodes.ParameterNode;
+import com.oracle.graal.nodes.PiNode;
+import com.oracle.graal.nodes.ReturnNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.VirtualState;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.IsNullNode;
+import com.oracle.graal.nodes.calc.ObjectEqualsNode;
+import com.oracle.graal.nodes.extended.GetClassNode;
+import com.oracle.graal.nodes.extended.LoadHubNode;
+import com.oracle.graal.nodes.java.ArrayLengthNode;
+import com.oracle.graal.nodes.java.CheckCastNode;
+import com.oracle.graal.nodes.java.InstanceOfNode;
+import com.oracle.graal.nodes.java.LoadFieldNode;
+import com.oracle.graal.nodes.java.LoadIndexedNode;
+import com.oracle.graal.nodes.java.MethodCallTargetNode;
+import com.oracle.graal.nodes.java.StoreFieldNode;
+import com.oracle.graal.nodes.java.StoreIndexedNode;
+
+/**
+ * Describes how a method treats the objects passed to it as arguments. The summary of an argument
+ * also covers all objects reachable from it: if the method loads an object from a field of the
+ * argument and lets that object escape, the argument itself is considered to escape.
+ *
+ * Summaries are computed from a graph that contains all paths of the method's bytecodes, i.e.,
+ * that was parsed without optimistic optimizations. Otherwise a deoptimization in the method could
+ * lead to code that was not taken into account.
+ */
+public final class EscapeSummary {
+
+    public enum ArgumentEscape {
+        /**
+         * The argument is only used locally by the method.
+         */
+        NONE,
+        /**
+         * The argument may be returned by the method, but does not escape otherwise.
+         */
+        RETURN,
+        /**
+         * The argument may escape, e.g., because it is stored into the heap, thrown, locked or
+         * passed to a method without summary.
+         */
+        GLOBAL
+    }
+
+    private final ArgumentEscape[] escapes;
+    private final boolean[] modified;
+
+    private EscapeSummary(ArgumentEscape[] escapes, boolean[] modified) {
+        this.escapes = escapes;
+        this.modified = modified;
+    }
+
+    /**
+     * Creates the most conservative summary, in which all arguments escape.
+     */
+    static EscapeSummary global(int parameterCount) {
+        ArgumentEscape[] escapes = new ArgumentEscape[parameterCount];
+        boolean[] modified = new boolean[parameterCount];
+        Arrays.fill(escapes, ArgumentEscape.GLOBAL);
+        Arrays.fill(modified, true);
+        return new EscapeSummary(escapes, modified);
+    }
+
+    public ArgumentEscape getEscape(int index) {
+        return escapes[index];
+    }
+
+    /**
+     * Determines whether the method may write to the argument or to an object reachable from it.
+     */
+    public boolean isModified(int index) {
+        return modified[index];
+    }
+
+    /**
+     * Determines whether the argument is neither modified nor leaked by the method, so that the
+     * identity of the object passed as the argument is not observable after the call returns.
+     */
+    public boolean isTransient(int index) {
+        return escapes[index] == ArgumentEscape.NONE && !modified[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("EscapeSummary[");
+        for (int i = 0; i < escapes.length; i++) {
+            str.append(i == 0 ? "" : ", ").append(escapes[i]).append(modified[i] ? " modified" : "");
+        }
+        return str.append(']').toString();
+    }
+
+    /**
+     * Provides the summaries of the methods called by the method that is being summarized.
+     */
+    interface CalleeSummaries {
+
+        /**
+         * @return the summary of the method called by {@code callTarget} or null if none is
+         *         available
+         */
+        EscapeSummary getSummary(MethodCallTargetNode callTarget);
+    }
+
+    static EscapeSummary compute(StructuredGraph graph, CalleeSummaries callees) {
+        ResolvedJavaMethod method = graph.method();
+        int parameterCount = method.getSignature().getParameterCount(!method.isStatic());
+        if (graph.getNodes().filter(node -> node instanceof AbstractDeoptimizeNode || node instanceof AbstractFixedGuardNode).isNotEmpty()) {
+            // the code after a deoptimization is not part of the graph
+            return global(parameterCount);
+        }
+        ArgumentEscape[] escapes = new ArgumentEscape[parameterCount];
+        boolean[] modified = new boolean[parameterCount];
+        Arrays.fill(escapes, ArgumentEscape.NONE);
+        for (ParameterNode parameter : graph.getNodes(ParameterNode.TYPE)) {
+            int index = parameter.index();
+            if (parameter.getStackKind() == JavaKind.Object && index < parameterCount) {
+                summarize(parameter, index, escapes, modified, callees);
+            }
+        }
+        return new EscapeSummary(escapes, modified);
+    }
+
+    /**
+     * Follows all values that may alias {@code parameter} or an object reachable from it.
+     */
+    private static void summarize(ParameterNode parameter, int index, ArgumentEscape[] escapes, boolean[] modified, CalleeSummaries callees) {
+        NodeBitMap aliases = parameter.graph().createNodeBitMap();
+        ArrayDeque<ValueNode> worklist = new ArrayDeque<>();
+        aliases.mark(parameter);
+        worklist.add(parameter);
+        while (!worklist.isEmpty()) {
+            ValueNode alias = worklist.removeFirst();
+            for (Node usage : alias.usages()) {
+                if (usage instanceof VirtualState || usage instanceof IsNullNode || usage instanceof ObjectEqualsNode || usage instanceof InstanceOfNode || usage instanceof ArrayLengthNode ||
+                                usage instanceof GetClassNode || usage instanceof LoadHubNode) {
+                    continue;
+                } else if (usage instanceof LoadFieldNode || usage instanceof LoadIndexedNode) {
+                    if (((ValueNode) usage).getStackKind() == JavaKind.Object) {
+                        addAlias((ValueNode) usage, aliases, worklist);
+                    }
+                } else if (usage instanceof PiNode || usage instanceof CheckCastNode || usage instanceof ValuePhiNode || usage instanceof ConditionalNode) {
+                    addAlias((ValueNode) usage, aliases, worklist);
+                } else if (usage instanceof StoreFieldNode && ((StoreFieldNode) usage).value() != alias) {
+                    modified[index] = true;
+                } else if (usage instanceof StoreIndexedNode && ((StoreIndexedNode) usage).value() != alias) {
+                    modified[index] = true;
+                } else if (usage instanceof ReturnNode) {
+                    if (escapes[index] == ArgumentEscape.NONE) {
+                        escapes[index] = ArgumentEscape.RETURN;
+                    }
+                } else if (usage instanceof MethodCallTargetNode) {
+                    MethodCallTargetNode callTarget = (MethodCallTargetNode) usage;
+                    EscapeSummary callee = callees.getSummary(callTarget);
+                    if (callee == null) {
+                        escapes[index] = ArgumentEscape.GLOBAL;
+                        return;
+                    }
+                    for (int i = 0; i < callTarget.arguments().size(); i++) {
+                        if (callTarget.arguments().get(i) == alias) {
+                            modified[index] |= callee.isModified(i);
+                            if (callee.getEscape(i) == ArgumentEscape.GLOBAL) {
+                                escapes[index] = ArgumentEscape.GLOBAL;
+                                return;
+                            } else if (callee.getEscape(i) == ArgumentEscape.RETURN) {
+                                addAlias((ValueNode) callTarget.invoke().asNode(), aliases, worklist);
+                            }
+                        }
+                    }
+                } else {
+                    escapes[index] = ArgumentEscape.GLOBAL;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void addAlias(ValueNode node, NodeBitMap aliases, ArrayDeque<ValueNode> worklist) {
+        if (!aliases.isMarked(node)) {
+            aliases.mark(node);
+            worklist.add(node);
+        }
+    }
+}
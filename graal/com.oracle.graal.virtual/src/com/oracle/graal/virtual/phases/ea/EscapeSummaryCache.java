@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.virtual.phases.ea;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.java.MethodCallTargetNode;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.phases.tiers.HighTierContext;
+import com.oracle.graal.phases.util.Providers;
+
+/**
+ * Computes and caches the {@link EscapeSummary escape summaries} of methods, keyed by method. The
+ * least recently used summaries are evicted once the cache holds {@link #MAXIMUM_ENTRIES}.
+ */
+public class EscapeSummaryCache {
+
+    private static final DebugMetric metricSummariesComputed = Debug.metric("EscapeSummariesComputed");
+
+    /**
+     * Methods with more bytecodes than this are not summarized.
+     */
+    private static final int MAXIMUM_CODE_SIZE = 300;
+
+    /**
+     * The depth up to which the summaries of callees are computed when summarizing a method.
+     */
+    private static final int MAXIMUM_DEPTH = 3;
+
+    /**
+     * The maximum number of summaries kept by a cache.
+     */
+    private static final int MAXIMUM_ENTRIES = 256;
+
+    private final Map<ResolvedJavaMethod, EscapeSummary> summaries = Collections.synchronizedMap(new LRUCache<>(MAXIMUM_ENTRIES));
+
+    /**
+     * Gets the summary of the method called by {@code callTarget}.
+     *
+     * @return the summary or null if the call cannot be statically bound or the target is not
+     *         summarized
+     */
+    public EscapeSummary getSummary(MethodCallTargetNode callTarget, HighTierContext context) {
+        return getSummary(callTarget, new Parser(context), 0);
+    }
+
+    private EscapeSummary getSummary(MethodCallTargetNode callTarget, Parser parser, int depth) {
+        ResolvedJavaMethod method = callTarget.targetMethod();
+        if (!callTarget.invokeKind().isDirect() && !method.canBeStaticallyBound()) {
+            return null;
+        }
+        EscapeSummary summary = summaries.get(method);
+        if (summary == null) {
+            if (depth >= MAXIMUM_DEPTH || !method.hasBytecodes() || method.getCodeSize() > MAXIMUM_CODE_SIZE || method.isSynchronized()) {
+                return null;
+            }
+            StructuredGraph graph = parser.parse(method);
+            summary = EscapeSummary.compute(graph, calleeCallTarget -> getSummary(calleeCallTarget, parser, depth + 1));
+            metricSummariesComputed.increment();
+            summaries.put(method, summary);
+        }
+        return summary;
+    }
+
+    private static final class LRUCache<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final int maxCacheSize;
+
+        LRUCache(int maxCacheSize) {
+            super(16, 0.75F, true);
+            this.maxCacheSize = maxCacheSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxCacheSize;
+        }
+    }
+
+    private static final class Parser {
+
+        private final HighTierContext context;
+
+        Parser(HighTierContext context) {
+            this.context = new HighTierContext(new Providers(context), context.getGraphBuilderSuite(), OptimisticOptimizations.NONE);
+        }
+
+        /**
+         * Parses all paths of {@code method}, without using profiling information or assumptions.
+         */
+        StructuredGraph parse(ResolvedJavaMethod method) {
+            StructuredGraph graph = new StructuredGraph(method, AllowAssumptions.NO, false);
+            context.getGraphBuilderSuite().apply(graph, context);
+            return graph;
+        }
+    }
+}
@@ -39,13 +39,29 @@ import com.oracle.graal.virtual.nodes.VirtualObjectState;
  * This class describes the state of a virtual object while iterating over the graph. It describes
  * the fields or array elements (called "entries") and the lock count if the object is still
  * virtual. If the object was materialized, it contains the current materialized value.
+ *
+ * Objects with more than {@link #CHUNK_SIZE} entries, i.e., large virtual arrays, keep their
+ * entries in chunks. Cloned states share the chunks until they write them, and consecutive chunks
+ * with the same contents, e.g., untouched default values, are shared from the start. Cloning such a
+ * state or setting an entry therefore only copies the chunk table and a single chunk.
  */
 public class ObjectState {
 
     public static final DebugMetric CREATE_ESCAPED_OBJECT_STATE = Debug.metric("CreateEscapeObjectState");
     public static final DebugMetric GET_ESCAPED_OBJECT_STATE = Debug.metric("GetEscapeObjectState");
 
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * The entries of a virtual object. For objects with {@link #chunks}, this is a cache of the
+     * chunk contents that is rebuilt on demand, or null if it is not up to date.
+     */
     private ValueNode[] entries;
+    private ValueNode[][] chunks;
+    private boolean[] ownedChunks;
+    private int entryCount;
+
     private ValueNode materializedValue;
     private LockState locks;
     private boolean ensureVirtualized;
@@ -65,6 +81,9 @@ public class ObjectState {
         this.entries = entries;
         this.locks = locks;
         this.ensureVirtualized = ensureVirtualized;
+        if (entries.length > CHUNK_SIZE) {
+            createChunks();
+        }
     }
 
     public ObjectState(ValueNode materializedValue, LockState locks, boolean ensureVirtualized) {
@@ -75,7 +94,16 @@ public class ObjectState {
     }
 
     private ObjectState(ObjectState other) {
-        entries = other.entries == null ? null : other.entries.clone();
+        if (other.chunks != null) {
+            entries = other.entries;
+            chunks = other.chunks.clone();
+            ownedChunks = new boolean[chunks.length];
+            entryCount = other.entryCount;
+            // the chunks are shared from now on
+            Arrays.fill(other.ownedChunks, false);
+        } else {
+            entries = other.entries == null ? null : other.entries.clone();
+        }
         materializedValue = other.materializedValue;
         locks = other.locks;
         cachedState = other.cachedState;
@@ -86,18 +114,46 @@ public class ObjectState {
         return new ObjectState(this);
     }
 
+    private void createChunks() {
+        entryCount = entries.length;
+        chunks = new ValueNode[(entryCount + CHUNK_SIZE - 1) >> CHUNK_SHIFT][];
+        ownedChunks = new boolean[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            ValueNode[] chunk = Arrays.copyOfRange(entries, i << CHUNK_SHIFT, Math.min((i + 1) << CHUNK_SHIFT, entryCount));
+            if (i > 0 && sameEntries(chunks[i - 1], chunk)) {
+                chunks[i] = chunks[i - 1];
+                ownedChunks[i - 1] = false;
+            } else {
+                chunks[i] = chunk;
+                ownedChunks[i] = true;
+            }
+        }
+    }
+
+    private static boolean sameEntries(ValueNode[] a, ValueNode[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public EscapeObjectState createEscapeObjectState(VirtualObjectNode virtual) {
         GET_ESCAPED_OBJECT_STATE.increment();
         if (cachedState == null) {
             CREATE_ESCAPED_OBJECT_STATE.increment();
-            cachedState = isVirtual() ? new VirtualObjectState(virtual, entries) : new MaterializedObjectState(virtual, materializedValue);
+            cachedState = isVirtual() ? new VirtualObjectState(virtual, getEntries()) : new MaterializedObjectState(virtual, materializedValue);
         }
         return cachedState;
 
     }
 
     public boolean isVirtual() {
-        assert materializedValue == null ^ entries == null;
+        assert materializedValue == null ^ (entries == null && chunks == null);
         return materializedValue == null;
     }
 
@@ -106,11 +162,21 @@ public class ObjectState {
      */
     public ValueNode[] getEntries() {
         assert isVirtual();
+        if (entries == null) {
+            ValueNode[] newEntries = new ValueNode[entryCount];
+            for (int i = 0; i < chunks.length; i++) {
+                System.arraycopy(chunks[i], 0, newEntries, i << CHUNK_SHIFT, chunks[i].length);
+            }
+            entries = newEntries;
+        }
         return entries;
     }
 
     public ValueNode getEntry(int index) {
         assert isVirtual();
+        if (chunks != null) {
+            return chunks[index >> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+        }
         return entries[index];
     }
 
@@ -122,7 +188,17 @@ public class ObjectState {
     public void setEntry(int index, ValueNode value) {
         assert isVirtual();
         cachedState = null;
-        entries[index] = value;
+        if (chunks != null) {
+            int chunk = index >> CHUNK_SHIFT;
+            if (!ownedChunks[chunk]) {
+                chunks[chunk] = chunks[chunk].clone();
+                ownedChunks[chunk] = true;
+            }
+            chunks[chunk][index & (CHUNK_SIZE - 1)] = value;
+            entries = null;
+        } else {
+            entries[index] = value;
+        }
     }
 
     public void escape(ValueNode materialized) {
@@ -130,6 +206,8 @@ public class ObjectState {
         assert materialized != null;
         materializedValue = materialized;
         entries = null;
+        chunks = null;
+        ownedChunks = null;
         cachedState = null;
         assert !isVirtual();
     }
@@ -185,9 +263,10 @@ public class ObjectState {
         if (locks != null) {
             str.append('l').append(locks).append(' ');
         }
-        if (entries != null) {
-            for (int i = 0; i < entries.length; i++) {
-                str.append("entry").append(i).append('=').append(entries[i]).append(' ');
+        if (isVirtual()) {
+            ValueNode[] values = getEntries();
+            for (int i = 0; i < values.length; i++) {
+                str.append("entry").append(i).append('=').append(values[i]).append(' ');
             }
         }
         if (materializedValue != null) {
@@ -201,7 +280,7 @@ public class ObjectState {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + Arrays.hashCode(entries);
+        result = prime * result + (isVirtual() ? Arrays.hashCode(getEntries()) : 0);
         result = prime * result + (locks != null ? locks.monitorId.getLockDepth() : 0);
         result = prime * result + ((materializedValue == null) ? 0 : materializedValue.hashCode());
         return result;
@@ -216,7 +295,7 @@ public class ObjectState {
             return false;
         }
         ObjectState other = (ObjectState) obj;
-        if (!Arrays.equals(entries, other.entries)) {
+        if (isVirtual() != other.isVirtual() || (isVirtual() && !Arrays.equals(getEntries(), other.getEntries()))) {
             return false;
         }
         if (!locksEqual(other)) {
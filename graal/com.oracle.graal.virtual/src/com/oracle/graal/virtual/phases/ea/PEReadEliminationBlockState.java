@@ -23,7 +23,6 @@
 package com.oracle.graal.virtual.phases.ea;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -37,7 +36,12 @@ import com.oracle.graal.nodes.virtual.VirtualObjectNode;
 
 public class PEReadEliminationBlockState extends PartialEscapeBlockState<PEReadEliminationBlockState> {
 
-    final HashMap<ReadCacheEntry, ValueNode> readCache;
+    /**
+     * The read cache is shared with the states copied from this state and is only copied when one
+     * of them modifies it.
+     */
+    private HashMap<ReadCacheEntry, ValueNode> readCache;
+    private RefCount readCacheRefCount;
 
     static final class ReadCacheEntry {
 
@@ -75,11 +79,14 @@ public class PEReadEliminationBlockState extends PartialEscapeBlockState<PEReadE
 
     public PEReadEliminationBlockState() {
         readCache = CollectionsFactory.newMap();
+        readCacheRefCount = new RefCount();
     }
 
     public PEReadEliminationBlockState(PEReadEliminationBlockState other) {
         super(other);
-        readCache = CollectionsFactory.newMap(other.readCache);
+        readCache = other.readCache;
+        readCacheRefCount = other.readCacheRefCount;
+        readCacheRefCount.refCount++;
     }
 
     @Override
@@ -92,7 +99,7 @@ public class PEReadEliminationBlockState extends PartialEscapeBlockState<PEReadE
         if (virtual instanceof VirtualInstanceNode) {
             VirtualInstanceNode instance = (VirtualInstanceNode) virtual;
             for (int i = 0; i < instance.entryCount(); i++) {
-                readCache.put(new ReadCacheEntry(instance.field(i).getLocationIdentity(), representation, -1), values.get(i));
+                putReadCache(new ReadCacheEntry(instance.field(i).getLocationIdentity(), representation, -1), values.get(i));
             }
         }
     }
@@ -114,7 +121,46 @@ public class PEReadEliminationBlockState extends PartialEscapeBlockState<PEReadE
         } else {
             cacheObject = object;
         }
-        readCache.put(new ReadCacheEntry(identity, cacheObject, index), value);
+        putReadCache(new ReadCacheEntry(identity, cacheObject, index), value);
+    }
+
+    private HashMap<ReadCacheEntry, ValueNode> getReadCacheForModification() {
+        if (readCacheRefCount.refCount > 1) {
+            readCacheRefCount.refCount--;
+            readCache = CollectionsFactory.newMap(readCache);
+            readCacheRefCount = new RefCount();
+        }
+        return readCache;
+    }
+
+    void putReadCache(ReadCacheEntry entry, ValueNode value) {
+        if (readCache.get(entry) != value) {
+            getReadCacheForModification().put(entry, value);
+        }
+    }
+
+    ValueNode getReadCache(ReadCacheEntry entry) {
+        return readCache.get(entry);
+    }
+
+    /**
+     * Replaces the contents of this state's read cache with the read cache of {@code other}
+     * without copying it.
+     */
+    public void adoptReadCache(PEReadEliminationBlockState other) {
+        readCacheRefCount.refCount--;
+        readCache = other.readCache;
+        readCacheRefCount = other.readCacheRefCount;
+        readCacheRefCount.refCount++;
+    }
+
+    public static boolean identicalReadCaches(List<PEReadEliminationBlockState> states) {
+        for (int i = 1; i < states.size(); i++) {
+            if (states.get(0).readCache != states.get(i).readCache) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public ValueNode getReadCache(ValueNode object, LocationIdentity identity, int index, PartialEscapeClosure<?> closure) {
@@ -139,19 +185,30 @@ public class PEReadEliminationBlockState extends PartialEscapeBlockState<PEReadE
     }
 
     public void killReadCache() {
-        readCache.clear();
+        if (!readCache.isEmpty()) {
+            readCacheRefCount.refCount--;
+            readCache = CollectionsFactory.newMap();
+            readCacheRefCount = new RefCount();
+        }
     }
 
     public void killReadCache(LocationIdentity identity, int index) {
-        Iterator<Map.Entry<ReadCacheEntry, ValueNode>> iter = readCache.entrySet().iterator();
-        while (iter.hasNext()) {
-            ReadCacheEntry entry = iter.next().getKey();
-            if (entry.identity.equals(identity) && (index == -1 || entry.index == -1 || index == entry.index)) {
-                iter.remove();
+        for (ReadCacheEntry entry : readCache.keySet()) {
+            if (conflicts(entry, identity, index)) {
+                getReadCacheForModification().keySet().removeIf(key -> conflicts(key, identity, index));
+                return;
             }
         }
     }
 
+    private static boolean conflicts(ReadCacheEntry entry, LocationIdentity identity, int index) {
+        return entry.identity.equals(identity) && (index == -1 || entry.index == -1 || index == entry.index);
+    }
+
+    /**
+     * Returns the read cache of this state, which may be shared with other states and must not be
+     * modified.
+     */
     public Map<ReadCacheEntry, ValueNode> getReadCache() {
         return readCache;
     }
@@ -266,7 +266,7 @@ public class PEReadEliminationClosure extends PartialEscapeClosure<PEReadElimina
                     if (!(value instanceof ProxyNode) || ((ProxyNode) value).proxyPoint() != exitNode) {
                         ProxyNode proxy = new ValueProxyNode(value, exitNode);
                         effects.addFloatingNode(proxy, "readCacheProxy");
-                        entry.setValue(proxy);
+                        exitState.putReadCache(entry.getKey(), proxy);
                     }
                 }
             }
@@ -297,12 +297,29 @@ public class PEReadEliminationClosure extends PartialEscapeClosure<PEReadElimina
         }
 
         private void mergeReadCache(List<PEReadEliminationBlockState> states) {
-            for (Map.Entry<ReadCacheEntry, ValueNode> entry : states.get(0).readCache.entrySet()) {
+            if (PEReadEliminationBlockState.identicalReadCaches(states) && newState.getReadCache().isEmpty()) {
+                newState.adoptReadCache(states.get(0));
+            } else {
+                mergeDifferentReadCaches(states);
+            }
+            for (PhiNode phi : getPhis()) {
+                if (phi.getStackKind() == JavaKind.Object) {
+                    for (Map.Entry<ReadCacheEntry, ValueNode> entry : states.get(0).getReadCache().entrySet()) {
+                        if (entry.getKey().object == getPhiValueAt(phi, 0)) {
+                            mergeReadCachePhi(phi, entry.getKey().identity, entry.getKey().index, states);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void mergeDifferentReadCaches(List<PEReadEliminationBlockState> states) {
+            for (Map.Entry<ReadCacheEntry, ValueNode> entry : states.get(0).getReadCache().entrySet()) {
                 ReadCacheEntry key = entry.getKey();
                 ValueNode value = entry.getValue();
                 boolean phi = false;
                 for (int i = 1; i < states.size(); i++) {
-                    ValueNode otherValue = states.get(i).readCache.get(key);
+                    ValueNode otherValue = states.get(i).getReadCache(key);
                     if (otherValue == null) {
                         value = null;
                         phi = false;
@@ -318,18 +335,9 @@ public class PEReadEliminationClosure extends PartialEscapeClosure<PEReadElimina
                     for (int i = 0; i < states.size(); i++) {
                         setPhiInput(phiNode, i, states.get(i).getReadCache(key.object, key.identity, key.index, PEReadEliminationClosure.this));
                     }
-                    newState.readCache.put(key, phiNode);
+                    newState.putReadCache(key, phiNode);
                 } else if (value != null) {
-                    newState.readCache.put(key, value);
-                }
-            }
-            for (PhiNode phi : getPhis()) {
-                if (phi.getStackKind() == JavaKind.Object) {
-                    for (Map.Entry<ReadCacheEntry, ValueNode> entry : states.get(0).readCache.entrySet()) {
-                        if (entry.getKey().object == getPhiValueAt(phi, 0)) {
-                            mergeReadCachePhi(phi, entry.getKey().identity, entry.getKey().index, states);
-                        }
-                    }
+                    newState.putReadCache(key, value);
                 }
             }
         }
@@ -349,7 +357,7 @@ public class PEReadEliminationClosure extends PartialEscapeClosure<PEReadElimina
             for (int i = 0; i < values.length; i++) {
                 setPhiInput(phiNode, i, values[i]);
             }
-            newState.readCache.put(new ReadCacheEntry(identity, phi, index), phiNode);
+            newState.putReadCache(new ReadCacheEntry(identity, phi, index), phiNode);
         }
     }
 }
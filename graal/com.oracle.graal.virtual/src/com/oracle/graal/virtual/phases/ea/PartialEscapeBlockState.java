@@ -44,10 +44,6 @@ public abstract class PartialEscapeBlockState<T extends PartialEscapeBlockState<
 
     private ObjectState[] objectStates;
 
-    private static class RefCount {
-        private int refCount = 1;
-    }
-
     private RefCount arrayRefCount;
 
     /**
@@ -97,6 +93,7 @@ public abstract class PartialEscapeBlockState<T extends PartialEscapeBlockState<
 
     private ObjectState[] getObjectStateArrayForModification() {
         if (arrayRefCount.refCount > 1) {
+            arrayRefCount.refCount--;
             objectStates = objectStates.clone();
             arrayRefCount = new RefCount();
         }
@@ -311,7 +308,9 @@ public abstract class PartialEscapeBlockState<T extends PartialEscapeBlockState<
     }
 
     public void resetObjectStates(int size) {
+        arrayRefCount.refCount--;
         objectStates = new ObjectState[size];
+        arrayRefCount = new RefCount();
     }
 
     public static boolean identicalObjectStates(PartialEscapeBlockState<?>[] states) {
@@ -69,12 +69,14 @@ import com.oracle.graal.nodes.ValueProxyNode;
 import com.oracle.graal.nodes.VirtualState;
 import com.oracle.graal.nodes.VirtualState.NodeClosure;
 import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.java.MethodCallTargetNode;
 import com.oracle.graal.nodes.spi.NodeWithState;
 import com.oracle.graal.nodes.spi.Virtualizable;
 import com.oracle.graal.nodes.spi.VirtualizableAllocation;
 import com.oracle.graal.nodes.spi.VirtualizerTool;
 import com.oracle.graal.nodes.virtual.VirtualObjectNode;
 import com.oracle.graal.phases.common.instrumentation.nodes.InstrumentationNode;
+import com.oracle.graal.phases.tiers.HighTierContext;
 
 public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockState<BlockT>> extends EffectsClosure<BlockT> {
 
@@ -87,12 +89,22 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
     public static final DebugMetric METRIC_ALLOCATION_REMOVED = Debug.metric("AllocationsRemoved");
 
     public static final DebugMetric METRIC_MEMORYCHECKPOINT = Debug.metric("MemoryCheckpoint");
+    public static final DebugMetric METRIC_TRANSIENT_MATERIALIZATIONS = Debug.metric("TransientMaterializations");
 
     private final NodeBitMap hasVirtualInputs;
     private final VirtualizerToolImpl tool;
 
+    private EscapeSummaryCache escapeSummaries;
+    private HighTierContext escapeSummaryContext;
+
     public final ArrayList<VirtualObjectNode> virtualObjects = new ArrayList<>();
 
+    /**
+     * The number of virtual objects when a loop was processed for the first time. Objects with a
+     * smaller id were created before the loop.
+     */
+    private final Map<Loop<Block>, Integer> loopFirstObjectIds = CollectionsFactory.newIdentityMap();
+
     private final class CollectVirtualObjectsClosure extends NodeClosure<ValueNode> {
         private final Set<VirtualObjectNode> virtual;
         private final GraphEffectList effects;
@@ -290,24 +302,147 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
         return true;
     }
 
+    /**
+     * Enables the use of {@link EscapeSummary escape summaries} for calls that were not inlined.
+     */
+    void setEscapeSummaries(EscapeSummaryCache cache, HighTierContext context) {
+        this.escapeSummaries = cache;
+        this.escapeSummaryContext = context;
+    }
+
     private void processNodeInputs(ValueNode node, FixedNode insertBefore, BlockT state, GraphEffectList effects) {
         VirtualUtil.trace("processing nodewithstate: %s", node);
+        boolean[] transientInputs = null;
+        if (escapeSummaries != null && node instanceof MethodCallTargetNode) {
+            transientInputs = findTransientArguments((MethodCallTargetNode) node, state);
+        }
+        int index = 0;
         for (Node input : node.inputs()) {
-            if (input instanceof ValueNode) {
-                ValueNode alias = getAlias((ValueNode) input);
-                if (alias instanceof VirtualObjectNode) {
-                    int id = ((VirtualObjectNode) alias).getObjectId();
-                    ensureMaterialized(state, id, insertBefore, effects, METRIC_MATERIALIZATIONS_UNHANDLED);
-                    effects.replaceFirstInput(node, input, state.getObjectState(id).getMaterializedValue());
-                    VirtualUtil.trace("replacing input %s at %s", input, node);
+            if (input instanceof ValueNode && (transientInputs == null || !transientInputs[index])) {
+                materializeInput(node, (ValueNode) input, insertBefore, state, effects);
+            }
+            index++;
+        }
+        if (transientInputs != null) {
+            /*
+             * The callee neither modifies nor leaks these arguments, so the copies created for the
+             * call are not observable afterwards and the objects can stay virtual after the call.
+             * All of them are materialized together, so that the callee sees the same identity
+             * for an object passed multiple times.
+             */
+            BlockT virtualState = cloneState(state);
+            index = 0;
+            for (Node input : node.inputs()) {
+                if (transientInputs[index]) {
+                    METRIC_TRANSIENT_MATERIALIZATIONS.increment();
+                    materializeInput(node, (ValueNode) input, insertBefore, state, effects);
                 }
+                index++;
             }
+            state.adoptAddObjectStates(virtualState);
         }
         if (node instanceof NodeWithState) {
             processNodeWithState((NodeWithState) node, state, effects);
         }
     }
 
+    private void materializeInput(ValueNode node, ValueNode input, FixedNode insertBefore, BlockT state, GraphEffectList effects) {
+        ValueNode alias = getAlias(input);
+        if (alias instanceof VirtualObjectNode) {
+            int id = ((VirtualObjectNode) alias).getObjectId();
+            ensureMaterialized(state, id, insertBefore, effects, METRIC_MATERIALIZATIONS_UNHANDLED);
+            effects.replaceFirstInput(node, input, state.getObjectState(id).getMaterializedValue());
+            VirtualUtil.trace("replacing input %s at %s", input, node);
+        }
+    }
+
+    /**
+     * Determines which arguments of a call that was not inlined are virtual objects that the
+     * callee neither modifies nor leaks, according to its {@link EscapeSummary}.
+     *
+     * @return a flag for each input of {@code callTarget} or null if there are no such arguments
+     */
+    private boolean[] findTransientArguments(MethodCallTargetNode callTarget, BlockT state) {
+        EscapeSummary summary = escapeSummaries.getSummary(callTarget, escapeSummaryContext);
+        if (summary == null) {
+            return null;
+        }
+        boolean[] transientInputs = null;
+        int index = 0;
+        for (Node input : callTarget.inputs()) {
+            if (isTransientArgument(callTarget, input, summary)) {
+                ValueNode alias = getAlias((ValueNode) input);
+                if (alias instanceof VirtualObjectNode && canCopyTransiently(state, (VirtualObjectNode) alias, cfg.blockFor(callTarget.invoke().asNode()))) {
+                    if (transientInputs == null) {
+                        transientInputs = new boolean[callTarget.inputs().count()];
+                    }
+                    transientInputs[index] = true;
+                }
+            }
+            index++;
+        }
+        return transientInputs;
+    }
+
+    /**
+     * Determines whether {@code input} is an argument of {@code callTarget} and the callee neither
+     * modifies nor leaks it at any of the positions at which it is passed. Other inputs that alias
+     * the same object are materialized for good before the transient copies are created, so they
+     * do not need to be considered here.
+     */
+    private static boolean isTransientArgument(MethodCallTargetNode callTarget, Node input, EscapeSummary summary) {
+        boolean found = false;
+        for (int argument = 0; argument < callTarget.arguments().size(); argument++) {
+            if (callTarget.arguments().get(argument) == input) {
+                if (!summary.isTransient(argument)) {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Determines whether {@code virtual} and the virtual objects reachable from it can be
+     * materialized for a call in {@code block} while staying virtual afterwards. This is not the
+     * case if any of them is locked, since materializing it acquires a lock that would never be
+     * released. It is also not the case if any of them was created outside of a loop containing
+     * {@code block}: the copies would be allocated in every iteration, while materializing the
+     * object for good allocates it once.
+     */
+    private boolean canCopyTransiently(BlockT state, VirtualObjectNode virtual, Block block) {
+        ArrayDeque<VirtualObjectNode> worklist = new ArrayDeque<>();
+        Set<VirtualObjectNode> visited = new ArraySet<>();
+        worklist.push(virtual);
+        visited.add(virtual);
+        while (!worklist.isEmpty()) {
+            VirtualObjectNode current = worklist.pop();
+            ObjectState objState = state.getObjectStateOptional(current);
+            if (objState == null || !objState.isVirtual()) {
+                continue;
+            }
+            if (objState.hasLocks() || isCreatedOutsideOfLoop(current, block)) {
+                return false;
+            }
+            for (ValueNode entry : objState.getEntries()) {
+                if (entry instanceof VirtualObjectNode && visited.add((VirtualObjectNode) entry)) {
+                    worklist.push((VirtualObjectNode) entry);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isCreatedOutsideOfLoop(VirtualObjectNode virtual, Block block) {
+        for (Loop<Block> loop = block.getLoop(); loop != null; loop = loop.getParent()) {
+            if (virtual.getObjectId() < loopFirstObjectIds.get(loop)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean processVirtualizable(ValueNode node, FixedNode insertBefore, BlockT state, GraphEffectList effects) {
         tool.reset(state, node, insertBefore, effects);
         return virtualize(node, tool);
@@ -408,6 +543,7 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
 
     @Override
     protected void processInitialLoopState(Loop<Block> loop, BlockT initialState) {
+        loopFirstObjectIds.putIfAbsent(loop, virtualObjects.size());
         for (PhiNode phi : ((LoopBeginNode) loop.getHeader().getBeginNode()).phis()) {
             if (phi.valueAt(0) != null) {
                 ValueNode alias = getAliasAndResolve(initialState, phi.valueAt(0));
@@ -22,6 +22,7 @@
  */
 package com.oracle.graal.virtual.phases.ea;
 
+import static com.oracle.graal.compiler.common.GraalOptions.EscapeAnalysisCallSummaries;
 import static com.oracle.graal.compiler.common.GraalOptions.EscapeAnalysisIterations;
 import static com.oracle.graal.compiler.common.GraalOptions.EscapeAnalyzeOnly;
 
@@ -37,6 +38,7 @@ import com.oracle.graal.options.OptionType;
 import com.oracle.graal.options.OptionValue;
 import com.oracle.graal.phases.BasePhase;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.tiers.HighTierContext;
 import com.oracle.graal.phases.tiers.PhaseContext;
 
 public class PartialEscapePhase extends EffectsPhase<PhaseContext> {
@@ -50,6 +52,7 @@ public class PartialEscapePhase extends EffectsPhase<PhaseContext> {
 
     private final boolean readElimination;
     private final BasePhase<PhaseContext> cleanupPhase;
+    private final EscapeSummaryCache summaryCache = new EscapeSummaryCache();
 
     public PartialEscapePhase(boolean iterative, CanonicalizerPhase canonicalizer) {
         this(iterative, Options.OptEarlyReadElimination.getValue(), canonicalizer, null);
@@ -88,10 +91,15 @@ public class PartialEscapePhase extends EffectsPhase<PhaseContext> {
             virtual.resetObjectId();
         }
         assert schedule != null;
+        PartialEscapeClosure<?> closure;
         if (readElimination) {
-            return new PEReadEliminationClosure(schedule, context.getMetaAccess(), context.getConstantReflection());
+            closure = new PEReadEliminationClosure(schedule, context.getMetaAccess(), context.getConstantReflection());
         } else {
-            return new PartialEscapeClosure.Final(schedule, context.getMetaAccess(), context.getConstantReflection());
+            closure = new PartialEscapeClosure.Final(schedule, context.getMetaAccess(), context.getConstantReflection());
         }
+        if (EscapeAnalysisCallSummaries.getValue() && context instanceof HighTierContext && ((HighTierContext) context).getGraphBuilderSuite() != null) {
+            closure.setEscapeSummaries(summaryCache, (HighTierContext) context);
+        }
+        return closure;
     }
 }
@@ -23,6 +23,7 @@
 package com.oracle.graal.virtual.phases.ea;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import jdk.vm.ci.meta.LocationIdentity;
@@ -32,7 +33,12 @@ import com.oracle.graal.nodes.ValueNode;
 
 public class ReadEliminationBlockState extends EffectsBlockState<ReadEliminationBlockState> {
 
-    final HashMap<CacheEntry<?>, ValueNode> readCache;
+    /**
+     * The read cache is shared with the states copied from this state and is only copied when one
+     * of them modifies it.
+     */
+    private HashMap<CacheEntry<?>, ValueNode> readCache;
+    private RefCount readCacheRefCount;
 
     abstract static class CacheEntry<T> {
 
@@ -114,10 +120,13 @@ public class ReadEliminationBlockState extends EffectsBlockState<ReadElimination
 
     public ReadEliminationBlockState() {
         readCache = CollectionsFactory.newMap();
+        readCacheRefCount = new RefCount();
     }
 
     public ReadEliminationBlockState(ReadEliminationBlockState other) {
-        readCache = CollectionsFactory.newMap(other.readCache);
+        readCache = other.readCache;
+        readCacheRefCount = other.readCacheRefCount;
+        readCacheRefCount.refCount++;
     }
 
     @Override
@@ -130,8 +139,39 @@ public class ReadEliminationBlockState extends EffectsBlockState<ReadElimination
         return compareMapsNoSize(readCache, other.readCache);
     }
 
+    private HashMap<CacheEntry<?>, ValueNode> getReadCacheForModification() {
+        if (readCacheRefCount.refCount > 1) {
+            readCacheRefCount.refCount--;
+            readCache = CollectionsFactory.newMap(readCache);
+            readCacheRefCount = new RefCount();
+        }
+        return readCache;
+    }
+
+    /**
+     * Replaces the contents of this state's read cache with the read cache of {@code other}
+     * without copying it.
+     */
+    public void adoptReadCache(ReadEliminationBlockState other) {
+        readCacheRefCount.refCount--;
+        readCache = other.readCache;
+        readCacheRefCount = other.readCacheRefCount;
+        readCacheRefCount.refCount++;
+    }
+
+    public static boolean identicalReadCaches(List<ReadEliminationBlockState> states) {
+        for (int i = 1; i < states.size(); i++) {
+            if (states.get(0).readCache != states.get(i).readCache) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void addCacheEntry(CacheEntry<?> identifier, ValueNode value) {
-        readCache.put(identifier, value);
+        if (readCache.get(identifier) != value) {
+            getReadCacheForModification().put(identifier, value);
+        }
     }
 
     public ValueNode getCacheEntry(CacheEntry<?> identifier) {
@@ -139,13 +179,26 @@ public class ReadEliminationBlockState extends EffectsBlockState<ReadElimination
     }
 
     public void killReadCache() {
-        readCache.clear();
+        if (!readCache.isEmpty()) {
+            readCacheRefCount.refCount--;
+            readCache = CollectionsFactory.newMap();
+            readCacheRefCount = new RefCount();
+        }
     }
 
     public void killReadCache(LocationIdentity identity) {
-        readCache.entrySet().removeIf(entry -> entry.getKey().conflicts(identity));
+        for (CacheEntry<?> entry : readCache.keySet()) {
+            if (entry.conflicts(identity)) {
+                getReadCacheForModification().keySet().removeIf(key -> key.conflicts(identity));
+                return;
+            }
+        }
     }
 
+    /**
+     * Returns the read cache of this state, which may be shared with other states and must not be
+     * modified.
+     */
     public Map<CacheEntry<?>, ValueNode> getReadCache() {
         return readCache;
     }
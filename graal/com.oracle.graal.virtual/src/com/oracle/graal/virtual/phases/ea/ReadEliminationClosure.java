@@ -200,7 +200,7 @@ public class ReadEliminationClosure extends EffectsClosure<ReadEliminationBlockS
                 if (initialState.getReadCache().get(entry.getKey()) != entry.getValue()) {
                     ProxyNode proxy = new ValueProxyNode(exitState.getCacheEntry(entry.getKey()), exitNode);
                     effects.addFloatingNode(proxy, "readCacheProxy");
-                    entry.setValue(proxy);
+                    exitState.addCacheEntry(entry.getKey(), proxy);
                 }
             }
         }
@@ -241,12 +241,30 @@ public class ReadEliminationClosure extends EffectsClosure<ReadEliminationBlockS
         }
 
         private void mergeReadCache(List<ReadEliminationBlockState> states) {
-            for (Map.Entry<CacheEntry<?>, ValueNode> entry : states.get(0).readCache.entrySet()) {
+            if (ReadEliminationBlockState.identicalReadCaches(states) && newState.getReadCache().isEmpty()) {
+                newState.adoptReadCache(states.get(0));
+            } else {
+                mergeDifferentReadCaches(states);
+            }
+            for (PhiNode phi : getPhis()) {
+                if (phi.getStackKind() == JavaKind.Object) {
+                    for (Map.Entry<CacheEntry<?>, ValueNode> entry : states.get(0).getReadCache().entrySet()) {
+                        if (entry.getKey().object == getPhiValueAt(phi, 0)) {
+                            mergeReadCachePhi(phi, entry.getKey(), states);
+                        }
+                    }
+
+                }
+            }
+        }
+
+        private void mergeDifferentReadCaches(List<ReadEliminationBlockState> states) {
+            for (Map.Entry<CacheEntry<?>, ValueNode> entry : states.get(0).getReadCache().entrySet()) {
                 CacheEntry<?> key = entry.getKey();
                 ValueNode value = entry.getValue();
                 boolean phi = false;
                 for (int i = 1; i < states.size(); i++) {
-                    ValueNode otherValue = states.get(i).readCache.get(key);
+                    ValueNode otherValue = states.get(i).getCacheEntry(key);
                     if (otherValue == null) {
                         value = null;
                         phi = false;
@@ -267,16 +285,6 @@ public class ReadEliminationClosure extends EffectsClosure<ReadEliminationBlockS
                     newState.addCacheEntry(key, value);
                 }
             }
-            for (PhiNode phi : getPhis()) {
-                if (phi.getStackKind() == JavaKind.Object) {
-                    for (Map.Entry<CacheEntry<?>, ValueNode> entry : states.get(0).readCache.entrySet()) {
-                        if (entry.getKey().object == getPhiValueAt(phi, 0)) {
-                            mergeReadCachePhi(phi, entry.getKey(), states);
-                        }
-                    }
-
-                }
-            }
         }
 
         private void mergeReadCachePhi(PhiNode phi, CacheEntry<?> identifier, List<ReadEliminationBlockState> states) {
@@ -23,6 +23,7 @@
 package com.oracle.graal.virtual.phases.ea;
 
 import static com.oracle.graal.compiler.common.GraalOptions.MaximumEscapeAnalysisArrayLength;
+import static com.oracle.graal.compiler.common.GraalOptions.MaximumEscapeAnalysisLazyArrayLength;
 
 import java.util.List;
 
@@ -175,6 +176,11 @@ class VirtualizerToolImpl implements VirtualizerTool, CanonicalizerTool {
         return MaximumEscapeAnalysisArrayLength.getValue();
     }
 
+    @Override
+    public int getMaximumLazyEntryCount() {
+        return MaximumEscapeAnalysisLazyArrayLength.getValue();
+    }
+
     @Override
     public void replaceWith(ValueNode node) {
         if (node instanceof VirtualObjectNode) {